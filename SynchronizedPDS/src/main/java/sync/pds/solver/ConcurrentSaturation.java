@@ -0,0 +1,105 @@
+/**
+ * ***************************************************************************** Copyright (c) 2018
+ * Fraunhofer IEM, Paderborn, Germany. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * <p>SPDX-License-Identifier: EPL-2.0
+ *
+ * <p>Contributors: Johannes Spaeth - initial API and implementation
+ * *****************************************************************************
+ */
+package sync.pds.solver;
+
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.MoreExecutors;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The two stages of a concurrent {@link SyncPDSSolver}, see {@link
+ * SyncPDSSolver#setConcurrentSaturation}. The tasks of a stage run one after another on the
+ * executor of the stage, so the state a stage owns is confined to one thread at a time. The stages
+ * only hand each other tasks, which orders the writes of the submitting task before the submitted
+ * task. A saturation is done once no task is pending on either stage. Once a task threw, the
+ * saturation has failed for good, the tasks pending or submitted later are dropped.
+ */
+class ConcurrentSaturation {
+  private final Executor callStage;
+  private final Executor fieldStage;
+  private final AtomicInteger pendingTasks = new AtomicInteger();
+  private final Object idle = new Object();
+  private volatile Throwable failure;
+
+  ConcurrentSaturation(Executor callExecutor, Executor fieldExecutor) {
+    this.callStage = MoreExecutors.newSequentialExecutor(callExecutor);
+    this.fieldStage = MoreExecutors.newSequentialExecutor(fieldExecutor);
+  }
+
+  void onCallSide(Runnable task) {
+    submit(callStage, task);
+  }
+
+  void onFieldSide(Runnable task) {
+    submit(fieldStage, task);
+  }
+
+  private void submit(Executor stage, Runnable task) {
+    Throwable failed = failure;
+    if (failed != null) {
+      throw new IllegalStateException("The saturation failed", failed);
+    }
+    pendingTasks.incrementAndGet();
+    try {
+      stage.execute(() -> run(task));
+    } catch (RuntimeException e) {
+      taskDone();
+      throw e;
+    }
+  }
+
+  private void run(Runnable task) {
+    try {
+      // Once a task failed, the remaining ones are dropped
+      if (failure == null) {
+        task.run();
+      }
+    } catch (Throwable e) {
+      if (failure == null) {
+        failure = e;
+      }
+    } finally {
+      taskDone();
+    }
+  }
+
+  private void taskDone() {
+    if (pendingTasks.decrementAndGet() == 0) {
+      synchronized (idle) {
+        idle.notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Blocks until no task is pending on either stage. Rethrows the first exception a task threw,
+   * e.g. a {@link wpds.impl.ResourceBudgetExceededException}, also on every later call.
+   */
+  void awaitSaturation() {
+    synchronized (idle) {
+      while (pendingTasks.get() > 0) {
+        try {
+          idle.wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IllegalStateException("Interrupted while awaiting the saturation", e);
+        }
+      }
+    }
+    Throwable failed = failure;
+    if (failed != null) {
+      Throwables.throwIfUnchecked(failed);
+      throw new IllegalStateException(failed);
+    }
+  }
+}
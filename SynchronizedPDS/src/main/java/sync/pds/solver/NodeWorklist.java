@@ -0,0 +1,121 @@
+/**
+ * ***************************************************************************** Copyright (c) 2018
+ * Fraunhofer IEM, Paderborn, Germany. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * <p>SPDX-License-Identifier: EPL-2.0
+ *
+ * <p>Contributors: Johannes Spaeth - initial API and implementation
+ * *****************************************************************************
+ */
+package sync.pds.solver;
+
+import com.google.common.collect.Maps;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.function.Function;
+
+/**
+ * The order in which a {@link SyncPDSSolver} with a worklist (see {@link
+ * SyncPDSSolver#setNodeWorklist}) computes the successors of the nodes it reaches. A worklist is
+ * used by a single solver.
+ */
+public abstract class NodeWorklist<N> {
+
+  public abstract void add(N node);
+
+  /** @return The next node to process, or null if the worklist is empty. */
+  public abstract N poll();
+
+  public abstract int size();
+
+  /** Processes the nodes in the order they are reached (breadth first). */
+  public static <N> NodeWorklist<N> fifo() {
+    return new DequeWorklist<>(false);
+  }
+
+  /** Processes the latest node reached first (depth first). */
+  public static <N> NodeWorklist<N> lifo() {
+    return new DequeWorklist<>(true);
+  }
+
+  /**
+   * Processes all nodes of the group of the last node processed before switching to another group,
+   * e.g., all nodes of one method. Groups are switched to in the order they were first reached,
+   * nodes within a group in the order they were reached.
+   */
+  public static <N> NodeWorklist<N> groupLocalFirst(Function<? super N, ?> group) {
+    return new GroupLocalWorklist<>(group);
+  }
+
+  private static class DequeWorklist<N> extends NodeWorklist<N> {
+    private final ArrayDeque<N> deque = new ArrayDeque<>();
+    private final boolean lifo;
+
+    private DequeWorklist(boolean lifo) {
+      this.lifo = lifo;
+    }
+
+    @Override
+    public void add(N node) {
+      if (lifo) {
+        deque.push(node);
+      } else {
+        deque.add(node);
+      }
+    }
+
+    @Override
+    public N poll() {
+      return deque.poll();
+    }
+
+    @Override
+    public int size() {
+      return deque.size();
+    }
+  }
+
+  private static class GroupLocalWorklist<N> extends NodeWorklist<N> {
+    private final Function<? super N, ?> group;
+    // Only the current group may be empty
+    private final Map<Object, ArrayDeque<N>> groups = Maps.newLinkedHashMap();
+    private Object currentGroup;
+    private ArrayDeque<N> current;
+    private int size;
+
+    private GroupLocalWorklist(Function<? super N, ?> group) {
+      this.group = group;
+    }
+
+    @Override
+    public void add(N node) {
+      groups.computeIfAbsent(group.apply(node), g -> new ArrayDeque<>()).add(node);
+      size++;
+    }
+
+    @Override
+    public N poll() {
+      if (size == 0) {
+        return null;
+      }
+      if (current == null || current.isEmpty()) {
+        if (current != null) {
+          groups.remove(currentGroup);
+        }
+        Entry<Object, ArrayDeque<N>> next = groups.entrySet().iterator().next();
+        currentGroup = next.getKey();
+        current = next.getValue();
+      }
+      size--;
+      return current.poll();
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+  }
+}
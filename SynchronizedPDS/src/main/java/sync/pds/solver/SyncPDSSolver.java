@@ -14,18 +14,17 @@ package sync.pds.solver;
 import com.google.common.base.Objects;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Sets;
-import java.util.AbstractMap;
 import java.util.Collection;
 import java.util.HashSet;
-import java.util.Map;
-import java.util.Map.Entry;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Executor;
 import org.slf4j.LoggerFactory;
 import sync.pds.solver.nodes.ExclusionNode;
 import sync.pds.solver.nodes.GeneratedState;
+import sync.pds.solver.nodes.GeneratedStateTable;
 import sync.pds.solver.nodes.INode;
 import sync.pds.solver.nodes.Node;
 import sync.pds.solver.nodes.NodeWithLocation;
@@ -37,11 +36,15 @@ import wpds.impl.NestedWeightedPAutomatons;
 import wpds.impl.NormalRule;
 import wpds.impl.PopRule;
 import wpds.impl.PushRule;
+import wpds.impl.ResourceBudget;
+import wpds.impl.ResourceBudgetExceededException;
 import wpds.impl.Rule;
 import wpds.impl.Transition;
 import wpds.impl.Weight;
+import wpds.impl.WeightFactory;
 import wpds.impl.WeightedPAutomaton;
 import wpds.impl.WeightedPushdownSystem;
+import wpds.impl.WorklistScheduler;
 import wpds.interfaces.Location;
 import wpds.interfaces.State;
 import wpds.interfaces.WPAStateListener;
@@ -78,6 +81,11 @@ public abstract class SyncPDSSolver<
       reachedStateUpdateListeners = HashMultimap.create();
   protected final WeightedPAutomaton<Field, INode<Node<Stmt, Fact>>, W> fieldAutomaton;
   protected final WeightedPAutomaton<Stmt, INode<Fact>, W> callAutomaton;
+  private final NestedWeightedPAutomatons<Field, INode<Node<Stmt, Fact>>, W> fieldSummaries;
+  private ResourceBudget budget;
+  private NodeWorklist<Node<Stmt, Fact>> nodeWorklist;
+  private boolean processingNodes;
+  private ConcurrentSaturation concurrentSaturation;
 
   protected boolean preventFieldTransitionAdd(
       Transition<Field, INode<Node<Stmt, Fact>>> trans, W weight) {
@@ -185,128 +193,124 @@ public abstract class SyncPDSSolver<
     fieldAutomaton.registerListener(new FieldUpdateListener());
     if (callAutomaton.nested())
       callAutomaton.registerNestedAutomatonListener(new CallSummaryListener());
-    // if(fieldAutomaton.nested())
-    // fieldAutomaton.registerNestedAutomatonListener(new FieldSummaryListener());
+    this.fieldSummaries =
+        useFieldSummaries ? new FieldSummaries(fieldSummaries) : fieldSummaries;
     callingPDS.poststar(callAutomaton, callSummaries);
-    fieldPDS.poststar(fieldAutomaton, fieldSummaries);
-  }
-
-  private class FieldSummaryListener
-      implements NestedAutomatonListener<Field, INode<Node<Stmt, Fact>>, W> {
-    @Override
-    public void nestedAutomaton(
-        final WeightedPAutomaton<Field, INode<Node<Stmt, Fact>>, W> parent,
-        final WeightedPAutomaton<Field, INode<Node<Stmt, Fact>>, W> child) {
-      for (INode<Node<Stmt, Fact>> s : child.getInitialStates()) {
-        child.registerListener(new FieldAddEpsilonToInitialStateListener(s, parent));
-      }
-    }
-  }
-
-  private class FieldAddEpsilonToInitialStateListener
-      extends WPAStateListener<Field, INode<Node<Stmt, Fact>>, W> {
-
-    private WeightedPAutomaton<Field, INode<Node<Stmt, Fact>>, W> parent;
-
-    public FieldAddEpsilonToInitialStateListener(
-        INode<Node<Stmt, Fact>> state,
-        WeightedPAutomaton<Field, INode<Node<Stmt, Fact>>, W> parent) {
-      super(state);
-      this.parent = parent;
+    fieldPDS.poststar(fieldAutomaton, this.fieldSummaries);
+  }
+
+  /**
+   * Defers the listener dispatch of the call and the field automaton to one shared worklist, which
+   * bounds the stack depth of the saturation. See {@link WorklistScheduler}. Not supported with
+   * {@link #setConcurrentSaturation}.
+   */
+  public void setWorklistScheduler(WorklistScheduler scheduler) {
+    checkNotConcurrent("worklist scheduler");
+    callAutomaton.setScheduler(scheduler);
+    fieldAutomaton.setScheduler(scheduler);
+  }
+
+  /**
+   * Lets the call and the field automaton propagate weight deltas to the saturation, see {@link
+   * WeightedPAutomaton#setPropagateWeightDeltas}.
+   */
+  public void setPropagateWeightDeltas(boolean propagateWeightDeltas) {
+    callAutomaton.setPropagateWeightDeltas(propagateWeightDeltas);
+    fieldAutomaton.setPropagateWeightDeltas(propagateWeightDeltas);
+  }
+
+  /**
+   * Hash-conses the weights of the call and the field automaton in one shared factory, see {@link
+   * WeightFactory}. Not supported with {@link #setConcurrentSaturation}.
+   */
+  public void setWeightFactory(WeightFactory<W> weightFactory) {
+    checkNotConcurrent("weight factory");
+    callAutomaton.setWeightFactory(weightFactory);
+    fieldAutomaton.setWeightFactory(weightFactory);
+  }
+
+  /**
+   * Reports the transitions of the call and the field automaton, the generated states and the
+   * reached nodes to the budget. Exceeding a cap aborts the saturation with a {@link
+   * ResourceBudgetExceededException}, the nodes reached up to then remain. The budget may be
+   * shared with other solvers, also with concurrently saturating ones.
+   */
+  public void setResourceBudget(ResourceBudget budget) {
+    this.budget = budget;
+    callAutomaton.setResourceBudget(budget);
+    fieldAutomaton.setResourceBudget(budget);
+  }
+
+  /**
+   * Saturates the call and the field automaton concurrently, the call side on the first executor,
+   * the field side on the second. The call side owns the call PDS and automaton and the reached
+   * nodes, and computes the successors of reached nodes. The field side owns the field PDS and
+   * automaton and hands the nodes that become field-context reachable to the call side, where a
+   * node is reached once it is reachable in both contexts. The tasks of one side run sequentially,
+   * so an executor may be shared by both sides and by several solvers.
+   *
+   * <p>{@link #solve} then blocks until both sides are saturated. The reached nodes are the same
+   * as sequentially computed, only their order differs. Rules must be added through {@link
+   * #addCallRule} and {@link #addFieldRule}, and {@link #computeSuccessor} and the listeners
+   * registered on the solver must not access the field automaton directly. The automata must not
+   * share a {@link WorklistScheduler} or {@link WeightFactory}, which are not synchronized, a
+   * shared one is rejected. Must be set before the first call of {@link #solve}.
+   *
+   * <p>Once a task throws, e.g. as the {@link ResourceBudget} is exceeded, the solver has failed
+   * for good: the pending tasks are dropped and {@link #solve} rethrows the exception. Later calls
+   * of {@link #solve} and further rules are rejected with an {@link IllegalStateException}.
+   */
+  public void setConcurrentSaturation(Executor callExecutor, Executor fieldExecutor) {
+    WorklistScheduler scheduler = callAutomaton.getScheduler();
+    if (scheduler != null && scheduler == fieldAutomaton.getScheduler()) {
+      throw new IllegalStateException(
+          "The automata of a concurrent saturation must not share a worklist scheduler");
+    }
+    WeightFactory<W> weightFactory = callAutomaton.getWeightFactory();
+    if (weightFactory != null && weightFactory == fieldAutomaton.getWeightFactory()) {
+      throw new IllegalStateException(
+          "The automata of a concurrent saturation must not share a weight factory");
+    }
+    this.concurrentSaturation = new ConcurrentSaturation(callExecutor, fieldExecutor);
+  }
+
+  private void checkNotConcurrent(String shared) {
+    if (concurrentSaturation != null) {
+      throw new IllegalStateException(
+          "The automata of a concurrent saturation must not share a " + shared);
+    }
+  }
+
+  /**
+   * The field summaries used with nested field automata. The transitions into a generated state
+   * are held by the summary automaton of that state, which describes the flows of the node the
+   * state was pushed at independently of the fields below. The summary automata are looked up in
+   * and added to the given summaries, solvers sharing these reuse each other's summaries. The
+   * transitions into the initial states belong to the field automaton of this solver.
+   */
+  private class FieldSummaries
+      implements NestedWeightedPAutomatons<Field, INode<Node<Stmt, Fact>>, W> {
+    private final NestedWeightedPAutomatons<Field, INode<Node<Stmt, Fact>>, W> shared;
+
+    private FieldSummaries(NestedWeightedPAutomatons<Field, INode<Node<Stmt, Fact>>, W> shared) {
+      this.shared = shared;
     }
 
     @Override
-    public void onOutTransitionAdded(
-        Transition<Field, INode<Node<Stmt, Fact>>> t,
-        W w,
-        WeightedPAutomaton<Field, INode<Node<Stmt, Fact>>, W> weightedPAutomaton) {}
-
-    @Override
-    public void onInTransitionAdded(
-        final Transition<Field, INode<Node<Stmt, Fact>>> nestedT,
-        W w,
-        WeightedPAutomaton<Field, INode<Node<Stmt, Fact>>, W> weightedPAutomaton) {
-      if (nestedT.getLabel().equals(fieldAutomaton.epsilon())) {
-        parent.registerListener(
-            new FieldOnOutTransitionAddToStateListener(this.getState(), nestedT));
+    public void putSummaryAutomaton(
+        INode<Node<Stmt, Fact>> target, WeightedPAutomaton<Field, INode<Node<Stmt, Fact>>, W> aut) {
+      if (aut != fieldAutomaton) {
+        shared.putSummaryAutomaton(target, aut);
       }
     }
 
     @Override
-    public int hashCode() {
-      final int prime = 31;
-      int result = super.hashCode();
-      result = prime * result + getOuterType().hashCode();
-      result = prime * result + ((parent == null) ? 0 : parent.hashCode());
-      return result;
-    }
-
-    @Override
-    public boolean equals(Object obj) {
-      if (this == obj) return true;
-      if (!super.equals(obj)) return false;
-      if (getClass() != obj.getClass()) return false;
-      FieldAddEpsilonToInitialStateListener other = (FieldAddEpsilonToInitialStateListener) obj;
-      if (!getOuterType().equals(other.getOuterType())) return false;
-      if (parent == null) {
-        if (other.parent != null) return false;
-      } else if (!parent.equals(other.parent)) return false;
-      return true;
-    }
-
-    private SyncPDSSolver getOuterType() {
-      return SyncPDSSolver.this;
-    }
-  }
-
-  private class FieldOnOutTransitionAddToStateListener
-      extends WPAStateListener<Field, INode<Node<Stmt, Fact>>, W> {
-    private Transition<Field, INode<Node<Stmt, Fact>>> nestedT;
-
-    public FieldOnOutTransitionAddToStateListener(
-        INode<Node<Stmt, Fact>> state, Transition<Field, INode<Node<Stmt, Fact>>> nestedT) {
-      super(state);
-      this.nestedT = nestedT;
-    }
-
-    @Override
-    public void onOutTransitionAdded(
-        Transition<Field, INode<Node<Stmt, Fact>>> t,
-        W w,
-        WeightedPAutomaton<Field, INode<Node<Stmt, Fact>>, W> weightedPAutomaton) {
-      setFieldContextReachable(nestedT.getStart().fact());
-    }
-
-    @Override
-    public void onInTransitionAdded(
-        Transition<Field, INode<Node<Stmt, Fact>>> t,
-        W w,
-        WeightedPAutomaton<Field, INode<Node<Stmt, Fact>>, W> weightedPAutomaton) {}
-
-    @Override
-    public int hashCode() {
-      final int prime = 31;
-      int result = super.hashCode();
-      result = prime * result + getOuterType().hashCode();
-      result = prime * result + ((nestedT == null) ? 0 : nestedT.hashCode());
-      return result;
-    }
-
-    @Override
-    public boolean equals(Object obj) {
-      if (this == obj) return true;
-      if (!super.equals(obj)) return false;
-      if (getClass() != obj.getClass()) return false;
-      FieldOnOutTransitionAddToStateListener other = (FieldOnOutTransitionAddToStateListener) obj;
-      if (!getOuterType().equals(other.getOuterType())) return false;
-      if (nestedT == null) {
-        if (other.nestedT != null) return false;
-      } else if (!nestedT.equals(other.nestedT)) return false;
-      return true;
-    }
-
-    private SyncPDSSolver getOuterType() {
-      return SyncPDSSolver.this;
+    public WeightedPAutomaton<Field, INode<Node<Stmt, Fact>>, W> getSummaryAutomaton(
+        INode<Node<Stmt, Fact>> target) {
+      if (!(target instanceof GeneratedState)) {
+        return fieldAutomaton;
+      }
+      return shared.getSummaryAutomaton(target);
     }
   }
 
@@ -446,14 +450,29 @@ public abstract class SyncPDSSolver<
       Stmt stmt,
       INode<Fact> callTarget,
       W weight) {
+    if (concurrentSaturation == null) {
+      addInitialFieldTransitions(curr, field, fieldTarget);
+      addInitialCallTransition(curr, callTarget, weight);
+      return;
+    }
+    concurrentSaturation.onFieldSide(() -> addInitialFieldTransitions(curr, field, fieldTarget));
+    concurrentSaturation.onCallSide(() -> addInitialCallTransition(curr, callTarget, weight));
+    concurrentSaturation.awaitSaturation();
+  }
+
+  private void addInitialFieldTransitions(
+      Node<Stmt, Fact> curr, Field field, INode<Node<Stmt, Fact>> fieldTarget) {
     fieldAutomaton.addInitialState(fieldTarget);
-    callAutomaton.addInitialState(callTarget);
     INode<Node<Stmt, Fact>> start = asFieldFact(curr);
     if (!field.equals(emptyField())) {
       INode<Node<Stmt, Fact>> generateFieldState = generateFieldState(start, field);
       Transition<Field, INode<Node<Stmt, Fact>>> fieldTrans =
           new Transition<>(start, field, generateFieldState);
-      fieldAutomaton.addTransition(fieldTrans);
+      if (fieldAutomaton.nested()) {
+        getOrCreateFieldSummary(generateFieldState).addTransition(fieldTrans);
+      } else {
+        fieldAutomaton.addTransition(fieldTrans);
+      }
       Transition<Field, INode<Node<Stmt, Fact>>> fieldTransToInitial =
           new Transition<>(generateFieldState, emptyField(), fieldTarget);
       fieldAutomaton.addTransition(fieldTransToInitial);
@@ -462,6 +481,28 @@ public abstract class SyncPDSSolver<
           new Transition<>(start, emptyField(), fieldTarget);
       fieldAutomaton.addTransition(fieldTrans);
     }
+  }
+
+  /**
+   * @return The summary automaton holding the transitions into the generated state, nested in the
+   *     field automaton.
+   */
+  private WeightedPAutomaton<Field, INode<Node<Stmt, Fact>>, W> getOrCreateFieldSummary(
+      INode<Node<Stmt, Fact>> state) {
+    WeightedPAutomaton<Field, INode<Node<Stmt, Fact>>, W> summary =
+        fieldSummaries.getSummaryAutomaton(state);
+    if (summary == null) {
+      summary = fieldAutomaton.createNestedAutomaton(state);
+      summary.setInitialAutomaton(fieldAutomaton);
+      fieldSummaries.putSummaryAutomaton(state, summary);
+    } else {
+      fieldAutomaton.addNestedAutomaton(summary);
+    }
+    return summary;
+  }
+
+  private void addInitialCallTransition(Node<Stmt, Fact> curr, INode<Fact> callTarget, W weight) {
+    callAutomaton.addInitialState(callTarget);
     Transition<Stmt, INode<Fact>> callTrans =
         new Transition<>(wrap(curr.fact()), curr.stmt(), callTarget);
     callAutomaton.addWeightForTransition(callTrans, weight);
@@ -479,7 +520,47 @@ public abstract class SyncPDSSolver<
 
   public void processNode(Node<Stmt, Fact> curr) {
     if (!addReachableState(curr)) return;
-    computeSuccessor(curr);
+    if (nodeWorklist == null) {
+      computeSuccessor(curr);
+      return;
+    }
+    nodeWorklist.add(curr);
+    processNodeWorklist();
+  }
+
+  /**
+   * Computes the successors of the queued nodes until the worklist is empty. Calls while the
+   * worklist is processed return immediately, the outer loop picks up the nodes queued meanwhile.
+   * If computing a successor throws, the remaining nodes are discarded, they stay reached.
+   */
+  private void processNodeWorklist() {
+    if (processingNodes) {
+      return;
+    }
+    processingNodes = true;
+    boolean completed = false;
+    try {
+      Node<Stmt, Fact> node;
+      while ((node = nodeWorklist.poll()) != null) {
+        computeSuccessor(node);
+      }
+      completed = true;
+    } finally {
+      if (!completed) {
+        while (nodeWorklist.poll() != null) {}
+      }
+      processingNodes = false;
+    }
+  }
+
+  /**
+   * Computes the successors of reached nodes from a worklist in the order of the given worklist
+   * instead of recursively within {@link #processNode}, which bounds the stack depth on long
+   * chains of nodes. The nodes are still reported reachable upon {@link #processNode}. Null
+   * restores the recursive processing, the default. Must not be changed while nodes are queued.
+   */
+  public void setNodeWorklist(NodeWorklist<Node<Stmt, Fact>> nodeWorklist) {
+    this.nodeWorklist = nodeWorklist;
   }
 
   public void propagate(Node<Stmt, Fact> curr, State s) {
@@ -501,6 +582,9 @@ public abstract class SyncPDSSolver<
 
   private boolean addReachableState(Node<Stmt, Fact> curr) {
     if (reachedStates.contains(curr)) return false;
+    if (budget != null) {
+      budget.onReachedNode();
+    }
     reachedStates.add(curr);
     for (SyncPDSUpdateListener<Stmt, Fact> l : Lists.newLinkedList(updateListeners)) {
       l.onReachableNodeAdded(curr);
@@ -691,11 +775,19 @@ public abstract class SyncPDSSolver<
   }
 
   public void addCallRule(Rule<Stmt, INode<Fact>, W> rule) {
-    callingPDS.addRule(rule);
+    if (concurrentSaturation == null) {
+      callingPDS.addRule(rule);
+    } else {
+      concurrentSaturation.onCallSide(() -> callingPDS.addRule(rule));
+    }
   }
 
   public void addFieldRule(Rule<Field, INode<Node<Stmt, Fact>>, W> rule) {
-    fieldPDS.addRule(rule);
+    if (concurrentSaturation == null) {
+      fieldPDS.addRule(rule);
+    } else {
+      concurrentSaturation.onFieldSide(() -> fieldPDS.addRule(rule));
+    }
   }
 
   public abstract WeightFunctions<Stmt, Fact, Field, W> getFieldWeights();
@@ -714,7 +806,7 @@ public abstract class SyncPDSSolver<
       if (!(n instanceof GeneratedState) && !t.getLabel().equals(fieldAutomaton.epsilon())) {
         Node<Stmt, Fact> fact = n.fact();
         Node<Stmt, Fact> node = new Node<Stmt, Fact>(fact.stmt(), fact.fact());
-        setFieldContextReachable(node);
+        onFieldContextReachable(node);
       }
     }
   }
@@ -726,6 +818,14 @@ public abstract class SyncPDSSolver<
     }
   }
 
+  private void onFieldContextReachable(Node<Stmt, Fact> node) {
+    if (concurrentSaturation == null) {
+      setFieldContextReachable(node);
+    } else {
+      concurrentSaturation.onCallSide(() -> setFieldContextReachable(node));
+    }
+  }
+
   private void setFieldContextReachable(Node<Stmt, Fact> node) {
     if (!fieldContextReachable.add(node)) {
       return;
@@ -757,32 +857,61 @@ public abstract class SyncPDSSolver<
     return new SingleNode<Fact>(variable);
   }
 
-  protected Map<Entry<INode<Fact>, Stmt>, INode<Fact>> generatedCallState = Maps.newHashMap();
+  protected final GeneratedStateTable<Fact, Stmt> generatedCallState = new GeneratedStateTable<>();
 
   public INode<Fact> generateCallState(final INode<Fact> d, final Stmt loc) {
-    Entry<INode<Fact>, Stmt> e = new AbstractMap.SimpleEntry<>(d, loc);
-    if (!generatedCallState.containsKey(e)) {
-      generatedCallState.put(e, new GeneratedState<Fact, Stmt>(d, loc));
+    INode<Fact> state = generatedCallState.get(d, loc);
+    if (state == null) {
+      onStateGenerated();
+      state = new GeneratedState<Fact, Stmt>(d, loc);
+      generatedCallState.put(d, loc, state);
     }
-    return generatedCallState.get(e);
+    return state;
   }
 
-  Map<Entry<INode<Node<Stmt, Fact>>, Field>, INode<Node<Stmt, Fact>>> generatedFieldState =
-      Maps.newHashMap();
+  final GeneratedStateTable<Node<Stmt, Fact>, Field> generatedFieldState =
+      new GeneratedStateTable<>();
 
   public INode<Node<Stmt, Fact>> generateFieldState(
       final INode<Node<Stmt, Fact>> d, final Field loc) {
-    Entry<INode<Node<Stmt, Fact>>, Field> e = new AbstractMap.SimpleEntry<>(d, loc);
-    if (!generatedFieldState.containsKey(e)) {
-      generatedFieldState.put(e, new GeneratedState<Node<Stmt, Fact>, Field>(d, loc));
+    INode<Node<Stmt, Fact>> state = generatedFieldState.get(d, loc);
+    if (state == null) {
+      onStateGenerated();
+      state = new GeneratedState<Node<Stmt, Fact>, Field>(d, loc);
+      generatedFieldState.put(d, loc, state);
+    }
+    return state;
+  }
+
+  /** Reports a state about to be generated to the budget, see {@link #setResourceBudget}. */
+  protected void onStateGenerated() {
+    if (budget != null) {
+      budget.onGeneratedState();
     }
-    return generatedFieldState.get(e);
   }
 
   public void addGeneratedFieldState(GeneratedState<Node<Stmt, Fact>, Field> state) {
-    Entry<INode<Node<Stmt, Fact>>, Field> e =
-        new AbstractMap.SimpleEntry<>(state.node(), state.location());
-    generatedFieldState.put(e, state);
+    generatedFieldState.put(state.node(), state.location(), state);
+  }
+
+  /**
+   * Shrinks the call and the field automaton, once the results of a query have been extracted, to
+   * the transitions that describe the retained nodes (see {@link WeightedPAutomaton#compact}) and
+   * drops the generated states that are no longer referenced. The reached nodes are kept. As the
+   * listeners of the automata are unregistered, the solver must not be used for further
+   * saturation.
+   */
+  public void compact(Collection<Node<Stmt, Fact>> retained) {
+    List<Transition<Stmt, INode<Fact>>> callTransitions = Lists.newArrayList();
+    List<Transition<Field, INode<Node<Stmt, Fact>>>> fieldTransitions = Lists.newArrayList();
+    for (Node<Stmt, Fact> node : retained) {
+      callTransitions.addAll(callAutomaton.getTransitionsOutOf(wrap(node.fact()), node.stmt()));
+      fieldTransitions.addAll(fieldAutomaton.getTransitionsOutOf(asFieldFact(node)));
+    }
+    callAutomaton.compact(callTransitions);
+    fieldAutomaton.compact(fieldTransitions);
+    generatedCallState.retainStates(callAutomaton.getStates());
+    generatedFieldState.retainStates(fieldAutomaton.getStates());
   }
 
   public abstract void computeSuccessor(Node<Stmt, Fact> node);
@@ -13,12 +13,15 @@ package sync.pds.solver.nodes;
 
 public class GeneratedState<L, N> implements INode<L> {
 
-  private INode<L> node;
-  private N loc;
+  private final INode<L> node;
+  private final N loc;
+  // Generated states are hashed on every lookup of a transition, the fields are immutable
+  private final int hashCode;
 
   public GeneratedState(INode<L> node, N loc) {
     this.node = node;
     this.loc = loc;
+    this.hashCode = computeHashCode();
   }
 
   @Override
@@ -42,6 +45,10 @@ public class GeneratedState<L, N> implements INode<L> {
 
   @Override
   public int hashCode() {
+    return hashCode;
+  }
+
+  private int computeHashCode() {
     final int prime = 31;
     int result = 1;
     result = prime * result + ((loc == null) ? 0 : loc.hashCode());
@@ -55,6 +62,7 @@ public class GeneratedState<L, N> implements INode<L> {
     if (obj == null) return false;
     if (getClass() != obj.getClass()) return false;
     GeneratedState other = (GeneratedState) obj;
+    if (hashCode != other.hashCode) return false;
     if (loc == null) {
       if (other.loc != null) return false;
     } else if (!loc.equals(other.loc)) return false;
@@ -0,0 +1,98 @@
+/**
+ * ***************************************************************************** Copyright (c) 2018
+ * Fraunhofer IEM, Paderborn, Germany. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * <p>SPDX-License-Identifier: EPL-2.0
+ *
+ * <p>Contributors: Johannes Spaeth - initial API and implementation
+ * *****************************************************************************
+ */
+package sync.pds.solver.nodes;
+
+import java.util.Set;
+
+/**
+ * Interns the states generated for a node and a label. The node, the label and the state of an
+ * entry are held in consecutive slots of one array, which is probed linearly from the combined hash
+ * of node and label. A lookup hence allocates nothing, unlike a map keyed by pairs, and touches one
+ * array only, unlike a map of maps.
+ */
+public class GeneratedStateTable<L, N> {
+  private static final int INITIAL_CAPACITY = 64;
+  // Node, label and state of each entry, the capacity is a power of two
+  private Object[] entries = new Object[3 * INITIAL_CAPACITY];
+  private int size;
+
+  /** @return The state generated for the node and label, or null if there is none. */
+  @SuppressWarnings("unchecked")
+  public INode<L> get(INode<L> node, N label) {
+    int slot = find(entries, node, label);
+    return entries[slot] == null ? null : (INode<L>) entries[slot + 2];
+  }
+
+  public void put(INode<L> node, N label, INode<L> state) {
+    int slot = find(entries, node, label);
+    if (entries[slot] == null) {
+      if (2 * (size + 1) > entries.length / 3) {
+        resize(entries.length / 3 * 2);
+        slot = find(entries, node, label);
+      }
+      entries[slot] = node;
+      entries[slot + 1] = label;
+      size++;
+    }
+    entries[slot + 2] = state;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /** Drops the generated states not contained in the given states. */
+  public void retainStates(Set<?> retained) {
+    Object[] old = entries;
+    entries = new Object[old.length];
+    size = 0;
+    for (int i = 0; i < old.length; i += 3) {
+      if (old[i] != null && retained.contains(old[i + 2])) {
+        insert(old[i], old[i + 1], old[i + 2]);
+      }
+    }
+  }
+
+  private void resize(int capacity) {
+    Object[] old = entries;
+    entries = new Object[3 * capacity];
+    for (int i = 0; i < old.length; i += 3) {
+      if (old[i] != null) {
+        insert(old[i], old[i + 1], old[i + 2]);
+      }
+    }
+  }
+
+  private void insert(Object node, Object label, Object state) {
+    int slot = find(entries, node, label);
+    entries[slot] = node;
+    entries[slot + 1] = label;
+    entries[slot + 2] = state;
+    size++;
+  }
+
+  /** @return The index of the entry of node and label, or of the empty slot to insert it at. */
+  private static int find(Object[] entries, Object node, Object label) {
+    int h = 31 * node.hashCode() + label.hashCode();
+    int mask = entries.length / 3 - 1;
+    for (int i = (h ^ (h >>> 16)) & mask; ; i = (i + 1) & mask) {
+      Object n = entries[3 * i];
+      if (n == null) {
+        return 3 * i;
+      }
+      Object l = entries[3 * i + 1];
+      if ((n == node || n.equals(node)) && (l == label || l.equals(label))) {
+        return 3 * i;
+      }
+    }
+  }
+}
@@ -15,13 +15,15 @@ import com.google.common.collect.Sets;
 import java.util.Collection;
 import java.util.Set;
 import sync.pds.solver.nodes.Node;
+import wpds.impl.DifferentialWeight;
 import wpds.impl.Weight;
 import wpds.interfaces.Location;
 
-public class SetDomain<N, Stmt, Fact> extends Weight {
+public class SetDomain<N, Stmt, Fact> extends Weight
+    implements DifferentialWeight<SetDomain<N, Stmt, Fact>> {
 
-  private static SetDomain one;
-  private static SetDomain zero;
+  private static final SetDomain ONE = new SetDomain("<1>");
+  private static final SetDomain ZERO = new SetDomain("<0>");
   private final String rep;
   private Collection<Node<Stmt, Fact>> nodes;
 
@@ -63,14 +65,29 @@ public class SetDomain<N, Stmt, Fact> extends Weight {
     return zero();
   }
 
+  /** The nodes not contained in the previous weight. */
+  @Override
+  public SetDomain<N, Stmt, Fact> difference(SetDomain<N, Stmt, Fact> previous) {
+    if (rep != null || previous.rep != null || !nodes.containsAll(previous.nodes)) {
+      return this;
+    }
+    Set<Node<Stmt, Fact>> added = Sets.newHashSet(Sets.difference(asSet(), previous.asSet()));
+    if (added.isEmpty()) {
+      return this;
+    }
+    return new SetDomain<N, Stmt, Fact>(added);
+  }
+
+  private Set<Node<Stmt, Fact>> asSet() {
+    return nodes instanceof Set ? (Set<Node<Stmt, Fact>>) nodes : Sets.newHashSet(nodes);
+  }
+
   public static <N extends Location, Stmt, Fact> SetDomain<N, Stmt, Fact> one() {
-    if (one == null) one = new SetDomain("<1>");
-    return one;
+    return ONE;
   }
 
   public static <N extends Location, Stmt, Fact> SetDomain<N, Stmt, Fact> zero() {
-    if (zero == null) zero = new SetDomain("<0>");
-    return zero;
+    return ZERO;
   }
 
   @Override
@@ -0,0 +1,62 @@
+/**
+ * ***************************************************************************** Copyright (c) 2018
+ * Fraunhofer IEM, Paderborn, Germany. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * <p>SPDX-License-Identifier: EPL-2.0
+ *
+ * <p>Contributors: Johannes Spaeth - initial API and implementation
+ * *****************************************************************************
+ */
+package analysis.test;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class DoublePDSLongTest {
+  private static final Logger LOGGER = LoggerFactory.getLogger(DoublePDSLongTest.class);
+
+  /** Compares sequential to concurrent saturation of larger random programs. */
+  @Test
+  public void concurrentSaturation() {
+    ExecutorService callExecutor = Executors.newSingleThreadExecutor();
+    ExecutorService fieldExecutor = Executors.newSingleThreadExecutor();
+    try {
+      for (int round = 0; round < 3; round++) {
+        long[] times =
+            new DoublePDSTest()
+                .compareSaturation(new Random(round), 150, 500, callExecutor, fieldExecutor);
+        LOGGER.info(
+            "Saturation reaching {} nodes: sequential {}ms, concurrent {}ms",
+            times[0],
+            times[1],
+            times[2]);
+      }
+    } finally {
+      callExecutor.shutdown();
+      fieldExecutor.shutdown();
+    }
+  }
+
+  /**
+   * Compares the field state lookups of the solver to lookups in a map keyed by entries, the first
+   * round includes warming up.
+   */
+  @Test
+  public void generatedStateLookups() {
+    for (int round = 0; round < 3; round++) {
+      long[] times = new DoublePDSTest().generatedStateLookups(200000);
+      LOGGER.info(
+          "Generated state lookups: table {}ms, {} bytes, entry keys {}ms, {} bytes",
+          times[0],
+          times[1],
+          times[2],
+          times[3]);
+    }
+  }
+}
@@ -11,27 +11,57 @@
  */
 package analysis.test;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import com.google.common.base.Stopwatch;
 import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
+import java.lang.management.ManagementFactory;
+import java.util.AbstractMap;
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import sync.pds.solver.NodeWorklist;
 import sync.pds.solver.OneWeightFunctions;
 import sync.pds.solver.SyncPDSSolver;
 import sync.pds.solver.SyncPDSSolver.PDSSystem;
 import sync.pds.solver.WeightFunctions;
 import sync.pds.solver.nodes.ExclusionNode;
+import sync.pds.solver.nodes.GeneratedState;
+import sync.pds.solver.nodes.INode;
 import sync.pds.solver.nodes.Node;
 import sync.pds.solver.nodes.NodeWithLocation;
 import sync.pds.solver.nodes.PopNode;
 import sync.pds.solver.nodes.PushNode;
 import sync.pds.solver.nodes.SingleNode;
+import wpds.impl.ResourceBudget;
+import wpds.impl.ResourceBudget.Resource;
+import wpds.impl.ResourceBudgetExceededException;
+import wpds.impl.NestedWeightedPAutomatons;
 import wpds.impl.SummaryNestedWeightedPAutomatons;
 import wpds.impl.Weight.NoWeight;
+import wpds.impl.WeightFactory;
+import wpds.impl.WeightedPAutomaton;
+import wpds.impl.WorklistScheduler;
+import wpds.impl.WorklistScheduler.Order;
 import wpds.interfaces.Location;
 import wpds.interfaces.State;
 import wpds.wildcard.ExclusionWildcard;
@@ -90,11 +120,18 @@ public class DoublePDSTest {
   private class TestSyncPDSSolver extends SyncPDSSolver<Statement, Variable, FieldRef, NoWeight> {
 
     public TestSyncPDSSolver() {
+      this(false, new SummaryNestedWeightedPAutomatons<>());
+    }
+
+    public TestSyncPDSSolver(
+        boolean useFieldSummaries,
+        NestedWeightedPAutomatons<FieldRef, INode<Node<Statement, Variable>>, NoWeight>
+            fieldSummaries) {
       super(
           false,
           new SummaryNestedWeightedPAutomatons<>(),
-          false,
-          new SummaryNestedWeightedPAutomatons<>(),
+          useFieldSummaries,
+          fieldSummaries,
           -1,
           -1,
           -1);
@@ -147,6 +184,10 @@ public class DoublePDSTest {
       }
     }
 
+    WeightedPAutomaton<FieldRef, INode<Node<Statement, Variable>>, NoWeight> getFieldAutomaton() {
+      return fieldAutomaton;
+    }
+
     @Override
     public WeightFunctions<Statement, Variable, FieldRef, NoWeight> getFieldWeights() {
       return new OneWeightFunctions<>(NoWeight.NO_WEIGHT_ONE);
@@ -240,6 +281,383 @@ public class DoublePDSTest {
     assertTrue(solver.getReachedStates().contains(node(6, "x")));
   }
 
+  @Test
+  public void reachedNodesBudget() {
+    for (int i = 1; i < 20; i++) {
+      addFieldPush(node(i, "u"), f("g"), node(i + 1, "u"));
+    }
+    ResourceBudget budget = new ResourceBudget(0, 0, 5, 0);
+    solver.setResourceBudget(budget);
+    try {
+      solve(node(1, "u"));
+      fail("Budget not exceeded");
+    } catch (ResourceBudgetExceededException e) {
+      assertEquals(Resource.REACHED_NODES, e.getResource());
+    }
+    assertEquals(5, solver.getReachedStates().size());
+    assertTrue(solver.getReachedStates().contains(node(5, "u")));
+    assertTrue(budget.getGeneratedStates() > 0);
+  }
+
+  /** Overflows the stack when the nodes are processed recursively. */
+  @Test
+  public void nodeWorklistOnDeepChain() {
+    int length = 20000;
+    addNormal(node(1, "u"), node(2, "v2"));
+    for (int i = 2; i < length; i++) {
+      addNormal(node(i, "v" + i), node(i + 1, "v" + (i + 1)));
+    }
+    solver.setNodeWorklist(NodeWorklist.fifo());
+    solve(node(1, "u"));
+    assertEquals(length, solver.getReachedStates().size());
+    assertTrue(solver.getReachedStates().contains(node(length, "v" + length)));
+  }
+
+  @Test
+  public void nodeWorklistDiscardedOnFailure() {
+    for (int i = 2; i < 10; i++) {
+      addNormal(node(1, "u"), node(i, "v"));
+    }
+    NodeWorklist<Node<Statement, Variable>> worklist = NodeWorklist.fifo();
+    solver.setNodeWorklist(worklist);
+    solver.setResourceBudget(new ResourceBudget(0, 0, 5, 0));
+    try {
+      solve(node(1, "u"));
+      fail("Budget not exceeded");
+    } catch (ResourceBudgetExceededException e) {
+      assertEquals(Resource.REACHED_NODES, e.getResource());
+    }
+    assertEquals(0, worklist.size());
+    assertEquals(5, solver.getReachedStates().size());
+  }
+
+  @Test
+  public void nodeWorklistOrders() {
+    addFieldPush(node(1, "u"), f("h"), node(2, "v"));
+    addCallFlow(node(2, "v"), node(3, "p"), returnSite(5));
+    addFieldPush(node(3, "p"), f("g"), node(4, "q"));
+    addReturnFlow(node(4, "q"), var("q"));
+    addFieldPop(node(5, "w"), f("g"), node(6, "x"));
+    addFieldPop(node(6, "x"), f("f"), node(7, "y"));
+    addFieldPush(node(1, "u"), f("f"), node(9, "s"));
+    addCallFlow(node(9, "s"), node(3, "p"), returnSite(10));
+    addFieldPush(node(10, "q"), f("f"), node(11, "s"));
+    addFieldPop(node(11, "s"), f("f"), node(12, "s"));
+    addFieldPop(node(12, "s"), f("f"), node(13, "s"));
+    calleeToCallerMapping(node(4, "q"), node(5, "w"));
+    calleeToCallerMapping(node(4, "q"), node(10, "q"));
+
+    solve(node(1, "u"));
+    Collection<Node<Statement, Variable>> expected = solver.getReachedStates();
+    assertTrue(expected.contains(node(6, "x")));
+    assertTrue(expected.contains(node(12, "s")));
+    List<NodeWorklist<Node<Statement, Variable>>> worklists =
+        Lists.newArrayList(
+            NodeWorklist.fifo(),
+            NodeWorklist.lifo(),
+            NodeWorklist.groupLocalFirst(Node::fact));
+    for (NodeWorklist<Node<Statement, Variable>> worklist : worklists) {
+      solver = new TestSyncPDSSolver();
+      solver.setNodeWorklist(worklist);
+      solve(node(1, "u"));
+      assertEquals(Sets.newHashSet(expected), Sets.newHashSet(solver.getReachedStates()));
+      assertEquals(0, worklist.size());
+    }
+  }
+
+  @Test
+  public void concurrentSaturationSameAsSequential() {
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      for (int seed = 0; seed < 20; seed++) {
+        compareSaturation(new Random(seed), 40, 120, executor, executor);
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * Saturates a random program sequentially and concurrently and checks that both reach the same
+   * nodes.
+   *
+   * @return The number of reached nodes and the milliseconds taken sequentially and concurrently
+   */
+  long[] compareSaturation(
+      Random random, int statements, int flows, Executor callExecutor, Executor fieldExecutor) {
+    successorMap.clear();
+    summaryMap.clear();
+    randomProgram(random, statements, flows);
+    solver = new TestSyncPDSSolver();
+    Stopwatch watch = Stopwatch.createStarted();
+    solve(node(1, "u"));
+    long sequentialMillis = watch.elapsed(TimeUnit.MILLISECONDS);
+    Set<Node<Statement, Variable>> expected = Sets.newHashSet(solver.getReachedStates());
+    solver = new TestSyncPDSSolver();
+    solver.setConcurrentSaturation(callExecutor, fieldExecutor);
+    watch = Stopwatch.createStarted();
+    solve(node(1, "u"));
+    long concurrentMillis = watch.elapsed(TimeUnit.MILLISECONDS);
+    assertEquals(expected, Sets.newHashSet(solver.getReachedStates()));
+    return new long[] {expected.size(), sequentialMillis, concurrentMillis};
+  }
+
+  @Test
+  public void concurrentSaturationFailure() {
+    for (int i = 1; i < 20; i++) {
+      addFieldPush(node(i, "u"), f("g"), node(i + 1, "u"));
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      solver.setResourceBudget(new ResourceBudget(0, 0, 5, 0));
+      solver.setConcurrentSaturation(executor, executor);
+      try {
+        solve(node(1, "u"));
+        fail("Budget not exceeded");
+      } catch (ResourceBudgetExceededException e) {
+        assertEquals(Resource.REACHED_NODES, e.getResource());
+      }
+      assertEquals(5, solver.getReachedStates().size());
+      // The solver stays failed
+      try {
+        solve(node(10, "u"));
+        fail("Failed solver accepted a query");
+      } catch (IllegalStateException e) {
+        assertTrue(e.getCause() instanceof ResourceBudgetExceededException);
+      }
+      assertEquals(5, solver.getReachedStates().size());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void concurrentSaturationRejectsSharedScheduler() {
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      solver.setWorklistScheduler(new WorklistScheduler(Order.FIFO));
+      try {
+        solver.setConcurrentSaturation(executor, executor);
+        fail("Shared scheduler accepted");
+      } catch (IllegalStateException e) {
+        // expected
+      }
+      solver = new TestSyncPDSSolver();
+      solver.setConcurrentSaturation(executor, executor);
+      try {
+        solver.setWeightFactory(new WeightFactory<>(16));
+        fail("Shared weight factory accepted");
+      } catch (IllegalStateException e) {
+        // expected
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void fieldSummariesSameAsUnsummarized() {
+    for (int seed = 0; seed < 50; seed++) {
+      successorMap.clear();
+      summaryMap.clear();
+      randomProgram(new Random(seed), 40, 120);
+      solve(node(1, "u"));
+      Set<Node<Statement, Variable>> expected = Sets.newHashSet(solver.getReachedStates());
+      solver = new TestSyncPDSSolver(true, new SummaryNestedWeightedPAutomatons<>());
+      solve(node(1, "u"));
+      assertEquals("Seed " + seed, expected, Sets.newHashSet(solver.getReachedStates()));
+      solver = new TestSyncPDSSolver();
+    }
+  }
+
+  /**
+   * Queries from different nodes that all store into a field of the same node, from where a
+   * larger program continues. With shared field summaries, the flows of that node are saturated
+   * once for all queries.
+   */
+  @Test
+  public void sharedFieldSummaries() {
+    int queries = 20;
+    Node<Statement, Variable> shared = node(1000, "a");
+    randomProgram(new Random(1), shared, 40, 200);
+    for (int i = 0; i < queries; i++) {
+      addFieldPush(node(2000 + i, "q"), f("f0"), shared);
+    }
+    NestedWeightedPAutomatons<FieldRef, INode<Node<Statement, Variable>>, NoWeight> summaries =
+        new SummaryNestedWeightedPAutomatons<>();
+    int unsummarized = 0;
+    Set<WeightedPAutomaton<FieldRef, INode<Node<Statement, Variable>>, NoWeight>> automata =
+        Sets.newIdentityHashSet();
+    for (int i = 0; i < queries; i++) {
+      Node<Statement, Variable> query = node(2000 + i, "q");
+      TestSyncPDSSolver unsummarizedSolver = new TestSyncPDSSolver();
+      solver = unsummarizedSolver;
+      solveFrom(query);
+      Set<Node<Statement, Variable>> expected = Sets.newHashSet(solver.getReachedStates());
+      unsummarized += unsummarizedSolver.getFieldAutomaton().getTransitions().size();
+
+      TestSyncPDSSolver summarizedSolver = new TestSyncPDSSolver(true, summaries);
+      solver = summarizedSolver;
+      solveFrom(query);
+      assertEquals(expected, Sets.newHashSet(solver.getReachedStates()));
+      collectAutomata(summarizedSolver.getFieldAutomaton(), automata);
+    }
+    int summarized = 0;
+    for (WeightedPAutomaton<FieldRef, INode<Node<Statement, Variable>>, NoWeight> aut : automata) {
+      summarized += aut.getTransitions().size();
+    }
+    LOGGER.info(
+        "Field transitions of {} queries: without summaries {}, with shared summaries {}",
+        queries,
+        unsummarized,
+        summarized);
+    assertTrue(summarized * 4 < unsummarized);
+  }
+
+  private void solveFrom(Node<Statement, Variable> query) {
+    solver.solve(
+        query,
+        epsilonField,
+        new SingleNode<>(query),
+        epsilonCallSite,
+        new SingleNode<>(query.fact()));
+  }
+
+  private static void collectAutomata(
+      WeightedPAutomaton<FieldRef, INode<Node<Statement, Variable>>, NoWeight> aut,
+      Set<WeightedPAutomaton<FieldRef, INode<Node<Statement, Variable>>, NoWeight>> automata) {
+    if (automata.add(aut)) {
+      for (WeightedPAutomaton<FieldRef, INode<Node<Statement, Variable>>, NoWeight> nested :
+          aut.getNestedAutomatons()) {
+        collectAutomata(nested, automata);
+      }
+    }
+  }
+
+  private void randomProgram(Random random, int statements, int flows) {
+    randomProgram(random, node(1, "u"), statements, flows);
+  }
+
+  /**
+   * Random flows from the nodes flowed to so far, a tenth of them calls to a callee that returns
+   * to the call site right away.
+   */
+  private void randomProgram(
+      Random random, Node<Statement, Variable> start, int statements, int flows) {
+    List<Node<Statement, Variable>> nodes = Lists.newArrayList(start);
+    for (int i = 0; i < flows; i++) {
+      Node<Statement, Variable> curr = nodes.get(random.nextInt(nodes.size()));
+      Node<Statement, Variable> succ =
+          node(random.nextInt(statements), "v" + random.nextInt(6));
+      FieldRef field = f("f" + random.nextInt(3));
+      int kind = random.nextInt(10);
+      if (kind < 4) {
+        addNormal(curr, succ);
+      } else if (kind < 6) {
+        addFieldPush(curr, field, succ);
+      } else if (kind < 9) {
+        addFieldPop(curr, field, succ);
+      } else {
+        Node<Statement, Variable> returned = node(random.nextInt(statements), succ.fact().name);
+        addCallFlow(curr, succ, returned.stmt());
+        addReturnFlow(succ, succ.fact());
+        calleeToCallerMapping(succ, returned);
+        nodes.add(returned);
+      }
+      nodes.add(succ);
+    }
+  }
+
+  @Test
+  public void generatedStateLookups() {
+    generatedStateLookups(2000);
+    INode<Node<Statement, Variable>> root = new SingleNode<>(node(1, "u"));
+    assertSame(solver.generateFieldState(root, f("f")), solver.generateFieldState(root, f("f")));
+  }
+
+  /**
+   * Looks up the field states of access paths up to depth 5, as the field automaton of a Boomerang
+   * query generates them, once through the solver and once in a map keyed by entries.
+   *
+   * @return The milliseconds taken and the bytes allocated by the solver, followed by those of the
+   *     map, -1 bytes if the JVM does not tell
+   */
+  long[] generatedStateLookups(int accessPaths) {
+    FieldRef[] fields = new FieldRef[10];
+    for (int i = 0; i < fields.length; i++) {
+      fields[i] = f("f" + i);
+    }
+    List<INode<Node<Statement, Variable>>> roots = Lists.newArrayList();
+    for (int i = 0; i < 2000; i++) {
+      roots.add(new SingleNode<>(node(i, "v" + (i % 50))));
+    }
+    Map<Entry<INode<Node<Statement, Variable>>, FieldRef>, INode<Node<Statement, Variable>>>
+        byEntry = Maps.newHashMap();
+    List<INode<Node<Statement, Variable>>> tableStates = Lists.newArrayList();
+    List<INode<Node<Statement, Variable>>> entryStates = Lists.newArrayList();
+    long[] table =
+        measure(
+            () ->
+                lookupAccessPaths(
+                    roots, fields, accessPaths, solver::generateFieldState, tableStates));
+    long[] entries =
+        measure(
+            () ->
+                lookupAccessPaths(
+                    roots,
+                    fields,
+                    accessPaths,
+                    (d, loc) -> {
+                      Entry<INode<Node<Statement, Variable>>, FieldRef> e =
+                          new AbstractMap.SimpleEntry<>(d, loc);
+                      if (!byEntry.containsKey(e)) {
+                        byEntry.put(e, new GeneratedState<>(d, loc));
+                      }
+                      return byEntry.get(e);
+                    },
+                    entryStates));
+    assertEquals(entryStates, tableStates);
+    return new long[] {table[0], table[1], entries[0], entries[1]};
+  }
+
+  /** Adds the deepest state of every thousandth access path to the states. */
+  private static void lookupAccessPaths(
+      List<INode<Node<Statement, Variable>>> roots,
+      FieldRef[] fields,
+      int accessPaths,
+      BiFunction<INode<Node<Statement, Variable>>, FieldRef, INode<Node<Statement, Variable>>>
+          generate,
+      List<INode<Node<Statement, Variable>>> states) {
+    for (int i = 0; i < accessPaths; i++) {
+      INode<Node<Statement, Variable>> state = roots.get(i % roots.size());
+      for (int depth = 0; depth < 5; depth++) {
+        state = generate.apply(state, fields[(i + depth) % fields.length]);
+      }
+      if (i % 1000 == 0) {
+        states.add(state);
+      }
+    }
+  }
+
+  /** @return The milliseconds taken and the bytes allocated, -1 if the JVM does not tell. */
+  private static long[] measure(Runnable r) {
+    java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    long threadId = Thread.currentThread().getId();
+    boolean allocations = threads instanceof com.sun.management.ThreadMXBean;
+    long before =
+        allocations
+            ? ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(threadId)
+            : 0;
+    Stopwatch watch = Stopwatch.createStarted();
+    r.run();
+    long millis = watch.elapsed(TimeUnit.MILLISECONDS);
+    long after =
+        allocations
+            ? ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(threadId)
+            : -1;
+    return new long[] {millis, after - before};
+  }
+
   @Test
   public void callOnlyIntraprocedural() {
     addNormal(node(1, "u"), node(5, "q"));
@@ -0,0 +1,74 @@
+/**
+ * ***************************************************************************** Copyright (c) 2018
+ * Fraunhofer IEM, Paderborn, Germany. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * <p>SPDX-License-Identifier: EPL-2.0
+ *
+ * <p>Contributors: Johannes Spaeth - initial API and implementation
+ * *****************************************************************************
+ */
+package wpds.impl;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * A list that only grows. Elements never move, so the size read before an iteration acts as a
+ * snapshot: iterating up to that size sees exactly the elements present at that point, elements
+ * may be appended meanwhile and neither a copy nor a {@link
+ * java.util.ConcurrentModificationException} is involved. Hot loops iterate by index, {@code for
+ * (int i = 0, n = list.size(); i < n; i++) list.get(i)}, which does not allocate. Elements cannot
+ * be removed; drop the list instead.
+ */
+public class AppendOnlyList<T> extends AbstractList<T> implements RandomAccess {
+  private static final Object[] EMPTY = new Object[0];
+  private Object[] elements = EMPTY;
+  private int size;
+
+  @Override
+  public boolean add(T element) {
+    if (size == elements.length) {
+      elements = Arrays.copyOf(elements, Math.max(4, size * 2));
+    }
+    elements[size++] = element;
+    return true;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public T get(int index) {
+    if (index >= size) throw new IndexOutOfBoundsException(index + " >= " + size);
+    return (T) elements[index];
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public Iterator<T> iterator() {
+    final Object[] snapshot = elements;
+    final int count = size;
+    return new Iterator<T>() {
+      int i = 0;
+
+      @Override
+      public boolean hasNext() {
+        return i < count;
+      }
+
+      @SuppressWarnings("unchecked")
+      @Override
+      public T next() {
+        if (i >= count) throw new NoSuchElementException();
+        return (T) snapshot[i++];
+      }
+    };
+  }
+}
@@ -0,0 +1,488 @@
+/**
+ * ***************************************************************************** Copyright (c) 2018
+ * Fraunhofer IEM, Paderborn, Germany. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * <p>SPDX-License-Identifier: EPL-2.0
+ *
+ * <p>Contributors: Johannes Spaeth - initial API and implementation
+ * *****************************************************************************
+ */
+package wpds.impl;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import wpds.interfaces.Location;
+import wpds.interfaces.State;
+
+/**
+ * A saturated {@link WeightedPAutomaton} in a compact binary file, to reuse it across runs. The
+ * file holds, per automaton, tables of the encoded states, labels and distinct weights (see {@link
+ * SnapshotCodec}), the state ids ordered by the hash of their encoding, the final and initial
+ * states and the transitions grouped by start state as (label, target, weight) id triples,
+ * followed by the nested automata. {@link #write} streams the file, only the tables are held in
+ * memory.
+ *
+ * <p>{@link #open} maps the file into memory and decodes nothing up front. A state is looked up by
+ * its encoding through the hash ordered ids, the transitions of a state are decoded on first access
+ * ({@link #getTransitionsOutOf}), states, labels and weights when first referenced. {@link
+ * #restore} adds the whole snapshot to a (fresh) automaton.
+ */
+public class AutomatonSnapshot<N extends Location, D extends State, W extends Weight> {
+  private static final int MAGIC = 0x57504153;
+  private static final int VERSION = 2;
+
+  private final SnapshotCodec<N> labelCodec;
+  private final SnapshotCodec<D> stateCodec;
+  private final SnapshotCodec<W> weightCodec;
+  private final ByteBuffer buffer;
+
+  private final int nestedInitialState;
+  private final Table states;
+  // (hash, id) pairs of the encoded states, ordered by hash
+  private final int stateIndexPosition;
+  private final Table labels;
+  private final Table weights;
+  private final int finalStatesPosition;
+  private final int initialStatesPosition;
+  // Start of the (state count + 1) indices of the first transition of each state
+  private final int firstTransitionPosition;
+  private final int transitionsPosition;
+  private final int nestedPosition;
+
+  private final Map<D, Map<Transition<N, D>, W>> transitionsOutOf = Maps.newHashMap();
+  private List<AutomatonSnapshot<N, D, W>> nestedAutomata;
+
+  private AutomatonSnapshot(
+      ByteBuffer buffer,
+      SnapshotCodec<N> labelCodec,
+      SnapshotCodec<D> stateCodec,
+      SnapshotCodec<W> weightCodec) {
+    this.buffer = buffer;
+    this.labelCodec = labelCodec;
+    this.stateCodec = stateCodec;
+    this.weightCodec = weightCodec;
+    int position = 0;
+    nestedInitialState = buffer.getInt(position);
+    position += 4;
+    states = new Table(position);
+    position = states.end;
+    stateIndexPosition = position;
+    position += 8 * states.size;
+    labels = new Table(position);
+    position = labels.end;
+    weights = new Table(position);
+    position = weights.end;
+    finalStatesPosition = position;
+    position += 4 + 4 * buffer.getInt(position);
+    initialStatesPosition = position;
+    position += 4 + 8 * buffer.getInt(position);
+    firstTransitionPosition = position;
+    position += 4 * (states.size + 1);
+    transitionsPosition = position;
+    position += 12 * buffer.getInt(firstTransitionPosition + 4 * states.size);
+    nestedPosition = position;
+  }
+
+  /** Writes the automaton, including its nested automata, to the file. */
+  public static <N extends Location, D extends State, W extends Weight> void write(
+      WeightedPAutomaton<N, D, W> aut,
+      Path file,
+      SnapshotCodec<N> labelCodec,
+      SnapshotCodec<D> stateCodec,
+      SnapshotCodec<W> weightCodec)
+      throws IOException {
+    try (FileChannel channel =
+        FileChannel.open(
+            file,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING)) {
+      Output out = new Output(channel);
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      writeAutomaton(aut, out, labelCodec, stateCodec, weightCodec);
+      out.flush();
+    }
+  }
+
+  private static <N extends Location, D extends State, W extends Weight> void writeAutomaton(
+      WeightedPAutomaton<N, D, W> aut,
+      Output out,
+      SnapshotCodec<N> labelCodec,
+      SnapshotCodec<D> stateCodec,
+      SnapshotCodec<W> weightCodec)
+      throws IOException {
+    Interner<D> stateIds = new Interner<>();
+    Interner<N> labelIds = new Interner<>();
+    Interner<W> weightIds = new Interner<>();
+    D initial = aut.getNestedInitialState();
+    if (initial != null) {
+      stateIds.intern(initial);
+    }
+    for (D state : aut.getStates()) {
+      stateIds.intern(state);
+    }
+    for (D state : aut.getFinalState()) {
+      stateIds.intern(state);
+    }
+    for (Entry<D, D> e : aut.initialStatesToSource.entries()) {
+      stateIds.intern(e.getKey());
+      stateIds.intern(e.getValue());
+    }
+    // The tables precede the transitions, a first pass assigns the ids of labels and weights
+    int stateCount = stateIds.size();
+    int[] firstTransition = new int[stateCount + 1];
+    int transitionCount = 0;
+    for (int id = 0; id < stateCount; id++) {
+      firstTransition[id] = transitionCount;
+      for (Transition<N, D> t : aut.getTransitionsOutOf(stateIds.get(id))) {
+        labelIds.intern(t.getLabel());
+        weightIds.intern(aut.getWeightFor(t));
+        transitionCount++;
+      }
+    }
+    firstTransition[stateCount] = transitionCount;
+
+    out.writeInt(initial == null ? -1 : 0);
+    writeStateIndex(writeTable(stateIds, stateCodec, out), out);
+    writeTable(labelIds, labelCodec, out);
+    writeTable(weightIds, weightCodec, out);
+    out.writeInt(aut.getFinalState().size());
+    for (D state : aut.getFinalState()) {
+      out.writeInt(stateIds.getId(state));
+    }
+    out.writeInt(aut.initialStatesToSource.size());
+    for (Entry<D, D> e : aut.initialStatesToSource.entries()) {
+      out.writeInt(stateIds.getId(e.getKey()));
+      out.writeInt(stateIds.getId(e.getValue()));
+    }
+    for (int first : firstTransition) {
+      out.writeInt(first);
+    }
+    for (int id = 0; id < stateCount; id++) {
+      for (Transition<N, D> t : aut.getTransitionsOutOf(stateIds.get(id))) {
+        out.writeInt(labelIds.getId(t.getLabel()));
+        out.writeInt(stateIds.getId(t.getTarget()));
+        out.writeInt(weightIds.getId(aut.getWeightFor(t)));
+      }
+    }
+
+    Collection<WeightedPAutomaton<N, D, W>> nested = aut.getNestedAutomatons();
+    out.writeInt(nested.size());
+    for (WeightedPAutomaton<N, D, W> n : nested) {
+      // The length is known once the nested automaton is written
+      long lengthPosition = out.position();
+      out.writeInt(0);
+      writeAutomaton(n, out, labelCodec, stateCodec, weightCodec);
+      long length = out.position() - lengthPosition - 4;
+      if (length > Integer.MAX_VALUE) {
+        throw new IOException("Nested automaton exceeds " + Integer.MAX_VALUE + " bytes");
+      }
+      out.writeIntAt(lengthPosition, (int) length);
+    }
+  }
+
+  /**
+   * Writes the values as count, count + 1 offsets into the data and the data.
+   *
+   * @return The encoded values by id
+   */
+  private static <T> List<byte[]> writeTable(
+      Interner<T> values, SnapshotCodec<T> codec, Output out) throws IOException {
+    List<byte[]> encoded = Lists.newArrayListWithCapacity(values.size());
+    for (int id = 0; id < values.size(); id++) {
+      encoded.add(codec.encode(values.get(id)));
+    }
+    out.writeInt(encoded.size());
+    int offset = 0;
+    for (byte[] value : encoded) {
+      out.writeInt(offset);
+      offset += value.length;
+    }
+    out.writeInt(offset);
+    for (byte[] value : encoded) {
+      out.write(value);
+    }
+    return encoded;
+  }
+
+  /** Writes the (hash, id) pairs of the encoded states ordered by hash, see {@link #stateId}. */
+  private static void writeStateIndex(List<byte[]> encoded, Output out) throws IOException {
+    long[] entries = new long[encoded.size()];
+    for (int id = 0; id < entries.length; id++) {
+      entries[id] = ((long) Arrays.hashCode(encoded.get(id)) << 32) | id;
+    }
+    Arrays.sort(entries);
+    for (long entry : entries) {
+      out.writeInt((int) (entry >>> 32));
+      out.writeInt((int) entry);
+    }
+  }
+
+  /** Maps the file into memory, the content is decoded lazily. */
+  public static <N extends Location, D extends State, W extends Weight>
+      AutomatonSnapshot<N, D, W> open(
+          Path file,
+          SnapshotCodec<N> labelCodec,
+          SnapshotCodec<D> stateCodec,
+          SnapshotCodec<W> weightCodec)
+          throws IOException {
+    ByteBuffer buffer;
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException("Snapshot exceeds " + Integer.MAX_VALUE + " bytes: " + file);
+      }
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    if (buffer.limit() < 8 || buffer.getInt(0) != MAGIC) {
+      throw new IOException("Not an automaton snapshot: " + file);
+    }
+    if (buffer.getInt(4) != VERSION) {
+      throw new IOException("Unsupported snapshot version " + buffer.getInt(4) + ": " + file);
+    }
+    return new AutomatonSnapshot<>(
+        slice(buffer, 8, buffer.limit() - 8), labelCodec, stateCodec, weightCodec);
+  }
+
+  private static ByteBuffer slice(ByteBuffer buffer, int position, int length) {
+    ByteBuffer duplicate = buffer.duplicate();
+    duplicate.position(position);
+    duplicate.limit(position + length);
+    return duplicate.slice();
+  }
+
+  public int getStateCount() {
+    return states.size;
+  }
+
+  public int getTransitionCount() {
+    return buffer.getInt(firstTransitionPosition + 4 * states.size);
+  }
+
+  public D getState(int id) {
+    return states.get(id, stateCodec);
+  }
+
+  /**
+   * @return The state the nested automaton was created for (see {@link
+   *     WeightedPAutomaton#createNestedAutomaton}), null for the top level automaton.
+   */
+  public D getNestedInitialState() {
+    return nestedInitialState < 0 ? null : getState(nestedInitialState);
+  }
+
+  public Set<D> getFinalStates() {
+    Set<D> res = Sets.newHashSet();
+    for (int i = 0, n = buffer.getInt(finalStatesPosition); i < n; i++) {
+      res.add(getState(buffer.getInt(finalStatesPosition + 4 + 4 * i)));
+    }
+    return res;
+  }
+
+  /** @return An unmodifiable view on the transitions leaving the state, decoded on first access. */
+  public Collection<Transition<N, D>> getTransitionsOutOf(D state) {
+    return Collections.unmodifiableSet(transitionsWithWeights(state).keySet());
+  }
+
+  /** @return The weight of the transition or null if the snapshot does not contain it. */
+  public W getWeight(Transition<N, D> trans) {
+    return transitionsWithWeights(trans.getStart()).get(trans);
+  }
+
+  private Map<Transition<N, D>, W> transitionsWithWeights(D state) {
+    Map<Transition<N, D>, W> res = transitionsOutOf.get(state);
+    if (res != null) {
+      return res;
+    }
+    int id = stateId(state);
+    if (id < 0) {
+      return Collections.emptyMap();
+    }
+    res = Maps.newLinkedHashMap();
+    int first = buffer.getInt(firstTransitionPosition + 4 * id);
+    int last = buffer.getInt(firstTransitionPosition + 4 * (id + 1));
+    for (int i = first; i < last; i++) {
+      int position = transitionsPosition + 12 * i;
+      N label = labels.get(buffer.getInt(position), labelCodec);
+      D target = getState(buffer.getInt(position + 4));
+      W weight = weights.get(buffer.getInt(position + 8), weightCodec);
+      res.put(new Transition<>(state, label, target), weight);
+    }
+    transitionsOutOf.put(state, res);
+    return res;
+  }
+
+  /** @return The id of the state, found by its encoding without decoding states, or -1. */
+  private int stateId(D state) {
+    byte[] encoded = stateCodec.encode(state);
+    int hash = Arrays.hashCode(encoded);
+    int low = 0;
+    int high = states.size;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (buffer.getInt(stateIndexPosition + 8 * middle) < hash) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    for (int i = low; i < states.size && buffer.getInt(stateIndexPosition + 8 * i) == hash; i++) {
+      int id = buffer.getInt(stateIndexPosition + 8 * i + 4);
+      if (states.contentEquals(id, encoded)) {
+        return id;
+      }
+    }
+    return -1;
+  }
+
+  public List<AutomatonSnapshot<N, D, W>> getNestedAutomata() {
+    if (nestedAutomata == null) {
+      nestedAutomata = Lists.newArrayList();
+      int position = nestedPosition + 4;
+      for (int i = 0, n = buffer.getInt(nestedPosition); i < n; i++) {
+        int length = buffer.getInt(position);
+        nestedAutomata.add(
+            new AutomatonSnapshot<>(
+                slice(buffer, position + 4, length), labelCodec, stateCodec, weightCodec));
+        position += 4 + length;
+      }
+    }
+    return nestedAutomata;
+  }
+
+  /**
+   * Adds the final and initial states, the transitions with their weights and, as automata
+   * created by {@link WeightedPAutomaton#createNestedAutomaton}, the nested automata to the
+   * automaton. The listeners of the automaton are notified as usual.
+   */
+  public void restore(WeightedPAutomaton<N, D, W> aut) {
+    for (D state : getFinalStates()) {
+      aut.addFinalState(state);
+    }
+    for (int i = 0, n = buffer.getInt(initialStatesPosition); i < n; i++) {
+      int position = initialStatesPosition + 4 + 8 * i;
+      aut.initialStatesToSource.put(
+          getState(buffer.getInt(position)), getState(buffer.getInt(position + 4)));
+    }
+    for (int id = 0; id < states.size; id++) {
+      for (Entry<Transition<N, D>, W> e : transitionsWithWeights(getState(id)).entrySet()) {
+        aut.addWeightForTransition(e.getKey(), e.getValue());
+      }
+    }
+    for (AutomatonSnapshot<N, D, W> nested : getNestedAutomata()) {
+      nested.restore(aut.createNestedAutomaton(nested.getNestedInitialState()));
+    }
+  }
+
+  /** A table of encoded values, decoded on first access. */
+  private class Table {
+    private final int size;
+    private final int offsetsPosition;
+    private final int dataPosition;
+    private final int end;
+    private final Object[] decoded;
+
+    private Table(int position) {
+      size = buffer.getInt(position);
+      offsetsPosition = position + 4;
+      dataPosition = offsetsPosition + 4 * (size + 1);
+      end = dataPosition + buffer.getInt(offsetsPosition + 4 * size);
+      decoded = new Object[size];
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T get(int id, SnapshotCodec<T> codec) {
+      Object value = decoded[id];
+      if (value == null) {
+        int from = buffer.getInt(offsetsPosition + 4 * id);
+        int to = buffer.getInt(offsetsPosition + 4 * (id + 1));
+        value = codec.decode(slice(buffer, dataPosition + from, to - from));
+        decoded[id] = value;
+      }
+      return (T) value;
+    }
+
+    private boolean contentEquals(int id, byte[] encoded) {
+      int from = buffer.getInt(offsetsPosition + 4 * id);
+      int to = buffer.getInt(offsetsPosition + 4 * (id + 1));
+      if (to - from != encoded.length) {
+        return false;
+      }
+      for (int i = 0; i < encoded.length; i++) {
+        if (buffer.get(dataPosition + from + i) != encoded[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  /** Writes ints in big-endian order and bytes to a file through a buffer. */
+  private static class Output {
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+
+    private Output(FileChannel channel) {
+      this.channel = channel;
+    }
+
+    private void writeInt(int value) throws IOException {
+      if (buffer.remaining() < 4) {
+        flush();
+      }
+      buffer.putInt(value);
+    }
+
+    private void write(byte[] bytes) throws IOException {
+      if (bytes.length > buffer.remaining()) {
+        flush();
+        if (bytes.length > buffer.capacity()) {
+          writeFully(ByteBuffer.wrap(bytes));
+          return;
+        }
+      }
+      buffer.put(bytes);
+    }
+
+    private long position() throws IOException {
+      return channel.position() + buffer.position();
+    }
+
+    /** Overwrites an int written before. */
+    private void writeIntAt(long position, int value) throws IOException {
+      flush();
+      ByteBuffer bytes = ByteBuffer.allocate(4).putInt(value);
+      bytes.flip();
+      while (bytes.hasRemaining()) {
+        channel.write(bytes, position + bytes.position());
+      }
+    }
+
+    private void flush() throws IOException {
+      buffer.flip();
+      writeFully(buffer);
+      buffer.clear();
+    }
+
+    private void writeFully(ByteBuffer bytes) throws IOException {
+      while (bytes.hasRemaining()) {
+        channel.write(bytes);
+      }
+    }
+  }
+}
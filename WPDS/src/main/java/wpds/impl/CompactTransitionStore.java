@@ -0,0 +1,160 @@
+/**
+ * ***************************************************************************** Copyright (c) 2018
+ * Fraunhofer IEM, Paderborn, Germany. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * <p>SPDX-License-Identifier: EPL-2.0
+ *
+ * <p>Contributors: Johannes Spaeth - initial API and implementation
+ * *****************************************************************************
+ */
+package wpds.impl;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import wpds.interfaces.Location;
+import wpds.interfaces.State;
+
+/**
+ * An immutable {@link TransitionStore}, built by {@link WeightedPAutomaton#compact} from the
+ * transitions that remain after a query. The transitions are held twice in exactly sized arrays,
+ * grouped by start and by target state, with the weights parallel to the first. A state maps to
+ * its dense id, which delimits its slices of both arrays. The transitions of a state are scanned
+ * for lookups, adding transitions or changing weights is not supported.
+ */
+public class CompactTransitionStore<N extends Location, D extends State, W extends Weight>
+    implements TransitionStore<N, D, W> {
+  private final ImmutableMap<D, Integer> stateIds;
+  // State id -> index of the first transition leaving/entering it, the last entry is the size
+  private final int[] firstOut;
+  private final int[] firstIn;
+  private final Transition<N, D>[] byStart;
+  private final Object[] weights;
+  private final Transition<N, D>[] byTarget;
+
+  @SuppressWarnings("unchecked")
+  CompactTransitionStore(Collection<Transition<N, D>> transitions, TransitionStore<N, D, W> from) {
+    Map<D, Integer> ids = Maps.newHashMap();
+    for (Transition<N, D> t : transitions) {
+      ids.putIfAbsent(t.getStart(), ids.size());
+      ids.putIfAbsent(t.getTarget(), ids.size());
+    }
+    stateIds = ImmutableMap.copyOf(ids);
+    int states = stateIds.size();
+    firstOut = new int[states + 1];
+    firstIn = new int[states + 1];
+    for (Transition<N, D> t : transitions) {
+      firstOut[stateIds.get(t.getStart()) + 1]++;
+      firstIn[stateIds.get(t.getTarget()) + 1]++;
+    }
+    for (int i = 0; i < states; i++) {
+      firstOut[i + 1] += firstOut[i];
+      firstIn[i + 1] += firstIn[i];
+    }
+    byStart = newTransitions(transitions.size());
+    weights = new Object[transitions.size()];
+    byTarget = newTransitions(transitions.size());
+    int[] nextOut = Arrays.copyOf(firstOut, states);
+    int[] nextIn = Arrays.copyOf(firstIn, states);
+    for (Transition<N, D> t : transitions) {
+      int out = nextOut[stateIds.get(t.getStart())]++;
+      byStart[out] = t;
+      weights[out] = from.getWeight(t);
+      byTarget[nextIn[stateIds.get(t.getTarget())]++] = t;
+    }
+  }
+
+  @Override
+  public boolean add(Transition<N, D> trans) {
+    throw new UnsupportedOperationException("A compacted automaton is immutable");
+  }
+
+  @Override
+  public boolean contains(Transition<N, D> trans) {
+    return indexOf(trans) >= 0;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public W getWeight(Transition<N, D> trans) {
+    int index = indexOf(trans);
+    return index < 0 ? null : (W) weights[index];
+  }
+
+  @Override
+  public void setWeight(Transition<N, D> trans, W weight) {
+    throw new UnsupportedOperationException("A compacted automaton is immutable");
+  }
+
+  private int indexOf(Transition<N, D> trans) {
+    Integer id = stateIds.get(trans.getStart());
+    if (id == null) {
+      return -1;
+    }
+    for (int i = firstOut[id], end = firstOut[id + 1]; i < end; i++) {
+      if (byStart[i] == trans || byStart[i].equals(trans)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  @Override
+  public int size() {
+    return byStart.length;
+  }
+
+  /** @return The number of states with at least one transition. */
+  public int getStateCount() {
+    return stateIds.size();
+  }
+
+  @Override
+  public Collection<Transition<N, D>> getTransitions() {
+    return Collections.unmodifiableList(Arrays.asList(byStart));
+  }
+
+  @Override
+  public Collection<Transition<N, D>> getTransitionsOutOf(D state) {
+    return slice(byStart, firstOut, state);
+  }
+
+  @Override
+  public Collection<Transition<N, D>> getTransitionsOutOf(D state, N label) {
+    Collection<Transition<N, D>> out = getTransitionsOutOf(state);
+    List<Transition<N, D>> res = Lists.newArrayListWithCapacity(out.size());
+    for (Transition<N, D> t : out) {
+      if (t.getLabel().equals(label)) {
+        res.add(t);
+      }
+    }
+    return Collections.unmodifiableList(res);
+  }
+
+  @Override
+  public Collection<Transition<N, D>> getTransitionsInto(D state) {
+    return slice(byTarget, firstIn, state);
+  }
+
+  private List<Transition<N, D>> slice(Transition<N, D>[] transitions, int[] first, D state) {
+    Integer id = stateIds.get(state);
+    if (id == null) {
+      return Collections.emptyList();
+    }
+    return Collections.unmodifiableList(
+        Arrays.asList(transitions).subList(first[id], first[id + 1]));
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <N extends Location, D extends State> Transition<N, D>[] newTransitions(
+      int length) {
+    return new Transition[length];
+  }
+}
@@ -0,0 +1,28 @@
+/**
+ * ***************************************************************************** Copyright (c) 2018
+ * Fraunhofer IEM, Paderborn, Germany. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * <p>SPDX-License-Identifier: EPL-2.0
+ *
+ * <p>Contributors: Johannes Spaeth - initial API and implementation
+ * *****************************************************************************
+ */
+package wpds.impl;
+
+/**
+ * Optional capability of a {@link Weight} for differential propagation. When a weight of a
+ * transition grows from {@code previous} to {@code this}, an automaton that propagates deltas (see
+ * {@link WeightedPAutomaton#setPropagateWeightDeltas}) hands only the difference to the listeners
+ * of {@link PostStar}, which then extend the new part of the weight instead of the whole weight.
+ *
+ * <p>Implementations must guarantee that {@code previous.combineWith(difference(previous))} equals
+ * {@code this} and that extending distributes over combining, i.e. extending {@code previous} and
+ * the difference and combining both gives the same weight as extending {@code this}. Weights for
+ * which no smaller difference exists return {@code this}.
+ */
+public interface DifferentialWeight<W extends Weight> {
+
+  W difference(W previous);
+}
@@ -0,0 +1,115 @@
+/**
+ * ***************************************************************************** Copyright (c) 2018
+ * Fraunhofer IEM, Paderborn, Germany. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * <p>SPDX-License-Identifier: EPL-2.0
+ *
+ * <p>Contributors: Johannes Spaeth - initial API and implementation
+ * *****************************************************************************
+ */
+package wpds.impl;
+
+import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.collect.Table;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import wpds.interfaces.Location;
+import wpds.interfaces.State;
+
+/**
+ * The default {@link TransitionStore} that keeps all transitions in hash based collections. The
+ * adjacency of the states is kept in {@link AppendOnlyList}s, iterating it is safe while
+ * transitions are added. The transitions are canonical instances, they are kept in identity based
+ * collections.
+ */
+public class HashTransitionStore<N extends Location, D extends State, W extends Weight>
+    implements TransitionStore<N, D, W> {
+  private final Set<Transition<N, D>> transitions = Sets.newIdentityHashSet();
+  private final List<Transition<N, D>> transitionsInOrder = new AppendOnlyList<>();
+  private final Map<Transition<N, D>, W> transitionToWeights = Maps.newIdentityHashMap();
+  private final Map<D, List<Transition<N, D>>> transitionsOutOf = Maps.newHashMap();
+  private final Map<D, List<Transition<N, D>>> transitionsInto = Maps.newHashMap();
+  private final Table<D, N, List<Transition<N, D>>> transitionsOutOfByLabel =
+      HashBasedTable.create();
+
+  @Override
+  public boolean add(Transition<N, D> trans) {
+    if (!transitions.add(trans)) {
+      return false;
+    }
+    transitionsInOrder.add(trans);
+    getOrCreate(transitionsOutOf, trans.getStart()).add(trans);
+    getOrCreate(transitionsInto, trans.getTarget()).add(trans);
+    List<Transition<N, D>> byLabel =
+        transitionsOutOfByLabel.get(trans.getStart(), trans.getLabel());
+    if (byLabel == null) {
+      byLabel = new AppendOnlyList<>();
+      transitionsOutOfByLabel.put(trans.getStart(), trans.getLabel(), byLabel);
+    }
+    byLabel.add(trans);
+    return true;
+  }
+
+  private List<Transition<N, D>> getOrCreate(Map<D, List<Transition<N, D>>> map, D state) {
+    List<Transition<N, D>> list = map.get(state);
+    if (list == null) {
+      list = new AppendOnlyList<>();
+      map.put(state, list);
+    }
+    return list;
+  }
+
+  private Collection<Transition<N, D>> view(List<Transition<N, D>> list) {
+    if (list == null) {
+      return Collections.emptyList();
+    }
+    return Collections.unmodifiableList(list);
+  }
+
+  @Override
+  public boolean contains(Transition<N, D> trans) {
+    return transitions.contains(trans);
+  }
+
+  @Override
+  public W getWeight(Transition<N, D> trans) {
+    return transitionToWeights.get(trans);
+  }
+
+  @Override
+  public void setWeight(Transition<N, D> trans, W weight) {
+    transitionToWeights.put(trans, weight);
+  }
+
+  @Override
+  public int size() {
+    return transitions.size();
+  }
+
+  @Override
+  public Collection<Transition<N, D>> getTransitions() {
+    return view(transitionsInOrder);
+  }
+
+  @Override
+  public Collection<Transition<N, D>> getTransitionsOutOf(D state) {
+    return view(transitionsOutOf.get(state));
+  }
+
+  @Override
+  public Collection<Transition<N, D>> getTransitionsOutOf(D state, N label) {
+    return view(transitionsOutOfByLabel.get(state, label));
+  }
+
+  @Override
+  public Collection<Transition<N, D>> getTransitionsInto(D state) {
+    return view(transitionsInto.get(state));
+  }
+}
@@ -0,0 +1,356 @@
+/**
+ * ***************************************************************************** Copyright (c) 2018
+ * Fraunhofer IEM, Paderborn, Germany. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * <p>SPDX-License-Identifier: EPL-2.0
+ *
+ * <p>Contributors: Johannes Spaeth - initial API and implementation
+ * *****************************************************************************
+ */
+package wpds.impl;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import wpds.interfaces.Location;
+import wpds.interfaces.State;
+
+/**
+ * A compact {@link TransitionStore}. States and labels are interned to dense int ids and each
+ * transition is identified by the index of its (start, label, target) id triple in primitive
+ * arrays. Lookups go through an open addressing table over these triples, the adjacency of a state
+ * is an int array of transition indices. The transitions leaving a state with a given label are
+ * grouped in a second table over (start, label) pairs, so label lookups do not filter the whole
+ * adjacency of the state. Compared to {@link HashTransitionStore} no map entries or per-state sets
+ * are allocated, which considerably reduces the heap of large automata.
+ */
+public class InternedTransitionStore<N extends Location, D extends State, W extends Weight>
+    implements TransitionStore<N, D, W> {
+  private static final int[] EMPTY = new int[0];
+
+  private final Interner<D> stateIds = new Interner<>();
+  private final Interner<N> labelIds = new Interner<>();
+
+  // Transition index -> (start, label, target) ids, canonical instance and weight
+  private int[] starts = new int[16];
+  private int[] labels = new int[16];
+  private int[] targets = new int[16];
+  private Object[] canonical = new Object[16];
+  private Object[] weights = new Object[16];
+  private int size;
+
+  // Open addressing over the id triples, a slot holds transition index + 1, 0 marks a free slot
+  private int[] table = new int[32];
+
+  // State id -> indices of the transitions leaving/entering the state
+  private int[][] outOf = new int[16][];
+  private int[] outOfSize = new int[16];
+  private int[][] into = new int[16][];
+  private int[] intoSize = new int[16];
+
+  // Group id -> (start, label) ids and the indices of the transitions leaving start with label
+  private int[] groupStarts = new int[16];
+  private int[] groupLabels = new int[16];
+  private int[][] groupMembers = new int[16][];
+  private int[] groupSize = new int[16];
+  private int groups;
+
+  // Open addressing over the (start, label) pairs, a slot holds group id + 1
+  private int[] groupTable = new int[32];
+
+  @Override
+  public boolean add(Transition<N, D> trans) {
+    int start = stateIds.intern(trans.getStart());
+    int label = labelIds.intern(trans.getLabel());
+    int target = stateIds.intern(trans.getTarget());
+    int mask = table.length - 1;
+    int slot = hash(start, label, target) & mask;
+    int entry;
+    while ((entry = table[slot]) != 0) {
+      int i = entry - 1;
+      if (starts[i] == start && labels[i] == label && targets[i] == target) {
+        return false;
+      }
+      slot = (slot + 1) & mask;
+    }
+    int index = size++;
+    if (index == starts.length) {
+      int capacity = index * 2;
+      starts = Arrays.copyOf(starts, capacity);
+      labels = Arrays.copyOf(labels, capacity);
+      targets = Arrays.copyOf(targets, capacity);
+      canonical = Arrays.copyOf(canonical, capacity);
+      weights = Arrays.copyOf(weights, capacity);
+    }
+    starts[index] = start;
+    labels[index] = label;
+    targets[index] = target;
+    canonical[index] = trans;
+    table[slot] = index + 1;
+    if (size * 2 > table.length) {
+      rehash();
+    }
+    ensureStateCapacity(Math.max(start, target));
+    outOf[start] = append(outOf[start], outOfSize[start]++, index);
+    into[target] = append(into[target], intoSize[target]++, index);
+    int group = addGroup(start, label);
+    groupMembers[group] = append(groupMembers[group], groupSize[group]++, index);
+    return true;
+  }
+
+  @Override
+  public boolean contains(Transition<N, D> trans) {
+    return indexOf(trans) >= 0;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public W getWeight(Transition<N, D> trans) {
+    int index = indexOf(trans);
+    return index < 0 ? null : (W) weights[index];
+  }
+
+  @Override
+  public void setWeight(Transition<N, D> trans, W weight) {
+    int index = indexOf(trans);
+    if (index < 0) {
+      throw new IllegalStateException("Transition not contained " + trans);
+    }
+    weights[index] = weight;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public Collection<Transition<N, D>> getTransitions() {
+    return new AbstractCollection<Transition<N, D>>() {
+      @Override
+      public Iterator<Transition<N, D>> iterator() {
+        final int count = size;
+        return new Iterator<Transition<N, D>>() {
+          int i = 0;
+
+          @Override
+          public boolean hasNext() {
+            return i < count;
+          }
+
+          @SuppressWarnings("unchecked")
+          @Override
+          public Transition<N, D> next() {
+            if (i >= count) throw new NoSuchElementException();
+            return (Transition<N, D>) canonical[i++];
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return size;
+      }
+    };
+  }
+
+  @Override
+  public Collection<Transition<N, D>> getTransitionsOutOf(D state) {
+    return new AdjacencyView(state, null, true);
+  }
+
+  @Override
+  public Collection<Transition<N, D>> getTransitionsOutOf(D state, N label) {
+    return new AdjacencyView(state, label, true);
+  }
+
+  @Override
+  public Collection<Transition<N, D>> getTransitionsInto(D state) {
+    return new AdjacencyView(state, null, false);
+  }
+
+  private int indexOf(Transition<N, D> trans) {
+    int start = stateIds.getId(trans.getStart());
+    if (start < 0) return -1;
+    int target = stateIds.getId(trans.getTarget());
+    if (target < 0) return -1;
+    int label = labelIds.getId(trans.getLabel());
+    if (label < 0) return -1;
+    int mask = table.length - 1;
+    int slot = hash(start, label, target) & mask;
+    int entry;
+    while ((entry = table[slot]) != 0) {
+      int i = entry - 1;
+      if (starts[i] == start && labels[i] == label && targets[i] == target) {
+        return i;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return -1;
+  }
+
+  private int groupOf(int start, int label) {
+    int mask = groupTable.length - 1;
+    int slot = hash(start, label) & mask;
+    int entry;
+    while ((entry = groupTable[slot]) != 0) {
+      int g = entry - 1;
+      if (groupStarts[g] == start && groupLabels[g] == label) {
+        return g;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return -1;
+  }
+
+  private int addGroup(int start, int label) {
+    int existing = groupOf(start, label);
+    if (existing >= 0) {
+      return existing;
+    }
+    int group = groups++;
+    if (group == groupStarts.length) {
+      int capacity = group * 2;
+      groupStarts = Arrays.copyOf(groupStarts, capacity);
+      groupLabels = Arrays.copyOf(groupLabels, capacity);
+      groupMembers = Arrays.copyOf(groupMembers, capacity);
+      groupSize = Arrays.copyOf(groupSize, capacity);
+    }
+    groupStarts[group] = start;
+    groupLabels[group] = label;
+    if (groups * 2 > groupTable.length) {
+      groupTable = new int[groupTable.length * 2];
+      for (int g = 0; g < group; g++) {
+        insertGroup(g);
+      }
+    }
+    insertGroup(group);
+    return group;
+  }
+
+  private void insertGroup(int group) {
+    int mask = groupTable.length - 1;
+    int slot = hash(groupStarts[group], groupLabels[group]) & mask;
+    while (groupTable[slot] != 0) {
+      slot = (slot + 1) & mask;
+    }
+    groupTable[slot] = group + 1;
+  }
+
+  private void rehash() {
+    table = new int[table.length * 2];
+    int mask = table.length - 1;
+    for (int i = 0; i < size; i++) {
+      int slot = hash(starts[i], labels[i], targets[i]) & mask;
+      while (table[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      table[slot] = i + 1;
+    }
+  }
+
+  private void ensureStateCapacity(int stateId) {
+    if (stateId < outOf.length) {
+      return;
+    }
+    int capacity = Math.max(outOf.length * 2, stateId + 1);
+    outOf = Arrays.copyOf(outOf, capacity);
+    outOfSize = Arrays.copyOf(outOfSize, capacity);
+    into = Arrays.copyOf(into, capacity);
+    intoSize = Arrays.copyOf(intoSize, capacity);
+  }
+
+  private static int[] append(int[] array, int position, int value) {
+    if (array == null) {
+      array = new int[2];
+    } else if (position == array.length) {
+      array = Arrays.copyOf(array, position * 2);
+    }
+    array[position] = value;
+    return array;
+  }
+
+  private static int hash(int start, int label) {
+    int h = start * 31 + label;
+    h *= 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  private static int hash(int start, int label, int target) {
+    int h = (start * 31 + label) * 31 + target;
+    h *= 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  /** The transitions leaving (or entering) a state, optionally restricted to one label. */
+  private class AdjacencyView extends AbstractCollection<Transition<N, D>> {
+    private final D state;
+    private final N label;
+    private final boolean out;
+
+    private AdjacencyView(D state, N label, boolean out) {
+      this.state = state;
+      this.label = label;
+      this.out = out;
+    }
+
+    // The id indexing the arrays of this view: a group id if restricted to a label, otherwise the
+    // state id. -1 if the view is empty.
+    private int id() {
+      int stateId = stateIds.getId(state);
+      if (stateId < 0 || stateId >= outOf.length) {
+        return -1;
+      }
+      if (label == null) {
+        return stateId;
+      }
+      int labelId = labelIds.getId(label);
+      return labelId < 0 ? -1 : groupOf(stateId, labelId);
+    }
+
+    private int[] indices(int id) {
+      return label != null ? groupMembers[id] : out ? outOf[id] : into[id];
+    }
+
+    private int count(int id) {
+      return label != null ? groupSize[id] : out ? outOfSize[id] : intoSize[id];
+    }
+
+    @Override
+    public Iterator<Transition<N, D>> iterator() {
+      int id = id();
+      final int[] indices = id < 0 ? EMPTY : indices(id);
+      final int count = id < 0 ? 0 : count(id);
+      return new Iterator<Transition<N, D>>() {
+        int i = 0;
+
+        @Override
+        public boolean hasNext() {
+          return i < count;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public Transition<N, D> next() {
+          if (i >= count) throw new NoSuchElementException();
+          return (Transition<N, D>) canonical[indices[i++]];
+        }
+      };
+    }
+
+    @Override
+    public int size() {
+      int id = id();
+      return id < 0 ? 0 : count(id);
+    }
+
+    @Override
+    public boolean isEmpty() {
+      return size() == 0;
+    }
+  }
+}
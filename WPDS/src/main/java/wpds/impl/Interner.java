@@ -0,0 +1,94 @@
+/**
+ * ***************************************************************************** Copyright (c) 2018
+ * Fraunhofer IEM, Paderborn, Germany. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * <p>SPDX-License-Identifier: EPL-2.0
+ *
+ * <p>Contributors: Johannes Spaeth - initial API and implementation
+ * *****************************************************************************
+ */
+package wpds.impl;
+
+import java.util.Arrays;
+
+/**
+ * Maps objects to dense int ids 0, 1, 2, ... in order of their first occurrence. The mapping is
+ * kept in an open addressing table of the objects and a parallel int array of their ids.
+ */
+public class Interner<T> {
+  private Object[] keys = new Object[16];
+  private int[] ids = new int[16];
+  private Object[] values = new Object[16];
+  private int size;
+
+  /** @return The id of the object, -1 if the object has not been interned. */
+  public int getId(T value) {
+    int mask = keys.length - 1;
+    int slot = hash(value) & mask;
+    Object key;
+    while ((key = keys[slot]) != null) {
+      if (key.equals(value)) {
+        return ids[slot];
+      }
+      slot = (slot + 1) & mask;
+    }
+    return -1;
+  }
+
+  /** @return The id of the object, a fresh one if the object has not been interned before. */
+  public int intern(T value) {
+    int mask = keys.length - 1;
+    int slot = hash(value) & mask;
+    Object key;
+    while ((key = keys[slot]) != null) {
+      if (key.equals(value)) {
+        return ids[slot];
+      }
+      slot = (slot + 1) & mask;
+    }
+    int id = size++;
+    keys[slot] = value;
+    ids[slot] = id;
+    if (id == values.length) {
+      values = Arrays.copyOf(values, id * 2);
+    }
+    values[id] = value;
+    if (size * 2 > keys.length) {
+      rehash();
+    }
+    return id;
+  }
+
+  @SuppressWarnings("unchecked")
+  public T get(int id) {
+    return (T) values[id];
+  }
+
+  public int size() {
+    return size;
+  }
+
+  private void rehash() {
+    Object[] oldKeys = keys;
+    int[] oldIds = ids;
+    keys = new Object[oldKeys.length * 2];
+    ids = new int[oldKeys.length * 2];
+    int mask = keys.length - 1;
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldKeys[i] == null) continue;
+      int slot = hash(oldKeys[i]) & mask;
+      while (keys[slot] != null) {
+        slot = (slot + 1) & mask;
+      }
+      keys[slot] = oldKeys[i];
+      ids[slot] = oldIds[i];
+    }
+  }
+
+  private static int hash(Object value) {
+    int h = value.hashCode() * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+}
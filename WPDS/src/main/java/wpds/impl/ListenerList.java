@@ -0,0 +1,39 @@
+/**
+ * ***************************************************************************** Copyright (c) 2018
+ * Fraunhofer IEM, Paderborn, Germany. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * <p>SPDX-License-Identifier: EPL-2.0
+ *
+ * <p>Contributors: Johannes Spaeth - initial API and implementation
+ * *****************************************************************************
+ */
+package wpds.impl;
+
+import com.google.common.collect.Sets;
+import java.util.Set;
+
+/**
+ * The listeners registered at an automaton (or one of its states). Listeners are kept in
+ * registration order and without duplicates. A dispatch reads {@link #size()} once and calls the
+ * listeners up to that index: A listener registered during the dispatch is not called by it, but
+ * the automaton replays its current transitions to the listener upon registration, hence the
+ * listener sees every update exactly once.
+ */
+public class ListenerList<L> extends AppendOnlyList<L> {
+  private final Set<L> members = Sets.newHashSet();
+
+  @Override
+  public boolean add(L listener) {
+    if (!members.add(listener)) {
+      return false;
+    }
+    return super.add(listener);
+  }
+
+  @Override
+  public boolean contains(Object listener) {
+    return members.contains(listener);
+  }
+}
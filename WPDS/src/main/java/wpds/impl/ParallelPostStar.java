@@ -0,0 +1,469 @@
+/**
+ * ***************************************************************************** Copyright (c) 2018
+ * Fraunhofer IEM, Paderborn, Germany. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * <p>SPDX-License-Identifier: EPL-2.0
+ *
+ * <p>Contributors: Johannes Spaeth - initial API and implementation
+ * *****************************************************************************
+ */
+package wpds.impl;
+
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import wpds.interfaces.Empty;
+import wpds.interfaces.Location;
+import wpds.interfaces.State;
+import wpds.wildcard.ExclusionWildcard;
+import wpds.wildcard.Wildcard;
+
+/**
+ * Saturates a (non nested) automaton with the rules of a {@link WeightedPushdownSystem} on several
+ * threads. The states are hash partitioned into one shard per thread. A shard owns the transitions
+ * leaving its states, along with their weights and the pop and transitive pop listeners of its
+ * states (the same listeners {@link PostStar} registers). A transition derived by one shard is sent
+ * to the shard owning its start state through that shard's lock-free queue. Saturation ends once
+ * no message is pending anywhere, then the transitions are added to the automaton on the calling
+ * thread, in the order each shard derived them.
+ *
+ * <p>The fixpoint is the same as the one of {@link PostStar} for the rules present when the
+ * saturation starts, provided the combine operation of the weights is idempotent, commutative and
+ * associative. Unlike {@link PostStar}, rules added later are not applied. The automaton's {@link
+ * WeightedPAutomaton#isGeneratedState}, {@link WeightedPAutomaton#isUnbalancedState} and the
+ * rules' {@link NormalRule#canBeApplied} are called concurrently; weights must be immutable.
+ */
+public class ParallelPostStar<N extends Location, D extends State, W extends Weight> {
+  private final WeightedPAutomaton<N, D, W> fa;
+  private final ImmutableListMultimap<D, NormalRule<N, D, W>> normalRules;
+  private final ImmutableListMultimap<D, PushRule<N, D, W>> pushRules;
+  private final ImmutableListMultimap<D, PopRule<N, D, W>> popRules;
+  // Push rule -> intermediate state, created upfront as createState need not be thread-safe
+  private final Map<PushRule<N, D, W>, D> intermediateStates = Maps.newHashMap();
+  private final List<Shard> shards = Lists.newArrayList();
+  private final AtomicLong pending = new AtomicLong();
+  private final AtomicReference<Throwable> failure = new AtomicReference<>();
+  private final N epsilon;
+
+  public ParallelPostStar(WeightedPushdownSystem<N, D, W> pds, WeightedPAutomaton<N, D, W> fa) {
+    if (fa.nested() || fa.hasMaxDepth()) {
+      throw new IllegalArgumentException(
+          "Parallel saturation supports neither nested automata nor a maximal depth");
+    }
+    this.fa = fa;
+    this.epsilon = fa.epsilon();
+    ImmutableListMultimap.Builder<D, NormalRule<N, D, W>> normal = ImmutableListMultimap.builder();
+    for (NormalRule<N, D, W> r : pds.getNormalRules()) {
+      normal.put(r.getS1(), r);
+    }
+    normalRules = normal.build();
+    ImmutableListMultimap.Builder<D, PushRule<N, D, W>> push = ImmutableListMultimap.builder();
+    for (PushRule<N, D, W> r : pds.getPushRules()) {
+      push.put(r.getS1(), r);
+      intermediateStates.put(r, fa.createState(r.getS2(), r.getL2()));
+    }
+    pushRules = push.build();
+    ImmutableListMultimap.Builder<D, PopRule<N, D, W>> pop = ImmutableListMultimap.builder();
+    for (PopRule<N, D, W> r : pds.getPopRules()) {
+      pop.put(r.getS1(), r);
+    }
+    popRules = pop.build();
+  }
+
+  /** Saturates the automaton with the given number of threads and adds the result to it. */
+  public void poststar(int threads) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("At least one thread is required");
+    }
+    fa.setInitialAutomaton(fa);
+    for (int i = 0; i < threads; i++) {
+      shards.add(new Shard());
+    }
+    for (Transition<N, D> t : fa.getTransitions()) {
+      send(new Update(t, fa.getWeightFor(t)));
+    }
+    List<Thread> workers = Lists.newArrayList();
+    for (int i = 1; i < threads; i++) {
+      Shard shard = shards.get(i);
+      Thread worker = new Thread(shard::run, "poststar-shard-" + i);
+      worker.setDaemon(true);
+      workers.add(worker);
+      worker.start();
+    }
+    shards.get(0).run();
+    for (Thread worker : workers) {
+      try {
+        worker.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        failure.compareAndSet(null, e);
+      }
+    }
+    if (failure.get() != null) {
+      throw new RuntimeException("Parallel saturation failed", failure.get());
+    }
+    for (Shard shard : shards) {
+      for (Transition<N, D> t : shard.derived) {
+        fa.addWeightForTransition(t, shard.weights.get(t));
+      }
+    }
+    for (Shard shard : shards) {
+      for (Transition<N, D> t : shard.summaryEdges) {
+        fa.registerSummaryEdge(t);
+      }
+      for (UnbalancedPop pop : shard.unbalancedPops) {
+        fa.unbalancedPop(pop.targetState, pop.trans, pop.weight);
+      }
+    }
+  }
+
+  private Shard shardOf(D state) {
+    int h = state.hashCode() * 0x9E3779B9;
+    return shards.get(((h ^ (h >>> 16)) & Integer.MAX_VALUE) % shards.size());
+  }
+
+  private void send(Message message) {
+    pending.incrementAndGet();
+    shardOf(message.state()).inbox.add(message);
+  }
+
+  @SuppressWarnings("unchecked")
+  private W extend(W weight, W other) {
+    return (W) weight.extendWith(other);
+  }
+
+  private class Shard {
+    private final ConcurrentLinkedQueue<Message> inbox = new ConcurrentLinkedQueue<>();
+    // All data below is only accessed by the thread running this shard
+    private final Map<Transition<N, D>, W> weights = Maps.newHashMap();
+    private final List<Transition<N, D>> derived = Lists.newArrayList();
+    private final Map<D, List<Transition<N, D>>> transitionsOutOf = Maps.newHashMap();
+    private final Map<D, Set<PopEntry>> popListeners = Maps.newHashMap();
+    private final Map<D, Set<TransitivePopEntry>> transitivePopListeners = Maps.newHashMap();
+    private final List<Transition<N, D>> summaryEdges = Lists.newArrayList();
+    private final List<UnbalancedPop> unbalancedPops = Lists.newArrayList();
+
+    private void run() {
+      int idle = 0;
+      while (failure.get() == null) {
+        Message message = inbox.poll();
+        if (message != null) {
+          idle = 0;
+          try {
+            message.process(this);
+          } catch (Throwable e) {
+            failure.compareAndSet(null, e);
+          }
+          pending.decrementAndGet();
+        } else if (pending.get() == 0) {
+          return;
+        } else if (++idle < 100) {
+          Thread.yield();
+        } else {
+          LockSupport.parkNanos(10_000);
+        }
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void update(Transition<N, D> t, W weight) {
+      W oldWeight = weights.get(t);
+      W newWeight = oldWeight == null ? weight : (W) oldWeight.combineWith(weight);
+      if (newWeight.equals(oldWeight)) {
+        return;
+      }
+      weights.put(t, newWeight);
+      if (oldWeight == null) {
+        derived.add(t);
+        outOf(t.getStart()).add(t);
+      }
+      onOutTransitionAdded(t, newWeight);
+    }
+
+    private List<Transition<N, D>> outOf(D state) {
+      List<Transition<N, D>> out = transitionsOutOf.get(state);
+      if (out == null) {
+        out = Lists.newArrayList();
+        transitionsOutOf.put(state, out);
+      }
+      return out;
+    }
+
+    private Set<PopEntry> popListeners(D state) {
+      Set<PopEntry> listeners = popListeners.get(state);
+      if (listeners == null) {
+        listeners = Sets.newLinkedHashSet();
+        for (PopRule<N, D, W> r : popRules.get(state)) {
+          listeners.add(new PopEntry(r.getL1(), r.getS2(), r.getWeight()));
+        }
+        popListeners.put(state, listeners);
+      }
+      return listeners;
+    }
+
+    private void onOutTransitionAdded(Transition<N, D> t, W weight) {
+      D start = t.getStart();
+      for (NormalRule<N, D, W> rule : normalRules.get(start)) {
+        handleNormal(rule, t, weight);
+      }
+      for (PushRule<N, D, W> rule : pushRules.get(start)) {
+        handlePush(rule, t, weight);
+      }
+      for (PopEntry pop : Lists.newArrayList(popListeners(start))) {
+        handlePop(pop, t, weight);
+      }
+      Set<TransitivePopEntry> transitive = transitivePopListeners.get(start);
+      if (transitive != null) {
+        for (TransitivePopEntry e : Lists.newArrayList(transitive)) {
+          send(
+              new Update(
+                  new Transition<>(e.start, t.getLabel(), t.getTarget()),
+                  extend(weight, e.weight)));
+        }
+      }
+    }
+
+    /** See PostStar.HandleNormalListener */
+    private void handleNormal(NormalRule<N, D, W> rule, Transition<N, D> t, W weight) {
+      if (!t.getLabel().equals(rule.getL1()) && !(rule.getL1() instanceof Wildcard)) {
+        return;
+      }
+      N l2 = rule.getL2();
+      if (l2 instanceof ExclusionWildcard) {
+        if (t.getLabel().equals(((ExclusionWildcard<N>) l2).excludes())) return;
+      }
+      if (l2 instanceof Wildcard) {
+        l2 = t.getLabel();
+        if (l2.equals(epsilon)) return;
+      }
+      if (!rule.canBeApplied(t, weight)) {
+        return;
+      }
+      send(
+          new Update(
+              new Transition<>(rule.getS2(), l2, t.getTarget()), extend(weight, rule.getWeight())));
+    }
+
+    /** See PostStar.HandlePushListener, the automaton is not nested. */
+    private void handlePush(PushRule<N, D, W> rule, Transition<N, D> t, W weight) {
+      if (!t.getLabel().equals(rule.getL1()) && !(rule.getL1() instanceof Wildcard)) {
+        return;
+      }
+      if (rule.getCallSite() instanceof Wildcard && t.getLabel().equals(epsilon)) {
+        return;
+      }
+      D irState = intermediateStates.get(rule);
+      N callSite = rule.getCallSite() instanceof Wildcard ? t.getLabel() : rule.getCallSite();
+      send(
+          new Update(
+              new Transition<>(irState, callSite, t.getTarget()),
+              extend(weight, rule.getWeight())));
+      send(new Update(new Transition<>(rule.getS2(), rule.getL2(), irState), fa.getOne()));
+    }
+
+    /** See PostStar.HandlePopListener */
+    private void handlePop(PopEntry pop, Transition<N, D> t, W weight) {
+      if (t.getLabel().accepts(pop.popLabel) || pop.popLabel.accepts(t.getLabel())) {
+        if (fa.isGeneratedState(t.getTarget())) {
+          if (pop.popLabel instanceof Empty) {
+            throw new RuntimeException("IllegalState");
+          }
+          W newWeight = extend(weight, pop.ruleWeight);
+          send(new Update(new Transition<>(pop.targetState, epsilon, t.getTarget()), newWeight));
+          send(
+              new RegisterTransitivePop(
+                  t.getTarget(), new TransitivePopEntry(pop.targetState, t.getLabel(), newWeight)));
+          summaryEdges.add(t);
+        } else if (fa.isUnbalancedState(t.getTarget())) {
+          if (pop.popLabel instanceof Empty) {
+            throw new RuntimeException("IllegalState");
+          }
+          unbalancedPops.add(new UnbalancedPop(pop.targetState, t, weight));
+        }
+      }
+      if (t.getLabel() instanceof Empty) {
+        send(new RegisterPop(t.getTarget(), pop));
+      }
+    }
+
+    private void registerPop(D state, PopEntry pop) {
+      if (!popListeners(state).add(pop)) {
+        return;
+      }
+      for (Transition<N, D> t : Lists.newArrayList(outOf(state))) {
+        handlePop(pop, t, weights.get(t));
+      }
+    }
+
+    /** See PostStar.UpdateTransitivePopListener */
+    private void registerTransitivePop(D state, TransitivePopEntry e) {
+      Set<TransitivePopEntry> listeners = transitivePopListeners.get(state);
+      if (listeners == null) {
+        listeners = Sets.newLinkedHashSet();
+        transitivePopListeners.put(state, listeners);
+      }
+      if (!listeners.add(e)) {
+        return;
+      }
+      for (Transition<N, D> t : Lists.newArrayList(outOf(state))) {
+        send(
+            new Update(
+                new Transition<>(e.start, t.getLabel(), t.getTarget()),
+                extend(weights.get(t), e.weight)));
+      }
+    }
+  }
+
+  /** A message is processed by the shard owning its state. */
+  private abstract class Message {
+    abstract D state();
+
+    abstract void process(Shard shard);
+  }
+
+  private class Update extends Message {
+    private final Transition<N, D> trans;
+    private final W weight;
+
+    private Update(Transition<N, D> trans, W weight) {
+      this.trans = trans;
+      this.weight = weight;
+    }
+
+    @Override
+    D state() {
+      return trans.getStart();
+    }
+
+    @Override
+    void process(Shard shard) {
+      shard.update(trans, weight);
+    }
+  }
+
+  private class RegisterPop extends Message {
+    private final D state;
+    private final PopEntry pop;
+
+    private RegisterPop(D state, PopEntry pop) {
+      this.state = state;
+      this.pop = pop;
+    }
+
+    @Override
+    D state() {
+      return state;
+    }
+
+    @Override
+    void process(Shard shard) {
+      shard.registerPop(state, pop);
+    }
+  }
+
+  private class RegisterTransitivePop extends Message {
+    private final D state;
+    private final TransitivePopEntry entry;
+
+    private RegisterTransitivePop(D state, TransitivePopEntry entry) {
+      this.state = state;
+      this.entry = entry;
+    }
+
+    @Override
+    D state() {
+      return state;
+    }
+
+    @Override
+    void process(Shard shard) {
+      shard.registerTransitivePop(state, entry);
+    }
+  }
+
+  private class PopEntry {
+    private final N popLabel;
+    private final D targetState;
+    private final W ruleWeight;
+
+    private PopEntry(N popLabel, D targetState, W ruleWeight) {
+      this.popLabel = popLabel;
+      this.targetState = targetState;
+      this.ruleWeight = ruleWeight;
+    }
+
+    @Override
+    public int hashCode() {
+      final int prime = 31;
+      int result = 1;
+      result = prime * result + popLabel.hashCode();
+      result = prime * result + targetState.hashCode();
+      result = prime * result + ruleWeight.hashCode();
+      return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) return true;
+      if (!(obj instanceof ParallelPostStar.PopEntry)) return false;
+      PopEntry other = (PopEntry) obj;
+      return popLabel.equals(other.popLabel)
+          && targetState.equals(other.targetState)
+          && ruleWeight.equals(other.ruleWeight);
+    }
+  }
+
+  private class TransitivePopEntry {
+    private final D start;
+    private final N label;
+    private final W weight;
+
+    private TransitivePopEntry(D start, N label, W weight) {
+      this.start = start;
+      this.label = label;
+      this.weight = weight;
+    }
+
+    @Override
+    public int hashCode() {
+      final int prime = 31;
+      int result = 1;
+      result = prime * result + start.hashCode();
+      result = prime * result + label.hashCode();
+      result = prime * result + weight.hashCode();
+      return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) return true;
+      if (!(obj instanceof ParallelPostStar.TransitivePopEntry)) return false;
+      TransitivePopEntry other = (TransitivePopEntry) obj;
+      return start.equals(other.start)
+          && label.equals(other.label)
+          && weight.equals(other.weight);
+    }
+  }
+
+  private class UnbalancedPop {
+    private final D targetState;
+    private final Transition<N, D> trans;
+    private final W weight;
+
+    private UnbalancedPop(D targetState, Transition<N, D> trans, W weight) {
+      this.targetState = targetState;
+      this.trans = trans;
+      this.weight = weight;
+    }
+  }
+}
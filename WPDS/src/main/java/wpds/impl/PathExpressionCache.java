@@ -0,0 +1,147 @@
+/**
+ * ***************************************************************************** Copyright (c) 2018
+ * Fraunhofer IEM, Paderborn, Germany. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * <p>SPDX-License-Identifier: EPL-2.0
+ *
+ * <p>Contributors: Johannes Spaeth - initial API and implementation
+ * *****************************************************************************
+ */
+package wpds.impl;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Set;
+import pathexpression.Edge;
+import pathexpression.IRegEx;
+import pathexpression.LabeledGraph;
+import pathexpression.PathExpressionComputer;
+import pathexpression.RegEx;
+import wpds.interfaces.Location;
+import wpds.interfaces.State;
+
+/**
+ * Caches the path expressions of a {@link WeightedPAutomaton}, viewed as {@link LabeledGraph} (the
+ * transitions reversed, epsilon transitions omitted). The graph is split into one segment per
+ * source node queried: the nodes reachable from the source. Each segment has its own {@link
+ * PathExpressionComputer} and memoizes the expressions to all targets. A new transition only
+ * invalidates the segments it extends, these are recomputed lazily on their next query, all other
+ * segments are reused as the automaton grows.
+ */
+public class PathExpressionCache<N extends Location, D extends State> {
+  private final WeightedPAutomaton<N, D, ?> aut;
+  private final Map<D, Segment> segments = Maps.newHashMap();
+  // Node -> sources of the segments containing the node
+  private final Multimap<D, D> segmentsContaining = HashMultimap.create();
+  private long computedSegments;
+
+  PathExpressionCache(WeightedPAutomaton<N, D, ?> aut) {
+    this.aut = aut;
+  }
+
+  public IRegEx<N> getExpressionBetween(D from, D to) {
+    Segment segment = segments.get(from);
+    if (segment == null) {
+      segment = new Segment(from);
+      segments.put(from, segment);
+      // The source is indexed even if it is no state yet, its first transition extends the segment
+      segmentsContaining.put(from, from);
+      for (D node : segment.nodes) {
+        segmentsContaining.put(node, from);
+      }
+      computedSegments++;
+    }
+    IRegEx<N> res = segment.expressions.get(to);
+    if (res == null) {
+      res = segment.computer.getExpressionBetween(from, to);
+      if (res == null) {
+        res = new RegEx.EmptySet<N>();
+      }
+      segment.expressions.put(to, res);
+    }
+    return res;
+  }
+
+  /**
+   * Called by the automaton for each new transition. The graph edge leads from the target to the
+   * start of the transition, it extends all segments containing the target. Either state may be
+   * new, which adds it to the segment of that source.
+   */
+  void onTransitionAdded(Transition<N, D> trans) {
+    if (segments.isEmpty()) {
+      return;
+    }
+    Segment startSegment = segments.get(trans.getStart());
+    if (startSegment != null && startSegment.nodes.isEmpty()) {
+      invalidate(trans.getStart());
+    }
+    if (trans.getLabel().equals(aut.epsilon())) {
+      Segment targetSegment = segments.get(trans.getTarget());
+      if (targetSegment != null && targetSegment.nodes.isEmpty()) {
+        invalidate(trans.getTarget());
+      }
+      return;
+    }
+    for (D source : Lists.newArrayList(segmentsContaining.get(trans.getTarget()))) {
+      invalidate(source);
+    }
+  }
+
+  private void invalidate(D source) {
+    Segment segment = segments.remove(source);
+    segmentsContaining.remove(source, source);
+    for (D node : segment.nodes) {
+      segmentsContaining.remove(node, source);
+    }
+  }
+
+  /** @return The number of segments whose path expressions were (re-)computed so far. */
+  public long getComputedSegments() {
+    return computedSegments;
+  }
+
+  private class Segment implements LabeledGraph<D, N> {
+    private final Set<D> nodes = Sets.newHashSet();
+    private final Set<Edge<D, N>> edges = Sets.newHashSet();
+    private final Map<D, IRegEx<N>> expressions = Maps.newHashMap();
+    private final PathExpressionComputer<D, N> computer;
+
+    private Segment(D source) {
+      LinkedList<D> worklist = Lists.newLinkedList();
+      if (aut.getStates().contains(source)) {
+        nodes.add(source);
+        worklist.add(source);
+      }
+      while (!worklist.isEmpty()) {
+        D node = worklist.pop();
+        for (Transition<N, D> t : aut.getTransitionsInto(node)) {
+          if (t.getLabel().equals(aut.epsilon())) {
+            continue;
+          }
+          edges.add(new Transition<N, D>(t.getTarget(), t.getLabel(), t.getStart()));
+          if (nodes.add(t.getStart())) {
+            worklist.add(t.getStart());
+          }
+        }
+      }
+      computer = new PathExpressionComputer<>(this);
+    }
+
+    @Override
+    public Set<Edge<D, N>> getEdges() {
+      return edges;
+    }
+
+    @Override
+    public Set<D> getNodes() {
+      return nodes;
+    }
+  }
+}
@@ -88,13 +88,18 @@ public abstract class PostStar<N extends Location, D extends State, W extends We
 
     @Override
     public void onOutTransitionAdded(Transition<N, D> t, W w, WeightedPAutomaton<N, D, W> aut) {
-      W extendWith = (W) w.extendWith(newWeight);
-      update(new Transition<>(start, t.getLabel(), t.getTarget()), extendWith);
+      W extendWith = extend(w, newWeight);
+      update(start, t.getLabel(), t.getTarget(), extendWith);
     }
 
     @Override
     public void onInTransitionAdded(Transition<N, D> t, W w, WeightedPAutomaton<N, D, W> aut) {}
 
+    @Override
+    public boolean acceptsWeightDeltas() {
+      return true;
+    }
+
     @Override
     public int hashCode() {
       final int prime = 31;
@@ -144,8 +149,8 @@ public abstract class PostStar<N extends Location, D extends State, W extends We
           if (popLabel instanceof Empty) {
             throw new RuntimeException("IllegalState");
           }
-          final W newWeight = (W) weight.extendWith(ruleWeight);
-          update(new Transition<>(targetState, fa.epsilon(), t.getTarget()), newWeight);
+          final W newWeight = extend(weight, ruleWeight);
+          update(targetState, fa.epsilon(), t.getTarget(), newWeight);
           fa.registerListener(
               new UpdateTransitivePopListener(targetState, t.getLabel(), t.getTarget(), newWeight));
           aut.registerSummaryEdge(t);
@@ -153,7 +158,7 @@ public abstract class PostStar<N extends Location, D extends State, W extends We
           if (popLabel instanceof Empty) {
             throw new RuntimeException("IllegalState");
           }
-          final W newWeight = (W) weight.extendWith(ruleWeight);
+          final W newWeight = extend(weight, ruleWeight);
           //                    fa.registerListener(new UpdateTransitivePopListener(
           //                       targetState, t.getTarget(), newWeight));
           fa.unbalancedPop(targetState, t, weight);
@@ -169,6 +174,11 @@ public abstract class PostStar<N extends Location, D extends State, W extends We
     public void onInTransitionAdded(
         Transition<N, D> t, W weight, WeightedPAutomaton<N, D, W> aut) {}
 
+    @Override
+    public boolean acceptsWeightDeltas() {
+      return true;
+    }
+
     @Override
     public int hashCode() {
       final int prime = 31;
@@ -210,7 +220,7 @@ public abstract class PostStar<N extends Location, D extends State, W extends We
     public void onOutTransitionAdded(
         final Transition<N, D> t, W weight, WeightedPAutomaton<N, D, W> aut) {
       if (t.getLabel().equals(rule.getL1()) || rule.getL1() instanceof Wildcard) {
-        W newWeight = (W) weight.extendWith(rule.getWeight());
+        W newWeight = extend(weight, rule.getWeight());
         D p = rule.getS2();
         N l2 = rule.getL2();
         if (l2 instanceof ExclusionWildcard) {
@@ -224,7 +234,7 @@ public abstract class PostStar<N extends Location, D extends State, W extends We
         if (!rule.canBeApplied(t, weight)) {
           return;
         }
-        update(new Transition<N, D>(p, l2, t.getTarget()), newWeight);
+        update(p, l2, t.getTarget(), newWeight);
       }
     }
 
@@ -232,6 +242,11 @@ public abstract class PostStar<N extends Location, D extends State, W extends We
     public void onInTransitionAdded(
         Transition<N, D> t, W weight, WeightedPAutomaton<N, D, W> aut) {}
 
+    @Override
+    public boolean acceptsWeightDeltas() {
+      return true;
+    }
+
     @Override
     public int hashCode() {
       final int prime = 31;
@@ -276,7 +291,7 @@ public abstract class PostStar<N extends Location, D extends State, W extends We
         final Transition<N, D> callSiteTransition =
             new Transition<N, D>(irState, transitionLabel, t.getTarget());
         final Transition<N, D> calleeTransition = new Transition<N, D>(p, gammaPrime, irState);
-        W weightAtCallsite = (W) weight.extendWith(rule.getWeight());
+        W weightAtCallsite = extend(weight, rule.getWeight());
         update(callSiteTransition, weightAtCallsite);
         if (!fa.nested()) {
           update(calleeTransition, fa.getOne());
@@ -295,11 +310,10 @@ public abstract class PostStar<N extends Location, D extends State, W extends We
 
                     W newWeight = getWeightFor(callSiteTransition);
                     update(
-                        new Transition<N, D>(
-                            t.getStart(),
-                            callSiteTransition.getLabel(),
-                            callSiteTransition.getTarget()),
-                        (W) newWeight.extendWith(w));
+                        t.getStart(),
+                        callSiteTransition.getLabel(),
+                        callSiteTransition.getTarget(),
+                        extend(newWeight, w));
                   }
                 }
               });
@@ -311,6 +325,11 @@ public abstract class PostStar<N extends Location, D extends State, W extends We
     public void onInTransitionAdded(
         Transition<N, D> t, W weight, WeightedPAutomaton<N, D, W> aut) {}
 
+    @Override
+    public boolean acceptsWeightDeltas() {
+      return true;
+    }
+
     @Override
     public int hashCode() {
       final int prime = 31;
@@ -340,6 +359,25 @@ public abstract class PostStar<N extends Location, D extends State, W extends We
     }
   }
 
+  /** Most updates hit an existing transition, only a new one is allocated. */
+  private void update(D start, N label, D target, W weight) {
+    WeightedPAutomaton<N, D, W> aut = fa.nested() ? getSummaryAutomaton(target) : fa;
+    Transition<N, D> trans = aut.getTransition(start, label, target);
+    if (trans == null) {
+      trans = new Transition<>(start, label, target);
+    }
+    aut.addWeightForTransition(trans, weight);
+  }
+
+  @SuppressWarnings("unchecked")
+  private W extend(W weight, W other) {
+    WeightFactory<W> factory = fa.getWeightFactory();
+    if (factory == null) {
+      return (W) weight.extendWith(other);
+    }
+    return factory.extend(weight, other);
+  }
+
   private W getWeightFor(Transition<N, D> trans) {
     if (!fa.nested()) {
       return fa.getWeightFor(trans);
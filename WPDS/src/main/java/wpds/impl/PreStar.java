@@ -12,107 +12,92 @@
 package wpds.impl;
 
 import com.google.common.collect.Lists;
-import com.google.common.collect.Sets;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
 import wpds.interfaces.IPushdownSystem;
 import wpds.interfaces.Location;
 import wpds.interfaces.State;
 import wpds.wildcard.Wildcard;
 
+/**
+ * Saturates an automaton with pre*. Each transition whose weight changes is processed once per
+ * change from the worklist; the rules and the transitions it combines with are looked up in the
+ * rule indices of the PDS and the per-state label index of the automaton.
+ */
 public class PreStar<N extends Location, D extends State, W extends Weight> {
-  private LinkedList<Transition<N, D>> worklist = Lists.newLinkedList();
+  private final Deque<Transition<N, D>> worklist = new ArrayDeque<>();
   private IPushdownSystem<N, D, W> pds;
   private WeightedPAutomaton<N, D, W> fa;
 
   public WeightedPAutomaton<N, D, W> prestar(
       IPushdownSystem<N, D, W> pds, WeightedPAutomaton<N, D, W> initialAutomaton) {
     this.pds = pds;
-    worklist = Lists.newLinkedList(initialAutomaton.getTransitions());
     fa = initialAutomaton;
+    worklist.addAll(fa.getTransitions());
 
-    for (Transition<N, D> trans : Sets.newHashSet(fa.getTransitions())) {
-      W one = fa.getOne();
-      fa.addWeightForTransition(trans, one);
-    }
     for (PopRule<N, D, W> r : pds.getPopRules()) {
-      update(
-          new Transition<N, D>(r.getS1(), r.getL1(), r.getS2()),
-          r.getWeight(),
-          Lists.<Transition<N, D>>newLinkedList());
+      update(new Transition<N, D>(r.getS1(), r.getL1(), r.getS2()), r.getWeight());
     }
 
     while (!worklist.isEmpty()) {
-      Transition<N, D> t = worklist.removeFirst();
+      Transition<N, D> t = worklist.poll();
 
+      // Normal rules <p,y> -> <p',y'> with t = (p',y',q) add (p,y,q)
       for (NormalRule<N, D, W> r : pds.getNormalRulesEnding(t.getStart(), t.getLabel())) {
-        // Normal rules
-        LinkedList<Transition<N, D>> previous = Lists.<Transition<N, D>>newLinkedList();
-        previous.add(t);
-        update(new Transition<N, D>(r.getS1(), r.getL1(), t.getTarget()), r.getWeight(), previous);
+        update(
+            new Transition<N, D>(r.getS1(), r.getL1(), t.getTarget()), extend(r.getWeight(), t));
       }
+      // Push rules <p,y> -> <p',y' y''> with t = (p',y',q) and tdash = (q,y'',q') add (p,y,q')
       for (PushRule<N, D, W> r : pds.getPushRulesEnding(t.getStart(), t.getLabel())) {
-        // Push rules
-        for (Transition<N, D> tdash : Sets.newHashSet(fa.getTransitions())) {
-          if (tdash.getLabel().equals(r.getCallSite())) {
-            LinkedList<Transition<N, D>> previous = Lists.<Transition<N, D>>newLinkedList();
-            previous.add(t);
-            previous.add(tdash);
-            update(
-                new Transition<N, D>(r.getS1(), r.getL1(), tdash.getTarget()),
-                r.getWeight(),
-                previous);
-          } else if (r.getCallSite() instanceof Wildcard) {
-            LinkedList<Transition<N, D>> previous = Lists.<Transition<N, D>>newLinkedList();
-            previous.add(t);
-            previous.add(tdash);
+        W weight = extend(r.getWeight(), t);
+        if (r.getCallSite() instanceof Wildcard) {
+          for (Transition<N, D> tdash : snapshot(fa.getTransitionsOutOf(t.getTarget()))) {
             update(
                 new Transition<N, D>(r.getS1(), tdash.getLabel(), tdash.getTarget()),
-                r.getWeight(),
-                previous);
+                extend(weight, tdash));
+          }
+        } else {
+          for (Transition<N, D> tdash :
+              snapshot(fa.getTransitionsOutOf(t.getTarget(), r.getCallSite()))) {
+            update(
+                new Transition<N, D>(r.getS1(), r.getL1(), tdash.getTarget()),
+                extend(weight, tdash));
           }
         }
       }
-
-      for (PushRule<N, D, W> r : pds.getPushRules()) {
-        if (!(r.getCallSite() instanceof Wildcard) && !r.getCallSite().equals(t.getLabel())) {
-          continue;
-        }
-        Transition<N, D> tdash = new Transition<N, D>(r.getS2(), r.getL2(), t.getTarget());
-        if (!fa.getTransitions().contains(tdash)) {
+      // Push rules <p,y> -> <p',y' y''> with t = (q,y'',q') and tdash = (p',y',q) add (p,y,q')
+      for (PushRule<N, D, W> r : pds.getPushRulesWithCallSite(t.getLabel())) {
+        Transition<N, D> tdash = new Transition<N, D>(r.getS2(), r.getL2(), t.getStart());
+        if (!fa.containsTransition(tdash)) {
           continue;
         }
-        LinkedList<Transition<N, D>> previous = Lists.<Transition<N, D>>newLinkedList();
-        previous.add(tdash);
-        previous.add(t);
         N label = ((r.getCallSite() instanceof Wildcard) ? t.getLabel() : r.getL1());
-        update(new Transition<N, D>(r.getS1(), label, t.getTarget()), r.getWeight(), previous);
+        update(
+            new Transition<N, D>(r.getS1(), label, t.getTarget()),
+            extend(extend(r.getWeight(), tdash), t));
       }
     }
 
     return fa;
   }
 
-  private void update(Transition<N, D> trans, W weight, List<Transition<N, D>> previous) {
+  private void update(Transition<N, D> trans, W weight) {
     if (trans.getLabel() instanceof Wildcard) throw new RuntimeException("INVALID TRANSITION");
-    fa.addTransition(trans);
-    W lt = getOrCreateWeight(trans);
-    W fr = weight;
-    for (Transition<N, D> prev : previous) {
-      fr = (W) fr.extendWith(getOrCreateWeight(prev));
-    }
-    W newLt = (W) lt.combineWith(fr);
-    fa.addWeightForTransition(trans, newLt);
-    if (!lt.equals(newLt)) {
+    if (fa.addWeightForTransition(trans, weight)) {
       worklist.add(trans);
     }
   }
 
-  private W getOrCreateWeight(Transition<N, D> trans) {
-    W w = fa.getWeightFor(trans);
-    if (w != null) return w;
+  private W extend(W weight, Transition<N, D> previous) {
+    return (W) weight.extendWith(fa.getWeightFor(previous));
+  }
 
-    // z.setRange(trans.getLabel(), trans.getLabel());
-    return null;
+  /**
+   * Transitions added while iterating are themselves put onto the worklist and pair up with t
+   * when processed, hence iterating over a copy of the (typically small) bucket suffices.
+   */
+  private static <T> Collection<T> snapshot(Collection<T> bucket) {
+    return Lists.newArrayList(bucket);
   }
 }
@@ -0,0 +1,187 @@
+/**
+ * ***************************************************************************** Copyright (c) 2018
+ * Fraunhofer IEM, Paderborn, Germany. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * <p>SPDX-License-Identifier: EPL-2.0
+ *
+ * <p>Contributors: Johannes Spaeth - initial API and implementation
+ * *****************************************************************************
+ */
+package wpds.impl;
+
+import com.google.common.collect.Maps;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import wpds.interfaces.Location;
+import wpds.interfaces.ReachabilityListener;
+import wpds.interfaces.ReachabilityVisitor;
+import wpds.interfaces.State;
+
+/**
+ * An incremental alternative to {@link wpds.interfaces.ForwardDFSVisitor}. Instead of the
+ * transitive closure over all pairs of states, only the states reachable from the states listeners
+ * are registered for (the sources) are tracked: one bit set row over interned state ids per source
+ * and, per state, the sources reaching it. Memory is linear in the edges plus the reachable states
+ * of the sources. New transitions are reported by this single update listener, no state listener
+ * is registered per reachable pair.
+ */
+public class ReachabilityIndex<N extends Location, D extends State, W extends Weight>
+    implements ReachabilityVisitor<N, D, W> {
+  private static final int[] EMPTY = new int[0];
+
+  private final WeightedPAutomaton<N, D, W> aut;
+  private final Interner<D> stateIds = new Interner<>();
+  private final Map<D, Source> sourceOfState = Maps.newHashMap();
+  private final List<Source> sources = new AppendOnlyList<>();
+
+  // State id -> ids of the successor states along edges the visitor continues with
+  private int[][] successors = new int[16][];
+  private int[] successorsSize = new int[16];
+  // State id -> indices of the sources reaching the state
+  private int[][] reachedBy = new int[16][];
+  private int[] reachedBySize = new int[16];
+
+  public ReachabilityIndex(WeightedPAutomaton<N, D, W> aut) {
+    this.aut = aut;
+  }
+
+  /** @return true if reachability continues along the transition. */
+  protected boolean continueWith(Transition<N, D> t) {
+    return true;
+  }
+
+  @Override
+  public void registerListener(D state, ReachabilityListener<N, D> l) {
+    Source source = sourceOfState.get(state);
+    if (source == null) {
+      source = new Source(sources.size());
+      sourceOfState.put(state, source);
+      sources.add(source);
+      markReachable(source, stateIds.intern(state));
+    }
+    if (!source.listeners.add(l)) {
+      return;
+    }
+    BitSet reached = (BitSet) source.reached.clone();
+    for (int id = reached.nextSetBit(0); id >= 0; id = reached.nextSetBit(id + 1)) {
+      for (Transition<N, D> t : aut.getTransitionsOutOf(stateIds.get(id))) {
+        l.reachable(t);
+      }
+    }
+  }
+
+  @Override
+  public void onWeightAdded(Transition<N, D> t, W w, WeightedPAutomaton<N, D, W> aut) {
+    int start = stateIds.intern(t.getStart());
+    int target = stateIds.intern(t.getTarget());
+    ensureCapacity(Math.max(start, target));
+    int[] reachingStart = reachedBy[start];
+    int count = reachedBySize[start];
+    if (continueWith(t) && addSuccessor(start, target)) {
+      for (int i = 0; i < count; i++) {
+        Source source = sources.get(reachingStart[i]);
+        if (!source.reached.get(target)) {
+          int[] newlyReached = markReachable(source, target);
+          for (int id : newlyReached) {
+            source.report(aut.getTransitionsOutOf(stateIds.get(id)));
+          }
+        }
+      }
+    }
+    for (int i = 0; i < count; i++) {
+      sources.get(reachingStart[i]).report(t);
+    }
+  }
+
+  /**
+   * Marks all states reachable from the given state for the source.
+   *
+   * @return The ids of the states that were not reachable before.
+   */
+  private int[] markReachable(Source source, int from) {
+    int[] newlyReached = new int[4];
+    int size = 0;
+    int[] stack = new int[] {from};
+    int top = 1;
+    source.reached.set(from);
+    while (top > 0) {
+      int id = stack[--top];
+      ensureCapacity(id);
+      if (size == newlyReached.length) {
+        newlyReached = Arrays.copyOf(newlyReached, size * 2);
+      }
+      newlyReached[size++] = id;
+      reachedBy[id] = append(reachedBy[id], reachedBySize[id]++, source.index);
+      int[] next = successors[id];
+      for (int i = 0, n = successorsSize[id]; i < n; i++) {
+        if (!source.reached.get(next[i])) {
+          source.reached.set(next[i]);
+          if (top == stack.length) {
+            stack = Arrays.copyOf(stack, top * 2);
+          }
+          stack[top++] = next[i];
+        }
+      }
+    }
+    return Arrays.copyOf(newlyReached, size);
+  }
+
+  private boolean addSuccessor(int from, int to) {
+    int[] next = successors[from];
+    for (int i = 0, n = successorsSize[from]; i < n; i++) {
+      if (next[i] == to) {
+        return false;
+      }
+    }
+    successors[from] = append(next, successorsSize[from]++, to);
+    return true;
+  }
+
+  private void ensureCapacity(int stateId) {
+    if (stateId < successors.length) {
+      return;
+    }
+    int capacity = Math.max(successors.length * 2, stateId + 1);
+    successors = Arrays.copyOf(successors, capacity);
+    successorsSize = Arrays.copyOf(successorsSize, capacity);
+    reachedBy = Arrays.copyOf(reachedBy, capacity);
+    reachedBySize = Arrays.copyOf(reachedBySize, capacity);
+  }
+
+  private static int[] append(int[] array, int position, int value) {
+    if (array == null) {
+      array = new int[2];
+    } else if (position == array.length) {
+      array = Arrays.copyOf(array, position * 2);
+    }
+    array[position] = value;
+    return array;
+  }
+
+  /** A state listeners are registered for, along with the states reachable from it. */
+  private class Source {
+    private final int index;
+    private final BitSet reached = new BitSet();
+    private final ListenerList<ReachabilityListener<N, D>> listeners = new ListenerList<>();
+
+    private Source(int index) {
+      this.index = index;
+    }
+
+    private void report(Transition<N, D> t) {
+      for (int i = 0, n = listeners.size(); i < n; i++) {
+        listeners.get(i).reachable(t);
+      }
+    }
+
+    private void report(Iterable<Transition<N, D>> transitions) {
+      for (Transition<N, D> t : transitions) {
+        report(t);
+      }
+    }
+  }
+}
@@ -0,0 +1,144 @@
+/**
+ * ***************************************************************************** Copyright (c) 2018
+ * Fraunhofer IEM, Paderborn, Germany. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * <p>SPDX-License-Identifier: EPL-2.0
+ *
+ * <p>Contributors: Johannes Spaeth - initial API and implementation
+ * *****************************************************************************
+ */
+package wpds.impl;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caps the resources a saturation may consume: the transitions of each automaton, the states
+ * generated, the nodes reached and a rough estimate of the bytes retained by all of them. The
+ * automata and solvers the budget is set on report their growth to it, which only increments and
+ * compares counters. Once a cap is exceeded, the reporting insertion throws a {@link
+ * ResourceBudgetExceededException}; the results computed up to then remain accessible.
+ *
+ * <p>One budget may be shared by several automata and solvers, e.g., all solvers of an analysis.
+ * Except for the transitions, which are capped per automaton, the counts then add up across all of
+ * them. The counters are updated atomically, so the automata and solvers sharing a budget may
+ * grow concurrently.
+ */
+public class ResourceBudget {
+  // Estimated bytes per element of the hash-based automata and solvers, including index entries
+  static final int TRANSITION_BYTES = 160;
+  static final int GENERATED_STATE_BYTES = 96;
+  static final int REACHED_NODE_BYTES = 80;
+
+  public enum Resource {
+    TRANSITIONS,
+    GENERATED_STATES,
+    REACHED_NODES,
+    RETAINED_BYTES
+  }
+
+  private final int maxTransitionsPerAutomaton;
+  private final int maxGeneratedStates;
+  private final int maxReachedNodes;
+  private final long maxRetainedBytes;
+  private final AtomicInteger generatedStates = new AtomicInteger();
+  private final AtomicInteger reachedNodes = new AtomicInteger();
+  private final AtomicLong retainedBytes = new AtomicLong();
+
+  /** A value of 0 or less does not cap the respective resource. */
+  public ResourceBudget(
+      int maxTransitionsPerAutomaton,
+      int maxGeneratedStates,
+      int maxReachedNodes,
+      long maxRetainedBytes) {
+    this.maxTransitionsPerAutomaton = maxTransitionsPerAutomaton;
+    this.maxGeneratedStates = maxGeneratedStates;
+    this.maxReachedNodes = maxReachedNodes;
+    this.maxRetainedBytes = maxRetainedBytes;
+  }
+
+  /** A budget with the caps of the given one, which counts its usage from scratch. */
+  public ResourceBudget(ResourceBudget caps) {
+    this(
+        caps.maxTransitionsPerAutomaton,
+        caps.maxGeneratedStates,
+        caps.maxReachedNodes,
+        caps.maxRetainedBytes);
+  }
+
+  /**
+   * Forgets the usage counted so far, e.g. when the automata and solvers the budget is set on start
+   * a new query. The transitions stay capped per automaton, including those added before.
+   */
+  public void reset() {
+    generatedStates.set(0);
+    reachedNodes.set(0);
+    retainedBytes.set(0);
+  }
+
+  /** @param transitions The number of transitions of the automaton including the new one. */
+  public void onTransitionAdded(int transitions) {
+    if (maxTransitionsPerAutomaton > 0 && transitions > maxTransitionsPerAutomaton) {
+      throw new ResourceBudgetExceededException(
+          Resource.TRANSITIONS, transitions, maxTransitionsPerAutomaton);
+    }
+    retain(TRANSITION_BYTES);
+  }
+
+  public void onGeneratedState() {
+    int generated = generatedStates.incrementAndGet();
+    if (maxGeneratedStates > 0 && generated > maxGeneratedStates) {
+      throw new ResourceBudgetExceededException(
+          Resource.GENERATED_STATES, generated, maxGeneratedStates);
+    }
+    retain(GENERATED_STATE_BYTES);
+  }
+
+  public void onReachedNode() {
+    int reached = reachedNodes.incrementAndGet();
+    if (maxReachedNodes > 0 && reached > maxReachedNodes) {
+      throw new ResourceBudgetExceededException(Resource.REACHED_NODES, reached, maxReachedNodes);
+    }
+    retain(REACHED_NODE_BYTES);
+  }
+
+  private void retain(int bytes) {
+    long retained = retainedBytes.addAndGet(bytes);
+    if (maxRetainedBytes > 0 && retained > maxRetainedBytes) {
+      throw new ResourceBudgetExceededException(
+          Resource.RETAINED_BYTES, retained, maxRetainedBytes);
+    }
+  }
+
+  public int getGeneratedStates() {
+    return generatedStates.get();
+  }
+
+  public int getReachedNodes() {
+    return reachedNodes.get();
+  }
+
+  /** @return The estimated bytes retained, compaction of the automata is not accounted for. */
+  public long getRetainedBytes() {
+    return retainedBytes.get();
+  }
+
+  @Override
+  public String toString() {
+    return "ResourceBudget [generatedStates="
+        + generatedStates
+        + "/"
+        + maxGeneratedStates
+        + ", reachedNodes="
+        + reachedNodes
+        + "/"
+        + maxReachedNodes
+        + ", retainedBytes="
+        + retainedBytes
+        + "/"
+        + maxRetainedBytes
+        + "]";
+  }
+}
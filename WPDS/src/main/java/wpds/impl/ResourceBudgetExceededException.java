@@ -0,0 +1,40 @@
+/**
+ * ***************************************************************************** Copyright (c) 2018
+ * Fraunhofer IEM, Paderborn, Germany. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * <p>SPDX-License-Identifier: EPL-2.0
+ *
+ * <p>Contributors: Johannes Spaeth - initial API and implementation
+ * *****************************************************************************
+ */
+package wpds.impl;
+
+import wpds.impl.ResourceBudget.Resource;
+
+/** Thrown by a {@link ResourceBudget} upon the insertion that exceeds one of its caps. */
+public class ResourceBudgetExceededException extends RuntimeException {
+  private final Resource resource;
+  private final long usage;
+  private final long limit;
+
+  public ResourceBudgetExceededException(Resource resource, long usage, long limit) {
+    super("Resource budget exceeded: " + resource + " " + usage + " > " + limit);
+    this.resource = resource;
+    this.usage = usage;
+    this.limit = limit;
+  }
+
+  public Resource getResource() {
+    return resource;
+  }
+
+  public long getUsage() {
+    return usage;
+  }
+
+  public long getLimit() {
+    return limit;
+  }
+}
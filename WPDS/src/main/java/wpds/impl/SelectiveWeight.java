@@ -0,0 +1,21 @@
+/**
+ * ***************************************************************************** Copyright (c) 2018
+ * Fraunhofer IEM, Paderborn, Germany. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * <p>SPDX-License-Identifier: EPL-2.0
+ *
+ * <p>Contributors: Johannes Spaeth - initial API and implementation
+ * *****************************************************************************
+ */
+package wpds.impl;
+
+/**
+ * Optional capability of a {@link Weight} whose combine selects the smaller of both weights
+ * according to {@link #compareTo} and whose extend never yields a weight smaller than the extended
+ * one, like shortest distances. {@link WeightedPAutomaton#getTransitionsToFinalWeights} then
+ * processes the states in the order of their weights, which settles each state once. Weights
+ * violating these properties still give the same result, at the cost of revisiting states.
+ */
+public interface SelectiveWeight<W extends Weight> extends Comparable<W> {}
@@ -0,0 +1,28 @@
+/**
+ * ***************************************************************************** Copyright (c) 2018
+ * Fraunhofer IEM, Paderborn, Germany. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * <p>SPDX-License-Identifier: EPL-2.0
+ *
+ * <p>Contributors: Johannes Spaeth - initial API and implementation
+ * *****************************************************************************
+ */
+package wpds.impl;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes the labels, states or weights of an automaton for an {@link AutomatonSnapshot}. Each
+ * value is encoded separately, equal values must be encoded to bytes that decode to equal values.
+ * A snapshot looks states up by their encoding, a state codec must encode equal states to the
+ * same bytes.
+ */
+public interface SnapshotCodec<T> {
+
+  byte[] encode(T value);
+
+  /** @param bytes Holds exactly the bytes of one encoded value, from its position to its limit. */
+  T decode(ByteBuffer bytes);
+}
@@ -20,7 +20,7 @@ public class Transition<N extends Location, D extends State> implements Edge<D,
   private final D s1;
   private final N l1;
   private final D s2;
-  private int hashCode;
+  private final int hashCode;
 
   public Transition(D s1, N l1, D s2) {
     assert s1 != null;
@@ -30,6 +30,17 @@ public class Transition<N extends Location, D extends State> implements Edge<D,
     this.l1 = l1;
     this.s2 = s2;
     if (l1 instanceof Wildcard) throw new RuntimeException("No wildcards allowed!");
+    this.hashCode = hash(s1, l1, s2);
+  }
+
+  /** @return The hash code of a transition with the given start, label and target. */
+  static int hash(Object s1, Object l1, Object s2) {
+    final int prime = 31;
+    int result = 1;
+    result = prime * result + ((l1 == null) ? 0 : l1.hashCode());
+    result = prime * result + ((s1 == null) ? 0 : s1.hashCode());
+    result = prime * result + ((s2 == null) ? 0 : s2.hashCode());
+    return result;
   }
 
   public Configuration<N, D> getStartConfig() {
@@ -46,13 +57,6 @@ public class Transition<N extends Location, D extends State> implements Edge<D,
 
   @Override
   public int hashCode() {
-    if (hashCode != 0) return hashCode;
-    final int prime = 31;
-    int result = 1;
-    result = prime * result + ((l1 == null) ? 0 : l1.hashCode());
-    result = prime * result + ((s1 == null) ? 0 : s1.hashCode());
-    result = prime * result + ((s2 == null) ? 0 : s2.hashCode());
-    hashCode = result;
     return hashCode;
   }
 
@@ -62,6 +66,7 @@ public class Transition<N extends Location, D extends State> implements Edge<D,
     if (obj == null) return false;
     if (getClass() != obj.getClass()) return false;
     Transition other = (Transition) obj;
+    if (hashCode != other.hashCode) return false;
     if (l1 == null) {
       if (other.l1 != null) return false;
     } else if (!l1.equals(other.l1)) return false;
@@ -0,0 +1,108 @@
+/**
+ * ***************************************************************************** Copyright (c) 2018
+ * Fraunhofer IEM, Paderborn, Germany. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * <p>SPDX-License-Identifier: EPL-2.0
+ *
+ * <p>Contributors: Johannes Spaeth - initial API and implementation
+ * *****************************************************************************
+ */
+package wpds.impl;
+
+import wpds.interfaces.Location;
+import wpds.interfaces.State;
+
+/**
+ * Resolves transitions with equal start, label and target to one canonical instance. Each {@link
+ * WeightedPAutomaton} interns the transitions added to it, all collections of the automaton (and
+ * the transitions passed to its listeners) hold the canonical instances only and may hence be
+ * identity based. {@link #find(State, Location, State)} looks up a transition without allocating
+ * one.
+ */
+public class TransitionInterner<N extends Location, D extends State> {
+  private Transition<N, D>[] table = newTable(16);
+  private int size;
+
+  /** @return The canonical instance of the transition, the transition itself if it is new. */
+  public Transition<N, D> intern(Transition<N, D> trans) {
+    int mask = table.length - 1;
+    int slot = spread(trans.hashCode()) & mask;
+    Transition<N, D> key;
+    while ((key = table[slot]) != null) {
+      if (key == trans || key.equals(trans)) {
+        return key;
+      }
+      slot = (slot + 1) & mask;
+    }
+    table[slot] = trans;
+    if (++size * 2 > table.length) {
+      rehash();
+    }
+    return trans;
+  }
+
+  /** @return The canonical instance of the transition or null if it has not been interned. */
+  public Transition<N, D> find(Transition<N, D> trans) {
+    int mask = table.length - 1;
+    int slot = spread(trans.hashCode()) & mask;
+    Transition<N, D> key;
+    while ((key = table[slot]) != null) {
+      if (key == trans || key.equals(trans)) {
+        return key;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return null;
+  }
+
+  /**
+   * @return The canonical instance of the transition from start to target with the label or null
+   *     if it has not been interned.
+   */
+  public Transition<N, D> find(D start, N label, D target) {
+    int mask = table.length - 1;
+    int hashCode = Transition.hash(start, label, target);
+    int slot = spread(hashCode) & mask;
+    Transition<N, D> key;
+    while ((key = table[slot]) != null) {
+      if (key.hashCode() == hashCode
+          && key.getStart().equals(start)
+          && key.getLabel().equals(label)
+          && key.getTarget().equals(target)) {
+        return key;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return null;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  private void rehash() {
+    Transition<N, D>[] oldTable = table;
+    table = newTable(oldTable.length * 2);
+    int mask = table.length - 1;
+    for (Transition<N, D> trans : oldTable) {
+      if (trans == null) continue;
+      int slot = spread(trans.hashCode()) & mask;
+      while (table[slot] != null) {
+        slot = (slot + 1) & mask;
+      }
+      table[slot] = trans;
+    }
+  }
+
+  private static int spread(int hashCode) {
+    int h = hashCode * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <N extends Location, D extends State> Transition<N, D>[] newTable(int capacity) {
+    return new Transition[capacity];
+  }
+}
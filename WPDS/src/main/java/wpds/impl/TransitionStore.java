@@ -0,0 +1,47 @@
+/**
+ * ***************************************************************************** Copyright (c) 2018
+ * Fraunhofer IEM, Paderborn, Germany. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * <p>SPDX-License-Identifier: EPL-2.0
+ *
+ * <p>Contributors: Johannes Spaeth - initial API and implementation
+ * *****************************************************************************
+ */
+package wpds.impl;
+
+import java.util.Collection;
+import wpds.interfaces.Location;
+import wpds.interfaces.State;
+
+/**
+ * Storage backend of a {@link WeightedPAutomaton}: the set of transitions, their weights and the
+ * indices over the start and target states. All collections returned are unmodifiable and may be
+ * iterated while transitions are added, such an iteration covers the transitions present when it
+ * started. The automaton only passes the canonical instances of transitions (see {@link
+ * TransitionInterner}).
+ */
+public interface TransitionStore<N extends Location, D extends State, W extends Weight> {
+
+  /** @return true if the transition was not contained before. */
+  boolean add(Transition<N, D> trans);
+
+  boolean contains(Transition<N, D> trans);
+
+  /** @return The weight of the transition or null if none has been set yet. */
+  W getWeight(Transition<N, D> trans);
+
+  /** Sets the weight of a transition that has been added before. */
+  void setWeight(Transition<N, D> trans, W weight);
+
+  int size();
+
+  Collection<Transition<N, D>> getTransitions();
+
+  Collection<Transition<N, D>> getTransitionsOutOf(D state);
+
+  Collection<Transition<N, D>> getTransitionsOutOf(D state, N label);
+
+  Collection<Transition<N, D>> getTransitionsInto(D state);
+}
@@ -0,0 +1,156 @@
+/**
+ * ***************************************************************************** Copyright (c) 2018
+ * Fraunhofer IEM, Paderborn, Germany. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * <p>SPDX-License-Identifier: EPL-2.0
+ *
+ * <p>Contributors: Johannes Spaeth - initial API and implementation
+ * *****************************************************************************
+ */
+package wpds.impl;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Hash-conses the weights of an analysis. All weights returned are canonical: equal weights are
+ * represented by the same instance, such that two canonical weights are equal iff they are
+ * identical. On top, the results of {@link Weight#extendWith} and {@link Weight#combineWith} are
+ * memoized in bounded LRU caches keyed by the identity of the canonical operands.
+ *
+ * <p>Canonicalization is only as precise as {@link Weight#equals}: of two equal weights, the first
+ * one seen represents both. This is the same assumption the fixed point check of {@link
+ * WeightedPAutomaton} makes. The canonical instances are kept as long as the factory is reachable,
+ * so a factory should be scoped to one analysis (e.g. one solver).
+ */
+public class WeightFactory<W extends Weight> {
+  public static final int DEFAULT_CACHE_SIZE = 10000;
+
+  private final Map<W, W> canonical = Maps.newHashMap();
+  private final Set<W> canonicalInstances = Sets.newIdentityHashSet();
+  private final OperationCache<W> extendCache;
+  private final OperationCache<W> combineCache;
+  private long hits;
+  private long misses;
+
+  public WeightFactory() {
+    this(DEFAULT_CACHE_SIZE);
+  }
+
+  /** @param cacheSize The maximal number of results memoized per operation. */
+  public WeightFactory(int cacheSize) {
+    this.extendCache = new OperationCache<>(cacheSize);
+    this.combineCache = new OperationCache<>(cacheSize);
+  }
+
+  /** @return The canonical instance of the weight. */
+  public W canonical(W weight) {
+    if (canonicalInstances.contains(weight)) {
+      return weight;
+    }
+    W existing = canonical.putIfAbsent(weight, weight);
+    if (existing != null) {
+      return existing;
+    }
+    canonicalInstances.add(weight);
+    return weight;
+  }
+
+  /** @return The canonical weight of {@code first.extendWith(second)}. */
+  @SuppressWarnings("unchecked")
+  public W extend(W first, W second) {
+    first = canonical(first);
+    second = canonical(second);
+    OperationKey key = new OperationKey(first, second);
+    W result = extendCache.get(key);
+    if (result == null) {
+      misses++;
+      result = canonical((W) first.extendWith(second));
+      extendCache.put(key, result);
+    } else {
+      hits++;
+    }
+    return result;
+  }
+
+  /** @return The canonical weight of {@code first.combineWith(second)}. */
+  @SuppressWarnings("unchecked")
+  public W combine(W first, W second) {
+    first = canonical(first);
+    second = canonical(second);
+    OperationKey key = new OperationKey(first, second);
+    W result = combineCache.get(key);
+    if (result == null) {
+      misses++;
+      result = canonical((W) first.combineWith(second));
+      combineCache.put(key, result);
+    } else {
+      hits++;
+    }
+    return result;
+  }
+
+  /** @return The number of canonical weights. */
+  public int size() {
+    return canonical.size();
+  }
+
+  /** @return The number of extend and combine operations answered from the caches. */
+  public long getHits() {
+    return hits;
+  }
+
+  /** @return The number of extend and combine operations that were computed. */
+  public long getMisses() {
+    return misses;
+  }
+
+  @Override
+  public String toString() {
+    return "WeightFactory (" + size() + " weights, " + hits + " hits, " + misses + " misses)";
+  }
+
+  /** A pair of canonical operands, compared by identity. */
+  private static class OperationKey {
+    private final Weight first;
+    private final Weight second;
+    private final int hashCode;
+
+    private OperationKey(Weight first, Weight second) {
+      this.first = first;
+      this.second = second;
+      this.hashCode = 31 * System.identityHashCode(first) + System.identityHashCode(second);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof OperationKey)) return false;
+      OperationKey other = (OperationKey) obj;
+      return first == other.first && second == other.second;
+    }
+  }
+
+  private static class OperationCache<W> extends LinkedHashMap<OperationKey, W> {
+    private final int maxSize;
+
+    private OperationCache(int maxSize) {
+      super(16, 0.75f, true);
+      this.maxSize = maxSize;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<OperationKey, W> eldest) {
+      return size() > maxSize;
+    }
+  }
+}
@@ -18,28 +18,33 @@ import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
+import com.google.common.collect.Multimaps;
 import com.google.common.collect.Sets;
 import com.google.common.collect.Table;
+import java.util.AbstractMap;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.function.Predicate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import pathexpression.Edge;
 import pathexpression.IRegEx;
 import pathexpression.LabeledGraph;
-import pathexpression.PathExpressionComputer;
 import pathexpression.RegEx;
+import wpds.interfaces.Empty;
 import wpds.interfaces.ForwardDFSEpsilonVisitor;
 import wpds.interfaces.ForwardDFSVisitor;
 import wpds.interfaces.Location;
 import wpds.interfaces.ReachabilityListener;
+import wpds.interfaces.ReachabilityVisitor;
 import wpds.interfaces.State;
 import wpds.interfaces.WPAStateListener;
 import wpds.interfaces.WPAUpdateListener;
@@ -47,23 +52,33 @@ import wpds.interfaces.WPAUpdateListener;
 public abstract class WeightedPAutomaton<N extends Location, D extends State, W extends Weight>
     implements LabeledGraph<D, N> {
   private static final Logger LOGGER = LoggerFactory.getLogger(WeightedPAutomaton.class);
-  private Map<Transition<N, D>, W> transitionToWeights = new HashMap<>();
   // Set Q is implicit
   // Weighted Pushdown Systems and their Application to Interprocedural
   // Dataflow Analysis
-  protected Set<Transition<N, D>> transitions = Sets.newHashSet();
+  private TransitionStore<N, D, W> transitions = createTransitionStore();
+  // Canonical instances of the transitions, the store and the maps below only hold these
+  private TransitionInterner<N, D> transitionInterner = new TransitionInterner<>();
   // set F in paper [Reps2003]
   protected Set<D> finalState = Sets.newHashSet();
   protected Multimap<D, D> initialStatesToSource = HashMultimap.create();
   // set P in paper [Reps2003]
   protected Set<D> states = Sets.newHashSet();
-  private final Multimap<D, Transition<N, D>> transitionsOutOf = HashMultimap.create();
-  private final Multimap<D, Transition<N, D>> transitionsInto = HashMultimap.create();
-  private Set<WPAUpdateListener<N, D, W>> listeners = Sets.newHashSet();
-  private Multimap<D, WPAStateListener<N, D, W>> stateListeners = HashMultimap.create();
+  private ListenerList<WPAUpdateListener<N, D, W>> listeners = new ListenerList<>();
+  private final Map<D, ListenerList<WPAStateListener<N, D, W>>> stateListeners =
+      Maps.newHashMap();
   private Map<D, ForwardDFSVisitor<N, D, W>> stateToDFS = Maps.newHashMap();
   private Map<D, ForwardDFSVisitor<N, D, W>> stateToEpsilonDFS = Maps.newHashMap();
   private Set<WeightedPAutomaton<N, D, W>> nestedAutomatons = Sets.newHashSet();
+  // Inverse of nestedAutomatons, the listeners of the parents are consulted instead of copied
+  private final Set<WeightedPAutomaton<N, D, W>> parents = Sets.newHashSet();
+  // This automaton followed by all automata it is transitively nested in, null if outdated
+  private List<WeightedPAutomaton<N, D, W>> ancestors;
+  // Of a nested automaton: the update and state listeners of its ancestors without duplicates,
+  // dispatched to by index. Built on first dispatch, extended on registration, null if outdated.
+  private ListenerList<WPAUpdateListener<N, D, W>> inheritedListeners;
+  private Map<D, ListenerList<WPAStateListener<N, D, W>>> inheritedStateListeners;
+  // State -> automata transitively nested in this one that contain the state
+  private final Multimap<D, WeightedPAutomaton<N, D, W>> nestedContaining = HashMultimap.create();
   private Set<NestedAutomatonListener<N, D, W>> nestedAutomataListeners = Sets.newHashSet();
   private Map<D, ReachabilityListener<N, D>> stateToEpsilonReachabilityListener = Maps.newHashMap();
   private Map<D, ReachabilityListener<N, D>> stateToReachabilityListener = Maps.newHashMap();
@@ -71,25 +86,72 @@ public abstract class WeightedPAutomaton<N extends Location, D extends State, W
   private Set<ConnectPushListener<N, D, W>> conntectedPushListeners = Sets.newHashSet();
   private Set<UnbalancedPopListener<N, D, W>> unbalancedPopListeners = Sets.newHashSet();
   private Map<UnbalancedPopEntry, W> unbalancedPops = Maps.newHashMap();
-  private Map<Transition<N, D>, W> transitionsToFinalWeights = Maps.newHashMap();
-  private ForwardDFSVisitor<N, D, W> dfsVisitor;
-  private ForwardDFSVisitor<N, D, W> dfsEpsVisitor;
+  private Map<Transition<N, D>, W> transitionsToFinalWeights;
+  private long finalWeightsVersion;
+  // Incremented whenever a transition, a weight or an initial state is added
+  private int modifications;
+  private ReachabilityVisitor<N, D, W> dfsVisitor;
+  private ReachabilityVisitor<N, D, W> dfsEpsVisitor;
+  private boolean useReachabilityIndex;
   public int failedAdditions;
   public int failedDirectAdditions;
   private WeightedPAutomaton<N, D, W> initialAutomaton;
-  private PathExpressionComputer<D, N> pathExpressionComputer;
-  private int lastStates = 0;
+  private D nestedInitialState;
+  private PathExpressionCache<N, D> pathExpressions = new PathExpressionCache<>(this);
   private Stopwatch watch = Stopwatch.createUnstarted();
   private Map<D, Integer> stateToDistanceToInitial = Maps.newHashMap();
   private Map<D, Integer> stateToUnbalancedDistance = Maps.newHashMap();
-  private final Map<D, Transition<N, D>> stateCreatingTransition = Maps.newHashMap();
+  private Map<D, Transition<N, D>> stateCreatingTransition = Maps.newHashMap();
+  private WorklistScheduler scheduler;
+  // Transitions awaiting dispatch by the scheduler -> weight at their last dispatch
+  private final Map<Transition<N, D>, W> pendingDispatch = Maps.newIdentityHashMap();
+  private boolean propagateWeightDeltas;
+  private WeightFactory<W> weightFactory;
+  private ResourceBudget budget;
 
   public abstract D createState(D d, N loc);
 
   public abstract boolean isGeneratedState(D d);
 
+  /**
+   * Creates the backend holding the transitions and weights of this automaton. Override to return
+   * an {@link InternedTransitionStore} for a compact representation of large automata.
+   */
+  protected TransitionStore<N, D, W> createTransitionStore() {
+    return new HashTransitionStore<>();
+  }
+
   public Collection<Transition<N, D>> getTransitions() {
-    return Lists.newArrayList(transitions);
+    return Lists.newArrayList(transitions.getTransitions());
+  }
+
+  /** @return An unmodifiable view on all transitions leaving the given state. */
+  public Collection<Transition<N, D>> getTransitionsOutOf(D state) {
+    return transitions.getTransitionsOutOf(state);
+  }
+
+  /** @return An unmodifiable view on the transitions leaving the given state with the label. */
+  public Collection<Transition<N, D>> getTransitionsOutOf(D state, N label) {
+    return transitions.getTransitionsOutOf(state, label);
+  }
+
+  /** @return An unmodifiable view on all transitions leading to the given state. */
+  public Collection<Transition<N, D>> getTransitionsInto(D state) {
+    return transitions.getTransitionsInto(state);
+  }
+
+  public boolean containsTransition(Transition<N, D> trans) {
+    Transition<N, D> canonical = transitionInterner.find(trans);
+    return canonical != null && transitions.contains(canonical);
+  }
+
+  /**
+   * Looks up a transition without allocating one.
+   *
+   * @return The canonical instance of the transition or null if the automaton does not contain it.
+   */
+  public Transition<N, D> getTransition(D start, N label, D target) {
+    return transitionInterner.find(start, label, target);
   }
 
   public boolean addTransition(Transition<N, D> trans) {
@@ -109,7 +171,11 @@ public abstract class WeightedPAutomaton<N extends Location, D extends State, W
     s += "\tInitialStates:" + initialStatesToSource.keySet() + "\n";
     s += "\tFinalStates:" + finalState + "\n";
     s += "\tWeightToTransitions:\n\t\t";
-    s += Joiner.on("\n\t\t").join(transitionToWeights.entrySet());
+    List<String> weightToTransitions = Lists.newArrayList();
+    for (Transition<N, D> t : transitions.getTransitions()) {
+      weightToTransitions.add(t + "=" + transitions.getWeight(t));
+    }
+    s += Joiner.on("\n\t\t").join(weightToTransitions);
 
     for (WeightedPAutomaton<N, D, W> nested : nestedAutomatons) {
       s += "\n";
@@ -143,8 +209,9 @@ public abstract class WeightedPAutomaton<N extends Location, D extends State, W
     if (SUMMARIZE) {
       Table<N, D, Set<Transition<N, D>>> mergableStates = HashBasedTable.create();
       for (D source : states) {
-        if (transitionsInto.get(source).isEmpty() && transitionsOutOf.get(source).size() == 1) {
-          for (Transition<N, D> t : transitionsOutOf.get(source)) {
+        if (transitions.getTransitionsInto(source).isEmpty()
+            && transitions.getTransitionsOutOf(source).size() == 1) {
+          for (Transition<N, D> t : transitions.getTransitionsOutOf(source)) {
             Set<Transition<N, D>> set = mergableStates.get(t.getLabel(), t.getTarget());
             if (set == null) {
               set = Sets.newHashSet();
@@ -174,14 +241,14 @@ public abstract class WeightedPAutomaton<N extends Location, D extends State, W
       }
     }
     for (D source : states) {
-      Collection<Transition<N, D>> collection = transitionsOutOf.get(source);
+      Collection<Transition<N, D>> collection = transitions.getTransitionsOutOf(source);
 
       for (D target : states) {
         List<String> labels = Lists.newLinkedList();
         for (Transition<N, D> t : collection) {
           if (removableTrans.contains(t)) continue;
           if (t.getTarget().equals(target)) {
-            labels.add(escapeQuotes(t.getLabel().toString()) + " W: " + transitionToWeights.get(t));
+            labels.add(escapeQuotes(t.getLabel().toString()) + " W: " + transitions.getWeight(t));
           }
         }
         if (!labels.isEmpty()) {
@@ -222,7 +289,7 @@ public abstract class WeightedPAutomaton<N extends Location, D extends State, W
 
   public String toLabelGroupedDotString() {
     HashBasedTable<D, N, Collection<D>> groupedByTargetAndLabel = HashBasedTable.create();
-    for (Transition<N, D> t : transitions) {
+    for (Transition<N, D> t : transitions.getTransitions()) {
       Collection<D> collection = groupedByTargetAndLabel.get(t.getTarget(), t.getLabel());
       if (collection == null) collection = Sets.newHashSet();
       collection.add(t.getStart());
@@ -250,10 +317,9 @@ public abstract class WeightedPAutomaton<N extends Location, D extends State, W
   public abstract N epsilon();
 
   public IRegEx<N> extractLanguage(D from) {
-    PathExpressionComputer<D, N> expr = new PathExpressionComputer<>(this);
     IRegEx<N> res = null;
     for (D finalState : getFinalState()) {
-      IRegEx<N> regEx = expr.getExpressionBetween(from, finalState);
+      IRegEx<N> regEx = pathExpressions.getExpressionBetween(from, finalState);
       if (res == null) {
         res = regEx;
       } else {
@@ -265,10 +331,7 @@ public abstract class WeightedPAutomaton<N extends Location, D extends State, W
   }
 
   public IRegEx<N> extractLanguage(D from, D to) {
-    PathExpressionComputer<D, N> expr = new PathExpressionComputer<>(this);
-    IRegEx<N> res = expr.getExpressionBetween(from, to);
-    if (res == null) return new RegEx.EmptySet<N>();
-    return res;
+    return pathExpressions.getExpressionBetween(from, to);
   }
 
   public Set<D> getStates() {
@@ -277,7 +340,7 @@ public abstract class WeightedPAutomaton<N extends Location, D extends State, W
 
   public Set<Edge<D, N>> getEdges() {
     Set<Edge<D, N>> trans = Sets.newHashSet();
-    for (Edge<D, N> tran : transitions) {
+    for (Edge<D, N> tran : transitions.getTransitions()) {
       if (!tran.getLabel().equals(epsilon())) {
         trans.add(new Transition<N, D>(tran.getTarget(), tran.getLabel(), tran.getStart()));
       }
@@ -302,36 +365,282 @@ public abstract class WeightedPAutomaton<N extends Location, D extends State, W
     if (!watch.isRunning()) {
       watch.start();
     }
-    transitionsOutOf.get(trans.getStart()).add(trans);
-    transitionsInto.get(trans.getTarget()).add(trans);
+    if (transitions instanceof CompactTransitionStore) {
+      thaw();
+    }
+    trans = transitionInterner.intern(trans);
+    boolean added = transitions.add(trans);
+    if (added) {
+      pathExpressions.onTransitionAdded(trans);
+    }
     if (states.add(trans.getTarget())) {
       stateCreatingTransition.put(trans.getTarget(), trans);
+      onStateAdded(trans.getTarget());
     }
-    states.add(trans.getStart());
-    boolean added = transitions.add(trans);
-    W oldWeight = transitionToWeights.get(trans);
-    W newWeight = (W) (oldWeight == null ? weight : oldWeight.combineWith(weight));
-
-    if (!newWeight.equals(oldWeight)) {
-      transitionToWeights.put(trans, newWeight);
-
-      for (WPAUpdateListener<N, D, W> l : Lists.newArrayList(listeners)) {
-        l.onWeightAdded(trans, newWeight, this);
-      }
-      for (WPAStateListener<N, D, W> l : Lists.newArrayList(stateListeners.get(trans.getStart()))) {
-        l.onOutTransitionAdded(trans, newWeight, this);
+    if (states.add(trans.getStart())) {
+      onStateAdded(trans.getStart());
+    }
+    W oldWeight = transitions.getWeight(trans);
+    W newWeight;
+    boolean changed;
+    if (weightFactory == null) {
+      newWeight = (W) (oldWeight == null ? weight : oldWeight.combineWith(weight));
+      changed = !newWeight.equals(oldWeight);
+    } else {
+      // Canonical weights are equal iff they are identical
+      newWeight =
+          oldWeight == null
+              ? weightFactory.canonical(weight)
+              : weightFactory.combine(oldWeight, weight);
+      changed = newWeight != oldWeight;
+    }
+
+    if (changed) {
+      transitions.setWeight(trans, newWeight);
+      if (added && budget != null) {
+        // Before the dispatch, the automaton stays consistent if the budget is exceeded
+        budget.onTransitionAdded(transitions.size());
       }
-      for (WPAStateListener<N, D, W> l :
-          Lists.newArrayList(stateListeners.get(trans.getTarget()))) {
-        l.onInTransitionAdded(trans, newWeight, this);
+      if (scheduler == null) {
+        dispatch(trans, newWeight, delta(oldWeight, newWeight));
+      } else {
+        if (!pendingDispatch.containsKey(trans)) {
+          pendingDispatch.put(trans, oldWeight);
+          scheduler.schedule(this, trans, distanceToInitial);
+        }
+        scheduler.drain();
       }
       added = true;
     }
     if (watch.isRunning()) watch.stop();
-    if (!added) failedAdditions++;
+    if (added) {
+      modifications++;
+    } else {
+      failedAdditions++;
+    }
     return added;
   }
 
+  /** Dispatches a transition scheduled by the {@link WorklistScheduler} with its current weight. */
+  void dispatchPending(Transition<N, D> trans) {
+    if (pendingDispatch.containsKey(trans)) {
+      W previous = pendingDispatch.remove(trans);
+      W weight = transitions.getWeight(trans);
+      dispatch(trans, weight, delta(previous, weight));
+    }
+  }
+
+  /** Forgets a transition whose dispatch the {@link WorklistScheduler} abandoned. */
+  void discardPending(Transition<N, D> trans) {
+    pendingDispatch.remove(trans);
+  }
+
+  @SuppressWarnings("unchecked")
+  private W delta(W oldWeight, W newWeight) {
+    if (propagateWeightDeltas && oldWeight != null && newWeight instanceof DifferentialWeight) {
+      return ((DifferentialWeight<W>) newWeight).difference(oldWeight);
+    }
+    return newWeight;
+  }
+
+  /**
+   * @return The weight to replay the transition with to a listener registered now, null to skip it.
+   *     A pending transition is delivered to all listeners registered by the time it is
+   *     dispatched, possibly as the delta to the weight dispatched before. Only that earlier
+   *     weight is replayed then, a transition not dispatched yet is skipped.
+   */
+  private W replayedWeight(Transition<N, D> trans) {
+    if (!pendingDispatch.isEmpty() && pendingDispatch.containsKey(trans)) {
+      return pendingDispatch.get(trans);
+    }
+    return transitions.getWeight(trans);
+  }
+
+  private void dispatch(Transition<N, D> trans, W newWeight, W delta) {
+    // Dispatch by index up to the sizes at this point, listeners registered meanwhile are replayed
+    // the transition upon registration (see ListenerList). A nested automaton dispatches to the
+    // listeners of all automata it is nested in, a listener held by several is notified once.
+    ListenerList<WPAUpdateListener<N, D, W>> update = updateListenersForDispatch();
+    ListenerList<WPAStateListener<N, D, W>> out = stateListenersForDispatch(trans.getStart());
+    ListenerList<WPAStateListener<N, D, W>> in = stateListenersForDispatch(trans.getTarget());
+    int updateCount = update.size();
+    int outCount = out == null ? 0 : out.size();
+    int inCount = in == null ? 0 : in.size();
+    for (int i = 0; i < updateCount; i++) {
+      update.get(i).onWeightAdded(trans, newWeight, this);
+    }
+    for (int i = 0; i < outCount; i++) {
+      WPAStateListener<N, D, W> l = out.get(i);
+      l.onOutTransitionAdded(trans, l.acceptsWeightDeltas() ? delta : newWeight, this);
+    }
+    for (int i = 0; i < inCount; i++) {
+      WPAStateListener<N, D, W> l = in.get(i);
+      l.onInTransitionAdded(trans, l.acceptsWeightDeltas() ? delta : newWeight, this);
+    }
+  }
+
+  private ListenerList<WPAUpdateListener<N, D, W>> updateListenersForDispatch() {
+    if (parents.isEmpty()) {
+      return listeners;
+    }
+    if (inheritedListeners == null) {
+      inheritedListeners = new ListenerList<>();
+      for (WeightedPAutomaton<N, D, W> aut : ancestors()) {
+        for (int i = 0, n = aut.listeners.size(); i < n; i++) {
+          inheritedListeners.add(aut.listeners.get(i));
+        }
+      }
+    }
+    return inheritedListeners;
+  }
+
+  /** @return The listeners of the state to dispatch to, null if there are none. */
+  private ListenerList<WPAStateListener<N, D, W>> stateListenersForDispatch(D state) {
+    if (parents.isEmpty()) {
+      return stateListeners.get(state);
+    }
+    if (inheritedStateListeners == null) {
+      inheritedStateListeners = Maps.newHashMap();
+    } else if (inheritedStateListeners.containsKey(state)) {
+      return inheritedStateListeners.get(state);
+    }
+    ListenerList<WPAStateListener<N, D, W>> view = null;
+    for (WeightedPAutomaton<N, D, W> aut : ancestors()) {
+      ListenerList<WPAStateListener<N, D, W>> listenersOfState = aut.stateListeners.get(state);
+      if (listenersOfState == null) {
+        continue;
+      }
+      if (view == null) {
+        view = new ListenerList<>();
+      }
+      for (int i = 0, n = listenersOfState.size(); i < n; i++) {
+        view.add(listenersOfState.get(i));
+      }
+    }
+    // Null is kept as well, the state has no listeners until one is registered
+    inheritedStateListeners.put(state, view);
+    return view;
+  }
+
+  /** Adds a listener registered at an ancestor to the views built for dispatch. */
+  private void inheritListener(WPAUpdateListener<N, D, W> l) {
+    if (inheritedListeners != null) {
+      inheritedListeners.add(l);
+    }
+  }
+
+  private void inheritListener(WPAStateListener<N, D, W> l) {
+    if (inheritedStateListeners == null) {
+      return;
+    }
+    ListenerList<WPAStateListener<N, D, W>> view = inheritedStateListeners.get(l.getState());
+    if (view != null) {
+      view.add(l);
+    } else {
+      // Rebuilt on the next dispatch
+      inheritedStateListeners.remove(l.getState());
+    }
+  }
+
+  /** Drops the views of the listeners to dispatch to, the ancestors or their listeners changed. */
+  private void invalidateInheritedListeners() {
+    inheritedListeners = null;
+    inheritedStateListeners = null;
+  }
+
+  /** @return This automaton followed by all automata it is transitively nested in. */
+  private List<WeightedPAutomaton<N, D, W>> ancestors() {
+    if (ancestors == null) {
+      Set<WeightedPAutomaton<N, D, W>> res = Sets.newLinkedHashSet();
+      LinkedList<WeightedPAutomaton<N, D, W>> worklist = Lists.newLinkedList();
+      worklist.add(this);
+      while (!worklist.isEmpty()) {
+        WeightedPAutomaton<N, D, W> aut = worklist.removeFirst();
+        if (res.add(aut)) {
+          worklist.addAll(aut.parents);
+        }
+      }
+      ancestors = Lists.newArrayList(res);
+    }
+    return ancestors;
+  }
+
+  /** @return This automaton and all automata transitively nested in it. */
+  private Set<WeightedPAutomaton<N, D, W>> descendants() {
+    Set<WeightedPAutomaton<N, D, W>> res = Sets.newLinkedHashSet();
+    LinkedList<WeightedPAutomaton<N, D, W>> worklist = Lists.newLinkedList();
+    worklist.add(this);
+    while (!worklist.isEmpty()) {
+      WeightedPAutomaton<N, D, W> aut = worklist.removeFirst();
+      if (res.add(aut)) {
+        worklist.addAll(aut.nestedAutomatons);
+      }
+    }
+    return res;
+  }
+
+  /** Indexes a new state at the ancestors, their state listeners are replayed only here. */
+  private void onStateAdded(D state) {
+    if (parents.isEmpty()) {
+      return;
+    }
+    for (WeightedPAutomaton<N, D, W> aut : ancestors()) {
+      if (aut != this) {
+        aut.nestedContaining.put(state, this);
+      }
+    }
+  }
+
+  /** @return Whether an ancestor other than the given one already delivers to the listener. */
+  private boolean inheritsFromOther(
+      WeightedPAutomaton<N, D, W> except, Predicate<WeightedPAutomaton<N, D, W>> holds) {
+    for (WeightedPAutomaton<N, D, W> aut : ancestors()) {
+      if (aut != except && holds.test(aut)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean holdsStateListener(WPAStateListener<N, D, W> l) {
+    ListenerList<WPAStateListener<N, D, W>> listenersOfState = stateListeners.get(l.getState());
+    return listenersOfState != null && listenersOfState.contains(l);
+  }
+
+  private void replay(WPAUpdateListener<N, D, W> listener) {
+    for (Transition<N, D> t : transitions.getTransitions()) {
+      W weight = replayedWeight(t);
+      if (weight == null) continue;
+      listener.onWeightAdded(t, weight, this);
+    }
+  }
+
+  private void replay(WPAStateListener<N, D, W> l) {
+    for (Transition<N, D> t : transitions.getTransitionsOutOf(l.getState())) {
+      W weight = replayedWeight(t);
+      if (weight == null) continue;
+      l.onOutTransitionAdded(t, weight, this);
+    }
+    for (Transition<N, D> t : transitions.getTransitionsInto(l.getState())) {
+      W weight = replayedWeight(t);
+      if (weight == null) continue;
+      l.onInTransitionAdded(t, weight, this);
+    }
+  }
+
+  private void replay(SummaryListener<N, D> l) {
+    for (Transition<N, D> edge : Lists.newArrayList(summaryEdges)) {
+      l.addedSummary(edge);
+    }
+  }
+
+  private void replay(UnbalancedPopListener<N, D, W> l) {
+    for (Entry<UnbalancedPopEntry, W> e : Lists.newArrayList(unbalancedPops.entrySet())) {
+      UnbalancedPopEntry t = e.getKey();
+      l.unbalancedPop(t.targetState, t.trans, e.getValue());
+    }
+  }
+
   protected int computeDistance(Transition<N, D> trans) {
     Integer distance;
     if (isUnbalancedState(trans.getTarget())) {
@@ -352,21 +661,37 @@ public abstract class WeightedPAutomaton<N extends Location, D extends State, W
   }
 
   public W getWeightFor(Transition<N, D> trans) {
-    return transitionToWeights.get(trans);
+    Transition<N, D> canonical = transitionInterner.find(trans);
+    return canonical == null ? null : transitions.getWeight(canonical);
   }
 
+  /**
+   * Registers the listener for all transitions of this automaton and of the automata nested in it.
+   * The nested automata consult the listener on dispatch (see {@link #addNestedAutomaton}).
+   */
   public void registerListener(WPAUpdateListener<N, D, W> listener) {
+    if (!parents.isEmpty() && inheritsFromOther(this, a -> a.listeners.contains(listener))) {
+      // Already delivered to by an automaton this one is nested in
+      return;
+    }
     if (!listeners.add(listener)) return;
-    for (Entry<Transition<N, D>, W> transAndWeight :
-        Lists.newArrayList(transitionToWeights.entrySet())) {
-      listener.onWeightAdded(transAndWeight.getKey(), transAndWeight.getValue(), this);
+    inheritListener(listener);
+    replay(listener);
+    if (nestedAutomatons.isEmpty()) {
+      return;
     }
-    for (WeightedPAutomaton<N, D, W> nested : Lists.newArrayList(nestedAutomatons)) {
-      nested.registerListener(listener);
+    for (WeightedPAutomaton<N, D, W> nested : descendants()) {
+      if (nested == this) {
+        continue;
+      }
+      nested.inheritListener(listener);
+      if (!nested.inheritsFromOther(this, a -> a.listeners.contains(listener))) {
+        nested.replay(listener);
+      }
     }
   }
 
-  private static int count = 0;
+  private int count = 0;
 
   private void increaseListenerCount(WPAStateListener<N, D, W> l) {
     count++;
@@ -378,19 +703,30 @@ public abstract class WeightedPAutomaton<N extends Location, D extends State, W
   public void onManyStateListenerRegister() {}
 
   public void registerListener(WPAStateListener<N, D, W> l) {
-    if (!stateListeners.put(l.getState(), l)) {
+    if (!parents.isEmpty() && inheritsFromOther(this, a -> a.holdsStateListener(l))) {
       return;
     }
-    increaseListenerCount(l);
-    for (Transition<N, D> t : Lists.newArrayList(transitionsOutOf.get(l.getState()))) {
-      l.onOutTransitionAdded(t, transitionToWeights.get(t), this);
+    ListenerList<WPAStateListener<N, D, W>> listenersOfState = stateListeners.get(l.getState());
+    if (listenersOfState == null) {
+      listenersOfState = new ListenerList<>();
+      stateListeners.put(l.getState(), listenersOfState);
     }
-    for (Transition<N, D> t : Lists.newArrayList(transitionsInto.get(l.getState()))) {
-      l.onInTransitionAdded(t, transitionToWeights.get(t), this);
+    if (!listenersOfState.add(l)) {
+      return;
     }
-
-    for (WeightedPAutomaton<N, D, W> nested : Lists.newArrayList(nestedAutomatons)) {
-      nested.registerListener(l);
+    increaseListenerCount(l);
+    inheritListener(l);
+    replay(l);
+    // Only the nested automata containing the state have transitions to replay or dispatch
+    Collection<WeightedPAutomaton<N, D, W>> containing = nestedContaining.get(l.getState());
+    if (containing.isEmpty()) {
+      return;
+    }
+    for (WeightedPAutomaton<N, D, W> nested : Lists.newArrayList(containing)) {
+      nested.inheritListener(l);
+      if (!nested.inheritsFromOther(this, a -> a.holdsStateListener(l))) {
+        nested.replay(l);
+      }
     }
   }
 
@@ -401,7 +737,10 @@ public abstract class WeightedPAutomaton<N extends Location, D extends State, W
   public void registerDFSListener(D state, ReachabilityListener<N, D> l) {
     stateToReachabilityListener.put(state, l);
     if (dfsVisitor == null) {
-      dfsVisitor = new ForwardDFSVisitor<N, D, W>(this);
+      dfsVisitor =
+          useReachabilityIndex
+              ? new ReachabilityIndex<N, D, W>(this)
+              : new ForwardDFSVisitor<N, D, W>(this);
       this.registerListener(dfsVisitor);
     }
     dfsVisitor.registerListener(state, l);
@@ -414,7 +753,15 @@ public abstract class WeightedPAutomaton<N extends Location, D extends State, W
   public void registerDFSEpsilonListener(D state, ReachabilityListener<N, D> l) {
     stateToEpsilonReachabilityListener.put(state, l);
     if (dfsEpsVisitor == null) {
-      dfsEpsVisitor = new ForwardDFSEpsilonVisitor<N, D, W>(this);
+      dfsEpsVisitor =
+          useReachabilityIndex
+              ? new ReachabilityIndex<N, D, W>(this) {
+                @Override
+                protected boolean continueWith(Transition<N, D> t) {
+                  return t.getLabel() instanceof Empty;
+                }
+              }
+              : new ForwardDFSEpsilonVisitor<N, D, W>(this);
       this.registerListener(dfsEpsVisitor);
     }
     for (WeightedPAutomaton<N, D, W> nested : Lists.newLinkedList(nestedAutomatons)) {
@@ -473,15 +820,40 @@ public abstract class WeightedPAutomaton<N extends Location, D extends State, W
             return "NESTED: \n" + super.toString();
           }
         };
+    nested.setScheduler(scheduler);
+    nested.setPropagateWeightDeltas(propagateWeightDeltas);
+    nested.setWeightFactory(weightFactory);
+    nested.setResourceBudget(budget);
+    nested.setUseReachabilityIndex(useReachabilityIndex);
+    nested.nestedInitialState = initialState;
     addNestedAutomaton(nested);
     return nested;
   }
 
+  /** @return The state this automaton was created for by {@link #createNestedAutomaton}. */
+  public D getNestedInitialState() {
+    return nestedInitialState;
+  }
+
+  public Set<WeightedPAutomaton<N, D, W>> getNestedAutomatons() {
+    return Collections.unmodifiableSet(nestedAutomatons);
+  }
+
   public void registerUnbalancedPopListener(UnbalancedPopListener<N, D, W> l) {
-    if (unbalancedPopListeners.add(l)) {
-      for (Entry<UnbalancedPopEntry, W> e : Lists.newArrayList(unbalancedPops.entrySet())) {
-        UnbalancedPopEntry t = e.getKey();
-        l.unbalancedPop(t.targetState, t.trans, e.getValue());
+    if (!parents.isEmpty() && inheritsFromOther(this, a -> a.unbalancedPopListeners.contains(l))) {
+      return;
+    }
+    if (!unbalancedPopListeners.add(l)) {
+      return;
+    }
+    replay(l);
+    if (nestedAutomatons.isEmpty()) {
+      return;
+    }
+    for (WeightedPAutomaton<N, D, W> nested : descendants()) {
+      if (nested != this
+          && !nested.inheritsFromOther(this, a -> a.unbalancedPopListeners.contains(l))) {
+        nested.replay(l);
       }
     }
   }
@@ -492,7 +864,11 @@ public abstract class WeightedPAutomaton<N extends Location, D extends State, W
     W newVal = (oldVal == null ? weight : (W) oldVal.combineWith(weight));
     if (!newVal.equals(oldVal)) {
       unbalancedPops.put(t, newVal);
-      for (UnbalancedPopListener<N, D, W> l : Lists.newArrayList(unbalancedPopListeners)) {
+      Set<UnbalancedPopListener<N, D, W>> notify = Sets.newLinkedHashSet();
+      for (WeightedPAutomaton<N, D, W> aut : ancestors()) {
+        notify.addAll(aut.unbalancedPopListeners);
+      }
+      for (UnbalancedPopListener<N, D, W> l : notify) {
         l.unbalancedPop(targetState, trans, newVal);
       }
     }
@@ -503,19 +879,31 @@ public abstract class WeightedPAutomaton<N extends Location, D extends State, W
 
   public void registerSummaryEdge(Transition<N, D> t) {
     if (summaryEdges.add(t)) {
-      for (SummaryListener<N, D> l : Lists.newArrayList(summaryEdgeListener)) {
+      Set<SummaryListener<N, D>> notify = Sets.newLinkedHashSet();
+      for (WeightedPAutomaton<N, D, W> aut : ancestors()) {
+        notify.addAll(aut.summaryEdgeListener);
+      }
+      for (SummaryListener<N, D> l : notify) {
         l.addedSummary(t);
       }
     }
   }
 
   public void addSummaryListener(SummaryListener<N, D> l) {
-    if (summaryEdgeListener.add(l)) {
-      for (Transition<N, D> edge : Lists.newArrayList(summaryEdges)) {
-        l.addedSummary(edge);
-      }
-      for (WeightedPAutomaton<N, D, W> nested : Lists.newArrayList(nestedAutomatons)) {
-        nested.addSummaryListener(l);
+    if (!parents.isEmpty() && inheritsFromOther(this, a -> a.summaryEdgeListener.contains(l))) {
+      return;
+    }
+    if (!summaryEdgeListener.add(l)) {
+      return;
+    }
+    replay(l);
+    if (nestedAutomatons.isEmpty()) {
+      return;
+    }
+    for (WeightedPAutomaton<N, D, W> nested : descendants()) {
+      if (nested != this
+          && !nested.inheritsFromOther(this, a -> a.summaryEdgeListener.contains(l))) {
+        nested.replay(l);
       }
     }
   }
@@ -611,63 +999,122 @@ public abstract class WeightedPAutomaton<N extends Location, D extends State, W
     }
   }
 
+  /**
+   * Computes, for each transition on a path to an initial state (via generated states) of this or
+   * a nested automaton, the combined weight of these paths. The weights are propagated backwards
+   * from the initial states by a worklist over the transitions into each state. Weights
+   * implementing {@link SelectiveWeight} are processed cheapest state first, which settles each
+   * state once. The result is cached until this or a nested automaton changes.
+   *
+   * @return An unmodifiable map from the transitions to their weights.
+   */
   public Map<Transition<N, D>, W> getTransitionsToFinalWeights() {
+    List<WeightedPAutomaton<N, D, W>> automata = Lists.newArrayList();
+    collectNestedAutomata(automata);
+    long version = automata.size();
+    for (WeightedPAutomaton<N, D, W> aut : automata) {
+      version += aut.modifications;
+    }
+    if (transitionsToFinalWeights != null && finalWeightsVersion == version) {
+      return transitionsToFinalWeights;
+    }
     LOGGER.trace("Start computing final weights");
     final Stopwatch w = Stopwatch.createStarted();
+    FinalWeightsWorklist worklist =
+        getOne() instanceof SelectiveWeight
+            ? new SelectiveFinalWeightsWorklist()
+            : new FinalWeightsWorklist();
     for (D s : initialStatesToSource.keySet()) {
-      registerListener(new ValueComputationListener(s, getOne()));
+      worklist.update(s, getOne());
+    }
+    Map<Transition<N, D>, W> res = Maps.newHashMap();
+    D state;
+    while ((state = worklist.next()) != null) {
+      W weight = worklist.stateWeights.get(state);
+      for (WeightedPAutomaton<N, D, W> aut : automata) {
+        for (Transition<N, D> t : aut.transitions.getTransitionsInto(state)) {
+          W newWeight = (W) weight.extendWith(aut.transitions.getWeight(t));
+          W weightAtTarget = res.get(t);
+          W newVal =
+              (weightAtTarget == null ? newWeight : (W) weightAtTarget.combineWith(newWeight));
+          if (newVal.equals(weightAtTarget)) {
+            continue;
+          }
+          res.put(t, newVal);
+          if (isGeneratedState(t.getStart())) {
+            worklist.update(t.getStart(), newVal);
+          }
+        }
+      }
     }
+    transitionsToFinalWeights = Collections.unmodifiableMap(res);
+    finalWeightsVersion = version;
     LOGGER.trace("Finished computing final weights in {}", w);
     return transitionsToFinalWeights;
   }
 
-  private class ValueComputationListener extends WPAStateListener<N, D, W> {
-
-    private W weight;
-
-    public ValueComputationListener(D state, W weight) {
-      super(state);
-      this.weight = weight;
+  private void collectNestedAutomata(List<WeightedPAutomaton<N, D, W>> automata) {
+    automata.add(this);
+    for (WeightedPAutomaton<N, D, W> nested : nestedAutomatons) {
+      nested.collectNestedAutomata(automata);
     }
+  }
 
-    @Override
-    public void onOutTransitionAdded(Transition<N, D> t, W w, WeightedPAutomaton<N, D, W> aut) {}
+  /** The states whose combined weight changed since they were last processed, in FIFO order. */
+  private class FinalWeightsWorklist {
+    final Map<D, W> stateWeights = Maps.newHashMap();
+    private final LinkedList<D> queue = Lists.newLinkedList();
+    private final Set<D> queued = Sets.newHashSet();
+
+    void update(D state, W weight) {
+      W old = stateWeights.get(state);
+      W newVal = (old == null ? weight : (W) old.combineWith(weight));
+      if (!newVal.equals(old)) {
+        stateWeights.put(state, newVal);
+        enqueue(state, newVal);
+      }
+    }
 
-    @Override
-    public void onInTransitionAdded(Transition<N, D> t, W w, WeightedPAutomaton<N, D, W> aut) {
-      W newWeight = (W) weight.extendWith(w);
-      W weightAtTarget = transitionsToFinalWeights.get(t);
-      W newVal = (weightAtTarget == null ? newWeight : (W) weightAtTarget.combineWith(newWeight));
-      transitionsToFinalWeights.put(t, newVal);
-      if (isGeneratedState(t.getStart())) {
-        registerListener(new ValueComputationListener(t.getStart(), newVal));
+    void enqueue(D state, W weight) {
+      if (queued.add(state)) {
+        queue.add(state);
       }
     }
 
-    @Override
-    public int hashCode() {
-      final int prime = 31;
-      int result = super.hashCode();
-      result = prime * result + getOuterType().hashCode();
-      result = prime * result + ((weight == null) ? 0 : weight.hashCode());
-      return result;
+    /** @return The next state to process or null if there is none. */
+    D next() {
+      if (queue.isEmpty()) {
+        return null;
+      }
+      D state = queue.removeFirst();
+      queued.remove(state);
+      return state;
     }
+  }
+
+  /**
+   * Dijkstra-style order for {@link SelectiveWeight}s: the state with the smallest weight first.
+   * Entries of states whose weight changed after they were queued are skipped.
+   */
+  private class SelectiveFinalWeightsWorklist extends FinalWeightsWorklist {
+    private final PriorityQueue<Entry<D, W>> queue =
+        new PriorityQueue<>(
+            (e1, e2) -> ((SelectiveWeight<W>) e1.getValue()).compareTo(e2.getValue()));
 
     @Override
-    public boolean equals(Object obj) {
-      if (this == obj) return true;
-      if (!super.equals(obj)) return false;
-      if (getClass() != obj.getClass()) return false;
-      ValueComputationListener other = (ValueComputationListener) obj;
-      if (!getOuterType().equals(other.getOuterType())) return false;
-      if (weight == null) {
-        if (other.weight != null) return false;
-      } else if (!weight.equals(other.weight)) return false;
-      return true;
+    void enqueue(D state, W weight) {
+      queue.add(new AbstractMap.SimpleImmutableEntry<>(state, weight));
     }
 
-    private WeightedPAutomaton getOuterType() {
-      return WeightedPAutomaton.this;
+    @Override
+    D next() {
+      while (!queue.isEmpty()) {
+        Entry<D, W> e = queue.poll();
+        if (e.getValue() == stateWeights.get(e.getKey())) {
+          return e.getKey();
+        }
+      }
+      return null;
     }
   }
 
@@ -675,21 +1122,28 @@ public abstract class WeightedPAutomaton<N extends Location, D extends State, W
     return false;
   }
 
+  /**
+   * Nests the automaton in this one. The state, update, summary and unbalanced pop listeners of
+   * this automaton and of the automata it is nested in are not copied into the nested automata,
+   * they are consulted when a nested automaton dispatches. Linking only replays them the
+   * transitions the nested automata already contain, state listeners only for the states
+   * contained.
+   */
   public void addNestedAutomaton(WeightedPAutomaton<N, D, W> nested) {
     if (!nestedAutomatons.add(nested)) return;
-    for (WPAStateListener<N, D, W> e : Lists.newArrayList(stateListeners.values())) {
-      nested.registerListener(e);
-    }
-    for (WPAUpdateListener<N, D, W> e : Lists.newArrayList(listeners)) {
-      nested.registerListener(e);
+    Map<WeightedPAutomaton<N, D, W>, List<WeightedPAutomaton<N, D, W>>> previousAncestors =
+        Maps.newLinkedHashMap();
+    for (WeightedPAutomaton<N, D, W> aut : nested.descendants()) {
+      previousAncestors.put(aut, aut.ancestors());
     }
-
-    for (SummaryListener<N, D> e : Lists.newArrayList(summaryEdgeListener)) {
-      nested.addSummaryListener(e);
+    nested.parents.add(this);
+    for (WeightedPAutomaton<N, D, W> aut : previousAncestors.keySet()) {
+      aut.ancestors = null;
+      aut.invalidateInheritedListeners();
     }
-
-    for (UnbalancedPopListener<N, D, W> e : Lists.newArrayList(unbalancedPopListeners)) {
-      nested.registerUnbalancedPopListener(e);
+    for (Entry<WeightedPAutomaton<N, D, W>, List<WeightedPAutomaton<N, D, W>>> e :
+        previousAncestors.entrySet()) {
+      e.getKey().inheritListeners(e.getValue());
     }
 
     for (Entry<D, ReachabilityListener<N, D>> e :
@@ -700,10 +1154,6 @@ public abstract class WeightedPAutomaton<N extends Location, D extends State, W
         Lists.newArrayList(stateToReachabilityListener.entrySet())) {
       nested.registerDFSListener(e.getKey(), e.getValue());
     }
-    for (Entry<D, ReachabilityListener<N, D>> e :
-        Lists.newArrayList(stateToReachabilityListener.entrySet())) {
-      nested.registerDFSListener(e.getKey(), e.getValue());
-    }
 
     for (NestedAutomatonListener<N, D, W> e : Lists.newArrayList(nestedAutomataListeners)) {
       e.nestedAutomaton(this, nested);
@@ -711,6 +1161,65 @@ public abstract class WeightedPAutomaton<N extends Location, D extends State, W
     }
   }
 
+  /**
+   * Replays the listeners of the automata this one became nested in the current contents, unless
+   * an automaton it was nested in before already delivered to them.
+   */
+  private void inheritListeners(List<WeightedPAutomaton<N, D, W>> previous) {
+    List<WeightedPAutomaton<N, D, W>> gained = Lists.newArrayList(ancestors());
+    gained.removeAll(previous);
+    if (gained.isEmpty()) {
+      return;
+    }
+    for (WeightedPAutomaton<N, D, W> aut : gained) {
+      for (D state : states) {
+        aut.nestedContaining.put(state, this);
+      }
+    }
+    if (transitions.size() == 0 && summaryEdges.isEmpty() && unbalancedPops.isEmpty()) {
+      return;
+    }
+    List<WeightedPAutomaton<N, D, W>> bound = Lists.newArrayList(previous);
+    for (WeightedPAutomaton<N, D, W> aut : gained) {
+      for (WPAUpdateListener<N, D, W> l : Lists.newArrayList(aut.listeners)) {
+        if (!isHeldByAny(bound, a -> a.listeners.contains(l))) {
+          replay(l);
+        }
+      }
+      for (D state : Lists.newArrayList(states)) {
+        ListenerList<WPAStateListener<N, D, W>> listenersOfState = aut.stateListeners.get(state);
+        if (listenersOfState == null) {
+          continue;
+        }
+        for (WPAStateListener<N, D, W> l : Lists.newArrayList(listenersOfState)) {
+          if (!isHeldByAny(bound, a -> a.holdsStateListener(l))) {
+            replay(l);
+          }
+        }
+      }
+      for (SummaryListener<N, D> l : Lists.newArrayList(aut.summaryEdgeListener)) {
+        if (!isHeldByAny(bound, a -> a.summaryEdgeListener.contains(l))) {
+          replay(l);
+        }
+      }
+      for (UnbalancedPopListener<N, D, W> l : Lists.newArrayList(aut.unbalancedPopListeners)) {
+        if (!isHeldByAny(bound, a -> a.unbalancedPopListeners.contains(l))) {
+          replay(l);
+        }
+      }
+      bound.add(aut);
+    }
+  }
+
+  private static <A> boolean isHeldByAny(Collection<A> automata, Predicate<A> holds) {
+    for (A aut : automata) {
+      if (holds.test(aut)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   public void registerNestedAutomatonListener(NestedAutomatonListener<N, D, W> l) {
     if (!nestedAutomataListeners.add(l)) {
       return;
@@ -729,12 +1238,15 @@ public abstract class WeightedPAutomaton<N extends Location, D extends State, W
   }
 
   public IRegEx<N> toRegEx(D start, D end) {
-    if (lastStates < states.size()) {
-      pathExpressionComputer = new PathExpressionComputer<D, N>(this);
-      lastStates = states.size();
-    }
+    return RegEx.reverse(pathExpressions.getExpressionBetween(end, start));
+  }
 
-    return RegEx.reverse(pathExpressionComputer.getExpressionBetween(end, start));
+  /**
+   * @return The cache backing {@link #extractLanguage} and {@link #toRegEx}, path expressions are
+   *     only recomputed for the parts of the automaton that grew since the last query.
+   */
+  public PathExpressionCache<N, D> getPathExpressions() {
+    return pathExpressions;
   }
 
   public boolean containsLoop() {
@@ -745,7 +1257,7 @@ public abstract class WeightedPAutomaton<N extends Location, D extends State, W
     while (!worklist.isEmpty()) {
       D pop = worklist.pop();
       visited.add(pop);
-      Collection<Transition<N, D>> inTrans = transitionsInto.get(pop);
+      Collection<Transition<N, D>> inTrans = transitions.getTransitionsInto(pop);
       for (Transition<N, D> t : inTrans) {
         if (t.getLabel().equals(this.epsilon())) continue;
         if (!isGeneratedState(t.getStart())) continue;
@@ -766,7 +1278,7 @@ public abstract class WeightedPAutomaton<N extends Location, D extends State, W
     while (!worklist.isEmpty()) {
       D pop = worklist.pop();
       Set<N> atCurr = getOrCreate(pathReachingD, pop);
-      Collection<Transition<N, D>> inTrans = transitionsInto.get(pop);
+      Collection<Transition<N, D>> inTrans = transitions.getTransitionsInto(pop);
       for (Transition<N, D> t : inTrans) {
         if (t.getLabel().equals(this.epsilon())) continue;
         D next = t.getStart();
@@ -818,25 +1330,182 @@ public abstract class WeightedPAutomaton<N extends Location, D extends State, W
     if (getMaxUnbalancedDepth() > 0 && newDistance > getMaxUnbalancedDepth()) {
       return false;
     }
-    initialStatesToSource.putAll(state, parents);
+    if (initialStatesToSource.putAll(state, parents)) {
+      modifications++;
+    }
     return true;
   }
 
   public boolean addInitialState(D state) {
-    return initialStatesToSource.put(state, state);
+    if (initialStatesToSource.put(state, state)) {
+      modifications++;
+      return true;
+    }
+    return false;
   }
 
+  /**
+   * Unregisters the listeners of this automaton, the automata nested in it no longer deliver to
+   * them either.
+   */
   public void unregisterAllListeners() {
     this.conntectedPushListeners.clear();
     this.nestedAutomataListeners.clear();
     this.stateListeners.clear();
-    this.listeners.clear();
+    this.listeners = new ListenerList<>();
+    if (!nestedAutomatons.isEmpty() || !parents.isEmpty()) {
+      for (WeightedPAutomaton<N, D, W> aut : descendants()) {
+        aut.invalidateInheritedListeners();
+      }
+    }
     this.stateToEpsilonReachabilityListener.clear();
     this.stateToReachabilityListener.clear();
     this.summaryEdgeListener.clear();
     this.unbalancedPopListeners.clear();
   }
 
+  /**
+   * Shrinks the automaton once the results of a query have been extracted. Retains the given
+   * transitions and all transitions reachable from their targets, i.e., the paths to the final
+   * states that give them their meaning, and drops all other transitions and states along with
+   * the bookkeeping of the saturation. The remaining transitions are moved into an immutable
+   * {@link CompactTransitionStore}. All listeners are unregistered (see {@link
+   * #unregisterAllListeners()}), nested automata are left untouched as they may be shared.
+   *
+   * <p>The automaton stays usable: adding a transition afterwards copies the transitions back
+   * into a store created by {@link #createTransitionStore()}.
+   */
+  public void compact(Collection<Transition<N, D>> retained) {
+    if (!pendingDispatch.isEmpty()) {
+      throw new IllegalStateException("Cannot compact an automaton with pending transitions");
+    }
+    unregisterAllListeners();
+    Set<Transition<N, D>> kept = Sets.newLinkedHashSet();
+    Set<D> visited = Sets.newHashSet();
+    LinkedList<D> worklist = Lists.newLinkedList();
+    for (Transition<N, D> t : retained) {
+      Transition<N, D> canonical = transitionInterner.find(t);
+      if (canonical != null && transitions.contains(canonical) && kept.add(canonical)) {
+        worklist.add(canonical.getTarget());
+      }
+    }
+    while (!worklist.isEmpty()) {
+      D state = worklist.removeFirst();
+      if (!visited.add(state)) {
+        continue;
+      }
+      for (Transition<N, D> t : transitions.getTransitionsOutOf(state)) {
+        kept.add(t);
+        worklist.add(t.getTarget());
+      }
+    }
+    TransitionInterner<N, D> interner = new TransitionInterner<>();
+    Set<D> keptStates = Sets.newHashSet();
+    for (Transition<N, D> t : kept) {
+      interner.intern(t);
+      keptStates.add(t.getStart());
+      keptStates.add(t.getTarget());
+    }
+    transitions = new CompactTransitionStore<>(kept, transitions);
+    transitionInterner = interner;
+    states = keptStates;
+    stateToDistanceToInitial =
+        Maps.newHashMap(Maps.filterKeys(stateToDistanceToInitial, keptStates::contains));
+    stateToUnbalancedDistance =
+        Maps.newHashMap(Maps.filterKeys(stateToUnbalancedDistance, keptStates::contains));
+    stateCreatingTransition =
+        Maps.newHashMap(Maps.filterValues(stateCreatingTransition, kept::contains));
+    initialStatesToSource =
+        HashMultimap.create(Multimaps.filterKeys(initialStatesToSource, keptStates::contains));
+    Map<UnbalancedPopEntry, W> remainingPops = Maps.newHashMap();
+    for (Entry<UnbalancedPopEntry, W> e : unbalancedPops.entrySet()) {
+      if (kept.contains(e.getKey().trans)) {
+        remainingPops.put(e.getKey(), e.getValue());
+      }
+    }
+    unbalancedPops = remainingPops;
+    summaryEdges = Sets.newHashSet(Sets.filter(summaryEdges, kept::contains));
+    connectedPushes = Sets.newHashSet();
+    transitionsToFinalWeights = null;
+    modifications++;
+    stateToDFS = Maps.newHashMap();
+    stateToEpsilonDFS = Maps.newHashMap();
+    dfsVisitor = null;
+    dfsEpsVisitor = null;
+    pathExpressions = new PathExpressionCache<>(this);
+  }
+
+  private void thaw() {
+    TransitionStore<N, D, W> store = createTransitionStore();
+    for (Transition<N, D> t : transitions.getTransitions()) {
+      store.add(t);
+      store.setWeight(t, transitions.getWeight(t));
+    }
+    transitions = store;
+  }
+
+  /**
+   * Switches the automaton to deferred listener dispatch, see {@link WorklistScheduler}. Nested
+   * automata created afterwards share the scheduler. Passing null restores the default, recursive
+   * dispatch. Must not be changed while the scheduler is draining.
+   */
+  public void setScheduler(WorklistScheduler scheduler) {
+    this.scheduler = scheduler;
+  }
+
+  public WorklistScheduler getScheduler() {
+    return scheduler;
+  }
+
+  /**
+   * Enables differential propagation: listeners accepting deltas ({@link
+   * WPAStateListener#acceptsWeightDeltas()}) are notified with the difference between the new and
+   * the previous weight of a transition, given the weights implement {@link DifferentialWeight}.
+   * Nested automata created afterwards inherit the setting.
+   */
+  public void setPropagateWeightDeltas(boolean propagateWeightDeltas) {
+    this.propagateWeightDeltas = propagateWeightDeltas;
+  }
+
+  public boolean propagatesWeightDeltas() {
+    return propagateWeightDeltas;
+  }
+
+  /**
+   * Hash-conses the weights of the transitions and memoizes the weight operations of the automaton
+   * and its saturation, see {@link WeightFactory}. Must be set before transitions are added. Nested
+   * automata created afterwards share the factory.
+   */
+  public void setWeightFactory(WeightFactory<W> weightFactory) {
+    this.weightFactory = weightFactory;
+  }
+
+  public WeightFactory<W> getWeightFactory() {
+    return weightFactory;
+  }
+
+  /**
+   * Reports the transitions added to this automaton to the budget, see {@link ResourceBudget}.
+   * Nested automata created afterwards share the budget, null disables the accounting.
+   */
+  public void setResourceBudget(ResourceBudget budget) {
+    this.budget = budget;
+  }
+
+  public ResourceBudget getResourceBudget() {
+    return budget;
+  }
+
+  /**
+   * Answers {@link #registerDFSListener} and {@link #registerDFSEpsilonListener} with a {@link
+   * ReachabilityIndex} instead of the transitive closure of {@link ForwardDFSVisitor}. Must be set
+   * before the first reachability listener is registered. Nested automata created afterwards
+   * inherit the setting.
+   */
+  public void setUseReachabilityIndex(boolean useReachabilityIndex) {
+    this.useReachabilityIndex = useReachabilityIndex;
+  }
+
   public Stopwatch getWatch() {
     return watch;
   }
@@ -12,8 +12,13 @@
 package wpds.impl;
 
 import com.google.common.base.Joiner;
+import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Multimap;
 import com.google.common.collect.Sets;
+import com.google.common.collect.Table;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.Set;
 import wpds.interfaces.IPushdownSystem;
@@ -28,6 +33,15 @@ public class WeightedPushdownSystem<N extends Location, D extends State, W exten
   protected final Set<PopRule<N, D, W>> popRules = Sets.newHashSet();
   protected final Set<NormalRule<N, D, W>> normalRules = Sets.newHashSet();
   protected final Set<WPDSUpdateListener<N, D, W>> listeners = Sets.newHashSet();
+  // Indices over (S1,L1) and (S2,L2), such that rule queries do not scan all rules of the PDS.
+  // Rules whose L1 is a Wildcard match any label and are kept in a separate bucket per S1.
+  protected final Table<D, N, Set<Rule<N, D, W>>> rulesStarting = HashBasedTable.create();
+  protected final Multimap<D, Rule<N, D, W>> wildcardRulesStarting = HashMultimap.create();
+  protected final Table<D, N, Set<NormalRule<N, D, W>>> normalRulesEnding =
+      HashBasedTable.create();
+  protected final Table<D, N, Set<PushRule<N, D, W>>> pushRulesEnding = HashBasedTable.create();
+  protected final Multimap<N, PushRule<N, D, W>> pushRulesByCallSite = HashMultimap.create();
+  protected final Set<PushRule<N, D, W>> wildcardCallSitePushRules = Sets.newHashSet();
 
   @Override
   public boolean addRule(Rule<N, D, W> rule) {
@@ -41,10 +55,45 @@ public class WeightedPushdownSystem<N extends Location, D extends State, W exten
   }
 
   private boolean addRuleInternal(Rule<N, D, W> rule) {
-    if (rule instanceof PushRule) return pushRules.add((PushRule) rule);
-    else if (rule instanceof PopRule) return popRules.add((PopRule) rule);
-    else if (rule instanceof NormalRule) return normalRules.add((NormalRule) rule);
-    throw new RuntimeException("Try to add a rule of wrong type");
+    boolean added;
+    if (rule instanceof PushRule) {
+      added = pushRules.add((PushRule) rule);
+      if (added) {
+        PushRule<N, D, W> pushRule = (PushRule<N, D, W>) rule;
+        put(pushRulesEnding, rule.getS2(), rule.getL2(), pushRule);
+        if (pushRule.getCallSite() instanceof Wildcard) {
+          wildcardCallSitePushRules.add(pushRule);
+        } else {
+          pushRulesByCallSite.put(pushRule.getCallSite(), pushRule);
+        }
+      }
+    } else if (rule instanceof PopRule) {
+      added = popRules.add((PopRule) rule);
+    } else if (rule instanceof NormalRule) {
+      added = normalRules.add((NormalRule) rule);
+      if (added) {
+        put(normalRulesEnding, rule.getS2(), rule.getL2(), (NormalRule<N, D, W>) rule);
+      }
+    } else {
+      throw new RuntimeException("Try to add a rule of wrong type");
+    }
+    if (added) {
+      if (rule.getL1() instanceof Wildcard) {
+        wildcardRulesStarting.put(rule.getS1(), rule);
+      } else {
+        put(rulesStarting, rule.getS1(), rule.getL1(), rule);
+      }
+    }
+    return added;
+  }
+
+  private static <R, C, V> void put(Table<R, C, Set<V>> table, R row, C column, V value) {
+    Set<V> set = table.get(row, column);
+    if (set == null) {
+      set = Sets.newHashSet();
+      table.put(row, column, set);
+    }
+    set.add(value);
   }
 
   public void registerUpdateListener(WPDSUpdateListener<N, D, W> listener) {
@@ -82,44 +131,44 @@ public class WeightedPushdownSystem<N extends Location, D extends State, W exten
 
   @Override
   public Set<Rule<N, D, W>> getRulesStarting(D start, N string) {
-    Set<Rule<N, D, W>> result = new HashSet<>();
-    getRulesStartingWithinSet(start, string, popRules, result);
-    getRulesStartingWithinSet(start, string, normalRules, result);
-    getRulesStartingWithinSet(start, string, pushRules, result);
-    return result;
-  }
-
-  private void getRulesStartingWithinSet(
-      D start, N string, Set<? extends Rule<N, D, W>> rules, Set<Rule<N, D, W>> res) {
-    for (Rule<N, D, W> r : rules) {
-      if (r.getS1().equals(start) && (r.getL1().equals(string) || r.getL1() instanceof Wildcard))
-        res.add(r);
-      if (string instanceof Wildcard && r.getS1().equals(start)) {
-        res.add(r);
+    Set<Rule<N, D, W>> result = new HashSet<>(wildcardRulesStarting.get(start));
+    if (string instanceof Wildcard) {
+      for (Set<Rule<N, D, W>> rules : rulesStarting.row(start).values()) {
+        result.addAll(rules);
       }
+    } else {
+      addAllIfPresent(rulesStarting.get(start, string), result);
     }
+    return result;
   }
 
   @Override
   public Set<NormalRule<N, D, W>> getNormalRulesEnding(D start, N string) {
-    Set<NormalRule<N, D, W>> allRules = getNormalRules();
     Set<NormalRule<N, D, W>> result = new HashSet<>();
-    for (NormalRule<N, D, W> r : allRules) {
-      if (r.getS2().equals(start) && r.getL2().equals(string)) result.add(r);
-    }
+    addAllIfPresent(normalRulesEnding.get(start, string), result);
     return result;
   }
 
   @Override
   public Set<PushRule<N, D, W>> getPushRulesEnding(D start, N string) {
-    Set<PushRule<N, D, W>> allRules = getPushRules();
     Set<PushRule<N, D, W>> result = new HashSet<>();
-    for (PushRule<N, D, W> r : allRules) {
-      if (r.getS2().equals(start) && r.getL2().equals(string)) result.add(r);
-    }
+    addAllIfPresent(pushRulesEnding.get(start, string), result);
     return result;
   }
 
+  @Override
+  public Set<PushRule<N, D, W>> getPushRulesWithCallSite(N callSite) {
+    Set<PushRule<N, D, W>> result = new HashSet<>(wildcardCallSitePushRules);
+    result.addAll(pushRulesByCallSite.get(callSite));
+    return result;
+  }
+
+  private static <V> void addAllIfPresent(Collection<? extends V> values, Set<V> result) {
+    if (values != null) {
+      result.addAll(values);
+    }
+  }
+
   @Override
   public Set<D> getStates() {
     Set<D> states = Sets.newHashSet();
@@ -162,6 +211,15 @@ public class WeightedPushdownSystem<N extends Location, D extends State, W exten
     }.poststar(this, initialAutomaton);
   }
 
+  /**
+   * Saturates the automaton with the rules added so far on the given number of threads, see {@link
+   * ParallelPostStar}. Unlike {@link #poststar(WeightedPAutomaton)} no listeners are registered,
+   * rules added afterwards are not applied.
+   */
+  public void poststar(WeightedPAutomaton<N, D, W> initialAutomaton, int threads) {
+    new ParallelPostStar<>(this, initialAutomaton).poststar(threads);
+  }
+
   @Override
   public void prestar(WeightedPAutomaton<N, D, W> initialAutomaton) {
     new PreStar<N, D, W>().prestar(this, initialAutomaton);
@@ -0,0 +1,153 @@
+/**
+ * ***************************************************************************** Copyright (c) 2018
+ * Fraunhofer IEM, Paderborn, Germany. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * <p>SPDX-License-Identifier: EPL-2.0
+ *
+ * <p>Contributors: Johannes Spaeth - initial API and implementation
+ * *****************************************************************************
+ */
+package wpds.impl;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import wpds.interfaces.Location;
+import wpds.interfaces.State;
+
+/**
+ * Defers the listener dispatch of {@link WeightedPAutomaton}s to an explicit worklist. By default
+ * an automaton notifies its listeners within {@link WeightedPAutomaton#addWeightForTransition}, the
+ * listeners add further transitions and the call stack grows with the length of the derivation.
+ * An automaton with a scheduler (see {@link WeightedPAutomaton#setScheduler}) only records the
+ * updated transition here, the outermost update drains the worklist in a loop. Transitions that
+ * are updated again while pending are dispatched once with their latest weight.
+ *
+ * <p>One scheduler may be shared by several automata (e.g. the call and field automaton of a
+ * solver and their nested automata), they are then drained together.
+ */
+public class WorklistScheduler {
+
+  public enum Order {
+    /** Dispatch the updates in the order they happened (breadth first). */
+    FIFO,
+    /** Dispatch the latest update first (depth first). */
+    LIFO,
+    /**
+     * Dispatch the updates of transitions closest to the initial states first, ties in FIFO order.
+     * Transitions whose distance is not known are dispatched last.
+     */
+    DISTANCE_TO_INITIAL
+  }
+
+  private final Order order;
+  private final ArrayDeque<Task<?, ?, ?>> deque = new ArrayDeque<>();
+  private final Queue<Task<?, ?, ?>> queue;
+  private boolean draining;
+  private long sequence;
+  private long dispatched;
+  private int maxSize;
+
+  public WorklistScheduler(Order order) {
+    this.order = order;
+    if (order == Order.DISTANCE_TO_INITIAL) {
+      this.queue =
+          new PriorityQueue<>(
+              Comparator.<Task<?, ?, ?>>comparingInt(t -> t.distance)
+                  .thenComparingLong(t -> t.sequence));
+    } else {
+      this.queue = deque;
+    }
+  }
+
+  public Order getOrder() {
+    return order;
+  }
+
+  <N extends Location, D extends State, W extends Weight> void schedule(
+      WeightedPAutomaton<N, D, W> aut, Transition<N, D> trans, int distanceToInitial) {
+    Task<N, D, W> task =
+        new Task<>(
+            aut, trans, distanceToInitial < 0 ? Integer.MAX_VALUE : distanceToInitial, sequence++);
+    if (order == Order.LIFO) {
+      deque.push(task);
+    } else {
+      queue.add(task);
+    }
+    maxSize = Math.max(maxSize, queue.size());
+  }
+
+  /**
+   * Dispatches the pending updates until the worklist is empty. Calls while a drain is in progress
+   * return immediately, the outer loop picks up the updates. If a listener throws, the remaining
+   * updates are discarded, also by their automata, so that later updates are scheduled again.
+   */
+  void drain() {
+    if (draining) {
+      return;
+    }
+    draining = true;
+    boolean completed = false;
+    try {
+      Task<?, ?, ?> task;
+      while ((task = queue.poll()) != null) {
+        dispatched++;
+        task.run();
+      }
+      completed = true;
+    } finally {
+      if (!completed) {
+        Task<?, ?, ?> task;
+        while ((task = queue.poll()) != null) {
+          task.discard();
+        }
+      }
+      draining = false;
+    }
+  }
+
+  public boolean isEmpty() {
+    return queue.isEmpty();
+  }
+
+  /** @return The number of transition updates dispatched so far. */
+  public long getDispatched() {
+    return dispatched;
+  }
+
+  /** @return The largest number of updates that were pending at the same time. */
+  public int getMaxSize() {
+    return maxSize;
+  }
+
+  @Override
+  public String toString() {
+    return "WorklistScheduler " + order + " (pending " + queue.size() + ")";
+  }
+
+  private static class Task<N extends Location, D extends State, W extends Weight> {
+    private final WeightedPAutomaton<N, D, W> aut;
+    private final Transition<N, D> trans;
+    private final int distance;
+    private final long sequence;
+
+    private Task(
+        WeightedPAutomaton<N, D, W> aut, Transition<N, D> trans, int distance, long sequence) {
+      this.aut = aut;
+      this.trans = trans;
+      this.distance = distance;
+      this.sequence = sequence;
+    }
+
+    private void run() {
+      aut.dispatchPending(trans);
+    }
+
+    private void discard() {
+      aut.discardPending(trans);
+    }
+  }
+}
@@ -22,7 +22,7 @@ import wpds.impl.Weight;
 import wpds.impl.WeightedPAutomaton;
 
 public class ForwardDFSVisitor<N extends Location, D extends State, W extends Weight>
-    implements WPAUpdateListener<N, D, W> {
+    implements ReachabilityVisitor<N, D, W> {
   private Multimap<D, ReachabilityListener<N, D>> listeners = HashMultimap.create();
   protected WeightedPAutomaton<N, D, W> aut;
   private Multimap<D, D> adjacent = HashMultimap.create();
@@ -34,6 +34,7 @@ public class ForwardDFSVisitor<N extends Location, D extends State, W extends We
     this.aut = aut;
   }
 
+  @Override
   public void registerListener(D state, final ReachabilityListener<N, D> l) {
     if (listeners.put(state, l)) {
       for (D d : Lists.newArrayList(inverseReaches.get(state))) {
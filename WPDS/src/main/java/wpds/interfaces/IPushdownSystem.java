@@ -40,6 +40,8 @@ public interface IPushdownSystem<N extends Location, D extends State, W extends
 
   Set<PushRule<N, D, W>> getPushRulesEnding(D start, N string);
 
+  Set<PushRule<N, D, W>> getPushRulesWithCallSite(N callSite);
+
   void prestar(WeightedPAutomaton<N, D, W> initialAutomaton);
 
   void poststar(WeightedPAutomaton<N, D, W> initialAutomaton);
@@ -0,0 +1,24 @@
+/**
+ * ***************************************************************************** Copyright (c) 2018
+ * Fraunhofer IEM, Paderborn, Germany. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * <p>SPDX-License-Identifier: EPL-2.0
+ *
+ * <p>Contributors: Johannes Spaeth - initial API and implementation
+ * *****************************************************************************
+ */
+package wpds.interfaces;
+
+import wpds.impl.Weight;
+
+/**
+ * Reports all transitions leaving the states reachable from a state. Registered as {@link
+ * WPAUpdateListener} on the automaton it observes.
+ */
+public interface ReachabilityVisitor<N extends Location, D extends State, W extends Weight>
+    extends WPAUpdateListener<N, D, W> {
+
+  void registerListener(D state, ReachabilityListener<N, D> l);
+}
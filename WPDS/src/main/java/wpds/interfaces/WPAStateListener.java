@@ -29,6 +29,15 @@ public abstract class WPAStateListener<N extends Location, D extends State, W ex
   public abstract void onInTransitionAdded(
       Transition<N, D> t, W w, WeightedPAutomaton<N, D, W> weightedPAutomaton);
 
+  /**
+   * @return true if the listener may be notified with the difference to the previously notified
+   *     weight instead of the full weight of the transition, see {@link
+   *     wpds.impl.DifferentialWeight}. Upon registration the weights notified so far are replayed.
+   */
+  public boolean acceptsWeightDeltas() {
+    return false;
+  }
+
   public D getState() {
     return state;
   }
@@ -31,31 +31,52 @@ public abstract class WildcardPushdownSystem<N extends Location, D extends State
   @Override
   public Set<Rule<N, D, NoWeight>> getRulesStarting(D start, N string) {
     assert !string.equals(anyTransition());
-    Set<Rule<N, D, NoWeight>> allRules = getAllRules();
     Set<Rule<N, D, NoWeight>> result = new HashSet<>();
-    for (Rule<N, D, NoWeight> r : allRules) {
-      if (r.getS1().equals(start) && r.getL1().equals(string)) result.add(r);
-      if (anyTransition() != null && r.getS1().equals(start) && r.getL1().equals(anyTransition())) {
-        if (r instanceof NormalRule) {
-          result.add(new UNormalRule<N, D>(r.getS1(), string, r.getS2(), string));
-        } else if (r instanceof PopRule) {
-          result.add(new UPopRule<N, D>(r.getS1(), string, r.getS2()));
-        } else if (r instanceof PushRule) {
-          result.add(new UPushRule<N, D>(r.getS1(), string, r.getS2(), r.getL2(), string));
+    Set<Rule<N, D, NoWeight>> exact = rulesStarting.get(start, string);
+    if (exact != null) {
+      result.addAll(exact);
+    }
+    Wildcard any = anyTransition();
+    for (Rule<N, D, NoWeight> r : wildcardRulesStarting.get(start)) {
+      if (r.getL1().equals(string)) result.add(r);
+      if (any != null && r.getL1().equals(any)) {
+        addInstantiated(r, string, result);
+      }
+    }
+    if (any != null) {
+      // Rules whose label equals anyTransition() without being a Wildcard are indexed by label
+      Set<Rule<N, D, NoWeight>> anyRules = rulesStarting.get(start, any);
+      if (anyRules != null) {
+        for (Rule<N, D, NoWeight> r : anyRules) {
+          addInstantiated(r, string, result);
         }
       }
     }
     return result;
   }
 
+  private void addInstantiated(
+      Rule<N, D, NoWeight> r, N string, Set<Rule<N, D, NoWeight>> result) {
+    if (r instanceof NormalRule) {
+      result.add(new UNormalRule<N, D>(r.getS1(), string, r.getS2(), string));
+    } else if (r instanceof PopRule) {
+      result.add(new UPopRule<N, D>(r.getS1(), string, r.getS2()));
+    } else if (r instanceof PushRule) {
+      result.add(new UPushRule<N, D>(r.getS1(), string, r.getS2(), r.getL2(), string));
+    }
+  }
+
   @Override
   public Set<NormalRule<N, D, NoWeight>> getNormalRulesEnding(D start, N string) {
     assert !string.equals(anyTransition());
-    Set<NormalRule<N, D, NoWeight>> allRules = getNormalRules();
     Set<NormalRule<N, D, NoWeight>> result = new HashSet<>();
-    for (NormalRule<N, D, NoWeight> r : allRules) {
-      if (r.getS2().equals(start) && r.getL2().equals(string)) result.add(r);
-      if (r.getS2().equals(start) && r.getL2().equals(anyTransition())) {
+    Set<NormalRule<N, D, NoWeight>> exact = normalRulesEnding.get(start, string);
+    if (exact != null) {
+      result.addAll(exact);
+    }
+    Set<NormalRule<N, D, NoWeight>> any = normalRulesEnding.get(start, anyTransition());
+    if (any != null) {
+      for (NormalRule<N, D, NoWeight> r : any) {
         result.add(new UNormalRule<N, D>(r.getS1(), string, r.getS2(), string));
       }
     }
@@ -65,10 +86,10 @@ public abstract class WildcardPushdownSystem<N extends Location, D extends State
   @Override
   public Set<PushRule<N, D, NoWeight>> getPushRulesEnding(D start, N string) {
     assert !string.equals(anyTransition());
-    Set<PushRule<N, D, NoWeight>> allRules = getPushRules();
     Set<PushRule<N, D, NoWeight>> result = new HashSet<>();
-    for (PushRule<N, D, NoWeight> r : allRules) {
-      if (r.getS2().equals(start) && r.getL2().equals(string)) result.add(r);
+    Set<PushRule<N, D, NoWeight>> exact = pushRulesEnding.get(start, string);
+    if (exact != null) {
+      result.addAll(exact);
     }
     return result;
   }
@@ -0,0 +1,246 @@
+/**
+ * ***************************************************************************** Copyright (c) 2018
+ * Fraunhofer IEM, Paderborn, Germany. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * <p>SPDX-License-Identifier: EPL-2.0
+ *
+ * <p>Contributors: Johannes Spaeth - initial API and implementation
+ * *****************************************************************************
+ */
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static tests.MinSeminringPostStarTests.waccepts;
+import static tests.MinSeminringPostStarTests.wnormal;
+import static tests.MinSeminringPostStarTests.wpop;
+import static tests.MinSeminringPostStarTests.wpush;
+import static tests.TestHelper.ACC;
+import static tests.TestHelper.a;
+import static tests.TestHelper.t;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import tests.TestHelper.Abstraction;
+import tests.TestHelper.StackSymbol;
+import wpds.impl.AutomatonSnapshot;
+import wpds.impl.SnapshotCodec;
+import wpds.impl.Transition;
+import wpds.impl.WeightedPAutomaton;
+import wpds.impl.WeightedPushdownSystem;
+
+public class AutomatonSnapshotTests {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void roundTrip() throws IOException {
+    WeightedPAutomaton<StackSymbol, Abstraction, MinSemiring> fa = saturated();
+    Path file = folder.newFile().toPath();
+    write(fa, file);
+
+    AutomatonSnapshot<StackSymbol, Abstraction, MinSemiring> snapshot = open(file);
+    assertEquals(fa.getTransitions().size(), snapshot.getTransitionCount());
+    assertEquals(fa.getFinalState(), snapshot.getFinalStates());
+    assertNull(snapshot.getNestedInitialState());
+    for (Abstraction state : fa.getStates()) {
+      assertEquals(
+          Sets.newHashSet(fa.getTransitionsOutOf(state)),
+          Sets.newHashSet(snapshot.getTransitionsOutOf(state)));
+    }
+    for (Transition<StackSymbol, Abstraction> t : fa.getTransitions()) {
+      assertEquals(fa.getWeightFor(t).i, snapshot.getWeight(t).i);
+    }
+    assertNull(snapshot.getWeight(t(1, "unknown", ACC)));
+
+    WeightedPAutomaton<StackSymbol, Abstraction, MinSemiring> restored = waccepts(1, "a", w(0));
+    snapshot.restore(restored);
+    assertEquals(weights(fa), weights(restored));
+    assertEquals(fa.getInitialStates(), restored.getInitialStates());
+  }
+
+  @Test
+  public void lazyDecoding() throws IOException {
+    WeightedPAutomaton<StackSymbol, Abstraction, MinSemiring> fa = saturated();
+    Path file = folder.newFile().toPath();
+    write(fa, file);
+
+    CountingCodec<Abstraction> states = new CountingCodec<>(STATES);
+    CountingCodec<StackSymbol> labels = new CountingCodec<>(LABELS);
+    AutomatonSnapshot<StackSymbol, Abstraction, MinSemiring> snapshot =
+        AutomatonSnapshot.open(file, labels, states, WEIGHTS);
+    assertEquals(0, states.decoded + labels.decoded);
+    assertEquals(fa.getStates().size(), snapshot.getStateCount());
+
+    snapshot.getTransitionsOutOf(a(2));
+    int decodedLabels = labels.decoded;
+    assertTrue(decodedLabels < fa.getTransitions().size());
+    // Only the targets of the transitions, the state is looked up by its encoding
+    assertTrue(states.decoded <= fa.getTransitionsOutOf(a(2)).size());
+    assertTrue(states.decoded < fa.getStates().size());
+    assertTrue(snapshot.getTransitionsOutOf(a(42)).isEmpty());
+    // Decoded once per snapshot
+    assertSame(snapshot.getState(0), snapshot.getState(0));
+    snapshot.getTransitionsOutOf(a(2));
+    assertEquals(decodedLabels, labels.decoded);
+  }
+
+  @Test
+  public void nestedAutomata() throws IOException {
+    WeightedPAutomaton<StackSymbol, Abstraction, MinSemiring> fa = saturated();
+    WeightedPAutomaton<StackSymbol, Abstraction, MinSemiring> nested =
+        fa.createNestedAutomaton(a(7));
+    nested.addWeightForTransition(t(7, "x", 8), w(3));
+    nested.addWeightForTransition(t(8, "y", ACC), w(4));
+    Path file = folder.newFile().toPath();
+    write(fa, file);
+
+    AutomatonSnapshot<StackSymbol, Abstraction, MinSemiring> snapshot = open(file);
+    assertEquals(1, snapshot.getNestedAutomata().size());
+    AutomatonSnapshot<StackSymbol, Abstraction, MinSemiring> nestedSnapshot =
+        snapshot.getNestedAutomata().get(0);
+    assertEquals(a(7), nestedSnapshot.getNestedInitialState());
+    assertEquals(2, nestedSnapshot.getTransitionCount());
+    assertEquals(4, nestedSnapshot.getWeight(t(8, "y", ACC)).i);
+
+    WeightedPAutomaton<StackSymbol, Abstraction, MinSemiring> restored = waccepts(1, "a", w(0));
+    snapshot.restore(restored);
+    assertEquals(weights(fa), weights(restored));
+    assertEquals(1, restored.getNestedAutomatons().size());
+    WeightedPAutomaton<StackSymbol, Abstraction, MinSemiring> restoredNested =
+        restored.getNestedAutomatons().iterator().next();
+    assertEquals(a(7), restoredNested.getNestedInitialState());
+    assertEquals(weights(nested), weights(restoredNested));
+  }
+
+  @Test(expected = IOException.class)
+  public void rejectsOtherFiles() throws IOException {
+    Path file = folder.newFile().toPath();
+    Files.write(file, new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+    open(file);
+  }
+
+  private static WeightedPAutomaton<StackSymbol, Abstraction, MinSemiring> saturated() {
+    WeightedPushdownSystem<StackSymbol, Abstraction, MinSemiring> pds =
+        new WeightedPushdownSystem<>();
+    pds.addRule(wnormal(1, "a", 2, "b", w(1)));
+    pds.addRule(wpush(2, "b", 3, "c", "d", w(2)));
+    pds.addRule(wnormal(3, "c", 4, "e", w(1)));
+    pds.addRule(wpop(4, "e", 5, w(1)));
+    pds.addRule(wnormal(5, "d", 2, "f", w(10)));
+    pds.addRule(wpush(2, "f", 3, "c", "g", w(20)));
+    pds.addRule(wnormal(5, "g", 6, "h", w(1)));
+    WeightedPAutomaton<StackSymbol, Abstraction, MinSemiring> fa = waccepts(1, "a", w(0));
+    pds.poststar(fa);
+    return fa;
+  }
+
+  private static Map<Transition<StackSymbol, Abstraction>, Integer> weights(
+      WeightedPAutomaton<StackSymbol, Abstraction, MinSemiring> fa) {
+    Map<Transition<StackSymbol, Abstraction>, Integer> weights = Maps.newHashMap();
+    for (Transition<StackSymbol, Abstraction> t : fa.getTransitions()) {
+      weights.put(t, fa.getWeightFor(t).i);
+    }
+    return weights;
+  }
+
+  private static void write(WeightedPAutomaton<StackSymbol, Abstraction, MinSemiring> fa, Path file)
+      throws IOException {
+    AutomatonSnapshot.write(fa, file, LABELS, STATES, WEIGHTS);
+  }
+
+  private static AutomatonSnapshot<StackSymbol, Abstraction, MinSemiring> open(Path file)
+      throws IOException {
+    return AutomatonSnapshot.open(file, LABELS, STATES, WEIGHTS);
+  }
+
+  private static MinSemiring w(int i) {
+    return new MinSemiring(i);
+  }
+
+  private static final SnapshotCodec<StackSymbol> LABELS =
+      new SnapshotCodec<StackSymbol>() {
+        @Override
+        public byte[] encode(StackSymbol value) {
+          return value.s.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public StackSymbol decode(ByteBuffer bytes) {
+          return new StackSymbol(StandardCharsets.UTF_8.decode(bytes).toString());
+        }
+      };
+
+  private static final SnapshotCodec<Abstraction> STATES =
+      new SnapshotCodec<Abstraction>() {
+        @Override
+        public byte[] encode(Abstraction value) {
+          byte[] label = value.s == null ? new byte[0] : LABELS.encode(value.s);
+          return ByteBuffer.allocate(5 + label.length)
+              .putInt(value.a)
+              .put((byte) (value.s == null ? 0 : 1))
+              .put(label)
+              .array();
+        }
+
+        @Override
+        public Abstraction decode(ByteBuffer bytes) {
+          Abstraction state = new Abstraction(bytes.getInt());
+          return bytes.get() == 0 ? state : new Abstraction(state, LABELS.decode(bytes));
+        }
+      };
+
+  /** The distinguished one and zero are encoded by a tag, they must be restored as such. */
+  private static final SnapshotCodec<MinSemiring> WEIGHTS =
+      new SnapshotCodec<MinSemiring>() {
+        @Override
+        public byte[] encode(MinSemiring value) {
+          byte tag = (byte) (value == MinSemiring.one() ? 1 : value == MinSemiring.zero() ? 2 : 0);
+          return ByteBuffer.allocate(5).put(tag).putInt(value.i).array();
+        }
+
+        @Override
+        public MinSemiring decode(ByteBuffer bytes) {
+          switch (bytes.get()) {
+            case 1:
+              return MinSemiring.one();
+            case 2:
+              return MinSemiring.zero();
+            default:
+              return new MinSemiring(bytes.getInt());
+          }
+        }
+      };
+
+  private static class CountingCodec<T> implements SnapshotCodec<T> {
+    private final SnapshotCodec<T> delegate;
+    private int decoded;
+
+    private CountingCodec(SnapshotCodec<T> delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public byte[] encode(T value) {
+      return delegate.encode(value);
+    }
+
+    @Override
+    public T decode(ByteBuffer bytes) {
+      decoded++;
+      return delegate.decode(bytes);
+    }
+  }
+}
@@ -0,0 +1,142 @@
+/**
+ * ***************************************************************************** Copyright (c) 2018
+ * Fraunhofer IEM, Paderborn, Germany. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * <p>SPDX-License-Identifier: EPL-2.0
+ *
+ * <p>Contributors: Johannes Spaeth - initial API and implementation
+ * *****************************************************************************
+ */
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static tests.MinSeminringPostStarTests.waccepts;
+import static tests.MinSeminringPostStarTests.wnormal;
+import static tests.MinSeminringPostStarTests.wpop;
+import static tests.MinSeminringPostStarTests.wpush;
+import static tests.TestHelper.ACC;
+import static tests.TestHelper.a;
+import static tests.TestHelper.t;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import org.junit.Test;
+import tests.TestHelper.Abstraction;
+import tests.TestHelper.StackSymbol;
+import wpds.impl.Transition;
+import wpds.impl.WeightedPAutomaton;
+import wpds.impl.WeightedPushdownSystem;
+
+public class CompactionTests {
+
+  @Test
+  public void retainsReachableTransitions() {
+    WeightedPAutomaton<StackSymbol, Abstraction, MinSemiring> fa = saturated();
+    List<Transition<StackSymbol, Abstraction>> before = Lists.newArrayList(fa.getTransitions());
+    Transition<StackSymbol, Abstraction> retained = t(6, "h", ACC);
+    assertTrue(fa.containsTransition(retained));
+    Set<Transition<StackSymbol, Abstraction>> expected = reachable(fa, retained);
+
+    fa.compact(Collections.singleton(retained));
+
+    assertEquals(expected, Sets.newHashSet(fa.getTransitions()));
+    assertTrue(fa.getTransitions().size() < before.size());
+    for (Transition<StackSymbol, Abstraction> t : before) {
+      assertEquals(expected.contains(t), fa.containsTransition(t));
+      if (!expected.contains(t)) {
+        assertNull(fa.getWeightFor(t));
+      }
+    }
+    Set<Abstraction> states = Sets.newHashSet();
+    for (Transition<StackSymbol, Abstraction> t : expected) {
+      states.add(t.getStart());
+      states.add(t.getTarget());
+    }
+    assertEquals(states, fa.getStates());
+    assertEquals(1, fa.getTransitionsOutOf(a(6)).size());
+    assertEquals(expected.size(), countInto(fa, expected));
+  }
+
+  @Test
+  public void weightsAndListenersAfterCompaction() {
+    WeightedPAutomaton<StackSymbol, Abstraction, MinSemiring> reference = saturated();
+    WeightedPAutomaton<StackSymbol, Abstraction, MinSemiring> fa = saturated();
+    fa.compact(Lists.newArrayList(fa.getTransitionsOutOf(a(2))));
+    assertFalse(fa.getTransitions().isEmpty());
+    for (Transition<StackSymbol, Abstraction> t : fa.getTransitions()) {
+      assertEquals(reference.getWeightFor(t).i, fa.getWeightFor(t).i);
+    }
+    // Newly registered listeners are replayed the remaining transitions
+    List<Transition<StackSymbol, Abstraction>> replayed = Lists.newArrayList();
+    fa.registerListener((t, w, aut) -> replayed.add(t));
+    assertEquals(fa.getTransitions().size(), replayed.size());
+  }
+
+  @Test
+  public void growsAfterCompaction() {
+    WeightedPAutomaton<StackSymbol, Abstraction, MinSemiring> fa = saturated();
+    fa.compact(Lists.newArrayList(fa.getTransitionsOutOf(a(1))));
+    int size = fa.getTransitions().size();
+    assertTrue(fa.addWeightForTransition(t(9, "z", 1), w(4)));
+    assertEquals(size + 1, fa.getTransitions().size());
+    assertEquals(4, fa.getWeightFor(t(9, "z", 1)).i);
+    assertTrue(fa.getTransitionsInto(a(1)).contains(t(9, "z", 1)));
+    assertTrue(fa.addWeightForTransition(t(9, "z", 1), w(2)));
+    assertEquals(2, fa.getWeightFor(t(9, "z", 1)).i);
+  }
+
+  private static int countInto(
+      WeightedPAutomaton<StackSymbol, Abstraction, MinSemiring> fa,
+      Set<Transition<StackSymbol, Abstraction>> kept) {
+    Set<Transition<StackSymbol, Abstraction>> into = Sets.newHashSet();
+    for (Transition<StackSymbol, Abstraction> t : kept) {
+      into.addAll(fa.getTransitionsInto(t.getTarget()));
+    }
+    return into.size();
+  }
+
+  private static Set<Transition<StackSymbol, Abstraction>> reachable(
+      WeightedPAutomaton<StackSymbol, Abstraction, MinSemiring> fa,
+      Transition<StackSymbol, Abstraction> root) {
+    Set<Transition<StackSymbol, Abstraction>> res = Sets.newHashSet(root);
+    List<Abstraction> worklist = Lists.newArrayList(root.getTarget());
+    Set<Abstraction> visited = Sets.newHashSet();
+    while (!worklist.isEmpty()) {
+      Abstraction state = worklist.remove(worklist.size() - 1);
+      if (visited.add(state)) {
+        for (Transition<StackSymbol, Abstraction> t : fa.getTransitionsOutOf(state)) {
+          res.add(t);
+          worklist.add(t.getTarget());
+        }
+      }
+    }
+    return res;
+  }
+
+  private static WeightedPAutomaton<StackSymbol, Abstraction, MinSemiring> saturated() {
+    WeightedPushdownSystem<StackSymbol, Abstraction, MinSemiring> pds =
+        new WeightedPushdownSystem<>();
+    pds.addRule(wnormal(1, "a", 2, "b", w(1)));
+    pds.addRule(wpush(2, "b", 3, "c", "d", w(2)));
+    pds.addRule(wnormal(3, "c", 4, "e", w(1)));
+    pds.addRule(wpop(4, "e", 5, w(1)));
+    pds.addRule(wnormal(5, "d", 2, "f", w(10)));
+    pds.addRule(wpush(2, "f", 3, "c", "g", w(20)));
+    pds.addRule(wnormal(5, "g", 6, "h", w(1)));
+    WeightedPAutomaton<StackSymbol, Abstraction, MinSemiring> fa = waccepts(1, "a", w(0));
+    pds.poststar(fa);
+    return fa;
+  }
+
+  private static MinSemiring w(int i) {
+    return new MinSemiring(i);
+  }
+}
@@ -0,0 +1,63 @@
+/**
+ * ***************************************************************************** Copyright (c) 2018
+ * Fraunhofer IEM, Paderborn, Germany. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * <p>SPDX-License-Identifier: EPL-2.0
+ *
+ * <p>Contributors: Johannes Spaeth - initial API and implementation
+ * *****************************************************************************
+ */
+package tests;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.base.Stopwatch;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tests.FinalWeightsTests.PlainMin;
+import tests.TestHelper.Abstraction;
+import tests.TestHelper.StackSymbol;
+import wpds.impl.Transition;
+import wpds.impl.WeightedPAutomaton;
+
+public class FinalWeightsLongTest {
+  private static final Logger LOGGER = LoggerFactory.getLogger(FinalWeightsLongTest.class);
+
+  /** Logs the computation times of both orders on a larger automaton. */
+  @Test
+  public void benchmark() {
+    for (int i = 0; i < 2; i++) {
+      WeightedPAutomaton<StackSymbol, Abstraction, MinSemiring> selective =
+          FinalWeightsTests.randomAutomaton(
+              new Random(i), MinSemiring.one(), MinSemiring::new, 3000, 30000);
+      WeightedPAutomaton<StackSymbol, Abstraction, PlainMin> plain =
+          FinalWeightsTests.randomAutomaton(
+              new Random(i), new PlainMin(0), PlainMin::new, 3000, 30000);
+      Stopwatch watch = Stopwatch.createStarted();
+      Map<Transition<StackSymbol, Abstraction>, PlainMin> plainWeights =
+          plain.getTransitionsToFinalWeights();
+      long plainMillis = watch.elapsed(TimeUnit.MILLISECONDS);
+      watch = Stopwatch.createStarted();
+      Map<Transition<StackSymbol, Abstraction>, MinSemiring> selectiveWeights =
+          selective.getTransitionsToFinalWeights();
+      long selectiveMillis = watch.elapsed(TimeUnit.MILLISECONDS);
+      watch = Stopwatch.createStarted();
+      selective.getTransitionsToFinalWeights();
+      long cachedMillis = watch.elapsed(TimeUnit.MILLISECONDS);
+      assertEquals(
+          FinalWeightsTests.values(plainWeights), FinalWeightsTests.values(selectiveWeights));
+      LOGGER.info(
+          "Final weights of {} transitions: worklist {}ms, selective {}ms, cached {}ms",
+          plainWeights.size(),
+          plainMillis,
+          selectiveMillis,
+          cachedMillis);
+    }
+  }
+}
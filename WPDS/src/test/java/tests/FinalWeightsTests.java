@@ -0,0 +1,221 @@
+/**
+ * ***************************************************************************** Copyright (c) 2018
+ * Fraunhofer IEM, Paderborn, Germany. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * <p>SPDX-License-Identifier: EPL-2.0
+ *
+ * <p>Contributors: Johannes Spaeth - initial API and implementation
+ * *****************************************************************************
+ */
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static tests.TestHelper.ACC;
+import static tests.TestHelper.a;
+import static tests.TestHelper.s;
+import static tests.TestHelper.t;
+
+import com.google.common.collect.Maps;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.function.IntFunction;
+import org.junit.Test;
+import tests.TestHelper.Abstraction;
+import tests.TestHelper.StackSymbol;
+import wpds.impl.Transition;
+import wpds.impl.Weight;
+import wpds.impl.WeightedPAutomaton;
+
+public class FinalWeightsTests {
+
+  @Test
+  public void sameAsReference() {
+    Random random = new Random(3);
+    for (int round = 0; round < 50; round++) {
+      long seed = random.nextLong();
+      WeightedPAutomaton<StackSymbol, Abstraction, MinSemiring> selective =
+          randomAutomaton(new Random(seed), MinSemiring.one(), MinSemiring::new, 12, 60);
+      WeightedPAutomaton<StackSymbol, Abstraction, PlainMin> plain =
+          randomAutomaton(new Random(seed), new PlainMin(0), PlainMin::new, 12, 60);
+      Map<Transition<StackSymbol, Abstraction>, Integer> expected = reference(plain);
+      assertEquals("Round " + round, expected, values(plain.getTransitionsToFinalWeights()));
+      assertEquals("Round " + round, expected, values(selective.getTransitionsToFinalWeights()));
+    }
+  }
+
+  @Test
+  public void pathsThroughGeneratedStates() {
+    WeightedPAutomaton<StackSymbol, Abstraction, MinSemiring> fa = automaton(MinSemiring.one());
+    fa.addInitialState(ACC);
+    fa.addWeightForTransition(t(a(1, "g"), "x", ACC), w(1));
+    fa.addWeightForTransition(t(a(2, "g"), "y", a(1, "g")), w(2));
+    fa.addWeightForTransition(t(a(2, "g"), "z", ACC), w(10));
+    fa.addWeightForTransition(t(a(3), "u", a(2, "g")), w(3));
+    // Not generated, the paths do not continue into it
+    fa.addWeightForTransition(t(a(4), "v", a(3)), w(1));
+    Map<Transition<StackSymbol, Abstraction>, MinSemiring> weights =
+        fa.getTransitionsToFinalWeights();
+    assertEquals(1, weights.get(t(a(1, "g"), "x", ACC)).i);
+    assertEquals(3, weights.get(t(a(2, "g"), "y", a(1, "g"))).i);
+    assertEquals(10, weights.get(t(a(2, "g"), "z", ACC)).i);
+    assertEquals(6, weights.get(t(a(3), "u", a(2, "g"))).i);
+    assertEquals(4, weights.size());
+  }
+
+  @Test
+  public void cachedUntilChanged() {
+    WeightedPAutomaton<StackSymbol, Abstraction, MinSemiring> fa = automaton(MinSemiring.one());
+    fa.addInitialState(ACC);
+    fa.addWeightForTransition(t(a(1, "g"), "x", ACC), w(5));
+    Map<Transition<StackSymbol, Abstraction>, MinSemiring> first =
+        fa.getTransitionsToFinalWeights();
+    assertSame(first, fa.getTransitionsToFinalWeights());
+
+    fa.addWeightForTransition(t(a(1, "g"), "x", ACC), w(2));
+    Map<Transition<StackSymbol, Abstraction>, MinSemiring> second =
+        fa.getTransitionsToFinalWeights();
+    assertNotSame(first, second);
+    assertEquals(2, second.get(t(a(1, "g"), "x", ACC)).i);
+
+    WeightedPAutomaton<StackSymbol, Abstraction, MinSemiring> nested =
+        fa.createNestedAutomaton(a(1, "g"));
+    nested.addWeightForTransition(t(a(2, "g"), "y", a(1, "g")), w(4));
+    Map<Transition<StackSymbol, Abstraction>, MinSemiring> third =
+        fa.getTransitionsToFinalWeights();
+    assertNotSame(second, third);
+    assertEquals(6, third.get(t(a(2, "g"), "y", a(1, "g"))).i);
+  }
+
+  /**
+   * Transitions between plain and generated states, all paths end in the initial state ACC. Only
+   * generated states pass on weights.
+   */
+  static <W extends Weight> WeightedPAutomaton<StackSymbol, Abstraction, W> randomAutomaton(
+      Random random, W one, IntFunction<W> weight, int states, int transitions) {
+    WeightedPAutomaton<StackSymbol, Abstraction, W> fa = automaton(one);
+    fa.addInitialState(ACC);
+    for (int i = 0; i < transitions; i++) {
+      Abstraction start = random.nextInt(3) == 0 ? a(i % states) : a(random.nextInt(states), "g");
+      Abstraction target =
+          random.nextInt(states / 4 + 1) == 0 ? ACC : a(random.nextInt(states), "g");
+      fa.addWeightForTransition(
+          t(start, "l" + random.nextInt(3), target), weight.apply(random.nextInt(20) + 1));
+    }
+    return fa;
+  }
+
+  /** Relaxes all transitions until no weight changes, weights are min-plus over ints. */
+  private static Map<Transition<StackSymbol, Abstraction>, Integer> reference(
+      WeightedPAutomaton<StackSymbol, Abstraction, PlainMin> fa) {
+    Map<Abstraction, Integer> stateWeights = Maps.newHashMap();
+    stateWeights.put(ACC, 0);
+    Map<Transition<StackSymbol, Abstraction>, Integer> res = Maps.newHashMap();
+    Collection<Transition<StackSymbol, Abstraction>> transitions = fa.getTransitions();
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+      for (Transition<StackSymbol, Abstraction> t : transitions) {
+        Integer atTarget = stateWeights.get(t.getTarget());
+        if (atTarget == null) {
+          continue;
+        }
+        int value = atTarget + fa.getWeightFor(t).i;
+        Integer old = res.get(t);
+        if (old == null || value < old) {
+          res.put(t, value);
+          changed = true;
+          if (fa.isGeneratedState(t.getStart())) {
+            Integer atStart = stateWeights.get(t.getStart());
+            if (atStart == null || value < atStart) {
+              stateWeights.put(t.getStart(), value);
+            }
+          }
+        }
+      }
+    }
+    return res;
+  }
+
+  static Map<Transition<StackSymbol, Abstraction>, Integer> values(
+      Map<Transition<StackSymbol, Abstraction>, ? extends Weight> weights) {
+    Map<Transition<StackSymbol, Abstraction>, Integer> res = Maps.newHashMap();
+    for (Entry<Transition<StackSymbol, Abstraction>, ? extends Weight> e : weights.entrySet()) {
+      Weight w = e.getValue();
+      res.put(e.getKey(), w instanceof PlainMin ? ((PlainMin) w).i : ((MinSemiring) w).i);
+    }
+    return res;
+  }
+
+  private static <W extends Weight> WeightedPAutomaton<StackSymbol, Abstraction, W> automaton(
+      W one) {
+    WeightedPAutomaton<StackSymbol, Abstraction, W> aut =
+        new WeightedPAutomaton<StackSymbol, Abstraction, W>() {
+
+          @Override
+          public Abstraction createState(Abstraction d, StackSymbol loc) {
+            return new Abstraction(d, loc);
+          }
+
+          @Override
+          public StackSymbol epsilon() {
+            return s("EPS");
+          }
+
+          @Override
+          public W getOne() {
+            return one;
+          }
+
+          @Override
+          public boolean isGeneratedState(Abstraction d) {
+            return d.s != null;
+          }
+        };
+    aut.addFinalState(ACC);
+    return aut;
+  }
+
+  private static MinSemiring w(int i) {
+    return new MinSemiring(i);
+  }
+
+  /** Min-plus weights without the {@link wpds.impl.SelectiveWeight} capability. */
+  static class PlainMin extends Weight {
+    private final int i;
+
+    PlainMin(int i) {
+      this.i = i;
+    }
+
+    @Override
+    public Weight extendWith(Weight other) {
+      return new PlainMin(i + ((PlainMin) other).i);
+    }
+
+    @Override
+    public Weight combineWith(Weight other) {
+      return new PlainMin(Math.min(i, ((PlainMin) other).i));
+    }
+
+    @Override
+    public int hashCode() {
+      return i;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return obj instanceof PlainMin && ((PlainMin) obj).i == i;
+    }
+
+    @Override
+    public String toString() {
+      return Integer.toString(i);
+    }
+  }
+}
@@ -0,0 +1,176 @@
+/**
+ * ***************************************************************************** Copyright (c) 2018
+ * Fraunhofer IEM, Paderborn, Germany. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * <p>SPDX-License-Identifier: EPL-2.0
+ *
+ * <p>Contributors: Johannes Spaeth - initial API and implementation
+ * *****************************************************************************
+ */
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static tests.TestHelper.ACC;
+import static tests.TestHelper.a;
+import static tests.TestHelper.s;
+import static tests.TestHelper.t;
+import static tests.TestHelper.wnormal;
+import static tests.TestHelper.wpop;
+import static tests.TestHelper.wpush;
+
+import com.google.common.collect.Sets;
+import java.util.Collection;
+import java.util.Set;
+import org.junit.Test;
+import tests.TestHelper.Abstraction;
+import tests.TestHelper.StackSymbol;
+import wpds.impl.InternedTransitionStore;
+import wpds.impl.Transition;
+import wpds.impl.TransitionStore;
+import wpds.impl.WeightedPAutomaton;
+import wpds.impl.WeightedPushdownSystem;
+
+public class InternedTransitionStoreTests {
+
+  @Test
+  public void addAndLookup() {
+    InternedTransitionStore<StackSymbol, Abstraction, NumWeight> store =
+        new InternedTransitionStore<>();
+    assertTrue(store.add(t(1, "a", 2)));
+    assertTrue(store.add(t(1, "b", 2)));
+    assertTrue(store.add(t(1, "a", 3)));
+    assertFalse(store.add(t(1, "a", 2)));
+    assertEquals(3, store.size());
+    assertTrue(store.contains(t(1, "b", 2)));
+    assertFalse(store.contains(t(2, "b", 1)));
+    assertFalse(store.contains(t(1, "x", 2)));
+    assertNull(store.getWeight(t(1, "a", 2)));
+    store.setWeight(t(1, "a", 2), new NumWeight(3));
+    assertEquals(new NumWeight(3), store.getWeight(t(1, "a", 2)));
+    assertEquals(3, store.getTransitionsOutOf(a(1)).size());
+    assertEquals(2, store.getTransitionsOutOf(a(1), s("a")).size());
+    assertEquals(0, store.getTransitionsOutOf(a(1), s("x")).size());
+    assertEquals(2, store.getTransitionsInto(a(2)).size());
+    assertEquals(0, store.getTransitionsInto(a(4)).size());
+  }
+
+  @Test
+  public void growth() {
+    InternedTransitionStore<StackSymbol, Abstraction, NumWeight> store =
+        new InternedTransitionStore<>();
+    for (int i = 0; i < 10000; i++) {
+      store.add(t(i % 100, "l" + (i / 100), i));
+    }
+    assertEquals(10000, store.size());
+    for (int i = 0; i < 10000; i++) {
+      assertTrue(store.contains(t(i % 100, "l" + (i / 100), i)));
+    }
+    assertEquals(100, store.getTransitionsOutOf(a(7)).size());
+    assertEquals(1, store.getTransitionsOutOf(a(7), s("l5")).size());
+    assertEquals(Sets.newHashSet(store.getTransitions()).size(), 10000);
+  }
+
+  @Test
+  public void labelLookupsMatchAdjacency() {
+    InternedTransitionStore<StackSymbol, Abstraction, NumWeight> store =
+        new InternedTransitionStore<>();
+    for (int i = 0; i < 3000; i++) {
+      store.add(t(i % 30, "l" + (i % 7), i % 11));
+    }
+    for (int state = 0; state < 30; state++) {
+      for (int label = 0; label < 8; label++) {
+        Set<Transition<StackSymbol, Abstraction>> expected = Sets.newHashSet();
+        for (Transition<StackSymbol, Abstraction> t : store.getTransitionsOutOf(a(state))) {
+          if (t.getLabel().equals(s("l" + label))) {
+            expected.add(t);
+          }
+        }
+        Collection<Transition<StackSymbol, Abstraction>> byLabel =
+            store.getTransitionsOutOf(a(state), s("l" + label));
+        assertEquals(expected, Sets.newHashSet(byLabel));
+        assertEquals(expected.size(), byLabel.size());
+        assertEquals(expected.isEmpty(), byLabel.isEmpty());
+      }
+    }
+  }
+
+  @Test
+  public void iterationWhileAdding() {
+    InternedTransitionStore<StackSymbol, Abstraction, NumWeight> store =
+        new InternedTransitionStore<>();
+    store.add(t(1, "a", 2));
+    int seen = 0;
+    for (Transition<StackSymbol, Abstraction> t : store.getTransitionsOutOf(a(1))) {
+      store.add(t(1, "b" + seen, 2));
+      seen++;
+    }
+    assertEquals(1, seen);
+    assertEquals(2, store.getTransitionsOutOf(a(1)).size());
+  }
+
+  @Test
+  public void poststarSameAsHashStore() {
+    WeightedPushdownSystem<StackSymbol, Abstraction, NumWeight> pds =
+        new WeightedPushdownSystem<>();
+    pds.addRule(wnormal(1, "a", 1, "b", w(2)));
+    pds.addRule(wpush(1, "b", 1, "c", "d", w(3)));
+    pds.addRule(wnormal(1, "c", 1, "e", w(1)));
+    pds.addRule(wpush(1, "e", 1, "c", "f", w(1)));
+    pds.addRule(wpop(1, "e", 1, w(5)));
+    pds.addRule(wnormal(1, "f", 1, "e", w(1)));
+    WeightedPAutomaton<StackSymbol, Abstraction, NumWeight> hash = accepts(false);
+    WeightedPAutomaton<StackSymbol, Abstraction, NumWeight> interned = accepts(true);
+    pds.poststar(hash);
+    pds.poststar(interned);
+    assertEquals(
+        Sets.newHashSet(hash.getTransitions()), Sets.newHashSet(interned.getTransitions()));
+    for (Transition<StackSymbol, Abstraction> t : hash.getTransitions()) {
+      assertEquals(hash.getWeightFor(t), interned.getWeightFor(t));
+    }
+    assertEquals(hash.getStates(), interned.getStates());
+  }
+
+  private static WeightedPAutomaton<StackSymbol, Abstraction, NumWeight> accepts(
+      final boolean interned) {
+    WeightedPAutomaton<StackSymbol, Abstraction, NumWeight> aut =
+        new WeightedPAutomaton<StackSymbol, Abstraction, NumWeight>() {
+
+          @Override
+          protected TransitionStore<StackSymbol, Abstraction, NumWeight> createTransitionStore() {
+            return interned ? new InternedTransitionStore<>() : super.createTransitionStore();
+          }
+
+          @Override
+          public Abstraction createState(Abstraction d, StackSymbol loc) {
+            return new Abstraction(d, loc);
+          }
+
+          @Override
+          public StackSymbol epsilon() {
+            return s("EPS");
+          }
+
+          @Override
+          public NumWeight getOne() {
+            return NumWeight.one();
+          }
+
+          @Override
+          public boolean isGeneratedState(Abstraction d) {
+            return d.s != null;
+          }
+        };
+    aut.addFinalState(ACC);
+    aut.addWeightForTransition(t(1, "a", ACC), w(0));
+    return aut;
+  }
+
+  private static NumWeight w(int i) {
+    return new NumWeight(i);
+  }
+}
@@ -0,0 +1,43 @@
+/**
+ * ***************************************************************************** Copyright (c) 2018
+ * Fraunhofer IEM, Paderborn, Germany. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * <p>SPDX-License-Identifier: EPL-2.0
+ *
+ * <p>Contributors: Johannes Spaeth - initial API and implementation
+ * *****************************************************************************
+ */
+package tests;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class ListenerDispatchLongTest {
+  private static final Logger LOGGER = LoggerFactory.getLogger(ListenerDispatchLongTest.class);
+
+  @Test
+  public void registrationWithNestedAutomata() {
+    int nestedCount = 2000;
+    int listeners = 20000;
+    long millis = ListenerDispatchTests.registerWithNestedAutomata(nestedCount, listeners);
+    LOGGER.info(
+        "Registered {} listeners with {} nested automata in {}ms", listeners, nestedCount, millis);
+  }
+
+  @Test
+  public void dispatchThroughput() {
+    int states = 1000;
+    for (int listenersPerState : new int[] {1, 10, 1000}) {
+      int transitions = Math.max(2000, 200000 / listenersPerState);
+      long millis = ListenerDispatchTests.dispatch(states, listenersPerState, transitions);
+      LOGGER.info(
+          "Dispatch with {} listeners per state: {} transitions in {}ms",
+          listenersPerState,
+          transitions,
+          millis);
+    }
+  }
+}
@@ -0,0 +1,251 @@
+/**
+ * ***************************************************************************** Copyright (c) 2018
+ * Fraunhofer IEM, Paderborn, Germany. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * <p>SPDX-License-Identifier: EPL-2.0
+ *
+ * <p>Contributors: Johannes Spaeth - initial API and implementation
+ * *****************************************************************************
+ */
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static tests.TestHelper.a;
+import static tests.TestHelper.s;
+import static tests.TestHelper.t;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.Lists;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import tests.TestHelper.Abstraction;
+import tests.TestHelper.StackSymbol;
+import wpds.impl.Transition;
+import wpds.impl.WeightedPAutomaton;
+import wpds.interfaces.WPAStateListener;
+
+public class ListenerDispatchTests {
+
+  @Test
+  public void listenerAddedDuringDispatchSeesTransitionOnce() {
+    WeightedPAutomaton<StackSymbol, Abstraction, NumWeight> aut = automaton();
+    final CountingListener late = new CountingListener(a(1), 0);
+    aut.registerListener(
+        new WPAStateListener<StackSymbol, Abstraction, NumWeight>(a(1)) {
+          @Override
+          public void onOutTransitionAdded(
+              Transition<StackSymbol, Abstraction> t,
+              NumWeight w,
+              WeightedPAutomaton<StackSymbol, Abstraction, NumWeight> aut) {
+            aut.registerListener(late);
+          }
+
+          @Override
+          public void onInTransitionAdded(
+              Transition<StackSymbol, Abstraction> t,
+              NumWeight w,
+              WeightedPAutomaton<StackSymbol, Abstraction, NumWeight> aut) {}
+        });
+    aut.addTransition(t(1, "a", 2));
+    assertEquals(1, late.out);
+    aut.addTransition(t(1, "b", 2));
+    assertEquals(2, late.out);
+  }
+
+  @Test
+  public void nestedAutomataConsultParentListeners() {
+    WeightedPAutomaton<StackSymbol, Abstraction, NumWeight> parent = automaton();
+    CountingListener early = new CountingListener(a(1), 0);
+    parent.registerListener(early);
+    List<WeightedPAutomaton<StackSymbol, Abstraction, NumWeight>> updated = Lists.newArrayList();
+    parent.registerListener((t, w, aut) -> updated.add(aut));
+    WeightedPAutomaton<StackSymbol, Abstraction, NumWeight> nested =
+        parent.createNestedAutomaton(a(1));
+    nested.addTransition(t(1, "a", 2));
+    assertEquals(1, early.out);
+    assertEquals(Collections.singletonList(nested), updated);
+
+    // Replayed the transitions of the nested automata containing the state
+    CountingListener late = new CountingListener(a(2), 0);
+    parent.registerListener(late);
+    assertEquals(1, late.in);
+    nested.addTransition(t(3, "b", 2));
+    assertEquals(2, late.in);
+
+    // An equal listener held by the nested automaton as well is notified once
+    nested.registerListener(new CountingListener(a(1), 0));
+    nested.addTransition(t(1, "c", 2));
+    assertEquals(2, early.out);
+  }
+
+  @Test
+  public void sharedNestedAutomaton() {
+    WeightedPAutomaton<StackSymbol, Abstraction, NumWeight> first = automaton();
+    WeightedPAutomaton<StackSymbol, Abstraction, NumWeight> second = automaton();
+    CountingListener ofFirst = new CountingListener(a(1), 0);
+    CountingListener ofSecond = new CountingListener(a(1), 1);
+    first.registerListener(ofFirst);
+    second.registerListener(ofSecond);
+    WeightedPAutomaton<StackSymbol, Abstraction, NumWeight> nested =
+        first.createNestedAutomaton(a(1));
+    WeightedPAutomaton<StackSymbol, Abstraction, NumWeight> inner =
+        nested.createNestedAutomaton(a(1));
+    inner.addTransition(t(1, "a", 2));
+    assertEquals(1, ofFirst.out);
+    assertEquals(0, ofSecond.out);
+
+    // Linking replays the listeners gained, also those of the parents of the parent
+    second.addNestedAutomaton(nested);
+    assertEquals(1, ofFirst.out);
+    assertEquals(1, ofSecond.out);
+    inner.addTransition(t(1, "b", 2));
+    assertEquals(2, ofFirst.out);
+    assertEquals(2, ofSecond.out);
+
+    // Nested in each other
+    inner.addNestedAutomaton(first);
+    first.addTransition(t(1, "c", 2));
+    inner.addTransition(t(1, "d", 2));
+    assertEquals(4, ofFirst.out);
+    assertEquals(4, ofSecond.out);
+  }
+
+  @Test
+  public void registrationWithNestedAutomata() {
+    registerWithNestedAutomata(200, 2000);
+  }
+
+  @Test
+  public void dispatchToManyListeners() {
+    for (int listenersPerState : new int[] {1, 10, 100}) {
+      dispatch(100, listenersPerState, 1000);
+    }
+  }
+
+  /**
+   * Registers listeners at an automaton with nested automata, each listener sees the transition
+   * of one nested automaton once.
+   *
+   * @return The time taken by the registrations
+   */
+  static long registerWithNestedAutomata(int nestedCount, int listeners) {
+    WeightedPAutomaton<StackSymbol, Abstraction, NumWeight> parent = automaton();
+    for (int i = 0; i < nestedCount; i++) {
+      WeightedPAutomaton<StackSymbol, Abstraction, NumWeight> nested =
+          parent.createNestedAutomaton(a(i, "n"));
+      nested.addTransition(t(a(i, "n"), s("a"), a(i)));
+    }
+    CountingListener[] all = new CountingListener[listeners];
+    Stopwatch watch = Stopwatch.createStarted();
+    for (int i = 0; i < listeners; i++) {
+      all[i] = new CountingListener(a(i % nestedCount), i);
+      parent.registerListener(all[i]);
+    }
+    watch.stop();
+    long calls = 0;
+    for (CountingListener l : all) {
+      calls += l.in;
+    }
+    assertEquals(listeners, calls);
+    return watch.elapsed(TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Adds transitions along a cycle of states, each state holding the given number of listeners,
+   * and checks that every listener of both ends is notified once per transition.
+   *
+   * @return The time taken to add the transitions
+   */
+  static long dispatch(int states, int listenersPerState, int transitions) {
+    WeightedPAutomaton<StackSymbol, Abstraction, NumWeight> aut = automaton();
+    CountingListener[] all = new CountingListener[states * listenersPerState];
+    for (int s = 0; s < states; s++) {
+      for (int l = 0; l < listenersPerState; l++) {
+        all[s * listenersPerState + l] = new CountingListener(a(s), l);
+        aut.registerListener(all[s * listenersPerState + l]);
+      }
+    }
+    StackSymbol[] labels = new StackSymbol[transitions / states + 1];
+    for (int i = 0; i < labels.length; i++) {
+      labels[i] = s("l" + i);
+    }
+    Stopwatch watch = Stopwatch.createStarted();
+    for (int i = 0; i < transitions; i++) {
+      aut.addTransition(t(a(i % states), labels[i / states], a((i + 1) % states)));
+    }
+    watch.stop();
+    long calls = 0;
+    for (CountingListener l : all) {
+      calls += l.out + l.in;
+    }
+    assertEquals(2L * transitions * listenersPerState, calls);
+    return watch.elapsed(TimeUnit.MILLISECONDS);
+  }
+
+  private static WeightedPAutomaton<StackSymbol, Abstraction, NumWeight> automaton() {
+    return new WeightedPAutomaton<StackSymbol, Abstraction, NumWeight>() {
+
+      @Override
+      public Abstraction createState(Abstraction d, StackSymbol loc) {
+        return new Abstraction(d, loc);
+      }
+
+      @Override
+      public StackSymbol epsilon() {
+        return s("EPS");
+      }
+
+      @Override
+      public NumWeight getOne() {
+        return NumWeight.one();
+      }
+
+      @Override
+      public boolean isGeneratedState(Abstraction d) {
+        return d.s != null;
+      }
+    };
+  }
+
+  private static class CountingListener
+      extends WPAStateListener<StackSymbol, Abstraction, NumWeight> {
+    private final int id;
+    int out;
+    int in;
+
+    CountingListener(Abstraction state, int id) {
+      super(state);
+      this.id = id;
+    }
+
+    @Override
+    public void onOutTransitionAdded(
+        Transition<StackSymbol, Abstraction> t,
+        NumWeight w,
+        WeightedPAutomaton<StackSymbol, Abstraction, NumWeight> aut) {
+      out++;
+    }
+
+    @Override
+    public void onInTransitionAdded(
+        Transition<StackSymbol, Abstraction> t,
+        NumWeight w,
+        WeightedPAutomaton<StackSymbol, Abstraction, NumWeight> aut) {
+      in++;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * super.hashCode() + id;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return super.equals(obj) && ((CountingListener) obj).id == id;
+    }
+  }
+}
@@ -11,10 +11,11 @@
  */
 package tests;
 
+import wpds.impl.SelectiveWeight;
 import wpds.impl.Weight;
 import wpds.interfaces.Location;
 
-public class MinSemiring extends Weight {
+public class MinSemiring extends Weight implements SelectiveWeight<MinSemiring> {
   int i;
 
   public MinSemiring(int i) {
@@ -67,6 +68,11 @@ public class MinSemiring extends Weight {
     return zero;
   }
 
+  @Override
+  public int compareTo(MinSemiring o) {
+    return Integer.compare(i, o.i);
+  }
+
   @Override
   public String toString() {
     return Integer.toString(i);
@@ -23,7 +23,6 @@ import static tests.TestHelper.t;
 
 import java.util.Collection;
 import org.junit.Before;
-import org.junit.Ignore;
 import org.junit.Test;
 import tests.TestHelper.Abstraction;
 import tests.TestHelper.StackSymbol;
@@ -31,7 +30,6 @@ import wpds.impl.PAutomaton;
 import wpds.impl.PushdownSystem;
 import wpds.impl.Transition;
 
-@Ignore
 public class PDSPrestarTests {
 
   private PushdownSystem<StackSymbol, Abstraction> pds;
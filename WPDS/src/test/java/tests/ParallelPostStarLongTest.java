@@ -0,0 +1,51 @@
+/**
+ * ***************************************************************************** Copyright (c) 2018
+ * Fraunhofer IEM, Paderborn, Germany. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * <p>SPDX-License-Identifier: EPL-2.0
+ *
+ * <p>Contributors: Johannes Spaeth - initial API and implementation
+ * *****************************************************************************
+ */
+package tests;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.base.Stopwatch;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tests.TestHelper.Abstraction;
+import tests.TestHelper.StackSymbol;
+import wpds.impl.Transition;
+import wpds.impl.WeightedPushdownSystem;
+
+public class ParallelPostStarLongTest {
+  private static final Logger LOGGER = LoggerFactory.getLogger(ParallelPostStarLongTest.class);
+
+  /** Logs the saturation times of a larger system for 1, 2, 4, 8 and 16 threads. */
+  @Test
+  public void scaling() {
+    WeightedPushdownSystem<StackSymbol, Abstraction, MinSemiring> pds =
+        ParallelPostStarTests.callCyclePds(20, 30);
+    Stopwatch watch = Stopwatch.createStarted();
+    Map<Transition<StackSymbol, Abstraction>, Integer> expected =
+        ParallelPostStarTests.saturate(pds, 0);
+    LOGGER.info(
+        "Sequential: {} transitions in {}ms",
+        expected.size(),
+        watch.elapsed(TimeUnit.MILLISECONDS));
+    for (int threads : ParallelPostStarTests.THREADS) {
+      watch = Stopwatch.createStarted();
+      Map<Transition<StackSymbol, Abstraction>, Integer> actual =
+          ParallelPostStarTests.saturate(pds, threads);
+      long millis = watch.elapsed(TimeUnit.MILLISECONDS);
+      assertEquals(expected, actual);
+      LOGGER.info("Parallel, {} threads: {}ms", threads, millis);
+    }
+  }
+}
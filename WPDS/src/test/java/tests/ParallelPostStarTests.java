@@ -0,0 +1,155 @@
+/**
+ * ***************************************************************************** Copyright (c) 2018
+ * Fraunhofer IEM, Paderborn, Germany. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * <p>SPDX-License-Identifier: EPL-2.0
+ *
+ * <p>Contributors: Johannes Spaeth - initial API and implementation
+ * *****************************************************************************
+ */
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static tests.MinSeminringPostStarTests.waccepts;
+import static tests.MinSeminringPostStarTests.wnormal;
+import static tests.MinSeminringPostStarTests.wpop;
+import static tests.MinSeminringPostStarTests.wpush;
+
+import com.google.common.collect.Maps;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+import tests.TestHelper.Abstraction;
+import tests.TestHelper.StackSymbol;
+import wpds.impl.Transition;
+import wpds.impl.WeightedPAutomaton;
+import wpds.impl.WeightedPushdownSystem;
+import wpds.impl.WorklistScheduler;
+import wpds.impl.WorklistScheduler.Order;
+
+public class ParallelPostStarTests {
+  static final int[] THREADS = {1, 2, 4, 8, 16};
+
+  @Test
+  public void sameFixpointAsSequential() {
+    Random random = new Random(7);
+    for (int round = 0; round < 30; round++) {
+      WeightedPushdownSystem<StackSymbol, Abstraction, MinSemiring> pds = randomPds(random, 6, 40);
+      Map<Transition<StackSymbol, Abstraction>, Integer> expected = saturate(pds, 0);
+      for (int threads : new int[] {1, 2, 4}) {
+        assertEquals(
+            "Round " + round + ", " + threads + " threads", expected, saturate(pds, threads));
+      }
+    }
+  }
+
+  @Test
+  public void callsAndReturns() {
+    WeightedPushdownSystem<StackSymbol, Abstraction, MinSemiring> pds =
+        new WeightedPushdownSystem<>();
+    pds.addRule(wnormal(1, "a", 2, "b", w(1)));
+    pds.addRule(wpush(2, "b", 3, "c", "d", w(2)));
+    pds.addRule(wnormal(3, "c", 4, "e", w(1)));
+    pds.addRule(wpop(4, "e", 5, w(1)));
+    pds.addRule(wnormal(5, "d", 2, "f", w(10)));
+    pds.addRule(wpush(2, "f", 3, "c", "g", w(20)));
+    pds.addRule(wnormal(5, "g", 6, "h", w(1)));
+    Map<Transition<StackSymbol, Abstraction>, Integer> expected = saturate(pds, 0);
+    assertTrue(expected.size() > 8);
+    for (int threads : THREADS) {
+      assertEquals(threads + " threads", expected, saturate(pds, threads));
+    }
+  }
+
+  @Test
+  public void callCycle() {
+    WeightedPushdownSystem<StackSymbol, Abstraction, MinSemiring> pds = callCyclePds(4, 5);
+    Map<Transition<StackSymbol, Abstraction>, Integer> expected = saturate(pds, 0);
+    assertTrue(expected.size() > 50);
+    for (int threads : THREADS) {
+      assertEquals(threads + " threads", expected, saturate(pds, threads));
+    }
+  }
+
+  /**
+   * Methods of the given length, each calling two others, through which three facts flow and are
+   * swapped along the way.
+   */
+  static WeightedPushdownSystem<StackSymbol, Abstraction, MinSemiring> callCyclePds(
+      int methods, int length) {
+    WeightedPushdownSystem<StackSymbol, Abstraction, MinSemiring> pds =
+        new WeightedPushdownSystem<>();
+    int facts = 3;
+    String exit = "_" + length;
+    for (int m = 0; m < methods; m++) {
+      for (int i = 0; i < length; i++) {
+        for (int f = 1; f <= facts; f++) {
+          pds.addRule(wnormal(f, "m" + m + "_" + i, f, "m" + m + "_" + (i + 1), w(1)));
+          pds.addRule(
+              wnormal(f, "m" + m + "_" + i, f % facts + 1, "m" + m + "_" + (i + 1), w(2)));
+        }
+      }
+      for (int callee : new int[] {(m + 1) % methods, (m * 7 + 3) % methods}) {
+        for (int f = 1; f <= facts; f++) {
+          pds.addRule(
+              wpush(f, "m" + m + exit, f, "m" + callee + "_0", "m" + m + "_r" + callee, w(1)));
+          pds.addRule(wnormal(f, "m" + m + "_r" + callee, f, "m" + m + "_0", w(1)));
+        }
+      }
+      for (int f = 1; f <= facts; f++) {
+        pds.addRule(wpop(f, "m" + m + exit, f, w(1)));
+      }
+    }
+    return pds;
+  }
+
+  /** Saturates with the sequential engine if threads is 0, the parallel one otherwise. */
+  static Map<Transition<StackSymbol, Abstraction>, Integer> saturate(
+      WeightedPushdownSystem<StackSymbol, Abstraction, MinSemiring> pds, int threads) {
+    WeightedPAutomaton<StackSymbol, Abstraction, MinSemiring> fa = waccepts(1, "m0_0", w(0));
+    fa.addWeightForTransition(TestHelper.t(1, "a", TestHelper.ACC), w(0));
+    if (threads == 0) {
+      // Breadth first, the weights of a depth first saturation improve far more often
+      fa.setScheduler(new WorklistScheduler(Order.FIFO));
+      pds.poststar(fa);
+    } else {
+      pds.poststar(fa, threads);
+    }
+    Map<Transition<StackSymbol, Abstraction>, Integer> weights = Maps.newHashMap();
+    for (Transition<StackSymbol, Abstraction> t : fa.getTransitions()) {
+      // The distinguished one and a weight 0 are not equal, compare the values only
+      weights.put(t, fa.getWeightFor(t).i);
+    }
+    return weights;
+  }
+
+  private static WeightedPushdownSystem<StackSymbol, Abstraction, MinSemiring> randomPds(
+      Random random, int states, int rules) {
+    WeightedPushdownSystem<StackSymbol, Abstraction, MinSemiring> pds =
+        new WeightedPushdownSystem<>();
+    String[] labels = {"a", "b", "c", "d", "e", "f"};
+    for (int i = 0; i < rules; i++) {
+      int from = random.nextInt(states) + 1;
+      int to = random.nextInt(states) + 1;
+      String l1 = labels[random.nextInt(labels.length)];
+      String l2 = labels[random.nextInt(labels.length)];
+      MinSemiring weight = w(random.nextInt(5) + 1);
+      int kind = random.nextInt(5);
+      if (kind < 3) {
+        pds.addRule(wnormal(from, l1, to, l2, weight));
+      } else if (kind == 3) {
+        pds.addRule(wpush(from, l1, to, l2, labels[random.nextInt(labels.length)], weight));
+      } else {
+        pds.addRule(wpop(from, l1, to, weight));
+      }
+    }
+    return pds;
+  }
+
+  private static MinSemiring w(int i) {
+    return new MinSemiring(i);
+  }
+}
@@ -0,0 +1,90 @@
+/**
+ * ***************************************************************************** Copyright (c) 2018
+ * Fraunhofer IEM, Paderborn, Germany. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * <p>SPDX-License-Identifier: EPL-2.0
+ *
+ * <p>Contributors: Johannes Spaeth - initial API and implementation
+ * *****************************************************************************
+ */
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static tests.TestHelper.a;
+import static tests.TestHelper.s;
+import static tests.TestHelper.t;
+
+import org.junit.Test;
+import pathexpression.IRegEx;
+import tests.TestHelper.Abstraction;
+import tests.TestHelper.StackSymbol;
+import wpds.impl.PAutomaton;
+import wpds.impl.PathExpressionCache;
+
+public class PathExpressionCacheTests {
+
+  @Test
+  public void reuseExpressions() {
+    PAutomaton<StackSymbol, Abstraction> fa = automaton();
+    fa.addTransition(t(1, "a", 0));
+    fa.addTransition(t(2, "b", 1));
+    PathExpressionCache<StackSymbol, Abstraction> cache = fa.getPathExpressions();
+    IRegEx<StackSymbol> expr = fa.extractLanguage(a(0), a(2));
+    assertSame(expr, fa.extractLanguage(a(0), a(2)));
+    fa.extractLanguage(a(0), a(1));
+    assertEquals(1, cache.getComputedSegments());
+  }
+
+  @Test
+  public void growthOutsideSegment() {
+    PAutomaton<StackSymbol, Abstraction> fa = automaton();
+    fa.addTransition(t(1, "a", 0));
+    fa.addTransition(t(2, "b", 1));
+    PathExpressionCache<StackSymbol, Abstraction> cache = fa.getPathExpressions();
+    IRegEx<StackSymbol> expr = fa.extractLanguage(a(0), a(2));
+    fa.addTransition(t(5, "c", 6));
+    fa.addTransition(t(0, "d", 7));
+    fa.addTransition(t(3, "EPS", 2));
+    assertSame(expr, fa.extractLanguage(a(0), a(2)));
+    assertEquals(1, cache.getComputedSegments());
+  }
+
+  @Test
+  public void growthInsideSegment() {
+    PAutomaton<StackSymbol, Abstraction> fa = automaton();
+    fa.addTransition(t(1, "a", 0));
+    fa.addTransition(t(2, "b", 1));
+    PathExpressionCache<StackSymbol, Abstraction> cache = fa.getPathExpressions();
+    IRegEx<StackSymbol> expr = fa.extractLanguage(a(0), a(2));
+    fa.extractLanguage(a(6), a(5));
+    fa.addTransition(t(2, "c", 1));
+    assertNotSame(expr, fa.extractLanguage(a(0), a(2)));
+    assertEquals(3, cache.getComputedSegments());
+    fa.addTransition(t(5, "c", 6));
+    fa.extractLanguage(a(6), a(5));
+    assertEquals(4, cache.getComputedSegments());
+  }
+
+  private static PAutomaton<StackSymbol, Abstraction> automaton() {
+    return new PAutomaton<StackSymbol, Abstraction>() {
+      @Override
+      public Abstraction createState(Abstraction d, StackSymbol loc) {
+        return new Abstraction(d, loc);
+      }
+
+      @Override
+      public StackSymbol epsilon() {
+        return s("EPS");
+      }
+
+      @Override
+      public boolean isGeneratedState(Abstraction d) {
+        return d.s != null;
+      }
+    };
+  }
+}
@@ -0,0 +1,33 @@
+/**
+ * ***************************************************************************** Copyright (c) 2018
+ * Fraunhofer IEM, Paderborn, Germany. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * <p>SPDX-License-Identifier: EPL-2.0
+ *
+ * <p>Contributors: Johannes Spaeth - initial API and implementation
+ * *****************************************************************************
+ */
+package tests;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class ReachabilityIndexLongTest {
+  private static final Logger LOGGER = LoggerFactory.getLogger(ReachabilityIndexLongTest.class);
+
+  @Test
+  public void chainScaling() {
+    int length = 1000;
+    for (boolean useIndex : new boolean[] {false, true}) {
+      long millis = ReachabilityIndexTests.addChain(useIndex, length);
+      LOGGER.info(
+          "{}: chain of {} states in {}ms",
+          useIndex ? "Reachability index" : "Transitive closure",
+          length,
+          millis);
+    }
+  }
+}
@@ -0,0 +1,150 @@
+/**
+ * ***************************************************************************** Copyright (c) 2018
+ * Fraunhofer IEM, Paderborn, Germany. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * <p>SPDX-License-Identifier: EPL-2.0
+ *
+ * <p>Contributors: Johannes Spaeth - initial API and implementation
+ * *****************************************************************************
+ */
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static tests.TestHelper.a;
+import static tests.TestHelper.s;
+import static tests.TestHelper.t;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import tests.TestHelper.Abstraction;
+import tests.TestHelper.StackSymbol;
+import wpds.impl.PAutomaton;
+import wpds.impl.Transition;
+import wpds.interfaces.ReachabilityListener;
+
+public class ReachabilityIndexTests {
+
+  @Test
+  public void sameTransitionsAsTransitiveClosure() {
+    Random random = new Random(42);
+    for (int round = 0; round < 50; round++) {
+      long seed = random.nextLong();
+      for (boolean epsilon : new boolean[] {false, true}) {
+        List<Set<Transition<StackSymbol, Abstraction>>> closure = run(false, epsilon, seed);
+        List<Set<Transition<StackSymbol, Abstraction>>> index = run(true, epsilon, seed);
+        assertEquals("Seed " + seed + (epsilon ? " (epsilon)" : ""), closure, index);
+      }
+    }
+  }
+
+  @Test
+  public void cyclesAndLateRegistration() {
+    PAutomaton<StackSymbol, Abstraction> fa = automaton(true);
+    fa.addTransition(t(0, "n", 1));
+    fa.addTransition(t(1, "n", 2));
+    fa.addTransition(t(2, "n", 0));
+    Set<Transition<StackSymbol, Abstraction>> reachable = register(fa, a(1), false);
+    assertEquals(3, reachable.size());
+    fa.addTransition(t(3, "n", 4));
+    assertEquals(3, reachable.size());
+    fa.addTransition(t(0, "m", 3));
+    assertEquals(5, reachable.size());
+    assertEquals(reachable, register(fa, a(2), false));
+  }
+
+  @Test
+  public void chain() {
+    for (boolean useIndex : new boolean[] {false, true}) {
+      addChain(useIndex, 100);
+    }
+  }
+
+  /**
+   * Adds a chain of transitions backwards from its end, a listener at its start sees all of them.
+   *
+   * @return The time taken to add the transitions
+   */
+  static long addChain(boolean useIndex, int length) {
+    PAutomaton<StackSymbol, Abstraction> fa = automaton(useIndex);
+    Set<Transition<StackSymbol, Abstraction>> reachable = register(fa, a(0), false);
+    Stopwatch watch = Stopwatch.createStarted();
+    for (int i = length; i > 0; i--) {
+      fa.addTransition(t(i - 1, "n", i));
+    }
+    watch.stop();
+    assertEquals(length, reachable.size());
+    return watch.elapsed(TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Adds random transitions and registers listeners at random states in between.
+   *
+   * @return The transitions reported to each listener.
+   */
+  private static List<Set<Transition<StackSymbol, Abstraction>>> run(
+      boolean useIndex, boolean epsilon, long seed) {
+    Random random = new Random(seed);
+    PAutomaton<StackSymbol, Abstraction> fa = automaton(useIndex);
+    List<Set<Transition<StackSymbol, Abstraction>>> reported = Lists.newArrayList();
+    for (int i = 0; i < 60; i++) {
+      if (random.nextInt(10) == 0) {
+        reported.add(register(fa, a(random.nextInt(15)), epsilon));
+      }
+      String label = random.nextBoolean() ? "EPS" : "n" + random.nextInt(3);
+      Abstraction start = a(random.nextInt(15));
+      Abstraction target = a(random.nextInt(15));
+      if (!start.equals(target)) {
+        fa.addTransition(t(start, label, target));
+      }
+    }
+    return reported;
+  }
+
+  private static Set<Transition<StackSymbol, Abstraction>> register(
+      PAutomaton<StackSymbol, Abstraction> fa, Abstraction state, boolean epsilon) {
+    final Set<Transition<StackSymbol, Abstraction>> reachable = Sets.newHashSet();
+    ReachabilityListener<StackSymbol, Abstraction> l =
+        new ReachabilityListener<StackSymbol, Abstraction>() {
+          @Override
+          public void reachable(Transition<StackSymbol, Abstraction> t) {
+            reachable.add(t);
+          }
+        };
+    if (epsilon) {
+      fa.registerDFSEpsilonListener(state, l);
+    } else {
+      fa.registerDFSListener(state, l);
+    }
+    return reachable;
+  }
+
+  private static PAutomaton<StackSymbol, Abstraction> automaton(boolean useIndex) {
+    PAutomaton<StackSymbol, Abstraction> fa =
+        new PAutomaton<StackSymbol, Abstraction>() {
+          @Override
+          public Abstraction createState(Abstraction d, StackSymbol loc) {
+            return new Abstraction(d, loc);
+          }
+
+          @Override
+          public StackSymbol epsilon() {
+            return s("EPS");
+          }
+
+          @Override
+          public boolean isGeneratedState(Abstraction d) {
+            return d.s != null;
+          }
+        };
+    fa.setUseReachabilityIndex(useIndex);
+    return fa;
+  }
+}
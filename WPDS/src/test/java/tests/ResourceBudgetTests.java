@@ -0,0 +1,111 @@
+/**
+ * ***************************************************************************** Copyright (c) 2018
+ * Fraunhofer IEM, Paderborn, Germany. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * <p>SPDX-License-Identifier: EPL-2.0
+ *
+ * <p>Contributors: Johannes Spaeth - initial API and implementation
+ * *****************************************************************************
+ */
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static tests.MinSeminringPostStarTests.waccepts;
+import static tests.MinSeminringPostStarTests.wnormal;
+import static tests.MinSeminringPostStarTests.wpush;
+
+import org.junit.Test;
+import tests.TestHelper.Abstraction;
+import tests.TestHelper.StackSymbol;
+import wpds.impl.ResourceBudget;
+import wpds.impl.ResourceBudget.Resource;
+import wpds.impl.ResourceBudgetExceededException;
+import wpds.impl.Transition;
+import wpds.impl.WeightedPAutomaton;
+import wpds.impl.WeightedPushdownSystem;
+
+public class ResourceBudgetTests {
+
+  @Test
+  public void transitionsPerAutomaton() {
+    WeightedPAutomaton<StackSymbol, Abstraction, MinSemiring> fa = waccepts(1, "a", w(0));
+    fa.setResourceBudget(new ResourceBudget(4, 0, 0, 0));
+    try {
+      pds().poststar(fa);
+      fail("Budget not exceeded");
+    } catch (ResourceBudgetExceededException e) {
+      assertEquals(Resource.TRANSITIONS, e.getResource());
+      assertEquals(5, e.getUsage());
+    }
+    // The partial automaton stays consistent
+    assertEquals(5, fa.getTransitions().size());
+    for (Transition<StackSymbol, Abstraction> t : fa.getTransitions()) {
+      assertNotNull(fa.getWeightFor(t));
+    }
+  }
+
+  @Test
+  public void retainedBytesAcrossAutomata() {
+    ResourceBudget budget = new ResourceBudget(0, 0, 0, 10000);
+    int added = 0;
+    try {
+      for (int i = 0; i < 100; i++) {
+        WeightedPAutomaton<StackSymbol, Abstraction, MinSemiring> fa = waccepts(1, "a", w(0));
+        fa.setResourceBudget(budget);
+        pds().poststar(fa);
+        added += fa.getTransitions().size();
+      }
+      fail("Budget not exceeded");
+    } catch (ResourceBudgetExceededException e) {
+      assertEquals(Resource.RETAINED_BYTES, e.getResource());
+    }
+    assertTrue(added > 0);
+    assertTrue(budget.getRetainedBytes() > 10000);
+  }
+
+  @Test
+  public void resetStartsOverWithTheSameCaps() {
+    ResourceBudget budget = new ResourceBudget(0, 0, 0, 10000);
+    WeightedPAutomaton<StackSymbol, Abstraction, MinSemiring> fa = waccepts(1, "a", w(0));
+    fa.setResourceBudget(budget);
+    pds().poststar(fa);
+    assertTrue(budget.getRetainedBytes() > 0);
+    budget.reset();
+    assertEquals(0, budget.getRetainedBytes());
+    ResourceBudget copy = new ResourceBudget(budget);
+    // The caps are copied, the usage is not
+    try {
+      for (int i = 0; i < 100; i++) {
+        WeightedPAutomaton<StackSymbol, Abstraction, MinSemiring> next = waccepts(1, "a", w(0));
+        next.setResourceBudget(copy);
+        pds().poststar(next);
+      }
+      fail("Budget not exceeded");
+    } catch (ResourceBudgetExceededException e) {
+      assertEquals(Resource.RETAINED_BYTES, e.getResource());
+    }
+    assertEquals(0, budget.getRetainedBytes());
+  }
+
+  /** Saturates to more than 5 transitions, the first one is added by waccepts. */
+  private static WeightedPushdownSystem<StackSymbol, Abstraction, MinSemiring> pds() {
+    WeightedPushdownSystem<StackSymbol, Abstraction, MinSemiring> pds =
+        new WeightedPushdownSystem<>();
+    pds.addRule(wnormal(1, "a", 2, "b", w(1)));
+    pds.addRule(wpush(2, "b", 3, "c", "d", w(2)));
+    pds.addRule(wnormal(3, "c", 4, "e", w(1)));
+    pds.addRule(wnormal(4, "e", 5, "f", w(1)));
+    pds.addRule(wnormal(5, "f", 6, "g", w(1)));
+    pds.addRule(wnormal(6, "g", 7, "h", w(1)));
+    return pds;
+  }
+
+  private static MinSemiring w(int i) {
+    return new MinSemiring(i);
+  }
+}
@@ -0,0 +1,49 @@
+/**
+ * ***************************************************************************** Copyright (c) 2018
+ * Fraunhofer IEM, Paderborn, Germany. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * <p>SPDX-License-Identifier: EPL-2.0
+ *
+ * <p>Contributors: Johannes Spaeth - initial API and implementation
+ * *****************************************************************************
+ */
+package tests;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.base.Stopwatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tests.TestHelper.Abstraction;
+import tests.TestHelper.StackSymbol;
+import wpds.impl.WeightedPushdownSystem;
+
+public class RuleIndexLongTest {
+  private static final Logger LOGGER = LoggerFactory.getLogger(RuleIndexLongTest.class);
+  /** Number of rules of the synthetic PDS, override with -Dwpds.benchmark.rules=1000000 */
+  private static final int RULES = Integer.getInteger("wpds.benchmark.rules", 100000);
+
+  @Test
+  public void syntheticRuleLookup() {
+    WeightedPushdownSystem<StackSymbol, Abstraction, NumWeight> pds =
+        new WeightedPushdownSystem<StackSymbol, Abstraction, NumWeight>();
+    Stopwatch build = Stopwatch.createStarted();
+    RuleIndexTests.addSyntheticRules(pds, RULES);
+    build.stop();
+    Stopwatch query = Stopwatch.createStarted();
+    int matches = RuleIndexTests.lookupSyntheticRules(pds, RULES);
+    query.stop();
+    assertEquals(RuleIndexTests.expectedSyntheticMatches(RULES), matches);
+    assertEquals(RULES, pds.getAllRules().size());
+    LOGGER.info(
+        "Rule index: {} rules built in {}ms, {} lookups in {}ms",
+        RULES,
+        build.elapsed(TimeUnit.MILLISECONDS),
+        3 * RULES,
+        query.elapsed(TimeUnit.MILLISECONDS));
+  }
+}
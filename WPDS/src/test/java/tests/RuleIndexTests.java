@@ -0,0 +1,150 @@
+/**
+ * ***************************************************************************** Copyright (c) 2018
+ * Fraunhofer IEM, Paderborn, Germany. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * <p>SPDX-License-Identifier: EPL-2.0
+ *
+ * <p>Contributors: Johannes Spaeth - initial API and implementation
+ * *****************************************************************************
+ */
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static tests.TestHelper.a;
+import static tests.TestHelper.normal;
+import static tests.TestHelper.s;
+import static tests.TestHelper.wnormal;
+import static tests.TestHelper.wpop;
+import static tests.TestHelper.wpush;
+
+import org.junit.Before;
+import org.junit.Test;
+import tests.TestHelper.Abstraction;
+import tests.TestHelper.StackSymbol;
+import wpds.impl.NormalRule;
+import wpds.impl.WeightedPushdownSystem;
+import wpds.wildcard.Wildcard;
+import wpds.wildcard.WildcardPushdownSystem;
+
+public class RuleIndexTests {
+  private WeightedPushdownSystem<StackSymbol, Abstraction, NumWeight> pds;
+
+  @Before
+  public void init() {
+    pds = new WeightedPushdownSystem<StackSymbol, Abstraction, NumWeight>();
+  }
+
+  @Test
+  public void rulesStarting() {
+    pds.addRule(wnormal(1, "a", 2, "b", w(1)));
+    pds.addRule(wpush(1, "a", 2, "c", "d", w(1)));
+    pds.addRule(wpop(1, "b", 3, w(1)));
+    pds.addRule(wnormal(2, "a", 1, "b", w(1)));
+    pds.addRule(new NormalRule<>(a(1), new WildcardSymbol(), a(4), s("e"), w(1)));
+    assertEquals(3, pds.getRulesStarting(a(1), s("a")).size());
+    assertEquals(2, pds.getRulesStarting(a(1), s("b")).size());
+    assertEquals(1, pds.getRulesStarting(a(1), s("x")).size());
+    assertEquals(4, pds.getRulesStarting(a(1), new WildcardSymbol()).size());
+    assertEquals(0, pds.getRulesStarting(a(3), s("a")).size());
+  }
+
+  @Test
+  public void rulesEnding() {
+    pds.addRule(wnormal(1, "a", 2, "b", w(1)));
+    pds.addRule(wnormal(3, "c", 2, "b", w(1)));
+    pds.addRule(wpush(1, "a", 2, "b", "d", w(1)));
+    pds.addRule(wpop(1, "b", 2, w(1)));
+    assertEquals(2, pds.getNormalRulesEnding(a(2), s("b")).size());
+    assertEquals(1, pds.getPushRulesEnding(a(2), s("b")).size());
+    assertEquals(0, pds.getNormalRulesEnding(a(1), s("a")).size());
+  }
+
+  @Test
+  public void anyTransitionRulesByLabel() {
+    WildcardPushdownSystem<StackSymbol, Abstraction> wildcardPds =
+        new WildcardPushdownSystem<StackSymbol, Abstraction>() {
+          @Override
+          public Wildcard anyTransition() {
+            return new AnySymbol();
+          }
+        };
+    wildcardPds.addRule(normal(1, "*", 2, "*"));
+    wildcardPds.addRule(normal(1, "x", 3, "y"));
+    assertEquals(2, wildcardPds.getRulesStarting(a(1), s("x")).size());
+    assertTrue(wildcardPds.getRulesStarting(a(1), s("x")).contains(normal(1, "x", 2, "x")));
+    assertEquals(1, wildcardPds.getRulesStarting(a(1), s("z")).size());
+  }
+
+  @Test
+  public void syntheticRuleLookup() {
+    int rules = 3000;
+    addSyntheticRules(pds, rules);
+    assertEquals(expectedSyntheticMatches(rules), lookupSyntheticRules(pds, rules));
+    assertEquals(rules, pds.getAllRules().size());
+  }
+
+  /** Adds push, normal and pop rules in turn, spread over 1000 states. */
+  static void addSyntheticRules(
+      WeightedPushdownSystem<StackSymbol, Abstraction, NumWeight> pds, int rules) {
+    for (int i = 0; i < rules; i++) {
+      int state = i % 1000;
+      String label = "l" + (i / 1000);
+      if (i % 3 == 0) {
+        pds.addRule(wpush(state, label, state + 1, label + "'", label, w(1)));
+      } else if (i % 3 == 1) {
+        pds.addRule(wnormal(state, label, state + 1, label, w(1)));
+      } else {
+        pds.addRule(wpop(state, label, state + 1, w(1)));
+      }
+    }
+  }
+
+  /** Looks every synthetic rule up by its start and by its end, returns the number of matches. */
+  static int lookupSyntheticRules(
+      WeightedPushdownSystem<StackSymbol, Abstraction, NumWeight> pds, int rules) {
+    int matches = 0;
+    for (int i = 0; i < rules; i++) {
+      int state = i % 1000;
+      String label = "l" + (i / 1000);
+      matches += pds.getRulesStarting(a(state), s(label)).size();
+      matches += pds.getNormalRulesEnding(a(state + 1), s(label)).size();
+      matches += pds.getPushRulesEnding(a(state + 1), s(label + "'")).size();
+    }
+    return matches;
+  }
+
+  static int expectedSyntheticMatches(int rules) {
+    // Each rule is found once by getRulesStarting, normal and push rules once more by their end.
+    return rules + (rules + 2) / 3 + (rules + 1) / 3;
+  }
+
+  private static NumWeight w(int i) {
+    return new NumWeight(i);
+  }
+
+  private static class WildcardSymbol extends StackSymbol implements Wildcard {
+    WildcardSymbol() {
+      super("*");
+    }
+  }
+
+  /** The wildcard of a system whose rules use the plain label "*" for any transition. */
+  private static class AnySymbol extends StackSymbol implements Wildcard {
+    AnySymbol() {
+      super("*");
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return obj instanceof StackSymbol && "*".equals(((StackSymbol) obj).s);
+    }
+
+    @Override
+    public int hashCode() {
+      return super.hashCode();
+    }
+  }
+}
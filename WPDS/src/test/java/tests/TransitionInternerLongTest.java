@@ -0,0 +1,95 @@
+/**
+ * ***************************************************************************** Copyright (c) 2018
+ * Fraunhofer IEM, Paderborn, Germany. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * <p>SPDX-License-Identifier: EPL-2.0
+ *
+ * <p>Contributors: Johannes Spaeth - initial API and implementation
+ * *****************************************************************************
+ */
+package tests;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.Lists;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tests.TestHelper.Abstraction;
+import tests.TestHelper.StackSymbol;
+import wpds.impl.Transition;
+import wpds.impl.WeightedPAutomaton;
+
+public class TransitionInternerLongTest {
+  private static final Logger LOGGER = LoggerFactory.getLogger(TransitionInternerLongTest.class);
+
+  /** Logs allocation and lookup numbers of a saturation with many re-derivations. */
+  @Test
+  public void allocationAndLookupBenchmark() {
+    long allocatedBefore = allocatedBytes();
+    Stopwatch watch = Stopwatch.createStarted();
+    WeightedPAutomaton<StackSymbol, Abstraction, NumWeight> fa =
+        TransitionInternerTests.saturateCallCycle(40);
+    watch.stop();
+    long allocated = allocatedBytes() - allocatedBefore;
+    LOGGER.info(
+        "Saturation: {} transitions in {}ms, {}KB allocated",
+        fa.getTransitions().size(),
+        watch.elapsed(TimeUnit.MILLISECONDS),
+        allocatedBefore < 0 ? "?" : allocated / 1024);
+
+    List<Transition<StackSymbol, Abstraction>> transitions =
+        Lists.newArrayList(fa.getTransitions());
+    int rounds = 200;
+    int found = 0;
+    allocatedBefore = allocatedBytes();
+    watch = Stopwatch.createStarted();
+    for (int r = 0; r < rounds; r++) {
+      for (Transition<StackSymbol, Abstraction> t : transitions) {
+        if (fa.getTransition(t.getStart(), t.getLabel(), t.getTarget()) != null) {
+          found++;
+        }
+      }
+    }
+    watch.stop();
+    long allocatedByFind = allocatedBytes() - allocatedBefore;
+    long findMillis = watch.elapsed(TimeUnit.MILLISECONDS);
+    allocatedBefore = allocatedBytes();
+    watch = Stopwatch.createStarted();
+    for (int r = 0; r < rounds; r++) {
+      for (Transition<StackSymbol, Abstraction> t : transitions) {
+        Transition<StackSymbol, Abstraction> copy =
+            new Transition<>(t.getStart(), t.getLabel(), t.getTarget());
+        if (fa.getWeightFor(copy) != null) {
+          found++;
+        }
+      }
+    }
+    watch.stop();
+    long allocatedByNew = allocatedBytes() - allocatedBefore;
+    assertEquals(2 * rounds * transitions.size(), found);
+    LOGGER.info(
+        "Lookups: {} each, getTransition {}ms / {}KB, new Transition + getWeightFor {}ms / {}KB",
+        rounds * transitions.size(),
+        findMillis,
+        allocatedBefore < 0 ? "?" : allocatedByFind / 1024,
+        watch.elapsed(TimeUnit.MILLISECONDS),
+        allocatedBefore < 0 ? "?" : allocatedByNew / 1024);
+  }
+
+  /** @return The bytes allocated by the current thread so far, -1 if not supported by the JVM. */
+  private static long allocatedBytes() {
+    java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (bean instanceof com.sun.management.ThreadMXBean) {
+      return ((com.sun.management.ThreadMXBean) bean)
+          .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+    return -1;
+  }
+}
@@ -0,0 +1,112 @@
+/**
+ * ***************************************************************************** Copyright (c) 2018
+ * Fraunhofer IEM, Paderborn, Germany. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * <p>SPDX-License-Identifier: EPL-2.0
+ *
+ * <p>Contributors: Johannes Spaeth - initial API and implementation
+ * *****************************************************************************
+ */
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static tests.TestHelper.a;
+import static tests.TestHelper.s;
+import static tests.TestHelper.t;
+import static tests.TestHelper.waccepts;
+import static tests.TestHelper.wnormal;
+import static tests.TestHelper.wpop;
+import static tests.TestHelper.wpush;
+
+import com.google.common.collect.Lists;
+import java.util.List;
+import org.junit.Test;
+import tests.TestHelper.Abstraction;
+import tests.TestHelper.StackSymbol;
+import wpds.impl.Transition;
+import wpds.impl.TransitionInterner;
+import wpds.impl.WeightedPAutomaton;
+import wpds.impl.WeightedPushdownSystem;
+
+public class TransitionInternerTests {
+
+  @Test
+  public void canonicalInstances() {
+    TransitionInterner<StackSymbol, Abstraction> interner = new TransitionInterner<>();
+    List<Transition<StackSymbol, Abstraction>> canonical = Lists.newArrayList();
+    for (int i = 0; i < 1000; i++) {
+      Transition<StackSymbol, Abstraction> t = t(i, "n" + (i % 7), i + 1);
+      assertSame(t, interner.intern(t));
+      canonical.add(t);
+    }
+    assertEquals(1000, interner.size());
+    for (int i = 0; i < 1000; i++) {
+      assertSame(canonical.get(i), interner.intern(t(i, "n" + (i % 7), i + 1)));
+      assertSame(canonical.get(i), interner.find(t(i, "n" + (i % 7), i + 1)));
+      assertSame(canonical.get(i), interner.find(a(i), s("n" + (i % 7)), a(i + 1)));
+    }
+    assertEquals(1000, interner.size());
+    assertNull(interner.find(t(0, "n1", 1)));
+    assertNull(interner.find(a(1), s("n0"), a(0)));
+  }
+
+  @Test
+  public void automatonDispatchesCanonicalInstances() {
+    WeightedPAutomaton<StackSymbol, Abstraction, NumWeight> fa = waccepts(1, "a", w(3));
+    Transition<StackSymbol, Abstraction> first = fa.getTransition(a(1), s("a"), TestHelper.ACC);
+    assertNotNull(first);
+    List<Transition<StackSymbol, Abstraction>> dispatched = Lists.newArrayList();
+    fa.registerListener((t, w, aut) -> dispatched.add(t));
+    fa.addWeightForTransition(t(1, "a", TestHelper.ACC), w(1));
+    assertEquals(2, dispatched.size());
+    for (Transition<StackSymbol, Abstraction> t : dispatched) {
+      assertSame(first, t);
+    }
+    assertNotNull(fa.getWeightFor(t(1, "a", TestHelper.ACC)));
+    assertTrue(fa.containsTransition(t(1, "a", TestHelper.ACC)));
+    assertNull(fa.getTransition(a(1), s("b"), TestHelper.ACC));
+  }
+
+  @Test
+  public void lookupOfSaturatedTransitions() {
+    WeightedPAutomaton<StackSymbol, Abstraction, NumWeight> fa = saturateCallCycle(5);
+    assertTrue(fa.getTransitions().size() > 100);
+    for (Transition<StackSymbol, Abstraction> t : fa.getTransitions()) {
+      assertSame(t, fa.getTransition(t.getStart(), t.getLabel(), t.getTarget()));
+      assertNotNull(fa.getWeightFor(new Transition<>(t.getStart(), t.getLabel(), t.getTarget())));
+    }
+  }
+
+  /**
+   * Saturates a cycle of methods, each calling the next, whose statements are reached along two
+   * paths. Many transitions are derived several times.
+   */
+  static WeightedPAutomaton<StackSymbol, Abstraction, NumWeight> saturateCallCycle(int methods) {
+    WeightedPushdownSystem<StackSymbol, Abstraction, NumWeight> pds =
+        new WeightedPushdownSystem<>();
+    for (int m = 0; m < methods; m++) {
+      for (int i = 0; i < 20; i++) {
+        pds.addRule(wnormal(1, "m" + m + "_" + i, 1, "m" + m + "_" + (i + 1), w(1)));
+        pds.addRule(wnormal(1, "m" + m + "_" + i, 2, "m" + m + "_" + (i + 1), w(2)));
+        pds.addRule(wnormal(2, "m" + m + "_" + i, 1, "m" + m + "_" + (i + 1), w(1)));
+      }
+      int callee = (m + 1) % methods;
+      pds.addRule(wpush(1, "m" + m + "_20", 1, "m" + callee + "_0", "m" + m + "_r", w(1)));
+      pds.addRule(wpop(1, "m" + callee + "_20", 1, w(1)));
+      pds.addRule(wnormal(1, "m" + m + "_r", 1, "m" + m + "_0", w(1)));
+    }
+    WeightedPAutomaton<StackSymbol, Abstraction, NumWeight> fa = waccepts(1, "m0_0", w(0));
+    pds.poststar(fa);
+    return fa;
+  }
+
+  private static NumWeight w(int i) {
+    return new NumWeight(i);
+  }
+}
@@ -0,0 +1,233 @@
+/**
+ * ***************************************************************************** Copyright (c) 2018
+ * Fraunhofer IEM, Paderborn, Germany. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * <p>SPDX-License-Identifier: EPL-2.0
+ *
+ * <p>Contributors: Johannes Spaeth - initial API and implementation
+ * *****************************************************************************
+ */
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static tests.TestHelper.ACC;
+import static tests.TestHelper.a;
+import static tests.TestHelper.s;
+import static tests.TestHelper.t;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import java.util.Map;
+import java.util.Set;
+import org.junit.Test;
+import tests.TestHelper.Abstraction;
+import tests.TestHelper.StackSymbol;
+import wpds.impl.DifferentialWeight;
+import wpds.impl.NormalRule;
+import wpds.impl.PopRule;
+import wpds.impl.PushRule;
+import wpds.impl.Transition;
+import wpds.impl.Weight;
+import wpds.impl.WeightedPAutomaton;
+import wpds.impl.WeightedPushdownSystem;
+import wpds.impl.WorklistScheduler;
+import wpds.impl.WorklistScheduler.Order;
+import wpds.interfaces.WPAStateListener;
+
+public class WeightDeltaTests {
+  private static final int MOD = 16;
+  private static int extendedPairs;
+
+  @Test
+  public void sameSaturationWithLessExtensionWork() {
+    for (WorklistScheduler scheduler :
+        new WorklistScheduler[] {null, new WorklistScheduler(Order.FIFO)}) {
+      extendedPairs = 0;
+      Map<Transition<StackSymbol, Abstraction>, SumSet> full = saturate(false, scheduler);
+      int fullPairs = extendedPairs;
+      extendedPairs = 0;
+      Map<Transition<StackSymbol, Abstraction>, SumSet> delta =
+          saturate(true, scheduler == null ? null : new WorklistScheduler(Order.FIFO));
+      int deltaPairs = extendedPairs;
+      assertEquals(full, delta);
+      assertEquals(SumSet.all(), full.get(t(1, "x", ACC)));
+      assertTrue(deltaPairs + " >= " + fullPairs, deltaPairs < fullPairs);
+    }
+  }
+
+  /**
+   * A delta-accepting listener registered while a transition is pending with a new weight gets the
+   * weight dispatched before upon registration, and the delta on top once the transition is
+   * dispatched.
+   */
+  @Test
+  public void listenerRegisteredWhileReweightedTransitionPending() {
+    WeightedPAutomaton<StackSymbol, Abstraction, SumSet> fa = automaton();
+    fa.setPropagateWeightDeltas(true);
+    fa.setScheduler(new WorklistScheduler(Order.FIFO));
+    Map<Transition<StackSymbol, Abstraction>, SumSet> notified = Maps.newHashMap();
+    WPAStateListener<StackSymbol, Abstraction, SumSet> deltaListener =
+        new WPAStateListener<StackSymbol, Abstraction, SumSet>(a(1)) {
+          @Override
+          public void onOutTransitionAdded(
+              Transition<StackSymbol, Abstraction> t,
+              SumSet w,
+              WeightedPAutomaton<StackSymbol, Abstraction, SumSet> aut) {
+            notified.merge(t, w, (a, b) -> (SumSet) a.combineWith(b));
+          }
+
+          @Override
+          public void onInTransitionAdded(
+              Transition<StackSymbol, Abstraction> t,
+              SumSet w,
+              WeightedPAutomaton<StackSymbol, Abstraction, SumSet> aut) {}
+
+          @Override
+          public boolean acceptsWeightDeltas() {
+            return true;
+          }
+        };
+    fa.addWeightForTransition(t(1, "a", ACC), SumSet.of(0));
+    fa.registerListener(
+        (t, w, aut) -> {
+          if (t.equals(t(1, "b", ACC))) {
+            // Pending with the previously dispatched weight {0} while the listener registers
+            aut.addWeightForTransition(t(1, "a", ACC), SumSet.of(1));
+            aut.registerListener(deltaListener);
+          }
+        });
+    fa.addWeightForTransition(t(1, "b", ACC), SumSet.of(5));
+    assertEquals(fa.getWeightFor(t(1, "a", ACC)), notified.get(t(1, "a", ACC)));
+    assertEquals(SumSet.of(5), notified.get(t(1, "b", ACC)));
+  }
+
+  /** A loop that adds 1 or 3 to the weight, with a call in between, until all sums are reached. */
+  private static Map<Transition<StackSymbol, Abstraction>, SumSet> saturate(
+      boolean deltas, WorklistScheduler scheduler) {
+    WeightedPushdownSystem<StackSymbol, Abstraction, SumSet> pds = new WeightedPushdownSystem<>();
+    pds.addRule(normal(1, "a", 1, "b", SumSet.of(1)));
+    pds.addRule(normal(1, "a", 1, "b", SumSet.of(3)));
+    pds.addRule(push(1, "b", 2, "call", "c", SumSet.of(0)));
+    pds.addRule(normal(2, "call", 2, "ret", SumSet.of(2)));
+    pds.addRule(pop(2, "ret", 1, SumSet.of(0)));
+    pds.addRule(normal(1, "c", 1, "a", SumSet.of(0)));
+    pds.addRule(normal(1, "c", 1, "x", SumSet.of(0)));
+    WeightedPAutomaton<StackSymbol, Abstraction, SumSet> fa = automaton();
+    fa.setPropagateWeightDeltas(deltas);
+    fa.setScheduler(scheduler);
+    fa.addFinalState(ACC);
+    fa.addWeightForTransition(t(1, "a", ACC), SumSet.of(0));
+    pds.poststar(fa);
+    Map<Transition<StackSymbol, Abstraction>, SumSet> weights = Maps.newHashMap();
+    for (Transition<StackSymbol, Abstraction> t : fa.getTransitions()) {
+      weights.put(t, fa.getWeightFor(t));
+    }
+    return weights;
+  }
+
+  private static WeightedPAutomaton<StackSymbol, Abstraction, SumSet> automaton() {
+    return new WeightedPAutomaton<StackSymbol, Abstraction, SumSet>() {
+
+      @Override
+      public Abstraction createState(Abstraction d, StackSymbol loc) {
+        return new Abstraction(d, loc);
+      }
+
+      @Override
+      public StackSymbol epsilon() {
+        return s("EPS");
+      }
+
+      @Override
+      public SumSet getOne() {
+        return SumSet.of(0);
+      }
+
+      @Override
+      public boolean isGeneratedState(Abstraction d) {
+        return d.s != null;
+      }
+    };
+  }
+
+  private static NormalRule<StackSymbol, Abstraction, SumSet> normal(
+      int a, String n, int b, String m, SumSet w) {
+    return new NormalRule<>(a(a), s(n), a(b), s(m), w);
+  }
+
+  private static PushRule<StackSymbol, Abstraction, SumSet> push(
+      int a, String n, int b, String m, String l, SumSet w) {
+    return new PushRule<>(a(a), s(n), a(b), s(m), s(l), w);
+  }
+
+  private static PopRule<StackSymbol, Abstraction, SumSet> pop(int a, String n, int b, SumSet w) {
+    return new PopRule<>(a(a), s(n), a(b), w);
+  }
+
+  /**
+   * The set of sums (modulo {@link #MOD}) along all paths. Extending adds the sums pairwise, which
+   * distributes over the union.
+   */
+  private static class SumSet extends Weight implements DifferentialWeight<SumSet> {
+    private final Set<Integer> sums;
+
+    private SumSet(Set<Integer> sums) {
+      this.sums = sums;
+    }
+
+    static SumSet of(int sum) {
+      return new SumSet(Sets.newHashSet(sum));
+    }
+
+    static SumSet all() {
+      Set<Integer> all = Sets.newHashSet();
+      for (int i = 0; i < MOD; i++) {
+        all.add(i);
+      }
+      return new SumSet(all);
+    }
+
+    @Override
+    public Weight extendWith(Weight other) {
+      extendedPairs += sums.size() * ((SumSet) other).sums.size();
+      Set<Integer> res = Sets.newHashSet();
+      for (Integer a : sums) {
+        for (Integer b : ((SumSet) other).sums) {
+          res.add((a + b) % MOD);
+        }
+      }
+      return new SumSet(res);
+    }
+
+    @Override
+    public Weight combineWith(Weight other) {
+      Set<Integer> res = Sets.newHashSet(sums);
+      res.addAll(((SumSet) other).sums);
+      return new SumSet(res);
+    }
+
+    @Override
+    public SumSet difference(SumSet previous) {
+      Set<Integer> added = Sets.newHashSet(Sets.difference(sums, previous.sums));
+      return added.isEmpty() ? this : new SumSet(added);
+    }
+
+    @Override
+    public int hashCode() {
+      return sums.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return obj instanceof SumSet && ((SumSet) obj).sums.equals(sums);
+    }
+
+    @Override
+    public String toString() {
+      return sums.toString();
+    }
+  }
+}
@@ -0,0 +1,110 @@
+/**
+ * ***************************************************************************** Copyright (c) 2018
+ * Fraunhofer IEM, Paderborn, Germany. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * <p>SPDX-License-Identifier: EPL-2.0
+ *
+ * <p>Contributors: Johannes Spaeth - initial API and implementation
+ * *****************************************************************************
+ */
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static tests.TestHelper.ACC;
+import static tests.TestHelper.t;
+import static tests.TestHelper.waccepts;
+import static tests.TestHelper.wnormal;
+import static tests.TestHelper.wpop;
+import static tests.TestHelper.wpush;
+
+import com.google.common.collect.Maps;
+import java.util.Map;
+import org.junit.Test;
+import tests.TestHelper.Abstraction;
+import tests.TestHelper.StackSymbol;
+import wpds.impl.Transition;
+import wpds.impl.WeightFactory;
+import wpds.impl.WeightedPAutomaton;
+import wpds.impl.WeightedPushdownSystem;
+
+public class WeightFactoryTests {
+
+  @Test
+  public void equalWeightsAreIdentical() {
+    WeightFactory<NumWeight> factory = new WeightFactory<>();
+    NumWeight two = factory.canonical(new NumWeight(2));
+    assertSame(two, factory.canonical(new NumWeight(2)));
+    assertSame(two, factory.extend(new NumWeight(1), new NumWeight(1)));
+    assertSame(two, factory.combine(new NumWeight(2), NumWeight.zero()));
+    assertSame(NumWeight.one(), factory.canonical(NumWeight.one()));
+    assertEquals(4, factory.size());
+  }
+
+  @Test
+  public void operationsAreMemoized() {
+    WeightFactory<NumWeight> factory = new WeightFactory<>();
+    for (int i = 0; i < 10; i++) {
+      factory.extend(new NumWeight(1), new NumWeight(2));
+      factory.combine(new NumWeight(1), new NumWeight(2));
+    }
+    assertEquals(2, factory.getMisses());
+    assertEquals(18, factory.getHits());
+  }
+
+  @Test
+  public void cacheIsBounded() {
+    WeightFactory<NumWeight> factory = new WeightFactory<>(2);
+    factory.extend(new NumWeight(1), new NumWeight(1));
+    factory.extend(new NumWeight(1), new NumWeight(2));
+    factory.extend(new NumWeight(1), new NumWeight(1));
+    factory.extend(new NumWeight(1), new NumWeight(3));
+    assertEquals(3, factory.getMisses());
+    // (1, 2) is the least recently used pair and was evicted
+    factory.extend(new NumWeight(1), new NumWeight(1));
+    factory.extend(new NumWeight(1), new NumWeight(2));
+    assertEquals(4, factory.getMisses());
+    assertEquals(2, factory.getHits());
+  }
+
+  @Test
+  public void sameSaturationWithFactory() {
+    WeightFactory<NumWeight> factory = new WeightFactory<>();
+    Map<Transition<StackSymbol, Abstraction>, NumWeight> expected = saturate(null);
+    Map<Transition<StackSymbol, Abstraction>, NumWeight> actual = saturate(factory);
+    assertEquals(expected, actual);
+    assertEquals(NumWeight.zero(), actual.get(t(1, "b", ACC)));
+    assertEquals(new NumWeight(35), actual.get(t(4, "h", ACC)));
+    for (NumWeight w : actual.values()) {
+      assertSame(w, factory.canonical(w));
+    }
+    assertTrue(factory.getHits() > 0);
+  }
+
+  private static Map<Transition<StackSymbol, Abstraction>, NumWeight> saturate(
+      WeightFactory<NumWeight> factory) {
+    WeightedPushdownSystem<StackSymbol, Abstraction, NumWeight> pds =
+        new WeightedPushdownSystem<>();
+    pds.addRule(wnormal(1, "a", 1, "b", new NumWeight(1)));
+    pds.addRule(wnormal(1, "a", 1, "x", new NumWeight(1)));
+    pds.addRule(wnormal(1, "x", 1, "b", new NumWeight(1)));
+    pds.addRule(wnormal(1, "a", 1, "y", new NumWeight(1)));
+    pds.addRule(wpush(1, "y", 2, "call", "d", new NumWeight(2)));
+    pds.addRule(wnormal(2, "call", 2, "e", new NumWeight(3)));
+    pds.addRule(wpop(2, "e", 3, new NumWeight(4)));
+    pds.addRule(wnormal(3, "d", 1, "f", new NumWeight(5)));
+    pds.addRule(wpush(1, "f", 2, "call", "g", new NumWeight(6)));
+    pds.addRule(wnormal(3, "g", 4, "h", new NumWeight(7)));
+    WeightedPAutomaton<StackSymbol, Abstraction, NumWeight> fa = waccepts(1, "a", NumWeight.one());
+    fa.setWeightFactory(factory);
+    pds.poststar(fa);
+    Map<Transition<StackSymbol, Abstraction>, NumWeight> weights = Maps.newHashMap();
+    for (Transition<StackSymbol, Abstraction> t : fa.getTransitions()) {
+      weights.put(t, fa.getWeightFor(t));
+    }
+    return weights;
+  }
+}
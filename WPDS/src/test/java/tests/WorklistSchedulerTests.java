@@ -0,0 +1,139 @@
+/**
+ * ***************************************************************************** Copyright (c) 2018
+ * Fraunhofer IEM, Paderborn, Germany. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * <p>SPDX-License-Identifier: EPL-2.0
+ *
+ * <p>Contributors: Johannes Spaeth - initial API and implementation
+ * *****************************************************************************
+ */
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static tests.TestHelper.ACC;
+import static tests.TestHelper.t;
+import static tests.TestHelper.waccepts;
+import static tests.TestHelper.wnormal;
+import static tests.TestHelper.wpop;
+import static tests.TestHelper.wpush;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+import tests.TestHelper.Abstraction;
+import tests.TestHelper.StackSymbol;
+import wpds.impl.Transition;
+import wpds.impl.WeightedPAutomaton;
+import wpds.impl.WeightedPushdownSystem;
+import wpds.impl.WorklistScheduler;
+import wpds.impl.WorklistScheduler.Order;
+
+public class WorklistSchedulerTests {
+
+  @Test
+  public void sameSaturationForAllOrders() {
+    Map<Transition<StackSymbol, Abstraction>, NumWeight> expected = saturate(null);
+    assertTrue(expected.size() > 10);
+    for (Order order : Order.values()) {
+      assertEquals(order.toString(), expected, saturate(new WorklistScheduler(order)));
+    }
+  }
+
+  @Test
+  public void deepDerivationWithSmallStack() throws InterruptedException {
+    final int length = 20000;
+    final WeightedPushdownSystem<StackSymbol, Abstraction, NumWeight> pds =
+        new WeightedPushdownSystem<>();
+    for (int i = 0; i < length; i++) {
+      pds.addRule(wnormal(1, "l" + i, 1, "l" + (i + 1), w(1)));
+    }
+    for (Order order : Order.values()) {
+      final WorklistScheduler scheduler = new WorklistScheduler(order);
+      final WeightedPAutomaton<StackSymbol, Abstraction, NumWeight> fa =
+          waccepts(1, "l0", w(0));
+      fa.setScheduler(scheduler);
+      final AtomicReference<Throwable> failure = new AtomicReference<>();
+      Thread thread =
+          new Thread(
+              null,
+              () -> {
+                try {
+                  pds.poststar(fa);
+                } catch (Throwable e) {
+                  failure.set(e);
+                }
+              },
+              "poststar",
+              256 * 1024);
+      thread.start();
+      thread.join();
+      assertNull(order.toString(), failure.get());
+      assertEquals(length + 1, fa.getTransitions().size());
+      assertEquals(w(length), fa.getWeightFor(t(1, "l" + length, ACC)));
+      assertTrue(scheduler.isEmpty());
+      assertTrue(scheduler.getMaxSize() <= 2);
+    }
+  }
+
+  @Test
+  public void failedDispatchDiscardsPendingUpdates() {
+    WorklistScheduler scheduler = new WorklistScheduler(Order.FIFO);
+    WeightedPAutomaton<StackSymbol, Abstraction, NumWeight> fa = waccepts(1, "a", w(0));
+    fa.setScheduler(scheduler);
+    List<Transition<StackSymbol, Abstraction>> dispatched = Lists.newArrayList();
+    fa.registerListener(
+        (t, w, aut) -> {
+          dispatched.add(t);
+          if (t.equals(t(1, "b", ACC))) {
+            aut.addWeightForTransition(t(1, "c", ACC), w(1));
+            throw new IllegalStateException("listener failed");
+          }
+        });
+    try {
+      fa.addWeightForTransition(t(1, "b", ACC), w(1));
+      fail();
+    } catch (IllegalStateException e) {
+      // expected
+    }
+    assertTrue(scheduler.isEmpty());
+    // The discarded update is scheduled again by the next change of the transition
+    fa.addWeightForTransition(t(1, "c", ACC), w(2));
+    assertEquals(Lists.newArrayList(t(1, "a", ACC), t(1, "b", ACC), t(1, "c", ACC)), dispatched);
+    assertTrue(scheduler.isEmpty());
+  }
+
+  private static Map<Transition<StackSymbol, Abstraction>, NumWeight> saturate(
+      WorklistScheduler scheduler) {
+    WeightedPushdownSystem<StackSymbol, Abstraction, NumWeight> pds =
+        new WeightedPushdownSystem<>();
+    pds.addRule(wnormal(1, "a", 1, "b", w(1)));
+    pds.addRule(wpush(1, "b", 2, "call", "d", w(2)));
+    pds.addRule(wnormal(2, "call", 2, "e", w(3)));
+    pds.addRule(wpop(2, "e", 3, w(4)));
+    pds.addRule(wnormal(3, "d", 1, "f", w(5)));
+    pds.addRule(wpush(1, "f", 2, "call", "g", w(6)));
+    pds.addRule(wnormal(3, "g", 4, "h", w(7)));
+    pds.addRule(wnormal(1, "a", 1, "x", w(1)));
+    pds.addRule(wnormal(1, "x", 1, "b", w(1)));
+    WeightedPAutomaton<StackSymbol, Abstraction, NumWeight> fa = waccepts(1, "a", w(0));
+    fa.setScheduler(scheduler);
+    pds.poststar(fa);
+    Map<Transition<StackSymbol, Abstraction>, NumWeight> weights = Maps.newHashMap();
+    for (Transition<StackSymbol, Abstraction> t : fa.getTransitions()) {
+      weights.put(t, fa.getWeightFor(t));
+    }
+    return weights;
+  }
+
+  private static NumWeight w(int i) {
+    return new NumWeight(i);
+  }
+}
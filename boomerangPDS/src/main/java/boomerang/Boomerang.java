@@ -33,6 +33,11 @@ public class Boomerang extends WeightedBoomerang<Weight.NoWeight> {
     super(callGraph, scope, opt);
   }
 
+  @Override
+  protected WeightedBoomerang<Weight.NoWeight> createBatchInstance() {
+    return new Boomerang(getCallGraph(), getDataFlowScope(), getOptions());
+  }
+
   @Override
   protected WeightFunctions<Edge, Val, Field, Weight.NoWeight> getForwardFieldWeights() {
     return getOrCreateFieldWeights();
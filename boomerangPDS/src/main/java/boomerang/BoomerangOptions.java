@@ -21,6 +21,9 @@ import boomerang.scene.Statement;
 import boomerang.scene.Val;
 import boomerang.stats.IBoomerangStats;
 import java.util.Optional;
+import sync.pds.solver.NodeWorklist;
+import wpds.impl.ResourceBudget;
+import wpds.impl.WorklistScheduler;
 
 public interface BoomerangOptions {
 
@@ -105,4 +108,56 @@ public interface BoomerangOptions {
   boolean allowMultipleQueries();
 
   IBackwardFlowFunction getBackwardFlowFunction();
+
+  /**
+   * @return The order in which the automata of a solver dispatch their transition updates, or null
+   *     to dispatch them recursively within the update (the default). Deferring the updates to a
+   *     worklist bounds the stack depth on deep programs.
+   */
+  default WorklistScheduler.Order automatonWorklistOrder() {
+    return null;
+  }
+
+  /**
+   * @return If set to true, the saturation only extends the part of a grown weight that it has not
+   *     seen before, given the weight implements {@link wpds.impl.DifferentialWeight}.
+   */
+  default boolean propagateWeightDeltas() {
+    return false;
+  }
+
+  /**
+   * @return The number of extend and combine results each solver memoizes for its hash-consed
+   *     weights (see {@link wpds.impl.WeightFactory}), 0 disables hash-consing.
+   */
+  default int weightCacheSize() {
+    return 0;
+  }
+
+  /**
+   * @return The caps on the transitions, generated states, reached nodes and retained bytes of a
+   *     query (see {@link ResourceBudget}), or null for no caps. Each analysis instance counts the
+   *     usage of its solvers in its own budget with these caps, which starts over with every query
+   *     solved from the outside. A query exceeding the budget terminates like a timeout, later
+   *     queries get the full budget again.
+   */
+  default ResourceBudget resourceBudget() {
+    return null;
+  }
+
+  enum NodeOrder {
+    FIFO,
+    LIFO,
+    /** All queued nodes of a method before those of the next method, see {@link NodeWorklist}. */
+    METHOD_LOCAL_FIRST
+  }
+
+  /**
+   * @return The order in which the solvers compute the successors of reached nodes from a
+   *     worklist, or null to compute them recursively (the default). The worklist bounds the
+   *     stack depth on deep call chains.
+   */
+  default NodeOrder nodeWorklistOrder() {
+    return null;
+  }
 }
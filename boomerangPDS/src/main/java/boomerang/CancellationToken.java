@@ -0,0 +1,36 @@
+/**
+ * ***************************************************************************** Copyright (c) 2018
+ * Fraunhofer IEM, Paderborn, Germany. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * <p>SPDX-License-Identifier: EPL-2.0
+ *
+ * <p>Contributors: Johannes Spaeth - initial API and implementation
+ * *****************************************************************************
+ */
+package boomerang;
+
+/**
+ * Lets a caller abort a running query, see {@link WeightedBoomerang#solve(ForwardQuery,
+ * CancellationToken)}. The solver polls the token while it adds transitions, so {@link #cancel()}
+ * may be called from any thread. A token stays cancelled and can be shared by several queries.
+ */
+public class CancellationToken {
+
+  /** A token that is never cancelled. */
+  public static final CancellationToken NONE = new CancellationToken();
+
+  private volatile boolean cancelled;
+
+  public void cancel() {
+    if (this == NONE) {
+      throw new UnsupportedOperationException("The NONE token cannot be cancelled");
+    }
+    cancelled = true;
+  }
+
+  public boolean isCancelled() {
+    return cancelled;
+  }
+}
@@ -7,7 +7,7 @@ import boomerang.scene.Val;
 import boomerang.solver.AbstractBoomerangSolver;
 import boomerang.solver.BackwardBoomerangSolver;
 import boomerang.solver.ForwardBoomerangSolver;
-import boomerang.util.DefaultValueMap;
+import boomerang.util.SolverRegistry;
 import com.google.common.base.Joiner;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Lists;
@@ -32,9 +32,9 @@ public class QueryGraph<W extends Weight> {
   private Multimap<Query, QueryEdge> sourceToQueryEdgeLookUp = HashMultimap.create();
   private Multimap<Query, QueryEdge> targetToQueryEdgeLookUp = HashMultimap.create();
   private Set<Query> roots = Sets.newHashSet();
-  private DefaultValueMap<ForwardQuery, ForwardBoomerangSolver<W>> forwardSolvers;
+  private SolverRegistry<ForwardQuery, ForwardBoomerangSolver<W>> forwardSolvers;
   private Multimap<Query, AddTargetEdgeListener> edgeAddListener = HashMultimap.create();
-  private DefaultValueMap<BackwardQuery, BackwardBoomerangSolver<W>> backwardSolver;
+  private SolverRegistry<BackwardQuery, BackwardBoomerangSolver<W>> backwardSolver;
   private Query backwardQuery;
 
   public QueryGraph(WeightedBoomerang<W> weightedBoomerang) {
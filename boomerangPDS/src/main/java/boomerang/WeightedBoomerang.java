@@ -26,6 +26,8 @@ import boomerang.poi.AbstractPOI;
 import boomerang.poi.CopyAccessPathChain;
 import boomerang.poi.ExecuteImportFieldStmtPOI;
 import boomerang.poi.PointOfIndirection;
+import boomerang.results.AbstractBoomerangResults;
+import boomerang.results.AllocationSiteCache;
 import boomerang.results.BackwardBoomerangResults;
 import boomerang.results.ForwardBoomerangResults;
 import boomerang.scene.AllocVal;
@@ -45,26 +47,36 @@ import boomerang.solver.ControlFlowEdgeBasedFieldTransitionListener;
 import boomerang.solver.ForwardBoomerangSolver;
 import boomerang.stats.IBoomerangStats;
 import boomerang.util.DefaultValueMap;
+import boomerang.util.SolverRegistry;
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Sets;
 import com.google.common.collect.Table;
 import com.google.common.collect.Table.Cell;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import sync.pds.solver.SyncPDSSolver.PDSSystem;
 import sync.pds.solver.WeightFunctions;
 import sync.pds.solver.nodes.GeneratedState;
+import sync.pds.solver.nodes.GeneratedStateTable;
 import sync.pds.solver.nodes.INode;
 import sync.pds.solver.nodes.Node;
 import sync.pds.solver.nodes.NodeWithLocation;
@@ -72,6 +84,8 @@ import sync.pds.solver.nodes.PopNode;
 import sync.pds.solver.nodes.PushNode;
 import sync.pds.solver.nodes.SingleNode;
 import wpds.impl.NestedWeightedPAutomatons;
+import wpds.impl.ResourceBudget;
+import wpds.impl.ResourceBudgetExceededException;
 import wpds.impl.Rule;
 import wpds.impl.SummaryNestedWeightedPAutomatons;
 import wpds.impl.Transition;
@@ -83,22 +97,27 @@ public abstract class WeightedBoomerang<W extends Weight> {
   protected ObservableICFG<Statement, Method> icfg;
   protected ObservableControlFlowGraph cfg;
   private static final Logger LOGGER = LoggerFactory.getLogger(WeightedBoomerang.class);
-  private Map<Entry<INode<Node<Edge, Val>>, Field>, INode<Node<Edge, Val>>> genField =
-      new HashMap<>();
-  private long lastTick;
+  private static final ScheduledExecutorService WATCHDOG =
+      Executors.newSingleThreadScheduledExecutor(
+          new ThreadFactoryBuilder().setNameFormat("boomerang-watchdog").setDaemon(true).build());
+  private static final long PROGRESS_INTERVAL_MS = 15000;
+  private final GeneratedStateTable<Node<Edge, Val>, Field> genField = new GeneratedStateTable<>();
   private IBoomerangStats<W> stats;
   private Set<Method> visitedMethods = Sets.newHashSet();
   private Set<SolverCreationListener<W>> solverCreationListeners = Sets.newHashSet();
   private Multimap<SolverPair, ExecuteImportFieldStmtPOI<W>> poiListeners = HashMultimap.create();
   private Multimap<SolverPair, INode<Node<Edge, Val>>> activatedPoi = HashMultimap.create();
-  private final DefaultValueMap<ForwardQuery, ForwardBoomerangSolver<W>> queryToSolvers =
-      new DefaultValueMap<ForwardQuery, ForwardBoomerangSolver<W>>() {
+  private final SolverRegistry<ForwardQuery, ForwardBoomerangSolver<W>> queryToSolvers =
+      new SolverRegistry<ForwardQuery, ForwardBoomerangSolver<W>>() {
         @Override
         protected ForwardBoomerangSolver<W> createItem(final ForwardQuery key) {
           final ForwardBoomerangSolver<W> solver;
           LOGGER.trace("Forward solving query: {}", key);
           forwardQueries++;
           solver = createForwardSolver(key);
+          if (budget != null) {
+            solver.setResourceBudget(budget);
+          }
 
           stats.registerSolver(key, solver);
           solver.getCallAutomaton().registerListener((t, w, aut) -> checkTimeout());
@@ -110,8 +129,10 @@ public abstract class WeightedBoomerang<W extends Weight> {
   private int forwardQueries;
   private int backwardQueries;
   private final QueryGraph<W> queryGraph;
-  private final DefaultValueMap<BackwardQuery, BackwardBoomerangSolver<W>> queryToBackwardSolvers =
-      new DefaultValueMap<BackwardQuery, BackwardBoomerangSolver<W>>() {
+  private final AllocationSiteCache<W> allocationSiteCache =
+      new AllocationSiteCache<>(queryToSolvers);
+  private final SolverRegistry<BackwardQuery, BackwardBoomerangSolver<W>> queryToBackwardSolvers =
+      new SolverRegistry<BackwardQuery, BackwardBoomerangSolver<W>>() {
         @Override
         protected BackwardBoomerangSolver<W> createItem(BackwardQuery key) {
 
@@ -161,6 +182,9 @@ public abstract class WeightedBoomerang<W extends Weight> {
                   return super.preventFieldTransitionAdd(t, weight);
                 }
               };
+          if (budget != null) {
+            backwardSolver.setResourceBudget(budget);
+          }
           backwardSolver.registerListener(
               node -> {
                 Optional<AllocVal> allocNode = isAllocationNode(node.stmt(), node.fact());
@@ -180,164 +204,245 @@ public abstract class WeightedBoomerang<W extends Weight> {
         }
       };
 
-  private static final String MAP_PUT_SUB_SIGNATURE = "java.util.Map: java.lang.Object put(";
-  private static final String MAP_GET_SUB_SIGNATURE = "java.util.Map: java.lang.Object get(";
+  private static final String MAP_PUT_SIGNATURE =
+      "<java.util.Map: java.lang.Object put(java.lang.Object,java.lang.Object)>";
+  private static final String MAP_GET_SIGNATURE =
+      "<java.util.Map: java.lang.Object get(java.lang.Object)>";
+
+  private enum MapAccess {
+    PUT,
+    GET,
+    NONE
+  }
+
+  // Map accesses by call site, each call site is resolved once
+  private final Map<Statement, MapAccess> mapAccesses = Maps.newHashMap();
+  // Nodes reached by the forward solvers of string constants, and the map keys waiting for them
+  private final Multimap<Node<Edge, Val>, ForwardQuery> stringConstantsAt = HashMultimap.create();
+  private final Multimap<Node<Edge, Val>, Consumer<String>> mapKeyListeners =
+      HashMultimap.create();
+
+  private MapAccess getMapAccess(Statement stmt) {
+    if (!stmt.containsInvokeExpr()) {
+      return MapAccess.NONE;
+    }
+    return mapAccesses.computeIfAbsent(
+        stmt,
+        s -> {
+          String signature = s.getInvokeExpr().getMethod().getSignature();
+          if (signature.equals(MAP_PUT_SIGNATURE)) {
+            return MapAccess.PUT;
+          }
+          if (signature.equals(MAP_GET_SIGNATURE) && s.isAssign()) {
+            return MapAccess.GET;
+          }
+          return MapAccess.NONE;
+        });
+  }
+
+  /**
+   * Calls the listener with the value of every string constant that reaches the key node, now or
+   * once its forward solver reaches the node.
+   */
+  private void registerMapKeyListener(Node<Edge, Val> key, Consumer<String> listener) {
+    if (mapKeyListeners.put(key, listener)) {
+      for (ForwardQuery q : Lists.newArrayList(stringConstantsAt.get(key))) {
+        listener.accept(((AllocVal) q.var()).getAllocVal().getStringValue());
+      }
+    }
+  }
+
+  private void onStringConstantReached(ForwardQuery query, Node<Edge, Val> node) {
+    if (stringConstantsAt.put(node, query)) {
+      String value = ((AllocVal) query.var()).getAllocVal().getStringValue();
+      for (Consumer<String> listener : Lists.newArrayList(mapKeyListeners.get(node))) {
+        listener.accept(value);
+      }
+    }
+  }
+
+  private static boolean isStringConstant(ForwardQuery query) {
+    return query.var() instanceof AllocVal
+        && ((AllocVal) query.var()).getAllocVal().isStringConstant();
+  }
 
   protected void handleMapsBackward(Node<Edge, Val> node) {
     Statement rstmt = node.stmt().getStart();
-    if (rstmt.isAssign()
-        && rstmt.containsInvokeExpr()
-        && rstmt.getInvokeExpr().toString().contains(MAP_GET_SUB_SIGNATURE)) {
-      if (rstmt.getLeftOp().equals(node.fact())) {
-
-        cfg.addPredsOfListener(
-            new PredecessorListener(rstmt) {
-              @Override
-              public void getPredecessor(Statement pred) {
-                BackwardQuery bwq =
-                    BackwardQuery.make(new Edge(pred, rstmt), rstmt.getInvokeExpr().getArg(0));
-                backwardSolve(bwq);
-                for (ForwardQuery q : Lists.newArrayList(queryToSolvers.keySet())) {
-                  if (queryToSolvers.get(q).getReachedStates().contains(bwq.asNode())) {
-                    Val var = q.var();
-                    AllocVal v = (AllocVal) var;
-                    if (v.getAllocVal().isStringConstant()) {
-                      String key = v.getAllocVal().getStringValue();
+    MapAccess access = getMapAccess(rstmt);
+    if (access == MapAccess.GET && rstmt.getLeftOp().equals(node.fact())) {
+      cfg.addPredsOfListener(
+          new PredecessorListener(rstmt) {
+            @Override
+            public void getPredecessor(Statement pred) {
+              BackwardQuery bwq =
+                  BackwardQuery.make(new Edge(pred, rstmt), rstmt.getInvokeExpr().getArg(0));
+              backwardSolve(bwq);
+              registerMapKeyListener(
+                  bwq.asNode(),
+                  key ->
                       backwardSolverIns.propagate(
                           node,
                           new PushNode<>(
                               new Edge(pred, rstmt),
                               rstmt.getInvokeExpr().getBase(),
                               Field.string(key),
-                              PDSSystem.FIELDS));
-                    }
-                  }
-                }
-              }
-            });
-      }
+                              PDSSystem.FIELDS)));
+            }
+          });
     }
-    if (rstmt.containsInvokeExpr()
-        && rstmt.getInvokeExpr().toString().contains(MAP_PUT_SUB_SIGNATURE)) {
-      if (rstmt.getInvokeExpr().getBase().equals(node.fact())) {
-        cfg.addPredsOfListener(
-            new PredecessorListener(rstmt) {
-              @Override
-              public void getPredecessor(Statement pred) {
-                BackwardQuery bwq =
-                    BackwardQuery.make(new Edge(pred, rstmt), rstmt.getInvokeExpr().getArg(0));
-                backwardSolve(bwq);
-                for (ForwardQuery q : Lists.newArrayList(queryToSolvers.keySet())) {
-                  if (queryToSolvers.get(q).getReachedStates().contains(bwq.asNode())) {
-                    Val var = q.var();
-                    AllocVal v = (AllocVal) var;
-
-                    if (v.getAllocVal().isStringConstant()) {
-                      String key = v.getAllocVal().getStringValue();
-                      NodeWithLocation<Edge, Val, Field> succNode =
-                          new NodeWithLocation<>(
-                              new Edge(pred, rstmt),
-                              rstmt.getInvokeExpr().getArg(1),
-                              Field.string(key));
-                      backwardSolverIns.propagate(node, new PopNode<>(succNode, PDSSystem.FIELDS));
-                    }
-                  }
-                }
-              }
-            });
-      }
+    if (access == MapAccess.PUT && rstmt.getInvokeExpr().getBase().equals(node.fact())) {
+      cfg.addPredsOfListener(
+          new PredecessorListener(rstmt) {
+            @Override
+            public void getPredecessor(Statement pred) {
+              BackwardQuery bwq =
+                  BackwardQuery.make(new Edge(pred, rstmt), rstmt.getInvokeExpr().getArg(0));
+              backwardSolve(bwq);
+              registerMapKeyListener(
+                  bwq.asNode(),
+                  key -> {
+                    NodeWithLocation<Edge, Val, Field> succNode =
+                        new NodeWithLocation<>(
+                            new Edge(pred, rstmt),
+                            rstmt.getInvokeExpr().getArg(1),
+                            Field.string(key));
+                    backwardSolverIns.propagate(node, new PopNode<>(succNode, PDSSystem.FIELDS));
+                  });
+            }
+          });
     }
   }
 
   protected void handleMapsForward(ForwardBoomerangSolver<W> solver, Node<Edge, Val> node) {
     Statement rstmt = node.stmt().getTarget();
-    if (rstmt.containsInvokeExpr()) {
-      if (rstmt.isAssign() && rstmt.getInvokeExpr().toString().contains(MAP_GET_SUB_SIGNATURE)) {
-        if (rstmt.getInvokeExpr().getBase().equals(node.fact())) {
-          BackwardQuery bwq = BackwardQuery.make(node.stmt(), rstmt.getInvokeExpr().getArg(0));
-          backwardSolve(bwq);
-          cfg.addSuccsOfListener(
-              new SuccessorListener(rstmt) {
-                @Override
-                public void getSuccessor(Statement succ) {
-                  for (ForwardQuery q : Lists.newArrayList(queryToSolvers.keySet())) {
-                    if (queryToSolvers.get(q).getReachedStates().contains(bwq.asNode())) {
-                      Val var = q.var();
-                      AllocVal v = (AllocVal) var;
-
-                      if (v.getAllocVal().isStringConstant()) {
-                        String key = v.getAllocVal().getStringValue();
-                        NodeWithLocation<Edge, Val, Field> succNode =
-                            new NodeWithLocation<>(
-                                new Edge(rstmt, succ), rstmt.getLeftOp(), Field.string(key));
-                        solver.propagate(node, new PopNode<>(succNode, PDSSystem.FIELDS));
-                      }
-                    }
-                  }
-                }
-              });
-        }
-      }
-      if (rstmt.getInvokeExpr().toString().contains(MAP_PUT_SUB_SIGNATURE)) {
-        if (rstmt.getInvokeExpr().getArg(1).equals(node.fact())) {
-
-          BackwardQuery bwq = BackwardQuery.make(node.stmt(), rstmt.getInvokeExpr().getArg(0));
-          backwardSolve(bwq);
-          cfg.addSuccsOfListener(
-              new SuccessorListener(rstmt) {
-                @Override
-                public void getSuccessor(Statement succ) {
-                  for (ForwardQuery q : Lists.newArrayList(queryToSolvers.keySet())) {
-                    if (queryToSolvers.get(q).getReachedStates().contains(bwq.asNode())) {
-                      Val var = q.var();
-                      AllocVal v = (AllocVal) var;
-                      if (v.getAllocVal().isStringConstant()) {
-                        String key = v.getAllocVal().getStringValue();
-                        solver.propagate(
-                            node,
-                            new PushNode<>(
-                                new Edge(rstmt, succ),
-                                rstmt.getInvokeExpr().getBase(),
-                                Field.string(key),
-                                PDSSystem.FIELDS));
-                      }
-                    }
-                  }
-                }
-              });
-        }
-      }
+    MapAccess access = getMapAccess(rstmt);
+    if (access == MapAccess.GET && rstmt.getInvokeExpr().getBase().equals(node.fact())) {
+      BackwardQuery bwq = BackwardQuery.make(node.stmt(), rstmt.getInvokeExpr().getArg(0));
+      backwardSolve(bwq);
+      cfg.addSuccsOfListener(
+          new SuccessorListener(rstmt) {
+            @Override
+            public void getSuccessor(Statement succ) {
+              registerMapKeyListener(
+                  bwq.asNode(),
+                  key -> {
+                    NodeWithLocation<Edge, Val, Field> succNode =
+                        new NodeWithLocation<>(
+                            new Edge(rstmt, succ), rstmt.getLeftOp(), Field.string(key));
+                    solver.propagate(node, new PopNode<>(succNode, PDSSystem.FIELDS));
+                  });
+            }
+          });
+    }
+    if (access == MapAccess.PUT && rstmt.getInvokeExpr().getArg(1).equals(node.fact())) {
+      BackwardQuery bwq = BackwardQuery.make(node.stmt(), rstmt.getInvokeExpr().getArg(0));
+      backwardSolve(bwq);
+      cfg.addSuccsOfListener(
+          new SuccessorListener(rstmt) {
+            @Override
+            public void getSuccessor(Statement succ) {
+              registerMapKeyListener(
+                  bwq.asNode(),
+                  key ->
+                      solver.propagate(
+                          node,
+                          new PushNode<>(
+                              new Edge(rstmt, succ),
+                              rstmt.getInvokeExpr().getBase(),
+                              Field.string(key),
+                              PDSSystem.FIELDS)));
+            }
+          });
     }
   }
 
   private BackwardBoomerangSolver<W> backwardSolverIns;
   private boolean solving;
-
+  // Set by compact(), the compacted solvers cannot be extended by further queries
+  private boolean compacted;
+
+  /**
+   * Aborts the running query if the analysis timeout is reached or its {@link CancellationToken} is
+   * cancelled. Called for every transition, it only reads the flags the watchdog and the token
+   * set.
+   */
   public void checkTimeout() {
+    if (progressDue) {
+      progressDue = false;
+      logProgress();
+    }
+    if (timeoutReached) {
+      stopAnalysisWatch();
+      throw new BoomerangTimeoutException(analysisWatch.elapsed(TimeUnit.MILLISECONDS), stats);
+    }
+    if (cancellationToken.isCancelled()) {
+      stopAnalysisWatch();
+      throw new BoomerangCancellationException(
+          analysisWatch.elapsed(TimeUnit.MILLISECONDS), stats);
+    }
+  }
+
+  private void logProgress() {
+    LOGGER.debug(
+        "Elapsed Time: {}/{}, Visited Methods {}",
+        analysisWatch.elapsed(TimeUnit.MILLISECONDS),
+        options.analysisTimeoutMS(),
+        visitedMethods.size());
+    LOGGER.debug("Forward / Backward Queries: {}/{}", forwardQueries, backwardQueries);
+    if (LOGGER.isDebugEnabled()) {
+      printElapsedTimes();
+      printRules();
+      printStats();
+    }
+  }
+
+  /**
+   * Starts the analysis time and the watchdog, which flags the timeout once the analysis time
+   * exceeds {@link BoomerangOptions#analysisTimeoutMS()}. Starts the resource budget over, queries
+   * solved while the analysis time runs count against the budget of the outer query.
+   */
+  private void startAnalysisWatch() {
+    if (analysisWatch.isRunning()) {
+      return;
+    }
+    analysisWatch.start();
+    if (budget != null) {
+      budget.reset();
+    }
     if (options.analysisTimeoutMS() > 0) {
-      long elapsed = analysisWatch.elapsed(TimeUnit.MILLISECONDS);
-      if (elapsed - lastTick > 15000) {
-        LOGGER.debug(
-            "Elapsed Time: {}/{}, Visited Methods {}",
-            elapsed,
-            options.analysisTimeoutMS(),
-            visitedMethods.size());
-        LOGGER.debug("Forward / Backward Queries: {}/{}", forwardQueries, backwardQueries);
-
-        if (LOGGER.isDebugEnabled()) {
-          printElapsedTimes();
-          printRules();
-          printStats();
-        }
-        lastTick = elapsed;
+      long remaining = options.analysisTimeoutMS() - analysisWatch.elapsed(TimeUnit.MILLISECONDS);
+      if (remaining < 0) {
+        timeoutReached = true;
+      } else {
+        timeoutTask =
+            WATCHDOG.schedule(() -> timeoutReached = true, remaining, TimeUnit.MILLISECONDS);
       }
-      if (options.analysisTimeoutMS() < elapsed) {
-        if (analysisWatch.isRunning()) analysisWatch.stop();
-        throw new BoomerangTimeoutException(elapsed, stats);
+      if (LOGGER.isDebugEnabled()) {
+        progressTask =
+            WATCHDOG.scheduleAtFixedRate(
+                () -> progressDue = true,
+                PROGRESS_INTERVAL_MS,
+                PROGRESS_INTERVAL_MS,
+                TimeUnit.MILLISECONDS);
       }
     }
   }
 
+  private void stopAnalysisWatch() {
+    if (!analysisWatch.isRunning()) {
+      return;
+    }
+    analysisWatch.stop();
+    if (timeoutTask != null) {
+      timeoutTask.cancel(false);
+      timeoutTask = null;
+    }
+    if (progressTask != null) {
+      progressTask.cancel(false);
+      progressTask = null;
+    }
+  }
+
   private ObservableICFG<Statement, Method> bwicfg;
   private NestedWeightedPAutomatons<Edge, INode<Val>, W> backwardCallSummaries =
       new SummaryNestedWeightedPAutomatons<>();
@@ -356,7 +461,15 @@ public abstract class WeightedBoomerang<W extends Weight> {
         }
       };
   protected final BoomerangOptions options;
+  // Counts the usage of all solvers, reset with the analysis time of each query
+  private final ResourceBudget budget;
   private Stopwatch analysisWatch = Stopwatch.createUnstarted();
+  // Set by the watchdog, read by checkTimeout instead of the analysis time
+  private volatile boolean timeoutReached;
+  private volatile boolean progressDue;
+  private ScheduledFuture<?> timeoutTask;
+  private ScheduledFuture<?> progressTask;
+  private CancellationToken cancellationToken = CancellationToken.NONE;
   private final DataFlowScope dataFlowscope;
   private CallGraph callGraph;
   private INode<Val> rootQuery;
@@ -365,6 +478,8 @@ public abstract class WeightedBoomerang<W extends Weight> {
     this.options = options;
     this.options.checkValid();
     this.stats = options.statsFactory();
+    this.budget =
+        options.resourceBudget() == null ? null : new ResourceBudget(options.resourceBudget());
     this.dataFlowscope = scope;
 
     if (options.onTheFlyControlFlow()) {
@@ -380,6 +495,7 @@ public abstract class WeightedBoomerang<W extends Weight> {
     }
     this.callGraph = cg;
     this.queryGraph = new QueryGraph<>(this);
+    registerSolverCreationListener(allocationSiteCache);
   }
 
   public WeightedBoomerang(CallGraph cg, DataFlowScope scope) {
@@ -479,6 +595,9 @@ public abstract class WeightedBoomerang<W extends Weight> {
           addVisitedMethod(node.stmt().getStart().getMethod());
           handleMapsForward(solver, node);
         });
+    if (isStringConstant(sourceQuery)) {
+      solver.registerListener(node -> onStringConstantReached(sourceQuery, node));
+    }
 
     return solver;
   }
@@ -593,9 +712,52 @@ public abstract class WeightedBoomerang<W extends Weight> {
     this.poiListeners.clear();
     this.activatedPoi.clear();
     this.fieldWrites.clear();
+    this.allocationSiteCache.clear();
+    this.mapKeyListeners.clear();
+    this.stringConstantsAt.clear();
+  }
+
+  /**
+   * Unregisters all listeners (see {@link #unregisterAllListeners()}) and shrinks the automata of
+   * all solvers to the transitions describing their reached nodes, see {@link
+   * AbstractBoomerangSolver#compact}. Generated field states no solver references anymore are
+   * dropped. The results of the queries remain accessible, but the solvers cannot be extended by
+   * further queries: solving a query afterwards throws an {@link IllegalStateException}. Bounds the
+   * heap of an instance answering many queries one after another.
+   */
+  public void compact() {
+    compacted = true;
+    unregisterAllListeners();
+    Set<AbstractBoomerangSolver<W>> solvers = Sets.newIdentityHashSet();
+    solvers.addAll(queryToSolvers.values());
+    solvers.addAll(queryToBackwardSolvers.values());
+    Set<INode<Node<Edge, Val>>> fieldStates = Sets.newHashSet();
+    for (AbstractBoomerangSolver<W> solver : solvers) {
+      solver.compact(solver.getReachedStates());
+      fieldStates.addAll(solver.getFieldAutomaton().getStates());
+    }
+    // Shared with the solvers, trimmed in place
+    genField.retainStates(fieldStates);
+  }
+
+  private void checkNotCompacted() {
+    if (compacted) {
+      throw new IllegalStateException(
+          "The solvers of this instance are compacted, solve further queries with a new instance");
+    }
+  }
+
+  /**
+   * Returns the allocation sites of a backward query. They are extracted from the forward solvers
+   * on the first request and extended as further forward solvers reach the query, a repeated
+   * request is a lookup. The set is an unmodifiable view that grows while the analysis continues,
+   * {@link BackwardBoomerangResults#getAllocationSites()} adds the contexts of the sites.
+   */
+  public Set<ForwardQuery> getAllocationSites(BackwardQuery query) {
+    return allocationSiteCache.get(query);
   }
 
-  public DefaultValueMap<BackwardQuery, BackwardBoomerangSolver<W>> getBackwardSolvers() {
+  public SolverRegistry<BackwardQuery, BackwardBoomerangSolver<W>> getBackwardSolvers() {
     return queryToBackwardSolvers;
   }
 
@@ -862,14 +1024,13 @@ public abstract class WeightedBoomerang<W extends Weight> {
   }
 
   public ForwardBoomerangResults<W> solve(ForwardQuery query) {
+    checkNotCompacted();
     if (!options.allowMultipleQueries() && solving) {
       throw new RuntimeException(
           "One cannot re-use the same Boomerang solver for more than one query, unless option allowMultipleQueries is enabled. If allowMultipleQueries is enabled, ensure to call unregisterAllListeners() on this instance upon termination of all queries.");
     }
     solving = true;
-    if (!analysisWatch.isRunning()) {
-      analysisWatch.start();
-    }
+    startAnalysisWatch();
     boolean timedout = false;
     try {
       queryGraph.addRoot(query);
@@ -882,7 +1043,7 @@ public abstract class WeightedBoomerang<W extends Weight> {
           visitedMethods.size());
       LOGGER.trace("Query Graph \n{}", queryGraph.toDotString());
       icfg.computeFallback();
-    } catch (BoomerangTimeoutException e) {
+    } catch (BoomerangTimeoutException | ResourceBudgetExceededException e) {
       timedout = true;
       LOGGER.trace(
           "Timeout ({}) of query: {}, visited methods {}",
@@ -896,9 +1057,7 @@ public abstract class WeightedBoomerang<W extends Weight> {
       unregisterAllListeners();
     }
 
-    if (analysisWatch.isRunning()) {
-      analysisWatch.stop();
-    }
+    stopAnalysisWatch();
     return new ForwardBoomerangResults<W>(
         query,
         icfg(),
@@ -913,25 +1072,54 @@ public abstract class WeightedBoomerang<W extends Weight> {
         options.trackImplicitFlows());
   }
 
+  /**
+   * Solves the query like {@link #solve(ForwardQuery)}. Once the token is cancelled, the query is
+   * aborted and its results so far are returned, marked as timed out.
+   */
+  public ForwardBoomerangResults<W> solve(ForwardQuery query, CancellationToken token) {
+    CancellationToken previous = cancellationToken;
+    cancellationToken = token;
+    try {
+      return solve(query);
+    } finally {
+      cancellationToken = previous;
+    }
+  }
+
   public BackwardBoomerangResults<W> solve(BackwardQuery query) {
     return solve(query, true);
   }
 
+  /**
+   * Solves the query like {@link #solve(BackwardQuery)}. Once the token is cancelled, the query is
+   * aborted and its results so far are returned, marked as timed out.
+   */
+  public BackwardBoomerangResults<W> solve(BackwardQuery query, CancellationToken token) {
+    CancellationToken previous = cancellationToken;
+    cancellationToken = token;
+    try {
+      return solve(query);
+    } finally {
+      cancellationToken = previous;
+    }
+  }
+
   public BackwardBoomerangResults<W> solve(BackwardQuery query, boolean timing) {
+    checkNotCompacted();
     if (!options.allowMultipleQueries() && solving) {
       throw new RuntimeException(
           "One cannot re-use the same Boomerang solver for more than one query, unless option allowMultipleQueries is enabled. If allowMultipleQueries is enabled, ensure to call unregisterAllListeners() on this instance upon termination of all queries.");
     }
     solving = true;
-    if (timing && !analysisWatch.isRunning()) {
-      analysisWatch.start();
+    if (timing) {
+      startAnalysisWatch();
     }
     boolean timedout = false;
     try {
       queryGraph.addRoot(query);
       LOGGER.trace("Starting backward analysis of: {}", query);
       backwardSolve(query);
-    } catch (BoomerangTimeoutException e) {
+    } catch (BoomerangTimeoutException | ResourceBudgetExceededException e) {
       timedout = true;
       LOGGER.info("Timeout ({}) of query: {} ", analysisWatch, query);
     }
@@ -940,23 +1128,28 @@ public abstract class WeightedBoomerang<W extends Weight> {
     if (!options.allowMultipleQueries()) {
       unregisterAllListeners();
     }
-    if (timing && analysisWatch.isRunning()) {
-      analysisWatch.stop();
+    if (timing) {
+      stopAnalysisWatch();
     }
     return new BackwardBoomerangResults<W>(
-        query, timedout, this.queryToSolvers, backwardSolverIns, getStats(), analysisWatch);
+        query,
+        timedout,
+        this.queryToSolvers,
+        allocationSiteCache,
+        backwardSolverIns,
+        getStats(),
+        analysisWatch);
   }
 
   public BackwardBoomerangResults<W> solveUnderScope(
       BackwardQuery query, Node<Edge, Val> triggeringNode, Query parentQuery) {
+    checkNotCompacted();
     if (!options.allowMultipleQueries() && solving) {
       throw new RuntimeException(
           "One cannot re-use the same Boomerang solver for more than one query, unless option allowMultipleQueries is enabled. If allowMultipleQueries is enabled, ensure to call unregisterAllListeners() on this instance upon termination of all queries.");
     }
     solving = true;
-    if (!analysisWatch.isRunning()) {
-      analysisWatch.start();
-    }
+    startAnalysisWatch();
     boolean timedout = false;
     try {
 
@@ -964,27 +1157,30 @@ public abstract class WeightedBoomerang<W extends Weight> {
       backwardSolve(query);
       queryGraph.addEdge(parentQuery, triggeringNode, query);
       this.debugOutput();
-    } catch (BoomerangTimeoutException e) {
+    } catch (BoomerangTimeoutException | ResourceBudgetExceededException e) {
       timedout = true;
       LOGGER.info("Timeout ({}) of query: {} ", analysisWatch, query);
     }
-    if (analysisWatch.isRunning()) {
-      analysisWatch.stop();
-    }
+    stopAnalysisWatch();
     return new BackwardBoomerangResults<W>(
-        query, timedout, this.queryToSolvers, backwardSolverIns, getStats(), analysisWatch);
+        query,
+        timedout,
+        this.queryToSolvers,
+        allocationSiteCache,
+        backwardSolverIns,
+        getStats(),
+        analysisWatch);
   }
 
   public ForwardBoomerangResults<W> solveUnderScope(
       ForwardQuery query, Node<Edge, Val> triggeringNode, Query parentQuery) {
+    checkNotCompacted();
     if (!options.allowMultipleQueries() && solving) {
       throw new RuntimeException(
           "One cannot re-use the same Boomerang solver for more than one query, unless option allowMultipleQueries is enabled. If allowMultipleQueries is enabled, ensure to call unregisterAllListeners() on this instance upon termination of all queries.");
     }
     solving = true;
-    if (!analysisWatch.isRunning()) {
-      analysisWatch.start();
-    }
+    startAnalysisWatch();
     boolean timedout = false;
     try {
       LOGGER.trace("Starting forward analysis of: {}", query);
@@ -995,7 +1191,7 @@ public abstract class WeightedBoomerang<W extends Weight> {
           query,
           visitedMethods.size());
       queryGraph.addEdge(parentQuery, triggeringNode, query);
-    } catch (BoomerangTimeoutException e) {
+    } catch (BoomerangTimeoutException | ResourceBudgetExceededException e) {
       timedout = true;
       LOGGER.trace(
           "Timeout ({}) of query: {}, visited methods {}",
@@ -1009,9 +1205,7 @@ public abstract class WeightedBoomerang<W extends Weight> {
       unregisterAllListeners();
     }
 
-    if (analysisWatch.isRunning()) {
-      analysisWatch.stop();
-    }
+    stopAnalysisWatch();
     return new ForwardBoomerangResults<W>(
         query,
         icfg(),
@@ -1026,6 +1220,61 @@ public abstract class WeightedBoomerang<W extends Weight> {
         options.trackImplicitFlows());
   }
 
+  /**
+   * Solves independent queries concurrently on the executor. Each query is solved by its own
+   * instance of this analysis (see {@link #createBatchInstance()}), so the solvers of different
+   * queries do not share any state but the call graph, the data-flow scope, the options and the
+   * methods of the scene, whose lazily built control-flow graphs are thread-safe. Each query is
+   * thus solved as if it was the only one, the results do not profit from the solvers of other
+   * queries. Each query also gets its own {@link BoomerangOptions#resourceBudget()}.
+   *
+   * @return The results of the queries in the order they complete, take one per query. A query
+   *     whose solving crashed completes exceptionally.
+   * @throws UnsupportedOperationException If this analysis does not create batch instances, before
+   *     any query is submitted.
+   */
+  public CompletionService<Pair<Query, AbstractBoomerangResults<W>>> solveAll(
+      Collection<? extends Query> queries, Executor executor) {
+    CompletionService<Pair<Query, AbstractBoomerangResults<W>>> results =
+        new ExecutorCompletionService<>(executor);
+    for (Query query : queries) {
+      if (!(query instanceof ForwardQuery) && !(query instanceof BackwardQuery)) {
+        throw new IllegalArgumentException("Neither a forward nor a backward query: " + query);
+      }
+    }
+    if (queries.isEmpty()) {
+      return results;
+    }
+    // Created here rather than in the task, so that an analysis without batch instances fails
+    // right away instead of completing every query exceptionally
+    WeightedBoomerang<W> firstInstance = createBatchInstance();
+    for (Query query : queries) {
+      WeightedBoomerang<W> instance = firstInstance;
+      firstInstance = null;
+      results.submit(
+          () -> solveInBatch(instance != null ? instance : createBatchInstance(), query));
+    }
+    return results;
+  }
+
+  private static <W extends Weight> Pair<Query, AbstractBoomerangResults<W>> solveInBatch(
+      WeightedBoomerang<W> boomerang, Query query) {
+    if (query instanceof ForwardQuery) {
+      return new Pair<>(query, boomerang.solve((ForwardQuery) query));
+    }
+    return new Pair<>(query, boomerang.solve((BackwardQuery) query));
+  }
+
+  /**
+   * @return A new instance of this analysis with the same call graph, data-flow scope and options,
+   *     which solves one query of {@link #solveAll}. Analyses that support {@link #solveAll}
+   *     override this.
+   */
+  protected WeightedBoomerang<W> createBatchInstance() {
+    throw new UnsupportedOperationException(
+        getClass().getName() + " does not create instances to solve queries concurrently");
+  }
+
   public void debugOutput() {
     if (LOGGER.isTraceEnabled()) {
       LOGGER.trace("Query Graph \n{}", queryGraph.toDotString());
@@ -1272,7 +1521,7 @@ public abstract class WeightedBoomerang<W extends Weight> {
   protected abstract WeightFunctions<ControlFlowGraph.Edge, Val, ControlFlowGraph.Edge, W>
       getForwardCallWeights(ForwardQuery sourceQuery);
 
-  public DefaultValueMap<ForwardQuery, ForwardBoomerangSolver<W>> getSolvers() {
+  public SolverRegistry<ForwardQuery, ForwardBoomerangSolver<W>> getSolvers() {
     return queryToSolvers;
   }
 
@@ -1280,6 +1529,14 @@ public abstract class WeightedBoomerang<W extends Weight> {
     debugger.done(icfg, cfg, visitedMethods, queryToSolvers);
   }
 
+  /**
+   * @return The budget of the queries of this instance, see {@link
+   *     BoomerangOptions#resourceBudget()}, null without caps
+   */
+  public ResourceBudget getResourceBudget() {
+    return budget;
+  }
+
   public IBoomerangStats<W> getStats() {
     return stats;
   }
@@ -1292,8 +1549,7 @@ public abstract class WeightedBoomerang<W extends Weight> {
 
   public void registerSolverCreationListener(SolverCreationListener<W> l) {
     if (solverCreationListeners.add(l)) {
-      for (Entry<ForwardQuery, ForwardBoomerangSolver<W>> e :
-          Lists.newArrayList(queryToSolvers.entrySet())) {
+      for (Entry<ForwardQuery, ForwardBoomerangSolver<W>> e : queryToSolvers.entrySet()) {
         l.onCreatedSolver(e.getKey(), e.getValue());
       }
     }
@@ -1323,6 +1579,10 @@ public abstract class WeightedBoomerang<W extends Weight> {
     return this.callGraph;
   }
 
+  public DataFlowScope getDataFlowScope() {
+    return this.dataFlowscope;
+  }
+
   public Set<Method> getVisitedMethods() {
     return visitedMethods;
   }
@@ -3,10 +3,7 @@ package boomerang.callgraph;
 import boomerang.BackwardQuery;
 import boomerang.Boomerang;
 import boomerang.ForwardQuery;
-import boomerang.Query;
-import boomerang.SolverCreationListener;
 import boomerang.WeightedBoomerang;
-import boomerang.results.ExtractAllocationSiteStateListener;
 import boomerang.scene.CallGraph;
 import boomerang.scene.ControlFlowGraph.Edge;
 import boomerang.scene.DataFlowScope;
@@ -17,8 +14,6 @@ import boomerang.scene.Statement;
 import boomerang.scene.Type;
 import boomerang.scene.Val;
 import boomerang.scene.WrappedClass;
-import boomerang.solver.AbstractBoomerangSolver;
-import boomerang.solver.ForwardBoomerangSolver;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
@@ -26,11 +21,10 @@ import com.google.common.collect.Multimap;
 import com.google.common.collect.Sets;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Set;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import sync.pds.solver.nodes.INode;
-import sync.pds.solver.nodes.Node;
 import wpds.impl.Weight;
 
 public class BoomerangResolver implements ICallerCalleeResolutionStrategy {
@@ -48,12 +42,12 @@ public class BoomerangResolver implements ICallerCalleeResolutionStrategy {
   private static final String THREAD_RUN_SUB_SIGNATURE = "void run()";
 
   private static NoCalleeFoundFallbackOptions FALLBACK_OPTION = NoCalleeFoundFallbackOptions.BYPASS;
-  private static Multimap<DeclaredMethod, WrappedClass> didNotFindMethodLog = HashMultimap.create();
 
   private CallGraph precomputedCallGraph;
   private WeightedBoomerang<? extends Weight> solver;
-  private Set<Statement> queriedInvokeExprAndAllocationSitesFound = Sets.newHashSet();
-  private Set<Statement> queriedInvokeExpr = Sets.newHashSet();;
+  private Multimap<Statement, BackwardQuery> queriedInvokeExpr = HashMultimap.create();
+  // Per resolver, resolvers of concurrently solved queries must not share it
+  private final Multimap<DeclaredMethod, WrappedClass> didNotFindMethodLog = HashMultimap.create();
 
   public BoomerangResolver(CallGraph cg, DataFlowScope scope) {
     this.solver = new Boomerang(cg, scope);
@@ -76,8 +70,8 @@ public class BoomerangResolver implements ICallerCalleeResolutionStrategy {
   public void computeFallback(ObservableDynamicICFG observableDynamicICFG) {
     int refined = 0;
     int precomputed = 0;
-    for (Statement s : Lists.newArrayList(queriedInvokeExpr)) {
-      if (!queriedInvokeExprAndAllocationSitesFound.contains(s)) {
+    for (Statement s : Lists.newArrayList(queriedInvokeExpr.keySet())) {
+      if (!allocationSitesFound(s)) {
         logger.debug("Call graph ends at {}", s);
         precomputed++;
         if (FALLBACK_OPTION == NoCalleeFoundFallbackOptions.PRECOMPUTED) {
@@ -97,6 +91,15 @@ public class BoomerangResolver implements ICallerCalleeResolutionStrategy {
     logger.debug("Refined edges {}, fallback to precomputed {}", refined, precomputed);
   }
 
+  private boolean allocationSitesFound(Statement invokeExpr) {
+    for (BackwardQuery query : queriedInvokeExpr.get(invokeExpr)) {
+      if (!solver.getAllocationSites(query).isEmpty()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   @Override
   public Method resolveSpecialInvoke(InvokeExpr ie) {
     Collection<Method> methodFromClassOrFromSuperclass =
@@ -128,7 +131,6 @@ public class BoomerangResolver implements ICallerCalleeResolutionStrategy {
     logger.debug("Queried for callees of '{}'.", resolvingStmt);
     // Construct BackwardQuery, so we know which types the object might have
     InvokeExpr invokeExpr = resolvingStmt.getInvokeExpr();
-    queriedInvokeExpr.add(resolvingStmt);
     Val value = invokeExpr.getBase();
 
     Collection<Method> res = new ArrayList<>();
@@ -137,19 +139,30 @@ public class BoomerangResolver implements ICallerCalleeResolutionStrategy {
     for (Statement pred :
         resolvingStmt.getMethod().getControlFlowGraph().getPredsOf(resolvingStmt)) {
       BackwardQuery query = BackwardQuery.make(new Edge(pred, resolvingStmt), value);
+      queriedInvokeExpr.put(resolvingStmt, query);
       solver.solve(query, false);
-      res.addAll(forAnyAllocationSiteOfQuery(query, resolvingStmt, pred));
+      for (ForwardQuery allocationSite : solver.getAllocationSites(query)) {
+        logger.debug("Found AllocationSite '{}'.", allocationSite);
+        res.addAll(getCallees(resolvingStmt, allocationSite.getType()));
+      }
     }
 
     return res;
   }
 
-  @SuppressWarnings("rawtypes")
-  private Collection<Method> forAnyAllocationSiteOfQuery(
-      BackwardQuery query, Statement resolvingStmt, Statement callSite) {
-    IterateSolvers callback = new IterateSolvers(query, callSite, resolvingStmt);
-    solver.registerSolverCreationListener(callback);
-    return callback.results;
+  private Collection<Method> getCallees(Statement invokeExpr, Type type) {
+    if (type.isRefType()) {
+      return getMethodFromClassOrFromSuperclass(
+          invokeExpr.getInvokeExpr().getMethod(), type.getWrappedClass());
+    }
+    if (type.isArrayType()) {
+      Type base = type.getArrayBaseType();
+      if (base.isRefType()) {
+        return getMethodFromClassOrFromSuperclass(
+            invokeExpr.getInvokeExpr().getMethod(), base.getWrappedClass());
+      }
+    }
+    return Collections.emptySet();
   }
 
   private Collection<Method> getMethodFromClassOrFromSuperclass(
@@ -196,86 +209,4 @@ public class BoomerangResolver implements ICallerCalleeResolutionStrategy {
     // }
     // }
   }
-
-  private final class IterateSolvers<W extends Weight> implements SolverCreationListener<W> {
-    private final BackwardQuery query;
-    private final Statement invokeExpr;
-    private final Collection<Method> results = new ArrayList<>();
-
-    private IterateSolvers(BackwardQuery query, Statement unit, Statement invokeExpr) {
-      this.query = query;
-      this.invokeExpr = invokeExpr;
-    }
-
-    @Override
-    public void onCreatedSolver(Query q, AbstractBoomerangSolver<W> solver) {
-      if (solver instanceof ForwardBoomerangSolver) {
-        ForwardQuery forwardQuery = (ForwardQuery) q;
-        ForwardBoomerangSolver<W> forwardBoomerangSolver = (ForwardBoomerangSolver<W>) solver;
-        for (INode<Node<Edge, Val>> initialState :
-            forwardBoomerangSolver.getFieldAutomaton().getInitialStates()) {
-          forwardBoomerangSolver
-              .getFieldAutomaton()
-              .registerListener(
-                  new ExtractAllocationSiteStateListener<W>(initialState, query, (ForwardQuery) q) {
-
-                    @Override
-                    protected void allocationSiteFound(
-                        ForwardQuery allocationSite, BackwardQuery query) {
-                      logger.debug("Found AllocationSite '{}'.", forwardQuery);
-                      queriedInvokeExprAndAllocationSitesFound.add(invokeExpr);
-                      Type type = forwardQuery.getType();
-                      if (type.isRefType()) {
-                        for (Method calleeMethod :
-                            getMethodFromClassOrFromSuperclass(
-                                invokeExpr.getInvokeExpr().getMethod(), type.getWrappedClass())) {
-                          results.add(calleeMethod);
-                        }
-                      } else if (type.isArrayType()) {
-                        Type base = type.getArrayBaseType();
-                        if (base.isRefType()) {
-                          for (Method calleeMethod :
-                              getMethodFromClassOrFromSuperclass(
-                                  invokeExpr.getInvokeExpr().getMethod(), base.getWrappedClass())) {
-                            results.add(calleeMethod);
-                          }
-                        }
-                      }
-                    };
-                  });
-        }
-      }
-    }
-
-    @Override
-    public int hashCode() {
-      final int prime = 31;
-      int result = 1;
-      result = prime * result + getOuterType().hashCode();
-      result = prime * result + ((query == null) ? 0 : query.hashCode());
-      result = prime * result + ((invokeExpr == null) ? 0 : invokeExpr.hashCode());
-      return result;
-    }
-
-    @Override
-    public boolean equals(Object obj) {
-      if (this == obj) return true;
-      if (obj == null) return false;
-      if (getClass() != obj.getClass()) return false;
-      IterateSolvers other = (IterateSolvers) obj;
-      if (!getOuterType().equals(other.getOuterType())) return false;
-      if (query == null) {
-        if (other.query != null) return false;
-      } else if (!query.equals(other.query)) return false;
-      if (invokeExpr == null) {
-        if (other.invokeExpr != null) return false;
-      } else if (!invokeExpr.equals(other.invokeExpr)) return false;
-      return true;
-    }
-
-    private BoomerangResolver getOuterType() {
-      // TODO why is this type of importance?
-      return BoomerangResolver.this;
-    }
-  }
 }
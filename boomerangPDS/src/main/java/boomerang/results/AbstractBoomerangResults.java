@@ -6,7 +6,7 @@ import boomerang.scene.Statement;
 import boomerang.scene.Val;
 import boomerang.solver.AbstractBoomerangSolver;
 import boomerang.solver.ForwardBoomerangSolver;
-import boomerang.util.DefaultValueMap;
+import boomerang.util.SolverRegistry;
 import com.google.common.collect.Table;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -21,11 +21,11 @@ import wpds.impl.WeightedPAutomaton;
 import wpds.interfaces.WPAStateListener;
 
 public class AbstractBoomerangResults<W extends Weight> {
-  protected final DefaultValueMap<ForwardQuery, ForwardBoomerangSolver<W>> queryToSolvers;
+  protected final SolverRegistry<ForwardQuery, ForwardBoomerangSolver<W>> queryToSolvers;
   protected final Logger LOGGER = LoggerFactory.getLogger(AbstractBoomerangResults.class);
 
   public AbstractBoomerangResults(
-      DefaultValueMap<ForwardQuery, ForwardBoomerangSolver<W>> solverMap) {
+      SolverRegistry<ForwardQuery, ForwardBoomerangSolver<W>> solverMap) {
     this.queryToSolvers = solverMap;
   }
 
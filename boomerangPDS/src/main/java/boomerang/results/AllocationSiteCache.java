@@ -0,0 +1,91 @@
+package boomerang.results;
+
+import boomerang.BackwardQuery;
+import boomerang.ForwardQuery;
+import boomerang.Query;
+import boomerang.SolverCreationListener;
+import boomerang.solver.AbstractBoomerangSolver;
+import boomerang.solver.ForwardBoomerangSolver;
+import boomerang.util.SolverRegistry;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import wpds.impl.Weight;
+
+/**
+ * The allocation sites of backward queries, shared by all results of one {@link
+ * boomerang.WeightedBoomerang} instance. The sites of a query are extracted once, by listeners on
+ * the field automata of the forward solvers, and are extended as forward solvers created later
+ * reach the queried node. Asking for the sites of the same query again is a lookup. Only the sites
+ * are cached, the contexts of a site are constructed by the results that ask for them, see {@link
+ * BackwardBoomerangResults#getAllocationSites()}.
+ */
+public class AllocationSiteCache<W extends Weight> implements SolverCreationListener<W> {
+  private final SolverRegistry<ForwardQuery, ForwardBoomerangSolver<W>> queryToSolvers;
+  private final Map<BackwardQuery, AllocationSites> queryToAllocationSites = Maps.newHashMap();
+
+  public AllocationSiteCache(SolverRegistry<ForwardQuery, ForwardBoomerangSolver<W>> solvers) {
+    this.queryToSolvers = solvers;
+  }
+
+  /**
+   * @return An unmodifiable view of the allocation sites found for the query, it grows while the
+   *     forward solvers continue
+   */
+  public Set<ForwardQuery> get(BackwardQuery query) {
+    AllocationSites sites = queryToAllocationSites.get(query);
+    if (sites == null) {
+      sites = new AllocationSites(query);
+      // Registered before the listeners, solvers created meanwhile are extended by onCreatedSolver
+      queryToAllocationSites.put(query, sites);
+      for (Entry<ForwardQuery, ForwardBoomerangSolver<W>> e : queryToSolvers.entrySet()) {
+        sites.extract(e.getKey(), e.getValue());
+      }
+    }
+    return sites.view;
+  }
+
+  @Override
+  public void onCreatedSolver(Query query, AbstractBoomerangSolver<W> solver) {
+    if (!(solver instanceof ForwardBoomerangSolver)) {
+      return;
+    }
+    for (AllocationSites sites : queryToAllocationSites.values()) {
+      sites.extract((ForwardQuery) query, solver);
+    }
+  }
+
+  /** Forgets all sites, to be called once the listeners of the solvers are unregistered. */
+  public void clear() {
+    queryToAllocationSites.clear();
+  }
+
+  private class AllocationSites {
+    private final BackwardQuery query;
+    private final Set<ForwardQuery> sites = Sets.newHashSet();
+    private final Set<ForwardQuery> view = Collections.unmodifiableSet(sites);
+
+    private AllocationSites(BackwardQuery query) {
+      this.query = query;
+    }
+
+    private void extract(ForwardQuery allocation, AbstractBoomerangSolver<W> solver) {
+      // The initial field state of the solver, it may not be added yet to a new solver
+      solver
+          .getFieldAutomaton()
+          .registerListener(
+              new ExtractAllocationSiteStateListener<W>(
+                  solver.createQueryNodeField(allocation), query, allocation) {
+
+                @Override
+                protected void allocationSiteFound(
+                    ForwardQuery allocationSite, BackwardQuery query) {
+                  sites.add(allocationSite);
+                }
+              });
+    }
+  }
+}
@@ -12,8 +12,9 @@ import boomerang.solver.BackwardBoomerangSolver;
 import boomerang.solver.ForwardBoomerangSolver;
 import boomerang.stats.IBoomerangStats;
 import boomerang.util.AccessPath;
-import boomerang.util.DefaultValueMap;
+import boomerang.util.SolverRegistry;
 import com.google.common.base.Stopwatch;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import java.util.Map;
@@ -29,6 +30,7 @@ public class BackwardBoomerangResults<W extends Weight> extends AbstractBoomeran
 
   private final BackwardQuery query;
   private final BackwardBoomerangSolver<W> backwardSolver;
+  private final AllocationSiteCache<W> allocationSiteCache;
   private Map<ForwardQuery, Context> allocationSites;
   private final boolean timedout;
   private final IBoomerangStats<W> stats;
@@ -38,12 +40,31 @@ public class BackwardBoomerangResults<W extends Weight> extends AbstractBoomeran
   public BackwardBoomerangResults(
       BackwardQuery query,
       boolean timedout,
-      DefaultValueMap<ForwardQuery, ForwardBoomerangSolver<W>> queryToSolvers,
+      SolverRegistry<ForwardQuery, ForwardBoomerangSolver<W>> queryToSolvers,
+      BackwardBoomerangSolver<W> backwardSolver,
+      IBoomerangStats<W> stats,
+      Stopwatch analysisWatch) {
+    this(
+        query,
+        timedout,
+        queryToSolvers,
+        new AllocationSiteCache<>(queryToSolvers),
+        backwardSolver,
+        stats,
+        analysisWatch);
+  }
+
+  public BackwardBoomerangResults(
+      BackwardQuery query,
+      boolean timedout,
+      SolverRegistry<ForwardQuery, ForwardBoomerangSolver<W>> queryToSolvers,
+      AllocationSiteCache<W> allocationSiteCache,
       BackwardBoomerangSolver<W> backwardSolver,
       IBoomerangStats<W> stats,
       Stopwatch analysisWatch) {
     super(queryToSolvers);
     this.query = query;
+    this.allocationSiteCache = allocationSiteCache;
     this.timedout = timedout;
     this.stats = stats;
     this.analysisWatch = analysisWatch;
@@ -71,26 +92,10 @@ public class BackwardBoomerangResults<W extends Weight> extends AbstractBoomeran
 
   private void computeAllocations() {
     if (allocationSites != null) return;
-    final Set<ForwardQuery> results = Sets.newHashSet();
-    for (final Entry<ForwardQuery, ForwardBoomerangSolver<W>> fw : queryToSolvers.entrySet()) {
-      for (INode<Node<Edge, Val>> node : fw.getValue().getFieldAutomaton().getInitialStates())
-        fw.getValue()
-            .getFieldAutomaton()
-            .registerListener(
-                new ExtractAllocationSiteStateListener<W>(node, query, (ForwardQuery) fw.getKey()) {
-
-                  @Override
-                  protected void allocationSiteFound(
-                      ForwardQuery allocationSite, BackwardQuery query) {
-                    results.add(allocationSite);
-                  }
-                });
-    }
+    // A snapshot, the cached sites grow while the solvers continue
     allocationSites = Maps.newHashMap();
-    for (ForwardQuery q : results) {
-      Context context = constructContextGraph(q, query.asNode());
-      assert allocationSites.get(q) == null;
-      allocationSites.put(q, context);
+    for (ForwardQuery site : Lists.newArrayList(allocationSiteCache.get(query))) {
+      allocationSites.put(site, constructContextGraph(site, query.asNode()));
     }
   }
 
@@ -18,7 +18,7 @@ import boomerang.scene.jimple.JimpleVal;
 import boomerang.solver.AbstractBoomerangSolver;
 import boomerang.solver.ForwardBoomerangSolver;
 import boomerang.stats.IBoomerangStats;
-import boomerang.util.DefaultValueMap;
+import boomerang.util.SolverRegistry;
 import boomerang.weights.DataFlowPathWeight;
 import boomerang.weights.PathConditionWeight.ConditionDomain;
 import com.google.common.base.Stopwatch;
@@ -60,7 +60,7 @@ public class ForwardBoomerangResults<W extends Weight> extends AbstractBoomerang
       ObservableICFG<Statement, Method> icfg,
       ObservableControlFlowGraph cfg,
       boolean timedout,
-      DefaultValueMap<ForwardQuery, ForwardBoomerangSolver<W>> queryToSolvers,
+      SolverRegistry<ForwardQuery, ForwardBoomerangSolver<W>> queryToSolvers,
       IBoomerangStats<W> stats,
       Stopwatch analysisWatch,
       Set<Method> visitedMethods,
@@ -12,6 +12,7 @@
 package boomerang.solver;
 
 import boomerang.BoomerangOptions;
+import boomerang.BoomerangOptions.NodeOrder;
 import boomerang.Query;
 import boomerang.callgraph.BackwardsObservableICFG;
 import boomerang.callgraph.CallerListener;
@@ -35,7 +36,6 @@ import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Sets;
 import com.google.common.collect.Table;
-import java.util.AbstractMap;
 import java.util.Collection;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -43,9 +43,11 @@ import java.util.Set;
 import org.slf4j.LoggerFactory;
 import pathexpression.IRegEx;
 import sync.pds.solver.EmptyStackWitnessListener;
+import sync.pds.solver.NodeWorklist;
 import sync.pds.solver.SyncPDSSolver;
 import sync.pds.solver.WitnessListener;
 import sync.pds.solver.nodes.GeneratedState;
+import sync.pds.solver.nodes.GeneratedStateTable;
 import sync.pds.solver.nodes.INode;
 import sync.pds.solver.nodes.Node;
 import sync.pds.solver.nodes.SingleNode;
@@ -54,8 +56,10 @@ import wpds.impl.NormalRule;
 import wpds.impl.Rule;
 import wpds.impl.Transition;
 import wpds.impl.Weight;
+import wpds.impl.WeightFactory;
 import wpds.impl.WeightedPAutomaton;
 import wpds.impl.WeightedPushdownSystem;
+import wpds.impl.WorklistScheduler;
 import wpds.interfaces.State;
 import wpds.interfaces.WPAUpdateListener;
 
@@ -67,9 +71,8 @@ public abstract class AbstractBoomerangSolver<W extends Weight>
   protected final ObservableICFG<Statement, Method> icfg;
   protected final ObservableControlFlowGraph cfg;
   protected boolean INTERPROCEDURAL = true;
-  protected final Map<
-          Entry<INode<Node<ControlFlowGraph.Edge, Val>>, Field>,
-          INode<Node<ControlFlowGraph.Edge, Val>>>
+  // Shared by the solvers of an analysis
+  protected final GeneratedStateTable<Node<ControlFlowGraph.Edge, Val>, Field>
       generatedFieldState;
   private Multimap<Method, Transition<Field, INode<Node<ControlFlowGraph.Edge, Val>>>>
       perMethodFieldTransitions = HashMultimap.create();
@@ -94,7 +97,7 @@ public abstract class AbstractBoomerangSolver<W extends Weight>
   public AbstractBoomerangSolver(
       ObservableICFG<Statement, Method> icfg,
       ObservableControlFlowGraph cfg,
-      Map<Entry<INode<Node<Edge, Val>>, Field>, INode<Node<Edge, Val>>> genField,
+      GeneratedStateTable<Node<Edge, Val>, Field> genField,
       BoomerangOptions options,
       NestedWeightedPAutomatons<ControlFlowGraph.Edge, INode<Val>, W> callSummaries,
       NestedWeightedPAutomatons<Field, INode<Node<ControlFlowGraph.Edge, Val>>, W> fieldSummaries,
@@ -113,6 +116,16 @@ public abstract class AbstractBoomerangSolver<W extends Weight>
     this.cfg = cfg;
     this.dataFlowScope = scope;
     this.type = propagationType;
+    if (options.automatonWorklistOrder() != null) {
+      setWorklistScheduler(new WorklistScheduler(options.automatonWorklistOrder()));
+    }
+    setPropagateWeightDeltas(options.propagateWeightDeltas());
+    if (options.weightCacheSize() > 0) {
+      setWeightFactory(new WeightFactory<>(options.weightCacheSize()));
+    }
+    if (options.nodeWorklistOrder() != null) {
+      setNodeWorklist(createNodeWorklist(options.nodeWorklistOrder()));
+    }
     this.fieldAutomaton.registerListener(
         (t, w, aut) -> {
           addTransitionToMethod(t.getStart().fact().stmt().getStart().getMethod(), t);
@@ -127,6 +140,17 @@ public abstract class AbstractBoomerangSolver<W extends Weight>
     this.generatedFieldState = genField;
   }
 
+  private static NodeWorklist<Node<Edge, Val>> createNodeWorklist(NodeOrder order) {
+    switch (order) {
+      case LIFO:
+        return NodeWorklist.lifo();
+      case METHOD_LOCAL_FIRST:
+        return NodeWorklist.groupLocalFirst(node -> node.stmt().getMethod());
+      default:
+        return NodeWorklist.fifo();
+    }
+  }
+
   public boolean reachesNodeWithEmptyField(Node<Edge, Val> node) {
     for (Transition<Field, INode<Node<Edge, Val>>> t : getFieldAutomaton().getTransitions()) {
       if (t.getStart() instanceof GeneratedState) {
@@ -403,11 +427,13 @@ public abstract class AbstractBoomerangSolver<W extends Weight>
 
   public INode<Node<ControlFlowGraph.Edge, Val>> generateFieldState(
       final INode<Node<ControlFlowGraph.Edge, Val>> d, final Field loc) {
-    Entry<INode<Node<ControlFlowGraph.Edge, Val>>, Field> e = new AbstractMap.SimpleEntry<>(d, loc);
-    if (!generatedFieldState.containsKey(e)) {
-      generatedFieldState.put(e, new GeneratedState<>(d, loc));
+    INode<Node<ControlFlowGraph.Edge, Val>> state = generatedFieldState.get(d, loc);
+    if (state == null) {
+      onStateGenerated();
+      state = new GeneratedState<>(d, loc);
+      generatedFieldState.put(d, loc, state);
     }
-    return generatedFieldState.get(e);
+    return state;
   }
 
   private boolean isBackward() {
@@ -602,6 +628,44 @@ public abstract class AbstractBoomerangSolver<W extends Weight>
     this.fieldPDS.unregisterAllListeners();
   }
 
+  /**
+   * Also unregisters all listeners and trims the per method and per statement indices to the
+   * transitions that remain. The generated field states are shared among the solvers of a {@link
+   * boomerang.WeightedBoomerang} instance, which trims them.
+   */
+  @Override
+  public void compact(Collection<Node<Edge, Val>> retained) {
+    unregisterAllListeners();
+    super.compact(retained);
+    Multimap<Method, Transition<Field, INode<Node<Edge, Val>>>> methodFieldTransitions =
+        HashMultimap.create();
+    for (Entry<Method, Transition<Field, INode<Node<Edge, Val>>>> e :
+        perMethodFieldTransitions.entries()) {
+      if (fieldAutomaton.containsTransition(e.getValue())) {
+        methodFieldTransitions.put(e.getKey(), e.getValue());
+      }
+    }
+    perMethodFieldTransitions = methodFieldTransitions;
+    Multimap<Edge, Transition<Field, INode<Node<Edge, Val>>>> statementFieldTransitions =
+        HashMultimap.create();
+    for (Entry<Edge, Transition<Field, INode<Node<Edge, Val>>>> e :
+        perStatementFieldTransitions.entries()) {
+      if (fieldAutomaton.containsTransition(e.getValue())) {
+        statementFieldTransitions.put(e.getKey(), e.getValue());
+      }
+    }
+    perStatementFieldTransitions = statementFieldTransitions;
+    HashBasedTable<Edge, Transition<Edge, INode<Val>>, W> statementCallTransitions =
+        HashBasedTable.create();
+    for (Table.Cell<Edge, Transition<Edge, INode<Val>>, W> c :
+        perStatementCallTransitions.cellSet()) {
+      if (callAutomaton.containsTransition(c.getColumnKey())) {
+        statementCallTransitions.put(c.getRowKey(), c.getColumnKey(), c.getValue());
+      }
+    }
+    perStatementCallTransitions = statementCallTransitions;
+  }
+
   private static class UnbalancedDataFlow<W> {
 
     private final Method callee;
@@ -30,15 +30,13 @@ import boomerang.scene.Statement;
 import boomerang.scene.Type;
 import boomerang.scene.Val;
 import com.google.common.collect.Sets;
-import java.util.AbstractMap.SimpleEntry;
 import java.util.Collection;
-import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import sync.pds.solver.nodes.GeneratedState;
+import sync.pds.solver.nodes.GeneratedStateTable;
 import sync.pds.solver.nodes.INode;
 import sync.pds.solver.nodes.Node;
 import sync.pds.solver.nodes.PopNode;
@@ -58,10 +56,7 @@ public abstract class BackwardBoomerangSolver<W extends Weight> extends Abstract
   public BackwardBoomerangSolver(
       ObservableICFG<Statement, Method> icfg,
       ObservableControlFlowGraph cfg,
-      Map<
-              Entry<INode<Node<ControlFlowGraph.Edge, Val>>, Field>,
-              INode<Node<ControlFlowGraph.Edge, Val>>>
-          genField,
+      GeneratedStateTable<Node<ControlFlowGraph.Edge, Val>, Field> genField,
       BackwardQuery query,
       BoomerangOptions options,
       NestedWeightedPAutomatons<ControlFlowGraph.Edge, INode<Val>, W> callSummaries,
@@ -82,12 +77,13 @@ public abstract class BackwardBoomerangSolver<W extends Weight> extends Abstract
 
   public INode<Node<ControlFlowGraph.Edge, Val>> generateFieldState(
       final INode<Node<ControlFlowGraph.Edge, Val>> d, final Field loc) {
-    Entry<INode<Node<Edge, Val>>, Field> e = new SimpleEntry<>(d, loc);
-    if (!generatedFieldState.containsKey(e)) {
-      generatedFieldState.put(
-          e, new GeneratedState<>(new SingleNode<>(new Node<>(epsilonStmt(), Val.zero())), loc));
+    INode<Node<Edge, Val>> state = generatedFieldState.get(d, loc);
+    if (state == null) {
+      onStateGenerated();
+      state = new GeneratedState<>(new SingleNode<>(new Node<>(epsilonStmt(), Val.zero())), loc);
+      generatedFieldState.put(d, loc, state);
     }
-    return generatedFieldState.get(e);
+    return state;
   }
 
   /*
@@ -33,12 +33,11 @@ import boomerang.scene.Val;
 import com.google.common.collect.Sets;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 import java.util.stream.Collectors;
 import org.slf4j.LoggerFactory;
 import sync.pds.solver.nodes.GeneratedState;
+import sync.pds.solver.nodes.GeneratedStateTable;
 import sync.pds.solver.nodes.INode;
 import sync.pds.solver.nodes.Node;
 import sync.pds.solver.nodes.PopNode;
@@ -62,7 +61,7 @@ public abstract class ForwardBoomerangSolver<W extends Weight> extends AbstractB
       ObservableICFG<Statement, Method> callGraph,
       ObservableControlFlowGraph cfg,
       ForwardQuery query,
-      Map<Entry<INode<Node<Edge, Val>>, Field>, INode<Node<Edge, Val>>> genField,
+      GeneratedStateTable<Node<Edge, Val>, Field> genField,
       BoomerangOptions options,
       NestedWeightedPAutomatons<ControlFlowGraph.Edge, INode<Val>, W> callSummaries,
       NestedWeightedPAutomatons<Field, INode<Node<ControlFlowGraph.Edge, Val>>, W> fieldSummaries,
@@ -0,0 +1,165 @@
+/**
+ * ***************************************************************************** Copyright (c) 2018
+ * Fraunhofer IEM, Paderborn, Germany. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * <p>SPDX-License-Identifier: EPL-2.0
+ *
+ * <p>Contributors: Johannes Spaeth - initial API and implementation
+ * *****************************************************************************
+ */
+package boomerang.util;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A thread-safe replacement of {@link DefaultValueMap} for the solvers of an analysis. A value is
+ * created at most once per key by {@link #getOrCreate}, lookups do not lock. Entries are only
+ * added, in creation order. Iterating {@link #entrySet()}, {@link #keySet()} or {@link #values()}
+ * visits the entries present when the iteration started, without copying them, and may continue
+ * while further values are created. Removing entries is not supported.
+ */
+public abstract class SolverRegistry<K, V> extends AbstractMap<K, V> {
+
+  private final ConcurrentHashMap<K, V> index = new ConcurrentHashMap<>();
+  // Entries in creation order, appended under the lock. The size is written after the entry.
+  private volatile Entry<K, V>[] entries = newEntries(16);
+  private volatile int size;
+
+  protected abstract V createItem(K key);
+
+  /**
+   * Returns the value of the key, creating it if absent. Creation happens under a lock of this
+   * registry, which is reentrant: {@link #createItem} may create values of other keys.
+   */
+  public V getOrCreate(K key) {
+    V value = index.get(key);
+    if (value != null) {
+      return value;
+    }
+    synchronized (this) {
+      value = index.get(key);
+      if (value != null) {
+        return value;
+      }
+      value = createItem(key);
+      // The key may have been created recursively by createItem, the first value is kept
+      V existing = index.putIfAbsent(key, value);
+      if (existing != null) {
+        return existing;
+      }
+      Entry<K, V>[] current = entries;
+      int n = size;
+      if (n == current.length) {
+        current = Arrays.copyOf(current, n * 2);
+        entries = current;
+      }
+      current[n] = new SimpleImmutableEntry<>(key, value);
+      size = n + 1;
+      return value;
+    }
+  }
+
+  @Override
+  public V get(Object key) {
+    return index.get(key);
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return index.containsKey(key);
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public Set<Entry<K, V>> entrySet() {
+    // Read the size before the array, a grown array contains all entries below the size
+    int n = size;
+    Entry<K, V>[] snapshot = entries;
+    return new AbstractSet<Entry<K, V>>() {
+      @Override
+      public Iterator<Entry<K, V>> iterator() {
+        return new Iterator<Entry<K, V>>() {
+          private int next;
+
+          @Override
+          public boolean hasNext() {
+            return next < n;
+          }
+
+          @Override
+          public Entry<K, V> next() {
+            if (next >= n) {
+              throw new NoSuchElementException();
+            }
+            return snapshot[next++];
+          }
+        };
+      }
+
+      @Override
+      public boolean contains(Object o) {
+        if (!(o instanceof Map.Entry)) {
+          return false;
+        }
+        Entry<?, ?> e = (Entry<?, ?>) o;
+        V value = index.get(e.getKey());
+        return value != null && value.equals(e.getValue());
+      }
+
+      @Override
+      public int size() {
+        return n;
+      }
+    };
+  }
+
+  @Override
+  public Set<K> keySet() {
+    Set<Entry<K, V>> snapshot = entrySet();
+    return new AbstractSet<K>() {
+      @Override
+      public Iterator<K> iterator() {
+        Iterator<Entry<K, V>> it = snapshot.iterator();
+        return new Iterator<K>() {
+          @Override
+          public boolean hasNext() {
+            return it.hasNext();
+          }
+
+          @Override
+          public K next() {
+            return it.next().getKey();
+          }
+        };
+      }
+
+      @Override
+      public boolean contains(Object o) {
+        return index.containsKey(o);
+      }
+
+      @Override
+      public int size() {
+        return snapshot.size();
+      }
+    };
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <K, V> Entry<K, V>[] newEntries(int length) {
+    return new Entry[length];
+  }
+}
@@ -13,7 +13,7 @@ import wpds.impl.Weight;
 
 public class DataFlowPathWeight extends Weight {
 
-  private static DataFlowPathWeight one;
+  private static final DataFlowPathWeight ONE = new DataFlowPathWeight();
 
   private PathTrackingWeight path;
   private PathConditionWeight condition;
@@ -59,8 +59,7 @@ public class DataFlowPathWeight extends Weight {
   }
 
   public static DataFlowPathWeight one() {
-    if (one == null) one = new DataFlowPathWeight();
-    return one;
+    return ONE;
   }
 
   @Override
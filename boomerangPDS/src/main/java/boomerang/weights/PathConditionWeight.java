@@ -11,7 +11,7 @@ import wpds.impl.Weight;
 
 public class PathConditionWeight extends Weight {
 
-  private static PathConditionWeight one;
+  private static final PathConditionWeight ONE = new PathConditionWeight("ONE");
   private Map<Statement, ConditionDomain> ifStatements = Maps.newHashMap();
   private Map<Val, ConditionDomain> variableToValue = Maps.newHashMap();
   private Set<Val> returnVals = Sets.newHashSet();
@@ -27,10 +27,7 @@ public class PathConditionWeight extends Weight {
   }
 
   public static PathConditionWeight one() {
-    if (one == null) {
-      one = new PathConditionWeight("ONE");
-    }
-    return one;
+    return ONE;
   }
 
   public PathConditionWeight(Val returnVal) {
@@ -12,7 +12,7 @@ import wpds.impl.Weight;
 
 public class PathTrackingWeight extends Weight {
 
-  private static PathTrackingWeight one;
+  private static final PathTrackingWeight ONE = new PathTrackingWeight("ONE");
   /**
    * This set keeps track of all statements on a shortest path that use an alias from source to
    * sink.
@@ -44,10 +44,7 @@ public class PathTrackingWeight extends Weight {
   }
 
   public static PathTrackingWeight one() {
-    if (one == null) {
-      one = new PathTrackingWeight("ONE");
-    }
-    return one;
+    return ONE;
   }
 
   @Override
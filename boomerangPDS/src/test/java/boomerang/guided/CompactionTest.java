@@ -0,0 +1,88 @@
+package boomerang.guided;
+
+import boomerang.BackwardQuery;
+import boomerang.Boomerang;
+import boomerang.DefaultBoomerangOptions;
+import boomerang.guided.targets.CompactionTarget;
+import boomerang.results.BackwardBoomerangResults;
+import boomerang.scene.SootDataFlowScope;
+import boomerang.scene.jimple.BoomerangPretransformer;
+import boomerang.scene.jimple.SootCallGraph;
+import com.google.common.collect.Lists;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import soot.G;
+import soot.PackManager;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.options.Options;
+import wpds.impl.Weight.NoWeight;
+
+public class CompactionTest {
+
+  @Test
+  public void solveAfterCompaction() {
+    setupSoot(CompactionTarget.class);
+    SootMethod m =
+        Scene.v()
+            .getMethod("<boomerang.guided.targets.CompactionTarget: void main(java.lang.String[])>");
+    BackwardQuery query = CustomFlowFunctionTest.selectQueryForStatement(m);
+
+    Boomerang solver =
+        new Boomerang(
+            new SootCallGraph(),
+            SootDataFlowScope.make(Scene.v()),
+            new DefaultBoomerangOptions() {
+              @Override
+              public boolean allowMultipleQueries() {
+                return true;
+              }
+            });
+    BackwardBoomerangResults<NoWeight> results = solver.solve(query);
+    Assert.assertEquals(1, results.getAllocationSites().size());
+
+    solver.compact();
+    try {
+      solver.solve(query);
+      Assert.fail("Solved a query with compacted solvers");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+
+    // A new instance answers the query again
+    Boomerang fresh =
+        new Boomerang(
+            new SootCallGraph(), SootDataFlowScope.make(Scene.v()), new DefaultBoomerangOptions());
+    Assert.assertEquals(1, fresh.solve(query).getAllocationSites().size());
+  }
+
+  private void setupSoot(Class<?> cls) {
+    G.v().reset();
+    Options.v().set_whole_program(true);
+    Options.v().setPhaseOption("cg.cha", "on");
+    Options.v().set_output_format(Options.output_format_none);
+    Options.v().set_no_bodies_for_excluded(true);
+    Options.v().set_allow_phantom_refs(true);
+    Options.v().setPhaseOption("jb", "use-original-names:true");
+    Options.v().set_keep_line_number(true);
+    Options.v().set_prepend_classpath(true);
+    Path path = Paths.get("target/test-classes");
+    Options.v().set_process_dir(Lists.newArrayList(path.toAbsolutePath().toString()));
+    Scene.v().loadNecessaryClasses();
+    List<SootMethod> eps = Lists.newArrayList();
+    for (SootClass sootClass : Scene.v().getClasses()) {
+      if (sootClass.toString().equals(cls.getName())) {
+        sootClass.setApplicationClass();
+        eps.addAll(sootClass.getMethods());
+      }
+    }
+    Scene.v().setEntryPoints(eps);
+    PackManager.v().runPacks();
+    BoomerangPretransformer.v().reset();
+    BoomerangPretransformer.v().apply();
+  }
+}
@@ -0,0 +1,100 @@
+package boomerang.guided;
+
+import boomerang.BackwardQuery;
+import boomerang.Boomerang;
+import boomerang.DefaultBoomerangOptions;
+import boomerang.guided.targets.ResourceBudgetTarget;
+import boomerang.results.BackwardBoomerangResults;
+import boomerang.scene.SootDataFlowScope;
+import boomerang.scene.jimple.BoomerangPretransformer;
+import boomerang.scene.jimple.SootCallGraph;
+import com.google.common.collect.Lists;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import soot.G;
+import soot.PackManager;
+import soot.Scene;
+import soot.SootClass;
+import soot.SootMethod;
+import soot.options.Options;
+import wpds.impl.ResourceBudget;
+import wpds.impl.Weight.NoWeight;
+
+public class ResourceBudgetTest {
+
+  @Test
+  public void queryAfterExhaustedBudget() {
+    setupSoot(ResourceBudgetTarget.class);
+    BackwardQuery large = query("large");
+    BackwardQuery small = query("small");
+    int smallNodes = reachedNodes(small);
+    Assert.assertTrue(reachedNodes(large) > smallNodes);
+
+    // Enough for the small query only
+    Boomerang solver = createSolver(new ResourceBudget(0, 0, smallNodes, 0));
+    Assert.assertTrue(solver.solve(large).isTimedout());
+    BackwardBoomerangResults<NoWeight> results = solver.solve(small);
+    Assert.assertFalse(results.isTimedout());
+    Assert.assertEquals(1, results.getAllocationSites().size());
+  }
+
+  /** @return The nodes the solvers reach for the query alone. */
+  private static int reachedNodes(BackwardQuery query) {
+    Boomerang solver = createSolver(new ResourceBudget(0, 0, 0, 0));
+    Assert.assertFalse(solver.solve(query).isTimedout());
+    return solver.getResourceBudget().getReachedNodes();
+  }
+
+  private static Boomerang createSolver(ResourceBudget budget) {
+    return new Boomerang(
+        new SootCallGraph(),
+        SootDataFlowScope.make(Scene.v()),
+        new DefaultBoomerangOptions() {
+          @Override
+          public boolean allowMultipleQueries() {
+            return true;
+          }
+
+          @Override
+          public ResourceBudget resourceBudget() {
+            return budget;
+          }
+        });
+  }
+
+  private static BackwardQuery query(String method) {
+    SootMethod m =
+        Scene.v()
+            .getMethod("<boomerang.guided.targets.ResourceBudgetTarget: void " + method + "()>");
+    return CustomFlowFunctionTest.selectQueryForStatement(m);
+  }
+
+  private void setupSoot(Class<?> cls) {
+    G.v().reset();
+    Options.v().set_whole_program(true);
+    Options.v().setPhaseOption("cg.cha", "on");
+    Options.v().set_output_format(Options.output_format_none);
+    Options.v().set_no_bodies_for_excluded(true);
+    Options.v().set_allow_phantom_refs(true);
+    Options.v().setPhaseOption("jb", "use-original-names:true");
+    Options.v().set_keep_line_number(true);
+    Options.v().set_prepend_classpath(true);
+    Path path = Paths.get("target/test-classes");
+    Options.v().set_process_dir(Lists.newArrayList(path.toAbsolutePath().toString()));
+    Scene.v().loadNecessaryClasses();
+    List<SootMethod> eps = Lists.newArrayList();
+    for (SootClass sootClass : Scene.v().getClasses()) {
+      if (sootClass.toString().equals(cls.getName())) {
+        sootClass.setApplicationClass();
+        eps.addAll(sootClass.getMethods());
+      }
+    }
+    Scene.v().setEntryPoints(eps);
+    PackManager.v().runPacks();
+    BoomerangPretransformer.v().reset();
+    BoomerangPretransformer.v().apply();
+  }
+}
@@ -0,0 +1,11 @@
+package boomerang.guided.targets;
+
+public class CompactionTarget {
+
+  public static void main(String... args) {
+    Object x = new Object();
+    queryFor(x);
+  }
+
+  private static void queryFor(Object x) {}
+}
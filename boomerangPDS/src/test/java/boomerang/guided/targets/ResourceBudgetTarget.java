@@ -0,0 +1,27 @@
+package boomerang.guided.targets;
+
+public class ResourceBudgetTarget {
+
+  public static void main(String... args) {
+    large();
+    small();
+  }
+
+  private static void large() {
+    Object x = new Object();
+    Object y = id(x);
+    Object z = id(y);
+    queryFor(id(z));
+  }
+
+  private static void small() {
+    Object x = new Object();
+    queryFor(x);
+  }
+
+  private static Object id(Object x) {
+    return x;
+  }
+
+  private static void queryFor(Object x) {}
+}
@@ -21,7 +21,7 @@ import boomerang.scene.jimple.IntAndStringBoomerangOptions;
 import boomerang.scene.jimple.SootCallGraph;
 import boomerang.solver.ForwardBoomerangSolver;
 import boomerang.util.AccessPath;
-import boomerang.util.DefaultValueMap;
+import boomerang.util.SolverRegistry;
 import com.google.common.base.Joiner;
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.Lists;
@@ -191,7 +191,7 @@ public class AbstractBoomerangTest extends AbstractTestingFramework {
           }
         };
     solver.wholeProgramAnalysis();
-    DefaultValueMap<ForwardQuery, ForwardBoomerangSolver<NoWeight>> solvers = solver.getSolvers();
+    SolverRegistry<ForwardQuery, ForwardBoomerangSolver<NoWeight>> solvers = solver.getSolvers();
     for (final Query q : solvers.keySet()) {
       for (final Query queryForCallSite : queryForCallSites) {
         solvers
@@ -8,115 +8,116 @@ import java.util.Set;
 import wpds.interfaces.Location;
 
 public abstract class Method implements Location {
-  private static Method epsilon;
+  private static final Method EPSILON = createEpsilon();
 
   protected Method() {}
 
   public static Method epsilon() {
-    if (epsilon == null)
-      epsilon =
-          new Method() {
-            @Override
-            public int hashCode() {
-              return System.identityHashCode(this);
-            }
-
-            @Override
-            public boolean equals(Object obj) {
-              return obj == this;
-            }
-
-            @Override
-            public boolean isStaticInitializer() {
-              // TODO Auto-generated method stub
-              return false;
-            }
-
-            @Override
-            public boolean isParameterLocal(Val val) {
-              // TODO Auto-generated method stub
-              return false;
-            }
-
-            @Override
-            public boolean isThisLocal(Val val) {
-              // TODO Auto-generated method stub
-              return false;
-            }
-
-            @Override
-            public Set<Val> getLocals() {
-              // TODO Auto-generated method stub
-              return Sets.newHashSet();
-            }
-
-            @Override
-            public Val getThisLocal() {
-              // TODO Auto-generated method stub
-              return null;
-            }
-
-            @Override
-            public List<Val> getParameterLocals() {
-              // TODO Auto-generated method stub
-              return Lists.newArrayList();
-            }
-
-            @Override
-            public boolean isStatic() {
-              // TODO Auto-generated method stub
-              return false;
-            }
-
-            @Override
-            public boolean isNative() {
-              // TODO Auto-generated method stub
-              return false;
-            }
-
-            @Override
-            public List<Statement> getStatements() {
-              // TODO Auto-generated method stub
-              return Lists.newArrayList();
-            }
-
-            @Override
-            public WrappedClass getDeclaringClass() {
-              // TODO Auto-generated method stub
-              return null;
-            }
-
-            @Override
-            public ControlFlowGraph getControlFlowGraph() {
-              // TODO Auto-generated method stub
-              return null;
-            }
-
-            @Override
-            public String getSubSignature() {
-              // TODO Auto-generated method stub
-              return null;
-            }
-
-            @Override
-            public String getName() {
-              // TODO Auto-generated method stub
-              return null;
-            }
-
-            @Override
-            public boolean isConstructor() {
-              // TODO Auto-generated method stub
-              return false;
-            }
-
-            @Override
-            public boolean isPublic() {
-              // TODO Auto-generated method stub
-              return false;
-            }
-          };
-    return epsilon;
+    return EPSILON;
+  }
+
+  private static Method createEpsilon() {
+    return new Method() {
+      @Override
+      public int hashCode() {
+        return System.identityHashCode(this);
+      }
+
+      @Override
+      public boolean equals(Object obj) {
+        return obj == this;
+      }
+
+      @Override
+      public boolean isStaticInitializer() {
+        // TODO Auto-generated method stub
+        return false;
+      }
+
+      @Override
+      public boolean isParameterLocal(Val val) {
+        // TODO Auto-generated method stub
+        return false;
+      }
+
+      @Override
+      public boolean isThisLocal(Val val) {
+        // TODO Auto-generated method stub
+        return false;
+      }
+
+      @Override
+      public Set<Val> getLocals() {
+        // TODO Auto-generated method stub
+        return Sets.newHashSet();
+      }
+
+      @Override
+      public Val getThisLocal() {
+        // TODO Auto-generated method stub
+        return null;
+      }
+
+      @Override
+      public List<Val> getParameterLocals() {
+        // TODO Auto-generated method stub
+        return Lists.newArrayList();
+      }
+
+      @Override
+      public boolean isStatic() {
+        // TODO Auto-generated method stub
+        return false;
+      }
+
+      @Override
+      public boolean isNative() {
+        // TODO Auto-generated method stub
+        return false;
+      }
+
+      @Override
+      public List<Statement> getStatements() {
+        // TODO Auto-generated method stub
+        return Lists.newArrayList();
+      }
+
+      @Override
+      public WrappedClass getDeclaringClass() {
+        // TODO Auto-generated method stub
+        return null;
+      }
+
+      @Override
+      public ControlFlowGraph getControlFlowGraph() {
+        // TODO Auto-generated method stub
+        return null;
+      }
+
+      @Override
+      public String getSubSignature() {
+        // TODO Auto-generated method stub
+        return null;
+      }
+
+      @Override
+      public String getName() {
+        // TODO Auto-generated method stub
+        return null;
+      }
+
+      @Override
+      public boolean isConstructor() {
+        // TODO Auto-generated method stub
+        return false;
+      }
+
+      @Override
+      public boolean isPublic() {
+        // TODO Auto-generated method stub
+        return false;
+      }
+    };
   }
 
   @Override
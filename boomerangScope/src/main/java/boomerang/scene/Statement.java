@@ -17,7 +17,7 @@ import wpds.interfaces.Location;
 
 public abstract class Statement implements Location {
   // Wrapper for stmt so we know the method
-  private static Statement epsilon;
+  private static final Statement EPSILON = new EpsStatement();
   private final String rep;
   protected final Method method;
 
@@ -32,10 +32,7 @@ public abstract class Statement implements Location {
   }
 
   public static Statement epsilon() {
-    if (epsilon == null) {
-      epsilon = new EpsStatement();
-    }
-    return epsilon;
+    return EPSILON;
   }
 
   private static class EpsStatement extends Statement implements Empty {
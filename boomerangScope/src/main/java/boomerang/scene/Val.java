@@ -16,7 +16,7 @@ public abstract class Val {
   private final String rep;
   protected final ControlFlowGraph.Edge unbalancedStmt;
 
-  private static Val zeroInstance;
+  private static final Val ZERO = createZero();
 
   protected Val(Method m) {
     this.rep = null;
@@ -54,177 +54,178 @@ public abstract class Val {
   }
 
   public static Val zero() {
-    if (zeroInstance == null)
-      zeroInstance =
-          new Val("ZERO") {
-
-            @Override
-            public Type getType() {
-              // TODO Auto-generated method stub
-              return null;
-            }
-
-            @Override
-            public boolean isStatic() {
-              // TODO Auto-generated method stub
-              return false;
-            }
-
-            @Override
-            public boolean isNewExpr() {
-              // TODO Auto-generated method stub
-              return false;
-            }
-
-            @Override
-            public Type getNewExprType() {
-              // TODO Auto-generated method stub
-              return null;
-            }
-
-            @Override
-            public Val asUnbalanced(ControlFlowGraph.Edge stmt) {
-              // TODO Auto-generated method stub
-              return null;
-            }
-
-            @Override
-            public boolean isLocal() {
-              // TODO Auto-generated method stub
-              return false;
-            }
-
-            @Override
-            public boolean isArrayAllocationVal() {
-              // TODO Auto-generated method stub
-              return false;
-            }
-
-            @Override
-            public boolean isNull() {
-              // TODO Auto-generated method stub
-              return false;
-            }
-
-            @Override
-            public boolean isStringConstant() {
-              // TODO Auto-generated method stub
-              return false;
-            }
-
-            @Override
-            public String getStringValue() {
-              // TODO Auto-generated method stub
-              return null;
-            }
-
-            @Override
-            public boolean isStringBufferOrBuilder() {
-              // TODO Auto-generated method stub
-              return false;
-            }
-
-            @Override
-            public boolean isThrowableAllocationType() {
-              // TODO Auto-generated method stub
-              return false;
-            }
-
-            @Override
-            public boolean isCast() {
-              // TODO Auto-generated method stub
-              return false;
-            }
-
-            @Override
-            public Val getCastOp() {
-              // TODO Auto-generated method stub
-              return null;
-            }
-
-            @Override
-            public boolean isArrayRef() {
-              // TODO Auto-generated method stub
-              return false;
-            }
-
-            @Override
-            public boolean isInstanceOfExpr() {
-              // TODO Auto-generated method stub
-              return false;
-            }
-
-            @Override
-            public Val getInstanceOfOp() {
-              // TODO Auto-generated method stub
-              return null;
-            }
-
-            @Override
-            public boolean isLengthExpr() {
-              // TODO Auto-generated method stub
-              return false;
-            }
-
-            @Override
-            public Val getLengthOp() {
-              // TODO Auto-generated method stub
-              return null;
-            }
-
-            @Override
-            public boolean isIntConstant() {
-              // TODO Auto-generated method stub
-              return false;
-            }
-
-            @Override
-            public boolean isClassConstant() {
-              // TODO Auto-generated method stub
-              return false;
-            }
-
-            @Override
-            public Type getClassConstantType() {
-              // TODO Auto-generated method stub
-              return null;
-            }
-
-            @Override
-            public Val withNewMethod(Method callee) {
-              return null;
-            }
-
-            @Override
-            public boolean isLongConstant() {
-              // TODO Auto-generated method stub
-              return false;
-            }
-
-            @Override
-            public int getIntValue() {
-              // TODO Auto-generated method stub
-              return 0;
-            }
-
-            @Override
-            public long getLongValue() {
-              // TODO Auto-generated method stub
-              return 0;
-            }
-
-            @Override
-            public Pair<Val, Integer> getArrayBase() {
-              // TODO Auto-generated method stub
-              return null;
-            }
-
-            @Override
-            public String getVariableName() {
-              return toString();
-            }
-          };
-    return zeroInstance;
+    return ZERO;
+  }
+
+  private static Val createZero() {
+    return new Val("ZERO") {
+
+      @Override
+      public Type getType() {
+        // TODO Auto-generated method stub
+        return null;
+      }
+
+      @Override
+      public boolean isStatic() {
+        // TODO Auto-generated method stub
+        return false;
+      }
+
+      @Override
+      public boolean isNewExpr() {
+        // TODO Auto-generated method stub
+        return false;
+      }
+
+      @Override
+      public Type getNewExprType() {
+        // TODO Auto-generated method stub
+        return null;
+      }
+
+      @Override
+      public Val asUnbalanced(ControlFlowGraph.Edge stmt) {
+        // TODO Auto-generated method stub
+        return null;
+      }
+
+      @Override
+      public boolean isLocal() {
+        // TODO Auto-generated method stub
+        return false;
+      }
+
+      @Override
+      public boolean isArrayAllocationVal() {
+        // TODO Auto-generated method stub
+        return false;
+      }
+
+      @Override
+      public boolean isNull() {
+        // TODO Auto-generated method stub
+        return false;
+      }
+
+      @Override
+      public boolean isStringConstant() {
+        // TODO Auto-generated method stub
+        return false;
+      }
+
+      @Override
+      public String getStringValue() {
+        // TODO Auto-generated method stub
+        return null;
+      }
+
+      @Override
+      public boolean isStringBufferOrBuilder() {
+        // TODO Auto-generated method stub
+        return false;
+      }
+
+      @Override
+      public boolean isThrowableAllocationType() {
+        // TODO Auto-generated method stub
+        return false;
+      }
+
+      @Override
+      public boolean isCast() {
+        // TODO Auto-generated method stub
+        return false;
+      }
+
+      @Override
+      public Val getCastOp() {
+        // TODO Auto-generated method stub
+        return null;
+      }
+
+      @Override
+      public boolean isArrayRef() {
+        // TODO Auto-generated method stub
+        return false;
+      }
+
+      @Override
+      public boolean isInstanceOfExpr() {
+        // TODO Auto-generated method stub
+        return false;
+      }
+
+      @Override
+      public Val getInstanceOfOp() {
+        // TODO Auto-generated method stub
+        return null;
+      }
+
+      @Override
+      public boolean isLengthExpr() {
+        // TODO Auto-generated method stub
+        return false;
+      }
+
+      @Override
+      public Val getLengthOp() {
+        // TODO Auto-generated method stub
+        return null;
+      }
+
+      @Override
+      public boolean isIntConstant() {
+        // TODO Auto-generated method stub
+        return false;
+      }
+
+      @Override
+      public boolean isClassConstant() {
+        // TODO Auto-generated method stub
+        return false;
+      }
+
+      @Override
+      public Type getClassConstantType() {
+        // TODO Auto-generated method stub
+        return null;
+      }
+
+      @Override
+      public Val withNewMethod(Method callee) {
+        return null;
+      }
+
+      @Override
+      public boolean isLongConstant() {
+        // TODO Auto-generated method stub
+        return false;
+      }
+
+      @Override
+      public int getIntValue() {
+        // TODO Auto-generated method stub
+        return 0;
+      }
+
+      @Override
+      public long getLongValue() {
+        // TODO Auto-generated method stub
+        return 0;
+      }
+
+      @Override
+      public Pair<Val, Integer> getArrayBase() {
+        // TODO Auto-generated method stub
+        return null;
+      }
+
+      @Override
+      public String getVariableName() {
+        return toString();
+      }
+    };
   }
 
   public abstract boolean isStatic();
@@ -18,7 +18,8 @@ public class JimpleControlFlowGraph implements ControlFlowGraph {
 
   private UnitGraph graph;
 
-  private boolean cacheBuild = false;
+  // Written after the caches are filled, they are read-only from then on
+  private volatile boolean cacheBuild = false;
   private List<Statement> startPointCache = Lists.newArrayList();
   private List<Statement> endPointCache = Lists.newArrayList();
   private Multimap<Statement, Statement> succsOfCache = HashMultimap.create();
@@ -39,7 +40,15 @@ public class JimpleControlFlowGraph implements ControlFlowGraph {
 
   private void buildCache() {
     if (cacheBuild) return;
-    cacheBuild = true;
+    // Methods are shared by the queries solved concurrently, see WeightedBoomerang#solveAll
+    synchronized (this) {
+      if (cacheBuild) return;
+      fillCache();
+      cacheBuild = true;
+    }
+  }
+
+  private void fillCache() {
     List<Unit> heads = graph.getHeads();
     for (Unit u : heads) {
       // We add a nop statement to the body and ignore IdentityStmt ($stack14 := @caughtexception)
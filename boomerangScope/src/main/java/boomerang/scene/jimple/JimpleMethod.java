@@ -19,9 +19,10 @@ public class JimpleMethod extends Method {
   private final SootMethod delegate;
 
   private static Interner<JimpleMethod> INTERNAL_POOL = Interners.newWeakInterner();
-  private ControlFlowGraph cfg;
-  private List<Val> parameterLocalCache;
-  private Set<Val> localCache;
+  // Lazily computed, a method is shared by the queries solved concurrently
+  private volatile ControlFlowGraph cfg;
+  private volatile List<Val> parameterLocalCache;
+  private volatile Set<Val> localCache;
 
   private JimpleMethod(SootMethod m) {
     this.delegate = m;
@@ -84,14 +85,16 @@ public class JimpleMethod extends Method {
   }
 
   public Set<Val> getLocals() {
-    if (localCache == null) {
-      localCache = Sets.newHashSet();
-      Chain<Local> locals = delegate.getActiveBody().getLocals();
-      for (Local l : locals) {
-        localCache.add(new JimpleVal(l, this));
+    Set<Val> locals = localCache;
+    if (locals == null) {
+      locals = Sets.newHashSet();
+      Chain<Local> bodyLocals = delegate.getActiveBody().getLocals();
+      for (Local l : bodyLocals) {
+        locals.add(new JimpleVal(l, this));
       }
+      localCache = locals;
     }
-    return localCache;
+    return locals;
   }
 
   public Val getThisLocal() {
@@ -99,13 +102,15 @@ public class JimpleMethod extends Method {
   }
 
   public List<Val> getParameterLocals() {
-    if (parameterLocalCache == null) {
-      parameterLocalCache = Lists.newArrayList();
+    List<Val> parameterLocals = parameterLocalCache;
+    if (parameterLocals == null) {
+      parameterLocals = Lists.newArrayList();
       for (Local v : delegate.getActiveBody().getParameterLocals()) {
-        parameterLocalCache.add(new JimpleVal(v, this));
+        parameterLocals.add(new JimpleVal(v, this));
       }
+      parameterLocalCache = parameterLocals;
     }
-    return parameterLocalCache;
+    return parameterLocals;
   }
 
   public boolean isStatic() {
@@ -125,10 +130,17 @@ public class JimpleMethod extends Method {
   }
 
   public ControlFlowGraph getControlFlowGraph() {
-    if (cfg == null) {
-      cfg = new JimpleControlFlowGraph(this);
+    ControlFlowGraph graph = cfg;
+    if (graph == null) {
+      synchronized (this) {
+        graph = cfg;
+        if (graph == null) {
+          graph = new JimpleControlFlowGraph(this);
+          cfg = graph;
+        }
+      }
     }
-    return cfg;
+    return graph;
   }
 
   public String getSubSignature() {
@@ -20,17 +20,19 @@ import java.util.HashSet;
 import java.util.Set;
 import typestate.finiteautomata.ITransition;
 import typestate.finiteautomata.Transition;
+import wpds.impl.DifferentialWeight;
 import wpds.impl.Weight;
 
-public class TransitionFunction extends Weight {
+public class TransitionFunction extends Weight
+    implements DifferentialWeight<TransitionFunction> {
 
   private final Set<ITransition> value;
 
   private final String rep;
 
-  private static TransitionFunction one;
+  private static final TransitionFunction ONE = new TransitionFunction("ONE");
 
-  private static TransitionFunction zero;
+  private static final TransitionFunction ZERO = new TransitionFunction("ZERO");
 
   private Set<Edge> stateChangeStatements;
 
@@ -114,14 +116,28 @@ public class TransitionFunction extends Weight {
     return new TransitionFunction(transitions, newStateChangeStmts);
   };
 
+  /**
+   * The transitions not contained in the previous weight, along with the state change statements of
+   * this weight. Extending composes the transitions pairwise, so it distributes over the union.
+   */
+  @Override
+  public TransitionFunction difference(TransitionFunction previous) {
+    if (rep != null || previous.rep != null || !value.containsAll(previous.value)) {
+      return this;
+    }
+    Set<ITransition> added = Sets.newHashSet(Sets.difference(value, previous.value));
+    if (added.isEmpty()) {
+      return this;
+    }
+    return new TransitionFunction(added, stateChangeStatements);
+  }
+
   public static TransitionFunction one() {
-    if (one == null) one = new TransitionFunction("ONE");
-    return one;
+    return ONE;
   }
 
   public static TransitionFunction zero() {
-    if (zero == null) zero = new TransitionFunction("ZERO");
-    return zero;
+    return ZERO;
   }
 
   public String toString() {
@@ -57,6 +57,14 @@ public abstract class IDEALTestingFramework extends AbstractTestingFramework {
 
   protected abstract TypeStateMachineWeightFunctions getStateMachine();
 
+  /**
+   * @return If set to true, the analysis runs with differential weight propagation, see {@link
+   *     wpds.impl.DifferentialWeight}.
+   */
+  protected boolean propagateWeightDeltas() {
+    return false;
+  }
+
   protected IDEALAnalysis<TransitionFunction> createAnalysis() {
     return new IDEALAnalysis<>(
         new IDEALAnalysisDefinition<TransitionFunction>() {
@@ -107,6 +115,11 @@ public abstract class IDEALTestingFramework extends AbstractTestingFramework {
               public boolean allowMultipleQueries() {
                 return true;
               }
+
+              @Override
+              public boolean propagateWeightDeltas() {
+                return IDEALTestingFramework.this.propagateWeightDeltas();
+              }
             };
           }
 
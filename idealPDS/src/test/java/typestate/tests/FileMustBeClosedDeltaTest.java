@@ -0,0 +1,29 @@
+/**
+ * ***************************************************************************** Copyright (c) 2018
+ * Fraunhofer IEM, Paderborn, Germany. This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * <p>SPDX-License-Identifier: EPL-2.0
+ *
+ * <p>Contributors: Johannes Spaeth - initial API and implementation
+ * *****************************************************************************
+ */
+package typestate.tests;
+
+/**
+ * Runs the test cases of {@link FileMustBeClosedTest} with differential weight propagation. Both
+ * classes print the number of weight operations, compare them to see the savings.
+ */
+public class FileMustBeClosedDeltaTest extends FileMustBeClosedTest {
+
+  @Override
+  protected boolean propagateWeightDeltas() {
+    return true;
+  }
+
+  @Override
+  public String getTestCaseClassName() {
+    return FileMustBeClosedTest.class.getName();
+  }
+}